@@ -0,0 +1,116 @@
+package dao.tron.tsol.controller;
+
+import dao.tron.tsol.model.TransferData;
+import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.service.MerkleTreeService;
+import dao.tron.tsol.util.IntentWireFormat;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intake CPU per intent, JSON (NDJSON bulk body) vs the binary wire format.
+ *
+ * {@code *Decode} is the request-thread cost (bind + validate vs copying records). {@code *ToLeaf} adds what
+ * the batcher does later: map to TransferData (which derives the base58/decimal strings of binary intents)
+ * and hash the Merkle leaf, parsing those strings for JSON intents and copying the packed bytes otherwise.
+ *
+ * Run: ./gradlew jmh -Pjmh.includes=IntentIntakeBenchmark (results in build/results/jmh)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class IntentIntakeBenchmark {
+
+    private static final int INTENTS = 10_000;
+    private static final long BATCH_SALT = 42L;
+    private static final String[] ADDRESSES = {
+            "TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M",
+            "TToEDBXQkGuYGsnyJASTM5JZweb7Rvrnfn",
+            "TUqVYQLKtNvLCjHw6uGPLw4Qmw7vXEavnc",
+            "TAhZaywaWM1zAQPADJA39FyoQk8cokRLCd"
+    };
+
+    private final MerkleTreeService merkleTreeService = new MerkleTreeService();
+    private final BulkIntentReader bulkReader = new BulkIntentReader(JsonMapper.builder().build());
+    private Validator validator;
+    private byte[] ndjson;
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        List<TransferIntentRequest> intents = new ArrayList<>(INTENTS);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < INTENTS; i++) {
+            TransferIntentRequest req = new TransferIntentRequest();
+            req.setFrom(ADDRESSES[i % ADDRESSES.length]);
+            req.setTo(ADDRESSES[(i + 1) % ADDRESSES.length]);
+            req.setAmount(String.valueOf((i + 1) * 1_000_000L));
+            req.setNonce((long) i);
+            req.setTimestamp(1_702_332_000L + i);
+            req.setRecipientCount(1);
+            req.setTxType(i % 3);
+            intents.add(req);
+            sb.append("{\"from\":\"").append(req.getFrom())
+                    .append("\",\"to\":\"").append(req.getTo())
+                    .append("\",\"amount\":\"").append(req.getAmount())
+                    .append("\",\"nonce\":").append(req.getNonce())
+                    .append(",\"timestamp\":").append(req.getTimestamp())
+                    .append(",\"recipientCount\":").append(req.getRecipientCount())
+                    .append(",\"txType\":").append(req.getTxType())
+                    .append("}\n");
+        }
+        ndjson = sb.toString().getBytes(StandardCharsets.UTF_8);
+        binary = IntentWireFormat.encode(intents);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INTENTS)
+    public List<TransferIntentRequest> jsonDecode() {
+        return bulkReader.read(new ByteArrayInputStream(ndjson), validator, req -> List.of(), INTENTS).accepted();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INTENTS)
+    public List<TransferIntentRequest> binaryDecode() {
+        return IntentWireFormat.decode(ByteBuffer.wrap(binary), INTENTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INTENTS)
+    public void jsonToLeaf(Blackhole bh) {
+        hashLeaves(jsonDecode(), bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INTENTS)
+    public void binaryToLeaf(Blackhole bh) {
+        hashLeaves(binaryDecode(), bh);
+    }
+
+    // Same mapping as BatchService.seal
+    private void hashLeaves(List<TransferIntentRequest> intents, Blackhole bh) {
+        for (TransferIntentRequest req : intents) {
+            TransferData d = new TransferData();
+            d.setFrom(req.getFrom());
+            d.setTo(req.getTo());
+            d.setAmount(req.getAmount());
+            d.setNonce(req.getNonce());
+            d.setTimestamp(req.getTimestamp());
+            d.setRecipientCount(req.getRecipientCount());
+            d.setTxType(req.getTxType());
+            d.setPackedFields(req.getPackedFields());
+            bh.consume(merkleTreeService.leafHash(d, BATCH_SALT));
+        }
+    }
+}
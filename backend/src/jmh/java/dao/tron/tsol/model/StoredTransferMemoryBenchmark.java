@@ -0,0 +1,105 @@
+package dao.tron.tsol.model;
+
+import dao.tron.tsol.util.PackedProof;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retained heap of stored transfers with proofs as hex string lists (previous layout) vs packed byte[].
+ *
+ * The interesting number is the "retainedBytes" secondary metric (bytes of live heap per iteration,
+ * i.e. per {@code transfers} stored transfers), not the time.
+ *
+ * Run: ./gradlew jmh -Pjmh.includes=StoredTransferMemoryBenchmark (results in build/results/jmh)
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class StoredTransferMemoryBenchmark {
+
+    @Param({"100000"})
+    private int transfers;
+
+    /**
+     * ceil(log2(100k)) levels.
+     */
+    @Param({"17"})
+    private int proofDepth;
+
+    /**
+     * Previous StoredTransfer layout: proofs as lists of 0x-prefixed hex strings.
+     */
+    static final class HexStoredTransfer {
+        TransferData txData;
+        List<String> txProof;
+        List<String> whitelistProof;
+        boolean executed;
+        String executionTxId;
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Heap {
+        public long retainedBytes;
+    }
+
+    private TransferData txData;
+    private byte[][] proofs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        txData = new TransferData();
+        Random rnd = new Random(42);
+        // A small pool of distinct proofs; every transfer gets its own copy, as a real batch would.
+        proofs = new byte[64][proofDepth * PackedProof.NODE_SIZE];
+        for (byte[] p : proofs) rnd.nextBytes(p);
+    }
+
+    @Benchmark
+    public Object hexStrings(Heap heap) {
+        long before = usedHeap();
+        List<HexStoredTransfer> stored = new ArrayList<>(transfers);
+        for (int i = 0; i < transfers; i++) {
+            HexStoredTransfer st = new HexStoredTransfer();
+            st.txData = txData;
+            st.txProof = new ArrayList<>(PackedProof.toHexList(proofs[i & 63]));
+            st.whitelistProof = List.of();
+            stored.add(st);
+        }
+        heap.retainedBytes = usedHeap() - before;
+        Reference.reachabilityFence(stored);
+        return stored;
+    }
+
+    @Benchmark
+    public Object packed(Heap heap) {
+        long before = usedHeap();
+        List<StoredTransfer> stored = new ArrayList<>(transfers);
+        for (int i = 0; i < transfers; i++) {
+            StoredTransfer st = new StoredTransfer();
+            st.setTxData(txData);
+            st.setTxProof(proofs[i & 63].clone());
+            st.setWhitelistProof(PackedProof.EMPTY);
+            stored.add(st);
+        }
+        heap.retainedBytes = usedHeap() - before;
+        Reference.reachabilityFence(stored);
+        return stored;
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean mem = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) System.gc();
+        return mem.getHeapMemoryUsage().getUsed();
+    }
+}
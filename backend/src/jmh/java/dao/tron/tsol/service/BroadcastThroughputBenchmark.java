@@ -0,0 +1,151 @@
+package dao.tron.tsol.service;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.*;
+import org.tron.trident.api.WalletGrpc;
+import org.tron.trident.core.ApiWrapper;
+import org.tron.trident.core.key.KeyPair;
+import org.tron.trident.proto.Chain;
+import org.tron.trident.proto.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Broadcasts/second against a local stub gRPC node, previous global-lock path vs TransactionBroadcaster.
+ *
+ * The stub answers BroadcastTransaction after {@code serverLatencyMs} (without blocking a server thread), so
+ * the only limit on throughput is how many broadcasts the client keeps in flight. With the global lock the
+ * score stays at ~1000/latency whatever the concurrency; the pooled path should scale with it.
+ *
+ * Run: ./gradlew jmh -Pjmh.includes=BroadcastThroughputBenchmark (results in build/results/jmh)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BroadcastThroughputBenchmark {
+
+    private static final int BURST = 256;
+    private static final String OWNER = "TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M";
+    private static final String CONTRACT = "TAhZaywaWM1zAQPADJA39FyoQk8cokRLCd";
+
+    @Param({"1", "8", "32", "128"})
+    private int concurrency;
+
+    @Param({"5"})
+    private int serverLatencyMs;
+
+    @Param({"4"})
+    private int channels;
+
+    private interface TxTask {
+        void run(Chain.Transaction tx) throws Exception;
+    }
+
+    private ScheduledExecutorService serverDelay;
+    private Server server;
+    private List<ApiWrapper> wrappers;
+    private TransactionBroadcaster broadcaster;
+    private final Object broadcastLock = new Object();
+    private ExecutorService tasks;
+    private Chain.Transaction[] txs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        serverDelay = Executors.newScheduledThreadPool(4);
+        server = ServerBuilder.forPort(0)
+                .addService(new WalletGrpc.WalletImplBase() {
+                    @Override
+                    public void broadcastTransaction(Chain.Transaction request,
+                                                     StreamObserver<Response.TransactionReturn> out) {
+                        serverDelay.schedule(() -> {
+                            out.onNext(Response.TransactionReturn.newBuilder().setResult(true).build());
+                            out.onCompleted();
+                        }, serverLatencyMs, TimeUnit.MILLISECONDS);
+                    }
+                })
+                .build()
+                .start();
+
+        String endpoint = "127.0.0.1:" + server.getPort();
+        String privateKey = KeyPair.generate().toPrivateKey();
+        wrappers = new ArrayList<>();
+        for (int i = 0; i < channels; i++) {
+            wrappers.add(new ApiWrapper(endpoint, endpoint, privateKey));
+        }
+        AtomicInteger next = new AtomicInteger();
+        broadcaster = new TransactionBroadcaster(privateKey,
+                signed -> wrappers.get(Math.floorMod(next.getAndIncrement(), channels)).broadcastTransaction(signed));
+        tasks = Executors.newVirtualThreadPerTaskExecutor();
+
+        txs = new Chain.Transaction[BURST];
+        for (int i = 0; i < BURST; i++) {
+            txs[i] = LocalTransactionBuilder.triggerSmartContract(
+                    ApiWrapper.parseAddress(OWNER),
+                    ApiWrapper.parseAddress(CONTRACT),
+                    ByteString.copyFromUtf8("call-" + i).toByteArray(),
+                    100_000_000L,
+                    new LocalTransactionBuilder.RefBlock(i, new byte[32], 0L),
+                    1_700_000_000_000L,
+                    1_700_000_060_000L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        tasks.shutdown();
+        wrappers.forEach(ApiWrapper::close);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        serverDelay.shutdownNow();
+    }
+
+    /**
+     * Previous path: one wrapper, sign + broadcast under a global lock.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void globalLock() throws Exception {
+        ApiWrapper wrapper = wrappers.getFirst();
+        burst(tx -> {
+            synchronized (broadcastLock) {
+                wrapper.broadcastTransaction(wrapper.signTransaction(tx));
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void pooledSigners() throws Exception {
+        burst(broadcaster::signAndBroadcast);
+    }
+
+    private void burst(TxTask task) throws Exception {
+        Semaphore permits = new Semaphore(concurrency);
+        List<Future<?>> futures = new ArrayList<>(BURST);
+        for (Chain.Transaction tx : txs) {
+            permits.acquire();
+            futures.add(tasks.submit(() -> {
+                try {
+                    task.run(tx);
+                } finally {
+                    permits.release();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+    }
+}
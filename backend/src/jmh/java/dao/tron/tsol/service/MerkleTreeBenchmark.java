@@ -0,0 +1,45 @@
+package dao.tron.tsol.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential vs fork-join Merkle layer hashing at 1k/10k/100k leaves.
+ *
+ * Run: ./gradlew jmh (results in build/results/jmh)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class MerkleTreeBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int leafCount;
+
+    private List<byte[]> leaves;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random rnd = new Random(42);
+        leaves = new ArrayList<>(leafCount);
+        for (int i = 0; i < leafCount; i++) {
+            byte[] leaf = new byte[MerkleTree.NODE_SIZE];
+            rnd.nextBytes(leaf);
+            leaves.add(leaf);
+        }
+    }
+
+    @Benchmark
+    public byte[] sequential() {
+        return MerkleTree.fromLeaves(leaves, MerkleTree.SEQUENTIAL).rootBytes();
+    }
+
+    @Benchmark
+    public byte[] parallel() {
+        return MerkleTree.fromLeaves(leaves, MerkleTree.PARALLEL_GRAIN).rootBytes();
+    }
+}
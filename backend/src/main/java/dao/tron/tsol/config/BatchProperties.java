@@ -24,16 +24,16 @@ public class BatchProperties {
      * Example: 0x82067662081cf3c1061cae00166d580285a337264c1eb3c91673579a814d32ea
      */
     private String merkleRoot;
-}
-
-
-
-
-
-
-
-
-
-
 
+    /**
+     * Leaf count at which Merkle leaf encoding and layer hashing switch to fork-join parallel mode.
+     * Levels smaller than this are always hashed sequentially.
+     */
+    private int merkleParallelThreshold = 4096;
 
+    /**
+     * Maximum number of sealed batches in the submit pipeline (broadcast/confirm/index) at once.
+     * 1 = seal the next batch only after the previous one is confirmed.
+     */
+    private int maxInFlight = 2;
+}
@@ -0,0 +1,65 @@
+package dao.tron.tsol.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "intake")
+@Data
+public class IntakeProperties {
+
+    /**
+     * Maximum number of intents in one POST /api/intents/bulk request; larger uploads are rejected as a whole.
+     * Default: 100000
+     */
+    private int bulkMaxItems = 100_000;
+
+    /**
+     * Number of recent (from, nonce) pairs kept to reject retried intents (about 37 bytes each, allocated up front).
+     * A duplicate arriving after this many newer intents is no longer caught at intake.
+     * Default: 1000000
+     */
+    private int dedupCapacity = 1_000_000;
+
+    /**
+     * Longest an accepted intent should wait in the intake queue before it is drained into a batch. Unless set
+     * explicitly, the high watermark is this many seconds of the measured drain rate, and never less than the
+     * intents the batcher drains in that time at scheduler.batching.max-intents per check interval.
+     * Default: 60
+     */
+    private int maxQueueDelaySeconds = 60;
+
+    /**
+     * Pending intents at which intake starts answering 429; it keeps doing so until the queue drains to
+     * {@link #lowWatermark}. Requests that would push the queue above this are refused as well.
+     * 0 = derived from {@link #maxQueueDelaySeconds} and the drain rate.
+     * Default: 0
+     */
+    private int highWatermark = 0;
+
+    /**
+     * Pending intents at or below which intake is admitted again after hitting the high watermark.
+     * 0 = half the high watermark.
+     * Default: 0
+     */
+    private int lowWatermark = 0;
+
+    /**
+     * Sustained intents per second accepted from one sender (0 = no per-sender limit).
+     * Default: 20
+     */
+    private int senderRatePerSecond = 20;
+
+    /**
+     * Intents a sender may submit at once before the per-second rate applies.
+     * Default: 100
+     */
+    private int senderBurst = 100;
+
+    /**
+     * Upper bound for the Retry-After header, also used while the drain rate is unknown.
+     * Default: 60
+     */
+    private int maxRetryAfterSeconds = 60;
+}
@@ -0,0 +1,62 @@
+package dao.tron.tsol.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "node")
+@Data
+public class NodeProperties {
+
+    /**
+     * Full node gRPC endpoints (host:port): broadcasts, receipts, head block.
+     * Default: empty = settlement.node-endpoint, or grpc.nile.trongrid.io:50051 if that is unset
+     */
+    private List<String> fullEndpoints = new ArrayList<>();
+
+    /**
+     * Solidity node gRPC endpoints (host:port): constant contract calls on confirmed state.
+     * Default: empty = grpc.nile.trongrid.io:50061
+     */
+    private List<String> solidityEndpoints = new ArrayList<>();
+
+    /**
+     * gRPC deadline per node call; a call running longer fails and counts as an endpoint error.
+     * Default: 10000ms
+     */
+    private long callTimeoutMs = 10_000;
+
+    /**
+     * Number of most recent calls per endpoint the latency percentiles and error rate are computed over.
+     * Default: 100
+     */
+    private int latencyWindow = 100;
+
+    /**
+     * Calls an endpoint must have in its window before it can be ejected.
+     * Default: 20
+     */
+    private int minSamples = 20;
+
+    /**
+     * Eject an endpoint whose p99 latency exceeds this.
+     * Default: 3000ms
+     */
+    private long ejectP99Ms = 3_000;
+
+    /**
+     * Eject an endpoint whose error rate (transport failures / calls in window) exceeds this.
+     * Default: 0.25
+     */
+    private double ejectErrorRate = 0.25;
+
+    /**
+     * How long an ejected endpoint gets no traffic; it is then measured again from an empty window.
+     * Default: 30s
+     */
+    private long ejectSeconds = 30;
+}
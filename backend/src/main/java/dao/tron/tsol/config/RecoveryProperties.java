@@ -0,0 +1,48 @@
+package dao.tron.tsol.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "recovery")
+@Data
+public class RecoveryProperties {
+
+    /**
+     * Follow Settlement logs from the last checkpoint and reconcile them against persisted batches.
+     * Default: true
+     */
+    private boolean enabled = true;
+
+    /**
+     * File holding the last block whose Settlement logs were applied.
+     * Default: data/recovery/checkpoint (relative to the working directory)
+     */
+    private String checkpointFile = "data/recovery/checkpoint";
+
+    /**
+     * Block to start from when there is no checkpoint yet (e.g. the Settlement deployment block to rebuild
+     * from full history). 0 starts at the current head.
+     * Default: 0
+     */
+    private long startBlock = 0;
+
+    /**
+     * Blocks kept between the scan and the head so only solidified blocks are applied.
+     * Default: 19 (TRON solidification depth)
+     */
+    private int confirmations = 19;
+
+    /**
+     * Delay between scans once caught up.
+     * Default: 3000ms (one TRON block)
+     */
+    private long pollIntervalMs = 3000;
+
+    /**
+     * Checkpoint is written after this many scanned blocks while catching up (and always when caught up).
+     * Default: 100
+     */
+    private int checkpointEveryBlocks = 100;
+}
@@ -0,0 +1,29 @@
+package dao.tron.tsol.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "repository")
+@Data
+public class RepositoryProperties {
+
+    /**
+     * Batch repository implementation: "file" (persistent, default) or "memory".
+     */
+    private String type = "file";
+
+    /**
+     * Directory holding one file per batch (file repository only).
+     * Default: data/batches (relative to the working directory)
+     */
+    private String directory = "data/batches";
+
+    /**
+     * Number of finished (COMPLETED/FAILED) batches kept on-heap; older ones are read back from disk on demand.
+     * Unfinished batches are always kept in memory.
+     * Default: 256
+     */
+    private int hotCacheSize = 256;
+}
@@ -42,10 +42,11 @@ public class SchedulerProperties {
     @Data
     public static class ExecutionConfig {
         /**
-         * How often to check for unlocked batches to execute (in milliseconds)
-         * Default: 5000ms (5 seconds)
+         * Safety-net check for unlocked batches (in milliseconds). Batches saved through BatchService are
+         * started by a timer at their unlockTime; this poll only catches batches changed elsewhere.
+         * Default: 60000ms (1 minute)
          */
-        private long checkIntervalMs = 5000;
+        private long checkIntervalMs = 60000;
         
         /**
          * Enable/disable automatic execution
@@ -54,10 +55,19 @@ public class SchedulerProperties {
         private boolean enabled = true;
 
         /**
-         * Max number of transfers to execute concurrently per batch.
+         * Max number of transfers executing concurrently (across batches).
+         * With virtual threads this is a semaphore limit and can go into the hundreds; node load is bounded
+         * separately by settlement.max-requests-per-second. Platform-thread mode caps the pool at 8.
          * Default: 3 (bounded parallelism; improves throughput while staying gentle on public nodes).
          */
         private int maxParallel = 3;
+
+        /**
+         * Run executions on virtual threads (one per transfer, bounded by maxParallel) instead of a fixed
+         * platform thread pool.
+         * Default: true
+         */
+        private boolean virtualThreads = true;
     }
 }
 
@@ -32,6 +32,53 @@ public class SettlementProperties {
      */
     private String aggregatorAddress;
 
+    /**
+     * Upper bound on RPCs per second sent to the node (trigger/broadcast/receipt polling), shared by all
+     * concurrent executions. 0 = unlimited.
+     * Default: 20
+     */
+    private int maxRequestsPerSecond = 20;
+
+    /**
+     * Build trigger transactions locally (ABI call + cached reference block) instead of a triggerContract
+     * round-trip before every broadcast.
+     * Default: true
+     */
+    private boolean localTxBuild = true;
+
+    /**
+     * Background refresh interval of the cached reference block used for local transaction building.
+     * Default: 30000ms
+     */
+    private long refBlockRefreshMs = 30_000;
+
+    /**
+     * Number of node connections (gRPC channels) broadcasts are spread over. Signing and broadcasting are
+     * not serialized, so concurrent executions broadcast in parallel.
+     * Default: 4
+     */
+    private int broadcastChannels = 4;
+
+    /**
+     * How long mutable Settlement view results (getCurrentBatchId, isExecutedTransfer=false, not-yet-mined
+     * batches/roots) are served from cache. Mined batch records and executed flags are cached until evicted.
+     * Default: 3000ms (one block)
+     */
+    private long viewCacheTtlMs = 3_000;
+
+    /**
+     * Upper bound on cached results per Settlement view.
+     * Default: 100000
+     */
+    private int viewCacheMaxEntries = 100_000;
+
+    /**
+     * Concurrent isExecutedTransfer lookups during bulk reconciliation (node RPC rate is still capped by
+     * max-requests-per-second).
+     * Default: 8
+     */
+    private int reconcileParallelism = 8;
+
     /**
      * Transaction polling settings (to reduce RPC load).
      */
@@ -43,26 +90,16 @@ public class SettlementProperties {
          * Timeout for getting TransactionInfo after broadcasting a tx.
          */
         private long txInfoTimeoutSeconds = 60;
-        /**
-         * Initial poll interval for TransactionInfo.
-         */
-        private long txInfoPollInitialMs = 250;
-        /**
-         * Maximum poll interval for TransactionInfo (backoff cap).
-         */
-        private long txInfoPollMaxMs = 2000;
 
         /**
          * Timeout for reading BatchSubmitted event.
          */
         private long batchSubmittedTimeoutSeconds = 60;
+
         /**
-         * Initial poll interval for BatchSubmitted event.
-         */
-        private long batchSubmittedPollInitialMs = 500;
-        /**
-         * Maximum poll interval for BatchSubmitted event (backoff cap).
+         * How often the shared receipt tracker checks the head block. Receipts are fetched once per new
+         * block, so this bounds latency, not load.
          */
-        private long batchSubmittedPollMaxMs = 3000;
+        private long receiptTickMs = 500;
     }
 }
@@ -0,0 +1,42 @@
+package dao.tron.tsol.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "wal")
+@Data
+public class WalProperties {
+
+    /**
+     * Persist accepted intents to the write-ahead log before acknowledging them (202).
+     * Default: true
+     */
+    private boolean enabled = true;
+
+    /**
+     * Directory holding WAL segment files.
+     * Default: data/wal (relative to the working directory)
+     */
+    private String directory = "data/wal";
+
+    /**
+     * Size of each memory-mapped segment file. A new segment is started when the current one is full.
+     * Default: 64 MiB
+     */
+    private int segmentSizeBytes = 64 * 1024 * 1024;
+
+    /**
+     * How long the committer waits to gather more appends into one fsync (group commit).
+     * Default: 2ms
+     */
+    private long groupCommitDelayMs = 2;
+
+    /**
+     * How long a request waits for its intents to be forced to disk before it fails (503). Failed forces are
+     * retried with backoff meanwhile; a request whose intents were being forced when a force failed fails at once.
+     * Default: 5000ms
+     */
+    private long commitTimeoutMs = 5_000;
+}
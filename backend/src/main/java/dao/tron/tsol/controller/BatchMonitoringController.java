@@ -3,16 +3,22 @@ package dao.tron.tsol.controller;
 import dao.tron.tsol.model.LocalBatch;
 import dao.tron.tsol.model.StoredTransfer;
 import dao.tron.tsol.model.TransferData;
+import dao.tron.tsol.repository.BatchTotals;
 import dao.tron.tsol.service.TransferIntentService;
 import dao.tron.tsol.service.BatchService;
+import dao.tron.tsol.service.IntakeAdmission;
 import dao.tron.tsol.service.MerkleTreeService;
+import dao.tron.tsol.service.NodePool;
+import dao.tron.tsol.service.SettlementLogRecovery;
+import dao.tron.tsol.config.IntakeProperties;
 import dao.tron.tsol.config.SchedulerProperties;
+import dao.tron.tsol.util.PackedProof;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletionException;
 
 /**
  * Comprehensive monitoring endpoint for batches, transfers, and Merkle trees
@@ -23,34 +29,53 @@ import java.util.stream.Stream;
 @RequestMapping("/api/monitor")
 public class BatchMonitoringController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final BatchService batchService;
     private final MerkleTreeService merkleTreeService;
     private final TransferIntentService intentService;
     private final SchedulerProperties schedulerProps;
+    private final NodePool nodePool;
+    private final SettlementLogRecovery logRecovery;
+    private final IntakeAdmission admission;
+    private final IntakeProperties intakeProps;
 
     public BatchMonitoringController(BatchService batchService, 
                                      MerkleTreeService merkleTreeService,
                                      dao.tron.tsol.service.SettlementContractClient settlementClient,
                                      TransferIntentService intentService,
-                                     SchedulerProperties schedulerProps) {
+                                     SchedulerProperties schedulerProps,
+                                     NodePool nodePool,
+                                     SettlementLogRecovery logRecovery,
+                                     IntakeAdmission admission,
+                                     IntakeProperties intakeProps) {
         this.batchService = batchService;
         this.merkleTreeService = merkleTreeService;
         this.intentService = intentService;
         this.schedulerProps = schedulerProps;
+        this.nodePool = nodePool;
+        this.logRecovery = logRecovery;
+        this.admission = admission;
+        this.intakeProps = intakeProps;
     }
 
 
 
     /**
-     * GET /api/monitor/batches
-     * Get all batches with complete information
+     * GET /api/monitor/batches?before={localId}&limit={n}
+     * One page of batches with complete information, newest first; statistics cover all batches.
+     * Pass {@code nextBefore} from the response as {@code before} for the next page.
      */
     @GetMapping("/batches")
-    public ResponseEntity<Map<String, Object>> getAllBatches() {
+    public ResponseEntity<Map<String, Object>> getAllBatches(@RequestParam(required = false) Long before,
+                                                             @RequestParam(required = false) Integer limit) {
         Map<String, Object> response = new LinkedHashMap<>();
         
         try {
-            List<LocalBatch> batches = batchService.getBatches();
+            int pageSize = pageSize(limit);
+            List<LocalBatch> batches = batchService.getBatchPage(before != null ? before : Long.MAX_VALUE, pageSize);
+            BatchTotals totals = batchService.getBatchTotals();
             
             List<Map<String, Object>> batchInfo = new ArrayList<>();
             
@@ -60,24 +85,16 @@ public class BatchMonitoringController {
             }
             
             response.put("status", "SUCCESS");
-            response.put("totalBatches", batches.size());
+            response.put("totalBatches", totals.batches());
             response.put("batches", batchInfo);
+            response.put("nextBefore", nextBefore(batches, pageSize));
             
-            // Summary statistics
-            int totalTransfers = batches.stream()
-                    .mapToInt(b -> b.getTransfers() != null ? b.getTransfers().size() : 0)
-                    .sum();
-            
-            int executedTransfers = batches.stream()
-                    .flatMap(b -> b.getTransfers() != null ? b.getTransfers().stream() : java.util.stream.Stream.empty())
-                    .mapToInt(t -> t.isExecuted() ? 1 : 0)
-                    .sum();
-            
+            // Summary statistics (all batches, not just this page)
             response.put("statistics", Map.of(
-                    "totalBatches", batches.size(),
-                    "totalTransfers", totalTransfers,
-                    "executedTransfers", executedTransfers,
-                    "pendingTransfers", totalTransfers - executedTransfers
+                    "totalBatches", totals.batches(),
+                    "totalTransfers", totals.transfers(),
+                    "executedTransfers", totals.executedTransfers(),
+                    "pendingTransfers", totals.transfers() - totals.executedTransfers()
             ));
             
         } catch (Exception e) {
@@ -99,21 +116,9 @@ public class BatchMonitoringController {
     public ResponseEntity<Map<String, Object>> getStats() {
         Map<String, Object> response = new LinkedHashMap<>();
 
-        List<LocalBatch> batches = batchService.getBatches();
+        BatchTotals totals = batchService.getBatchTotals();
         int pendingIntents = intentService.getPendingCount();
 
-        int totalBatches = batches.size();
-        long completedBatches = batches.stream().filter(b -> b.getStatus() != null && b.getStatus().name().equals("COMPLETED")).count();
-
-        int totalTransfersInBatches = batches.stream()
-                .mapToInt(b -> b.getTransfers() != null ? b.getTransfers().size() : 0)
-                .sum();
-
-        int executedTransfers = batches.stream()
-                .flatMap(b -> b.getTransfers() != null ? b.getTransfers().stream() : Stream.<StoredTransfer>empty())
-                .mapToInt(t -> t.isExecuted() ? 1 : 0)
-                .sum();
-
         response.put("status", "SUCCESS");
         response.put("schedulers", Map.of(
                 "batching", Map.of(
@@ -127,16 +132,71 @@ public class BatchMonitoringController {
         ));
 
         response.put("statistics", Map.of(
-                "totalTransfers", totalTransfersInBatches + pendingIntents,
+                "totalTransfers", totals.transfers() + pendingIntents,
                 "pendingTransfers", pendingIntents,
-                "executedTransfers", executedTransfers,
-                "totalBatches", totalBatches,
-                "completedBatches", completedBatches
+                "duplicateIntentsRejected", intentService.getDuplicatesRejected(),
+                "executedTransfers", totals.executedTransfers(),
+                "totalBatches", totals.batches(),
+                "completedBatches", totals.completedBatches()
         ));
 
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * GET /api/monitor/nodes
+     * Per-endpoint latency (p50/p99), error rate and ejection state of the shared node pool
+     */
+    @GetMapping("/nodes")
+    public ResponseEntity<Map<String, Object>> getNodes() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        List<NodePool.EndpointStats> stats = nodePool.getStats();
+        response.put("status", "SUCCESS");
+        response.put("enabled", nodePool.isEnabled());
+        response.put("healthy", stats.stream().filter(s -> !s.ejected()).count());
+        response.put("nodes", stats);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * GET /api/monitor/recovery
+     * Checkpointed Settlement log scan: last applied block and what it reconciled
+     */
+    @GetMapping("/recovery")
+    public ResponseEntity<Map<String, Object>> getRecovery() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", "SUCCESS");
+        response.put("checkpointBlock", logRecovery.getCheckpoint());
+        response.put("blocksScanned", logRecovery.getBlocksScanned());
+        response.put("batchesReconciled", logRecovery.getBatchesReconciled());
+        response.put("transfersMarkedExecuted", logRecovery.getTransfersMarked());
+        response.put("unknownOnChainBatches", logRecovery.getUnknownBatches());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * GET /api/monitor/intake
+     * Admission control: queue depth against the watermarks, drain rate and what was turned away
+     */
+    @GetMapping("/intake")
+    public ResponseEntity<Map<String, Object>> getIntake() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", "SUCCESS");
+        response.put("queueDepth", admission.getQueueDepth());
+        response.put("drainRatePerSecond", admission.getDrainRatePerSecond());
+        response.put("maxQueueDelaySeconds", intakeProps.getMaxQueueDelaySeconds());
+        response.put("highWatermark", admission.getHighWatermark());
+        response.put("lowWatermark", admission.getLowWatermark());
+        response.put("shedding", admission.isShedding());
+        response.put("senderRatePerSecond", intakeProps.getSenderRatePerSecond());
+        response.put("senderBurst", intakeProps.getSenderBurst());
+        response.put("trackedSenders", admission.getTrackedSenders());
+        response.put("rejectedQueueFull", admission.getRejectedQueueFull());
+        response.put("rejectedRateLimited", admission.getRejectedRateLimited());
+        response.put("duplicateIntentsRejected", intentService.getDuplicatesRejected());
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * POST /api/monitor/create-batch-now
      *
@@ -155,26 +215,25 @@ public class BatchMonitoringController {
             }
 
             int maxIntents = schedulerProps.getBatching().getMaxIntents();
-            int before = batchService.getBatches().size();
-
-            batchService.createAndSubmitBatch(maxIntents);
 
-            List<LocalBatch> afterBatches = batchService.getBatches();
-            if (afterBatches.size() <= before) {
+            // Wait for this batch to come out of the pipeline (confirmed + indexed).
+            LocalBatch newest = batchService.createAndSubmitBatch(maxIntents).join();
+            if (newest == null) {
                 response.put("success", false);
-                response.put("error", "Batch was not created (no new LocalBatch stored)");
+                response.put("error", "Batch was not created (no intents drained or " + batchService.getBatchesInFlight()
+                        + " batches already in flight)");
                 return ResponseEntity.status(500).body(response);
             }
 
-            LocalBatch newest = afterBatches.stream()
-                    .max(Comparator.comparingLong(LocalBatch::getLocalId))
-                    .orElseThrow();
-
             response.put("success", true);
             response.put("batchId", newest.getOnChainBatchId());
             response.put("merkleRoot", newest.getMerkleRootHex());
             response.put("txCount", newest.getTxCount());
             return ResponseEntity.ok(response);
+        } catch (CompletionException e) {
+            response.put("success", false);
+            response.put("error", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return ResponseEntity.status(500).body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("error", e.getMessage());
@@ -251,15 +310,17 @@ public class BatchMonitoringController {
     }
 
     /**
-     * GET /api/monitor/transfers
-     * Get all transfers across all batches
+     * GET /api/monitor/transfers?before={localId}&limit={n}
+     * Transfers of one page of batches (same paging as /batches)
      */
     @GetMapping("/transfers")
-    public ResponseEntity<Map<String, Object>> getAllTransfers() {
+    public ResponseEntity<Map<String, Object>> getAllTransfers(@RequestParam(required = false) Long before,
+                                                               @RequestParam(required = false) Integer limit) {
         Map<String, Object> response = new LinkedHashMap<>();
         
         try {
-            List<LocalBatch> batches = batchService.getBatches();
+            int pageSize = pageSize(limit);
+            List<LocalBatch> batches = batchService.getBatchPage(before != null ? before : Long.MAX_VALUE, pageSize);
             List<Map<String, Object>> allTransfers = new ArrayList<>();
             
             for (LocalBatch batch : batches) {
@@ -275,6 +336,7 @@ public class BatchMonitoringController {
             response.put("status", "SUCCESS");
             response.put("totalTransfers", allTransfers.size());
             response.put("transfers", allTransfers);
+            response.put("nextBefore", nextBefore(batches, pageSize));
             
             // Group by status
             long executed = allTransfers.stream().filter(t -> Boolean.TRUE.equals(t.get("executed"))).count();
@@ -296,6 +358,17 @@ public class BatchMonitoringController {
         return ResponseEntity.ok(response);
     }
 
+    private static int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) return DEFAULT_PAGE_SIZE;
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    // localId to pass as "before" for the next page; null on the last page
+    private static Long nextBefore(List<LocalBatch> page, int pageSize) {
+        if (page.size() < pageSize) return null;
+        return page.get(page.size() - 1).getLocalId();
+    }
+
     private Map<String, Object> buildBatchInfo(LocalBatch batch) {
         Map<String, Object> info = new LinkedHashMap<>();
         
@@ -366,11 +439,10 @@ public class BatchMonitoringController {
         info.put("txType", td.getTxType());
         info.put("executed", st.isExecuted());
         info.put("executionTxId", st.getExecutionTxId());
-        info.put("proofSize", st.getTxProof() != null ? st.getTxProof().size() : 0);
+        info.put("proofSize", PackedProof.depth(st.getTxProof()));
         // Helpful for txType=2 monitoring (BATCHED requires a whitelist proof).
         // Keep only the size (do not expose full proof array in monitoring response).
-        int wlSize = st.getWhitelistProof() != null ? st.getWhitelistProof().size() : 0;
-        info.put("whitelistProofSize", wlSize);
+        info.put("whitelistProofSize", PackedProof.depth(st.getWhitelistProof()));
         
         // Calculate tx hash for reference
         byte[] txHash = merkleTreeService.leafHash(td, batch.getBatchSalt());
@@ -383,17 +455,9 @@ public class BatchMonitoringController {
     private Map<String, Object> buildDetailedTransferInfo(StoredTransfer st, int index, LocalBatch batch) {
         Map<String, Object> info = buildTransferInfo(st, index, batch);
         
-        if (st.getTxProof() != null && !st.getTxProof().isEmpty()) {
-            info.put("merkleProof", st.getTxProof());
-        } else {
-            info.put("merkleProof", Collections.emptyList());
-        }
-        
-        if (st.getWhitelistProof() != null && !st.getWhitelistProof().isEmpty()) {
-            info.put("whitelistProof", st.getWhitelistProof());
-        } else {
-            info.put("whitelistProof", Collections.emptyList());
-        }
+        // Proofs are stored packed; hex is rendered only for the response.
+        info.put("merkleProof", PackedProof.toHexList(st.getTxProof()));
+        info.put("whitelistProof", PackedProof.toHexList(st.getWhitelistProof()));
         
         info.put("batch", Map.of(
                 "batchId", batch.getOnChainBatchId(),
@@ -0,0 +1,109 @@
+package dao.tron.tsol.controller;
+
+import dao.tron.tsol.model.TransferIntentRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import tools.jackson.core.exc.StreamReadException;
+import tools.jackson.databind.DatabindException;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectReader;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Streaming reader for bulk intent uploads: a JSON array of intents or newline-delimited JSON (one per line).
+ * <p>
+ * Intents are bound and validated one at a time straight from the token stream, so a large upload is never
+ * held as one JSON tree. Items failing bean validation or the intake rules are reported per index and skipped;
+ * a body that is not well-formed JSON, has an item that cannot be bound (null, wrong types) or more than
+ * {@code maxItems} items is rejected as a whole.
+ * <p>
+ * Binding uses the application's {@link JsonMapper}, so intents in a bulk body are read exactly like the body of
+ * POST /api/intents.
+ */
+final class BulkIntentReader {
+
+    record ItemResult(int index, boolean accepted, List<String> errors) {}
+
+    record Result(List<TransferIntentRequest> accepted, List<ItemResult> items) {
+        int rejectedCount() {
+            return items.size() - accepted.size();
+        }
+
+        /**
+         * Turn accepted items away after the fact: {@code errors} has one entry per accepted intent, null to
+         * keep it.
+         */
+        Result withRejected(List<String> errors) {
+            List<TransferIntentRequest> kept = new ArrayList<>(accepted.size());
+            List<ItemResult> out = new ArrayList<>(items.size());
+            int a = 0;
+            for (ItemResult item : items) {
+                if (!item.accepted()) {
+                    out.add(item);
+                } else if (errors.get(a) == null) {
+                    kept.add(accepted.get(a++));
+                    out.add(item);
+                } else {
+                    out.add(new ItemResult(item.index(), false, List.of(errors.get(a++))));
+                }
+            }
+            return new Result(kept, out);
+        }
+    }
+
+    static final String DUPLICATE = "nonce: already used by this sender (duplicate intent)";
+
+    // Top-level arrays are unwrapped by readValues; root-level value sequences (NDJSON) are read as they come.
+    private final ObjectReader reader;
+
+    BulkIntentReader(JsonMapper jsonMapper) {
+        this.reader = jsonMapper.readerFor(TransferIntentRequest.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    Result read(InputStream body, Validator validator, Function<TransferIntentRequest, List<String>> rules,
+                int maxItems) {
+        List<TransferIntentRequest> accepted = new ArrayList<>();
+        List<ItemResult> items = new ArrayList<>();
+        try (MappingIterator<TransferIntentRequest> it = reader.readValues(body)) {
+            while (it.hasNextValue()) {
+                int index = items.size();
+                if (index == maxItems) {
+                    throw new IllegalArgumentException("Too many intents in one request (max " + maxItems + ")");
+                }
+                TransferIntentRequest req;
+                try {
+                    req = it.nextValue();
+                } catch (StreamReadException | DatabindException e) {
+                    throw new IllegalArgumentException("Malformed intent at index " + index + ": " + e.getOriginalMessage());
+                }
+                List<String> errors = validate(validator, req);
+                if (errors.isEmpty()) errors = rules.apply(req);
+                if (errors.isEmpty()) {
+                    accepted.add(req);
+                    items.add(new ItemResult(index, true, List.of()));
+                } else {
+                    items.add(new ItemResult(index, false, errors));
+                }
+            }
+        } catch (StreamReadException | DatabindException e) {
+            throw new IllegalArgumentException("Malformed JSON at index " + items.size() + ": " + e.getOriginalMessage());
+        }
+        return new Result(accepted, items);
+    }
+
+    private static List<String> validate(Validator validator, TransferIntentRequest req) {
+        List<String> errors = new ArrayList<>();
+        for (ConstraintViolation<TransferIntentRequest> v : validator.validate(req)) {
+            errors.add(v.getPropertyPath() + ": " + v.getMessage());
+        }
+        errors.sort(null);
+        return errors;
+    }
+}
@@ -1,24 +1,205 @@
 package dao.tron.tsol.controller;
 
+import dao.tron.tsol.config.IntakeProperties;
 import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.service.IntakeAdmission;
+import dao.tron.tsol.service.IntentValidator;
 import dao.tron.tsol.service.TransferIntentService;
+import dao.tron.tsol.util.IntentWireFormat;
+import dao.tron.tsol.wal.WalUnavailableException;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/intents")
 public class TransferIntentController {
 
     private final TransferIntentService intentService;
+    private final Validator validator;
+    private final IntentValidator intentValidator;
+    private final IntakeAdmission admission;
+    private final IntakeProperties intakeProps;
+    private final BulkIntentReader bulkReader;
 
-    public TransferIntentController(TransferIntentService intentService) {
+    public TransferIntentController(TransferIntentService intentService,
+                                    Validator validator,
+                                    IntentValidator intentValidator,
+                                    IntakeAdmission admission,
+                                    IntakeProperties intakeProps,
+                                    JsonMapper jsonMapper) {
         this.intentService = intentService;
+        this.validator = validator;
+        this.intentValidator = intentValidator;
+        this.admission = admission;
+        this.intakeProps = intakeProps;
+        this.bulkReader = new BulkIntentReader(jsonMapper);
     }
 
+    /**
+     * POST /api/intents
+     *
+     * 202 once the intent is durable; 400 with {@code errors} if it breaks a rule executeTransfer would revert on
+     * ({@link IntentValidator}); 429 with Retry-After if the intake queue is full or the sender is over its rate
+     * ({@link IntakeAdmission}); 409 if an intent with the same (from, nonce) was already accepted; 503 if the intent
+     * could not be made durable.
+     */
     @PostMapping
-    public ResponseEntity<Void> submitIntent(@Valid @RequestBody TransferIntentRequest req) {
-        intentService.addIntent(req);
+    public ResponseEntity<Map<String, Object>> submitIntent(@Valid @RequestBody TransferIntentRequest req) {
+        List<String> errors = intentValidator.validate(req);
+        if (!errors.isEmpty()) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("error", "Invalid intent");
+            error.put("errors", errors);
+            return ResponseEntity.badRequest().body(error);
+        }
+        TransferIntentService.AddResult added;
+        try {
+            added = intentService.addIntents(List.of(req), admission);
+        } catch (WalUnavailableException e) {
+            return serviceUnavailable(e);
+        }
+        if (added.queueFull() != null) return tooManyRequests(added.queueFull());
+        if (added.rateLimited()[0] != null) return tooManyRequests(added.rateLimited()[0]);
+        if (!added.added()[0]) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("error", "Duplicate intent: nonce " + req.getNonce() + " already used by " + req.getFrom());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
         return ResponseEntity.accepted().build();
     }
+
+    /**
+     * POST /api/intents/bulk
+     *
+     * Body: JSON array of intents, or NDJSON (application/x-ndjson, one intent per line). Each intent is validated
+     * like the single-intent endpoint; valid ones are accepted together (one WAL commit) and 202 lists the outcome
+     * per index, duplicates of already accepted intents and intents over the sender's rate included. A malformed
+     * or oversized body is rejected with 400, a body that does not fit in the intake queue with 429, and one that
+     * could not be made durable with 503; nothing is accepted then.
+     */
+    @PostMapping(path = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<Map<String, Object>> submitBulk(InputStream body) {
+        IntakeAdmission.Rejection shed = admission.checkQueue(0);
+        if (shed != null) return tooManyRequests(shed);
+
+        BulkIntentReader.Result result;
+        try {
+            result = bulkReader.read(body, validator, intentValidator::validate, intakeProps.getBulkMaxItems());
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        TransferIntentService.AddResult added;
+        try {
+            added = intentService.addIntents(result.accepted(), admission);
+        } catch (WalUnavailableException e) {
+            return serviceUnavailable(e);
+        }
+        if (added.queueFull() != null) return tooManyRequests(added.queueFull());
+        result = result.withRejected(intakeErrors(added));
+
+        return bulkAccepted(result);
+    }
+
+    /**
+     * POST /api/intents/bulk with Content-Type application/x-tsol-intents
+     *
+     * Body: length-prefixed binary records ({@link IntentWireFormat}) with raw addresses and big-endian amounts.
+     * Records are fixed-width and always well-typed; each is checked against the intake rules, the sender's rate
+     * and for duplicates, and 202 lists the outcome per index like the JSON body. A truncated record or too many
+     * records reject the whole body with 400, a full intake queue with 429, a WAL failure with 503.
+     */
+    @PostMapping(path = "/bulk", consumes = IntentWireFormat.MEDIA_TYPE)
+    public ResponseEntity<Map<String, Object>> submitBulkBinary(@RequestBody byte[] body) {
+        IntakeAdmission.Rejection shed = admission.checkQueue(0);
+        if (shed != null) return tooManyRequests(shed);
+
+        List<TransferIntentRequest> intents;
+        try {
+            intents = IntentWireFormat.decode(ByteBuffer.wrap(body), intakeProps.getBulkMaxItems());
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        List<TransferIntentRequest> valid = new ArrayList<>(intents.size());
+        List<BulkIntentReader.ItemResult> items = new ArrayList<>(intents.size());
+        for (int i = 0; i < intents.size(); i++) {
+            List<String> errors = intentValidator.validate(intents.get(i));
+            if (errors.isEmpty()) {
+                valid.add(intents.get(i));
+                items.add(new BulkIntentReader.ItemResult(i, true, List.of()));
+            } else {
+                items.add(new BulkIntentReader.ItemResult(i, false, errors));
+            }
+        }
+        BulkIntentReader.Result result = new BulkIntentReader.Result(valid, items);
+
+        TransferIntentService.AddResult added;
+        try {
+            added = intentService.addIntents(result.accepted(), admission);
+        } catch (WalUnavailableException e) {
+            return serviceUnavailable(e);
+        }
+        if (added.queueFull() != null) return tooManyRequests(added.queueFull());
+        return bulkAccepted(result.withRejected(intakeErrors(added)));
+    }
+
+    private static ResponseEntity<Map<String, Object>> bulkAccepted(BulkIntentReader.Result result) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("received", result.items().size());
+        response.put("accepted", result.accepted().size());
+        response.put("rejected", result.rejectedCount());
+        response.put("results", result.items());
+        return ResponseEntity.accepted().body(response);
+    }
+
+    private static ResponseEntity<Map<String, Object>> tooManyRequests(IntakeAdmission.Rejection rejection) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", rejection.reason());
+        error.put("retryAfterSeconds", rejection.retryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(rejection.retryAfterSeconds()))
+                .body(error);
+    }
+
+    private static ResponseEntity<Map<String, Object>> serviceUnavailable(WalUnavailableException e) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", "Intents not accepted: " + e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
+
+    // One entry per intent handed to addIntents: null if accepted, otherwise why not.
+    private static List<String> intakeErrors(TransferIntentService.AddResult added) {
+        List<String> errors = new ArrayList<>(added.added().length);
+        for (int i = 0; i < added.added().length; i++) {
+            IntakeAdmission.Rejection limited = added.rateLimited()[i];
+            if (added.added()[i]) {
+                errors.add(null);
+            } else if (limited != null) {
+                errors.add("from: sender rate limit exceeded (retry after " + limited.retryAfterSeconds() + "s)");
+            } else {
+                errors.add(BulkIntentReader.DUPLICATE);
+            }
+        }
+        return errors;
+    }
 }
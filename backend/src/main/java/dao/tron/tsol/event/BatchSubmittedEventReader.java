@@ -1,8 +1,8 @@
 package dao.tron.tsol.event;
 
+import dao.tron.tsol.service.ReceiptTracker;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.tron.trident.core.ApiWrapper;
 import org.tron.trident.proto.Response;
 import org.tron.trident.utils.Numeric;
 import org.web3j.abi.FunctionReturnDecoder;
@@ -15,17 +15,20 @@ import org.web3j.abi.datatypes.generated.Uint64;
 import org.web3j.crypto.Hash;
 
 import java.time.Duration;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * Reads Settlement BatchSubmitted event from TRON tx receipt logs using Trident.
  * <p>
  * Requirements:
- * - poll ApiWrapper.getTransactionInfoById(txid)
+ * - wait for the tx receipt via the shared ReceiptTracker (no per-tx polling loop); BatchSubmitted logs
+ *   in blocks scanned by the tracker are also remembered by merkle root
  * - scan TransactionInfo.log[] topics for topic0 == keccak256("BatchSubmitted(uint64,bytes32,uint32,uint48)")
  * - decode indexed params from topics when present (new contracts index batchId and merkleRoot)
  * - decode log.data for non-indexed params (txCount, timestamp)
@@ -41,46 +44,42 @@ public class BatchSubmittedEventReader {
     private static final String TOPIC0_HEX = Hash.sha3String(EVENT_SIGNATURE); // 0x...
     private static final String TOPIC0_NORM32 = normalizeHexN(TOPIC0_HEX).toLowerCase(Locale.ROOT);
 
-    private final ApiWrapper wrapper;
+    /**
+     * BatchSubmitted events seen by the block watcher, keyed by normalized merkle root (most recent only).
+     */
+    private static final int OBSERVED_EVENTS_CAPACITY = 1024;
+
+    private final ReceiptTracker receiptTracker;
+    private final Map<String, BatchSubmittedEvent> observedByRoot = Collections.synchronizedMap(
+            new LinkedHashMap<String, BatchSubmittedEvent>(64, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, BatchSubmittedEvent> eldest) {
+                    return size() > OBSERVED_EVENTS_CAPACITY;
+                }
+            });
 
-    public BatchSubmittedEventReader(dao.tron.tsol.config.SettlementProperties settlementProps) {
-        String privateKey = settlementProps.getPrivateKey();
-        if (privateKey == null || privateKey.isBlank() || privateKey.equals("YOUR_PRIVATE_KEY_HERE")) {
-            this.wrapper = null;
+    public BatchSubmittedEventReader(ReceiptTracker receiptTracker) {
+        this.receiptTracker = receiptTracker;
+        if (!receiptTracker.isEnabled()) {
             log.warn("BatchSubmittedEventReader: missing UPDATER_PRIVATE_KEY, event reading disabled.");
-        } else {
-            this.wrapper = ApiWrapper.ofNile(privateKey);
+            return;
         }
+        // Settlement logs arrive with each scanned block; remember BatchSubmitted so confirmation fallbacks
+        // don't need a contract call.
+        receiptTracker.addLogListener((blockNum, txId, l) ->
+                decodeLog(l, txId).ifPresent(ev -> observedByRoot.put(rootKey(ev.merkleRootHex()), ev)));
     }
 
-    public Optional<BatchSubmittedEvent> readWithTimeout(String txId, Duration timeout, Duration pollInterval) {
-        if (wrapper == null) return Optional.empty();
-        long deadline = System.currentTimeMillis() + timeout.toMillis();
-        long sleepMs = Math.max(200, pollInterval.toMillis());
-        // Cap backoff at ~5x the initial interval (or 3s minimum cap).
-        long maxSleepMs = Math.max(sleepMs * 5, 3000L);
-
-        while (System.currentTimeMillis() < deadline) {
-            Response.TransactionInfo info;
-            try {
-                info = wrapper.getTransactionInfoById(txId);
-            } catch (Exception e) {
-                log.debug("txInfo not available yet for {}: {}", txId, e.getMessage());
-                info = null;
-            }
-
-            if (info != null) {
-                Optional<BatchSubmittedEvent> ev = findEventInTxInfo(info);
-                if (ev.isPresent()) return ev;
-            }
-
-            // Backoff + jitter to reduce load on public nodes (especially when many txs are in-flight).
-            long jitter = ThreadLocalRandom.current().nextLong(0, 150);
-            if (!sleepQuietly(sleepMs + jitter)) return Optional.empty();
-            sleepMs = Math.min(maxSleepMs, (long) Math.ceil(sleepMs * 1.5));
-        }
+    public Optional<BatchSubmittedEvent> readWithTimeout(String txId, Duration timeout) {
+        if (!receiptTracker.isEnabled()) return Optional.empty();
+        return findEventInTxInfo(receiptTracker.await(txId, timeout));
+    }
 
-        return Optional.empty();
+    /**
+     * BatchSubmitted for this merkle root, if the block watcher has seen it.
+     */
+    public Optional<BatchSubmittedEvent> findObserved(String merkleRootHex) {
+        return Optional.ofNullable(observedByRoot.get(rootKey(merkleRootHex)));
     }
 
     public Optional<BatchSubmittedEvent> findEventInTxInfo(Response.TransactionInfo info) {
@@ -91,33 +90,41 @@ public class BatchSubmittedEventReader {
         if (logCount == 0) return Optional.empty();
 
         for (int i = 0; i < logCount; i++) {
-            Response.TransactionInfo.Log l = info.getLog(i);
-            if (l.getTopicsCount() == 0) continue;
+            Optional<BatchSubmittedEvent> ev = decodeLog(info.getLog(i), info.getId());
+            if (ev.isPresent()) return ev;
+        }
 
-            String topic0 = Numeric.toHexString(l.getTopics(0).toByteArray());
-            if (!normalizeHexN(topic0).equalsIgnoreCase(TOPIC0_NORM32)) {
-                continue;
-            }
+        return Optional.empty();
+    }
 
-            try {
-                // New Settlement contract (per sc/src/interfaces/ISettlement.sol):
-                // event BatchSubmitted(uint64 indexed batchId, bytes32 indexed merkleRoot, uint32 txCount, uint48 timestamp);
-                if (l.getTopicsCount() >= 3) {
-                    String topicBatchId = Numeric.toHexString(l.getTopics(1).toByteArray());
-                    String topicMerkleRoot = Numeric.toHexString(l.getTopics(2).toByteArray());
-                    String dataHex = Numeric.toHexString(l.getData().toByteArray());
-                    return Optional.of(decodeIndexedLog(topicBatchId, topicMerkleRoot, dataHex));
-                }
+    /**
+     * Decode one receipt log; empty if it is not a BatchSubmitted event (or cannot be decoded).
+     */
+    public static Optional<BatchSubmittedEvent> decodeLog(Response.TransactionInfo.Log l, Object txId) {
+        if (l.getTopicsCount() == 0) return Optional.empty();
+
+        String topic0 = Numeric.toHexString(l.getTopics(0).toByteArray());
+        if (!normalizeHexN(topic0).equalsIgnoreCase(TOPIC0_NORM32)) {
+            return Optional.empty();
+        }
 
-                // Backward-compatibility: if contracts ever change to non-indexed params.
+        try {
+            // New Settlement contract (per sc/src/interfaces/ISettlement.sol):
+            // event BatchSubmitted(uint64 indexed batchId, bytes32 indexed merkleRoot, uint32 txCount, uint48 timestamp);
+            if (l.getTopicsCount() >= 3) {
+                String topicBatchId = Numeric.toHexString(l.getTopics(1).toByteArray());
+                String topicMerkleRoot = Numeric.toHexString(l.getTopics(2).toByteArray());
                 String dataHex = Numeric.toHexString(l.getData().toByteArray());
-                return Optional.of(decodeLogData(dataHex));
-            } catch (Exception e) {
-                log.warn("Failed to decode BatchSubmitted log data for tx {}: {}", info.getId(), e.getMessage());
+                return Optional.of(decodeIndexedLog(topicBatchId, topicMerkleRoot, dataHex));
             }
-        }
 
-        return Optional.empty();
+            // Backward-compatibility: if contracts ever change to non-indexed params.
+            String dataHex = Numeric.toHexString(l.getData().toByteArray());
+            return Optional.of(decodeLogData(dataHex));
+        } catch (Exception e) {
+            log.warn("Failed to decode BatchSubmitted log data for tx {}: {}", txId, e.getMessage());
+            return Optional.empty();
+        }
     }
 
     /**
@@ -202,22 +209,16 @@ public class BatchSubmittedEventReader {
         return "0x" + c;
     }
 
+    private static String rootKey(String merkleRootHex) {
+        return normalizeHexN(merkleRootHex).toLowerCase(Locale.ROOT);
+    }
+
     private static void requireDecodedSize(List<?> decoded, int expected) {
         if (decoded.size() != expected) {
             throw new IllegalStateException("Unexpected decoded outputs=" + decoded.size() + ", expected=" + expected);
         }
     }
 
-    private static boolean sleepQuietly(long ms) {
-        try {
-            Thread.sleep(ms);
-            return true;
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            return false;
-        }
-    }
-
     private static List<Type<?>> decodeWeb3Abi(String dataHex, TypeReference<?>... outputs) {
         String hex = ensure0x(dataHex);
 
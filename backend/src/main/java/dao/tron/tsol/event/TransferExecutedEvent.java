@@ -0,0 +1,53 @@
+package dao.tron.tsol.event;
+
+import org.tron.trident.proto.Response;
+import org.tron.trident.utils.Numeric;
+import org.web3j.crypto.Hash;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * DTO representing the Settlement TransferExecuted event.
+ *
+ * Solidity:
+ * event TransferExecuted(address indexed from, address indexed to, uint256 amount, uint64 nonce);
+ *
+ * from/to are the 20-byte EVM addresses (lowercase hex, no 0x, no TRON 0x41 prefix), as they appear in topics.
+ */
+public record TransferExecutedEvent(
+        String fromHex,
+        String toHex,
+        BigInteger amount,
+        long nonce
+) {
+
+    public static final String EVENT_SIGNATURE = "TransferExecuted(address,address,uint256,uint64)";
+
+    private static final byte[] TOPIC0 = Numeric.hexStringToByteArray(Hash.sha3String(EVENT_SIGNATURE));
+
+    /**
+     * Decode a Settlement log; empty if it is not a TransferExecuted event.
+     * Layout: topics[1] = from, topics[2] = to, data = abi.encode(uint256 amount, uint64 nonce).
+     */
+    public static Optional<TransferExecutedEvent> decode(Response.TransactionInfo.Log l) {
+        if (l.getTopicsCount() < 3 || !Arrays.equals(l.getTopics(0).toByteArray(), TOPIC0)) {
+            return Optional.empty();
+        }
+        byte[] data = l.getData().toByteArray();
+        if (data.length < 64) {
+            return Optional.empty();
+        }
+        return Optional.of(new TransferExecutedEvent(
+                addressHex(l.getTopics(1).toByteArray()),
+                addressHex(l.getTopics(2).toByteArray()),
+                new BigInteger(1, Arrays.copyOfRange(data, 0, 32)),
+                new BigInteger(1, Arrays.copyOfRange(data, 32, 64)).longValue()));
+    }
+
+    private static String addressHex(byte[] topic) {
+        return HexFormat.of().formatHex(topic, Math.max(0, topic.length - 20), topic.length);
+    }
+}
@@ -23,4 +23,14 @@ public class LocalBatch {
     private long batchSalt;
     private BatchStatus status;
     private List<StoredTransfer> transfers;
+    /**
+     * Expiration (unix millis) of the submitBatch transaction, known before it is broadcast. A CREATED batch whose
+     * submit is not found on-chain is only given up once this has passed (and the blocks up to it are solidified).
+     */
+    private long submitExpiration;
+    /**
+     * WAL sequence numbers of the batch's intents while it is CREATED (null once it is on-chain or failed): they are
+     * withheld from the intake queue on restart until the submit is settled.
+     */
+    private long[] walSeqs;
 }
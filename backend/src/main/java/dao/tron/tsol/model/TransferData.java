@@ -1,6 +1,11 @@
 package dao.tron.tsol.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.nio.ByteBuffer;
 
 @Data
 public class TransferData {
@@ -13,5 +18,10 @@ public class TransferData {
     private int recipientCount;
     private long batchId;   // filled after submitBatch
     private int txType;
-}
 
+    // Leaf bytes of a binary-format intent (see IntentWireFormat); only held while the batch is hashed.
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private ByteBuffer packedFields;
+}
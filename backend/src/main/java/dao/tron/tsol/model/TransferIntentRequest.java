@@ -1,8 +1,14 @@
 package dao.tron.tsol.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import dao.tron.tsol.util.IntentWireFormat;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.nio.ByteBuffer;
 
 @Data
 public class TransferIntentRequest {
@@ -27,4 +33,27 @@ public class TransferIntentRequest {
 
     @NotNull
     private Integer txType;         // map to Solidity uint8
+
+    // Set for intents received in the binary format: their 91 leaf bytes (read-only). from/to/amount are left
+    // unset and derived from them by the getters on each call (only the batcher and the whitelist check need
+    // the strings); intake, dedup, the WAL and the leaf encoder use the bytes.
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private ByteBuffer packedFields;
+
+    public String getFrom() {
+        if (from != null || packedFields == null) return from;
+        return IntentWireFormat.base58Address(packedFields, IntentWireFormat.OFF_FROM);
+    }
+
+    public String getTo() {
+        if (to != null || packedFields == null) return to;
+        return IntentWireFormat.base58Address(packedFields, IntentWireFormat.OFF_TO);
+    }
+
+    public String getAmount() {
+        if (amount != null || packedFields == null) return amount;
+        return IntentWireFormat.decimalAmount(packedFields, IntentWireFormat.OFF_AMOUNT);
+    }
 }
@@ -0,0 +1,208 @@
+package dao.tron.tsol.repository;
+
+import dao.tron.tsol.model.BatchStatus;
+import dao.tron.tsol.model.LocalBatch;
+import dao.tron.tsol.model.StoredTransfer;
+import dao.tron.tsol.model.TransferData;
+import dao.tron.tsol.util.PackedProof;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary (de)serialization of {@link LocalBatch} for {@link FileBatchRepository}.
+ *
+ * The indexed fields come first so the repository can rebuild its indexes on startup by reading
+ * only the header of each file.
+ */
+final class BatchFileCodec {
+
+    private static final int MAGIC = 0x54534254; // "TSBT"
+    // v1: proofs as lists of hex strings; v2: packed proof bytes; v3: transfer/executed counts in the header;
+    // v4: submit expiration and WAL seqs (written ahead as CREATED)
+    private static final int VERSION = 4;
+    private static final int VERSION_COUNTS = 3;
+    private static final int VERSION_PACKED_PROOFS = 2;
+    private static final int VERSION_HEX_PROOFS = 1;
+
+    private BatchFileCodec() {}
+
+    /**
+     * Fields needed for the repository indexes and totals; the counts are -1 in files older than v3.
+     */
+    record Header(int version, long localId, long onChainBatchId, String merkleRootHex, String submitTxId,
+                  BatchStatus status, int transferCount, int executedCount) {
+
+        boolean hasCounts() {
+            return transferCount >= 0;
+        }
+    }
+
+    static void write(LocalBatch batch, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(batch.getLocalId());
+        out.writeLong(batch.getOnChainBatchId());
+        writeString(out, batch.getMerkleRootHex());
+        writeString(out, batch.getSubmitTxId());
+        out.writeInt(batch.getStatus() != null ? batch.getStatus().ordinal() : -1);
+        out.writeInt(transferCount(batch));
+        out.writeInt(executedCount(batch));
+
+        out.writeInt(batch.getTxCount());
+        out.writeLong(batch.getSubmittedAt());
+        out.writeLong(batch.getUnlockTime());
+        out.writeLong(batch.getBatchSalt());
+        out.writeLong(batch.getSubmitExpiration());
+        writeLongs(out, batch.getWalSeqs());
+
+        List<StoredTransfer> transfers = batch.getTransfers();
+        out.writeInt(transfers != null ? transfers.size() : -1);
+        if (transfers == null) return;
+        for (StoredTransfer st : transfers) {
+            TransferData d = st.getTxData();
+            writeString(out, d.getFrom());
+            writeString(out, d.getTo());
+            writeString(out, d.getAmount());
+            out.writeLong(d.getNonce());
+            out.writeLong(d.getTimestamp());
+            out.writeInt(d.getRecipientCount());
+            out.writeLong(d.getBatchId());
+            out.writeInt(d.getTxType());
+            writeBytes(out, st.getTxProof());
+            writeBytes(out, st.getWhitelistProof());
+            out.writeBoolean(st.isExecuted());
+            writeString(out, st.getExecutionTxId());
+        }
+    }
+
+    static Header readHeader(DataInputStream in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a batch file (magic=" + Integer.toHexString(magic) + ")");
+        }
+        int version = in.readInt();
+        if (version != VERSION && version != VERSION_COUNTS && version != VERSION_PACKED_PROOFS
+                && version != VERSION_HEX_PROOFS) {
+            throw new IOException("Unsupported batch file version " + version);
+        }
+        long localId = in.readLong();
+        long onChainBatchId = in.readLong();
+        String merkleRootHex = readString(in);
+        String submitTxId = readString(in);
+        int status = in.readInt();
+        int transferCount = version >= VERSION_COUNTS ? in.readInt() : -1;
+        int executedCount = version >= VERSION_COUNTS ? in.readInt() : -1;
+        return new Header(version, localId, onChainBatchId, merkleRootHex, submitTxId,
+                status >= 0 ? BatchStatus.values()[status] : null, transferCount, executedCount);
+    }
+
+    static int transferCount(LocalBatch batch) {
+        return batch.getTransfers() != null ? batch.getTransfers().size() : 0;
+    }
+
+    static int executedCount(LocalBatch batch) {
+        if (batch.getTransfers() == null) return 0;
+        int executed = 0;
+        for (StoredTransfer st : batch.getTransfers()) {
+            if (st.isExecuted()) executed++;
+        }
+        return executed;
+    }
+
+    static LocalBatch read(DataInputStream in) throws IOException {
+        Header h = readHeader(in);
+        LocalBatch batch = new LocalBatch();
+        batch.setLocalId(h.localId());
+        batch.setOnChainBatchId(h.onChainBatchId());
+        batch.setMerkleRootHex(h.merkleRootHex());
+        batch.setSubmitTxId(h.submitTxId());
+        batch.setStatus(h.status());
+
+        batch.setTxCount(in.readInt());
+        batch.setSubmittedAt(in.readLong());
+        batch.setUnlockTime(in.readLong());
+        batch.setBatchSalt(in.readLong());
+        if (h.version() >= VERSION) {
+            batch.setSubmitExpiration(in.readLong());
+            batch.setWalSeqs(readLongs(in));
+        }
+
+        int n = in.readInt();
+        if (n < 0) return batch;
+        List<StoredTransfer> transfers = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            TransferData d = new TransferData();
+            d.setFrom(readString(in));
+            d.setTo(readString(in));
+            d.setAmount(readString(in));
+            d.setNonce(in.readLong());
+            d.setTimestamp(in.readLong());
+            d.setRecipientCount(in.readInt());
+            d.setBatchId(in.readLong());
+            d.setTxType(in.readInt());
+
+            StoredTransfer st = new StoredTransfer();
+            st.setTxData(d);
+            if (h.version() == VERSION_HEX_PROOFS) {
+                st.setTxProof(readHexProof(in));
+                st.setWhitelistProof(readHexProof(in));
+            } else {
+                st.setTxProof(readBytes(in));
+                st.setWhitelistProof(readBytes(in));
+            }
+            st.setExecuted(in.readBoolean());
+            st.setExecutionTxId(readString(in));
+            transfers.add(st);
+        }
+        batch.setTransfers(transfers);
+        return batch;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] b) throws IOException {
+        out.writeInt(b != null ? b.length : -1);
+        if (b != null) out.write(b);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) return null;
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return b;
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values != null ? values.length : -1);
+        if (values == null) return;
+        for (long v : values) out.writeLong(v);
+    }
+
+    private static long[] readLongs(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) return null;
+        long[] values = new long[n];
+        for (int i = 0; i < n; i++) values[i] = in.readLong();
+        return values;
+    }
+
+    private static byte[] readHexProof(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) return null;
+        List<String> nodes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) nodes.add(readString(in));
+        return PackedProof.fromHexList(nodes);
+    }
+}
@@ -1,6 +1,7 @@
 package dao.tron.tsol.repository;
 
 
+import dao.tron.tsol.model.BatchStatus;
 import dao.tron.tsol.model.LocalBatch;
 
 import java.util.List;
@@ -10,11 +11,44 @@ public interface BatchRepository {
 
     void save(LocalBatch batch);
 
+    /**
+     * Every stored batch, ordered by localId. Reads the whole history; request paths use {@link #findPage}.
+     */
     List<LocalBatch> findAll();
 
+    /**
+     * Up to {@code limit} batches with a localId below {@code beforeLocalId}, newest first.
+     * Pass {@link Long#MAX_VALUE} for the first page and the last localId returned for the next one.
+     */
+    List<LocalBatch> findPage(long beforeLocalId, int limit);
+
+    /**
+     * Counters over all stored batches, without loading finished batches from storage.
+     */
+    BatchTotals totals();
+
+    /**
+     * Batches that are not COMPLETED/FAILED yet (the execution scheduler's working set), ordered by localId.
+     */
+    List<LocalBatch> findUnfinished();
+
+    /**
+     * Batches with this status, ordered by localId. Unfinished statuses are served from an index maintained on save;
+     * COMPLETED/FAILED are not indexed and may scan the history.
+     */
+    List<LocalBatch> findByStatus(BatchStatus status);
+
+    /**
+     * Batches awaiting execution (SUBMITTED_ONCHAIN/UNLOCKED) whose unlockTime is unknown (0) or at/before
+     * {@code nowSeconds}, earliest unlock first. Only the due batches are touched: O(due * log n).
+     */
+    List<LocalBatch> findDueForExecution(long nowSeconds);
+
     Optional<LocalBatch> findByLocalId(long localId);
 
     Optional<LocalBatch> findByOnChainBatchId(long onChainBatchId);
 
     Optional<LocalBatch> findByMerkleRoot(String merkleRootHex);
+
+    Optional<LocalBatch> findBySubmitTxId(String submitTxId);
 }
@@ -0,0 +1,90 @@
+package dao.tron.tsol.repository;
+
+import dao.tron.tsol.model.BatchStatus;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Status index plus unlock queue over the localIds of unfinished batches, updated on every save.
+ * <p>
+ * Batches waiting to execute (SUBMITTED_ONCHAIN/UNLOCKED) are ordered by (unlockTime, localId), so the batches
+ * due at a given time are a head of the queue and the scheduler never looks at the rest of the history.
+ * An unlock time of 0 (not read from the contract yet) sorts first: such batches are always due.
+ * Finished batches (COMPLETED/FAILED) are dropped from the index, so it is sized by the working set, not history.
+ * Writers are serialized by the repository's save lock; reads are lock-free.
+ */
+final class BatchScheduleIndex {
+
+    private record UnlockKey(long unlockTime, long localId) implements Comparable<UnlockKey> {
+        @Override
+        public int compareTo(UnlockKey o) {
+            int c = Long.compare(unlockTime, o.unlockTime);
+            return c != 0 ? c : Long.compare(localId, o.localId);
+        }
+    }
+
+    private record Indexed(BatchStatus status, UnlockKey unlockKey) {}
+
+    private final Map<BatchStatus, NavigableSet<Long>> byStatus = new EnumMap<>(BatchStatus.class);
+    private final NavigableSet<UnlockKey> unlockQueue = new ConcurrentSkipListSet<>();
+    private final Map<Long, Indexed> current = new ConcurrentHashMap<>();
+
+    BatchScheduleIndex() {
+        for (BatchStatus s : BatchStatus.values()) {
+            byStatus.put(s, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    static boolean isAwaitingExecution(BatchStatus status) {
+        return status == BatchStatus.SUBMITTED_ONCHAIN || status == BatchStatus.UNLOCKED;
+    }
+
+    static boolean isFinished(BatchStatus status) {
+        return status == BatchStatus.COMPLETED || status == BatchStatus.FAILED;
+    }
+
+    /**
+     * Re-index one batch after it was saved; O(log n). A finished batch is removed.
+     */
+    void update(long localId, BatchStatus status, long unlockTime) {
+        Indexed prev = current.get(localId);
+        UnlockKey key = status != null && isAwaitingExecution(status) ? new UnlockKey(unlockTime, localId) : null;
+        if (prev != null) {
+            if (prev.status() == status && Objects.equals(prev.unlockKey(), key)) return;
+            if (prev.status() != null) byStatus.get(prev.status()).remove(localId);
+            if (prev.unlockKey() != null) unlockQueue.remove(prev.unlockKey());
+        }
+        if (isFinished(status)) {
+            current.remove(localId);
+            return;
+        }
+        if (status != null) byStatus.get(status).add(localId);
+        if (key != null) unlockQueue.add(key);
+        current.put(localId, new Indexed(status, key));
+    }
+
+    /**
+     * localIds with this (unfinished) status, ascending; always empty for COMPLETED/FAILED.
+     */
+    List<Long> withStatus(BatchStatus status) {
+        return new ArrayList<>(byStatus.get(status));
+    }
+
+    /**
+     * localIds awaiting execution whose unlock time is unknown or at/before {@code nowSeconds}, earliest first.
+     */
+    List<Long> dueForExecution(long nowSeconds) {
+        List<Long> out = new ArrayList<>();
+        for (UnlockKey k : unlockQueue.headSet(new UnlockKey(nowSeconds, Long.MAX_VALUE), true)) {
+            out.add(k.localId());
+        }
+        return out;
+    }
+}
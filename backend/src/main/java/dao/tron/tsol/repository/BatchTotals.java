@@ -0,0 +1,11 @@
+package dao.tron.tsol.repository;
+
+/**
+ * History-wide counters kept current on save, so monitoring does not have to load every batch.
+ *
+ * @param batches           all stored batches
+ * @param completedBatches  batches with status COMPLETED
+ * @param transfers         transfers across all stored batches
+ * @param executedTransfers of those, the ones executed on-chain
+ */
+public record BatchTotals(long batches, long completedBatches, long transfers, long executedTransfers) {}
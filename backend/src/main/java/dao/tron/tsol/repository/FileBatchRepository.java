@@ -0,0 +1,370 @@
+package dao.tron.tsol.repository;
+
+import dao.tron.tsol.config.RepositoryProperties;
+import dao.tron.tsol.model.BatchStatus;
+import dao.tron.tsol.model.LocalBatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * File-backed {@link BatchRepository}: one file per batch, written atomically on every save.
+ * <p>
+ * Unfinished batches, the schedule index over them and the history-wide {@link BatchTotals} stay on-heap.
+ * Finished batches (COMPLETED/FAILED) are paged out: at most {@code repository.hot-cache-size} of them are
+ * cached (LRU), the rest are read back from disk on lookup. What still grows with history are the id lookups
+ * (localId set, onChainBatchId/merkleRoot/submitTxId -> localId), roughly 200 bytes per batch, never the
+ * batches or their transfers.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "repository.type", havingValue = "file", matchIfMissing = true)
+public class FileBatchRepository implements BatchRepository {
+
+    private static final Pattern FILE_NAME = Pattern.compile("batch-(\\d{20})\\.bin");
+
+    private final Path directory;
+
+    // key: localId (all known batches, ordered)
+    private final NavigableSet<Long> localIds = new ConcurrentSkipListSet<>();
+
+    // key: on-chain batchId
+    private final Map<Long, Long> localIdByOnChainId = new ConcurrentHashMap<>();
+
+    // key: merkleRootHex
+    private final Map<String, Long> localIdByMerkleRoot = new ConcurrentHashMap<>();
+
+    // key: submitTxId
+    private final Map<String, Long> localIdBySubmitTxId = new ConcurrentHashMap<>();
+
+    // Unfinished batches are mutated in place by the schedulers; always keep them resident.
+    private final Map<Long, LocalBatch> unfinished = new ConcurrentHashMap<>();
+
+    // on-chain batchId each unfinished batch is indexed under; the resident object may already carry a new one
+    private final Map<Long, Long> indexedOnChainIds = new ConcurrentHashMap<>();
+
+    // status index + unlock queue over unfinished batches (updated under the save lock)
+    private final BatchScheduleIndex scheduleIndex = new BatchScheduleIndex();
+
+    // totals over finished batches; unfinished ones are added when read (guarded by this)
+    private long finishedCompleted;
+    private long finishedTransfers;
+    private long finishedExecuted;
+
+    // LRU of recently used finished batches (guarded by itself).
+    private final LinkedHashMap<Long, LocalBatch> hotCache;
+
+    private final AtomicLong localIdSeq = new AtomicLong(1);
+
+    public FileBatchRepository(RepositoryProperties props) {
+        this.directory = Path.of(props.getDirectory());
+        int hotCacheSize = Math.max(0, props.getHotCacheSize());
+        this.hotCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, LocalBatch> eldest) {
+                return size() > hotCacheSize;
+            }
+        };
+
+        try {
+            Files.createDirectories(directory);
+            loadIndexes();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open batch repository at " + directory.toAbsolutePath(), e);
+        }
+        log.info("FileBatchRepository opened: dir={}, batches={}, unfinished={}",
+                directory.toAbsolutePath(), localIds.size(), unfinished.size());
+    }
+
+    @Override
+    public synchronized void save(LocalBatch batch) {
+        // assign localId if new
+        if (batch.getLocalId() == 0L) {
+            batch.setLocalId(localIdSeq.getAndIncrement());
+        }
+        long localId = batch.getLocalId();
+
+        // A finished batch saved again (late executed flags, reconciliation) must not be counted twice.
+        long previousOnChainId = indexedOnChainIds.getOrDefault(localId, 0L);
+        if (localIds.contains(localId) && !unfinished.containsKey(localId)) {
+            BatchFileCodec.Header previous = readHeader(localId);
+            if (previous != null) {
+                account(previous.status(), previous.transferCount(), previous.executedCount(), -1);
+                previousOnChainId = previous.onChainBatchId();
+            }
+        }
+
+        writeFile(batch);
+        localIds.add(localId);
+        // Re-keyed (log recovery found the batch under another on-chain id): the old id must not resolve to it.
+        if (previousOnChainId != 0L && previousOnChainId != batch.getOnChainBatchId()) {
+            localIdByOnChainId.remove(previousOnChainId, localId);
+        }
+        index(localId, batch.getOnChainBatchId(), batch.getMerkleRootHex(), batch.getSubmitTxId());
+        scheduleIndex.update(localId, batch.getStatus(), batch.getUnlockTime());
+
+        if (BatchScheduleIndex.isFinished(batch.getStatus())) {
+            account(batch.getStatus(), BatchFileCodec.transferCount(batch), BatchFileCodec.executedCount(batch), 1);
+            unfinished.remove(localId);
+            indexedOnChainIds.remove(localId);
+            synchronized (hotCache) {
+                hotCache.put(localId, batch);
+            }
+        } else {
+            unfinished.put(localId, batch);
+            indexedOnChainIds.put(localId, batch.getOnChainBatchId());
+            synchronized (hotCache) {
+                hotCache.remove(localId);
+            }
+        }
+    }
+
+    /**
+     * Loads every batch; finished ones come from disk and are NOT added to the hot cache
+     * (a full scan would otherwise flush it).
+     */
+    @Override
+    public List<LocalBatch> findAll() {
+        return peekAll(localIds);
+    }
+
+    /**
+     * Reads at most {@code limit} files, read through like {@link #findAll()}.
+     */
+    @Override
+    public List<LocalBatch> findPage(long beforeLocalId, int limit) {
+        List<Long> ids = new ArrayList<>(Math.max(0, Math.min(limit, 1024)));
+        Iterator<Long> it = localIds.headSet(beforeLocalId, false).descendingIterator();
+        while (ids.size() < limit && it.hasNext()) ids.add(it.next());
+        return peekAll(ids);
+    }
+
+    @Override
+    public synchronized BatchTotals totals() {
+        long transfers = finishedTransfers;
+        long executed = finishedExecuted;
+        for (LocalBatch b : unfinished.values()) {
+            transfers += BatchFileCodec.transferCount(b);
+            executed += BatchFileCodec.executedCount(b);
+        }
+        return new BatchTotals(localIds.size(), finishedCompleted, transfers, executed);
+    }
+
+    @Override
+    public List<LocalBatch> findUnfinished() {
+        List<LocalBatch> out = new ArrayList<>(unfinished.values());
+        out.sort(Comparator.comparingLong(LocalBatch::getLocalId));
+        return out;
+    }
+
+    /**
+     * Finished statuses are not indexed: every finished file's header is read, matches are read through like
+     * {@link #findAll()} (not added to the hot cache).
+     */
+    @Override
+    public List<LocalBatch> findByStatus(BatchStatus status) {
+        if (!BatchScheduleIndex.isFinished(status)) return peekAll(scheduleIndex.withStatus(status));
+        List<Long> ids = new ArrayList<>();
+        for (Long localId : localIds) {
+            if (unfinished.containsKey(localId)) continue;
+            BatchFileCodec.Header h = readHeader(localId);
+            if (h != null && h.status() == status) ids.add(localId);
+        }
+        return peekAll(ids);
+    }
+
+    @Override
+    public List<LocalBatch> findDueForExecution(long nowSeconds) {
+        List<Long> due = scheduleIndex.dueForExecution(nowSeconds);
+        List<LocalBatch> out = new ArrayList<>(due.size());
+        for (Long localId : due) {
+            LocalBatch b = unfinished.get(localId);
+            if (b != null) out.add(b);
+        }
+        return out;
+    }
+
+    @Override
+    public Optional<LocalBatch> findByLocalId(long localId) {
+        return Optional.ofNullable(load(localId));
+    }
+
+    @Override
+    public Optional<LocalBatch> findByOnChainBatchId(long onChainBatchId) {
+        Long localId = localIdByOnChainId.get(onChainBatchId);
+        if (localId == null) return Optional.empty();
+        return Optional.ofNullable(load(localId));
+    }
+
+    @Override
+    public Optional<LocalBatch> findByMerkleRoot(String merkleRootHex) {
+        Long localId = localIdByMerkleRoot.get(merkleRootHex);
+        if (localId == null) return Optional.empty();
+        return Optional.ofNullable(load(localId));
+    }
+
+    @Override
+    public Optional<LocalBatch> findBySubmitTxId(String submitTxId) {
+        Long localId = localIdBySubmitTxId.get(submitTxId);
+        if (localId == null) return Optional.empty();
+        return Optional.ofNullable(load(localId));
+    }
+
+    private LocalBatch load(long localId) {
+        if (!localIds.contains(localId)) return null;
+        LocalBatch b = unfinished.get(localId);
+        if (b != null) return b;
+        synchronized (hotCache) {
+            b = hotCache.get(localId);
+            if (b != null) return b;
+        }
+        b = readFile(localId);
+        if (b != null) {
+            synchronized (hotCache) {
+                LocalBatch raced = hotCache.putIfAbsent(localId, b);
+                if (raced != null) b = raced;
+            }
+        }
+        return b;
+    }
+
+    private List<LocalBatch> peekAll(Collection<Long> ids) {
+        List<LocalBatch> out = new ArrayList<>(ids.size());
+        for (Long localId : ids) {
+            LocalBatch b = unfinished.get(localId);
+            if (b == null) {
+                synchronized (hotCache) {
+                    b = hotCache.get(localId);
+                }
+            }
+            if (b == null) b = readFile(localId);
+            if (b != null) out.add(b);
+        }
+        return out;
+    }
+
+    private void account(BatchStatus status, long transfers, long executed, int sign) {
+        if (status == BatchStatus.COMPLETED) finishedCompleted += sign;
+        finishedTransfers += sign * transfers;
+        finishedExecuted += sign * executed;
+    }
+
+    private void index(long localId, long onChainBatchId, String merkleRootHex, String submitTxId) {
+        if (onChainBatchId != 0L) {
+            localIdByOnChainId.put(onChainBatchId, localId);
+        }
+        if (merkleRootHex != null) {
+            localIdByMerkleRoot.put(merkleRootHex, localId);
+        }
+        if (submitTxId != null && !submitTxId.isBlank()) {
+            localIdBySubmitTxId.put(submitTxId, localId);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------------------
+    // Files
+    // ------------------------------------------------------------------------------------------------------------
+
+    private Path fileFor(long localId) {
+        return directory.resolve(String.format("batch-%020d.bin", localId));
+    }
+
+    private void writeFile(LocalBatch batch) {
+        Path target = fileFor(batch.getLocalId());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+                BatchFileCodec.write(batch, out);
+                out.flush();
+                fos.getFD().sync();
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist batch " + batch.getLocalId(), e);
+        }
+    }
+
+    private LocalBatch readFile(long localId) {
+        Path file = fileFor(localId);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return BatchFileCodec.read(in);
+        } catch (IOException e) {
+            log.error("Failed to read batch {} from {}: {}", localId, file, e.getMessage());
+            return null;
+        }
+    }
+
+    private BatchFileCodec.Header readHeader(long localId) {
+        Path file = fileFor(localId);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            BatchFileCodec.Header h = BatchFileCodec.readHeader(in);
+            if (h.hasCounts()) return h;
+        } catch (IOException e) {
+            log.error("Failed to read batch header {} from {}: {}", localId, file, e.getMessage());
+            return null;
+        }
+        // Written before v3: count from the full file.
+        LocalBatch b = readFile(localId);
+        if (b == null) return null;
+        return new BatchFileCodec.Header(0, localId, b.getOnChainBatchId(), b.getMerkleRootHex(), b.getSubmitTxId(),
+                b.getStatus(), BatchFileCodec.transferCount(b), BatchFileCodec.executedCount(b));
+    }
+
+    private void loadIndexes() throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(directory)) {
+            files = s.filter(p -> FILE_NAME.matcher(p.getFileName().toString()).matches()).sorted().toList();
+        }
+
+        long maxLocalId = 0L;
+        for (Path file : files) {
+            Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+            if (!m.matches()) continue;
+            long localId = Long.parseLong(m.group(1));
+
+            BatchFileCodec.Header h;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                h = BatchFileCodec.readHeader(in);
+            } catch (IOException e) {
+                log.error("Skipping unreadable batch file {}: {}", file, e.getMessage());
+                continue;
+            }
+
+            localIds.add(localId);
+            index(localId, h.onChainBatchId(), h.merkleRootHex(), h.submitTxId());
+            maxLocalId = Math.max(maxLocalId, localId);
+
+            if (!BatchScheduleIndex.isFinished(h.status())) {
+                LocalBatch b = readFile(localId);
+                if (b != null) {
+                    unfinished.put(localId, b);
+                    indexedOnChainIds.put(localId, b.getOnChainBatchId());
+                    scheduleIndex.update(localId, b.getStatus(), b.getUnlockTime());
+                }
+            } else {
+                BatchFileCodec.Header counted = h.hasCounts() ? h : readHeader(localId);
+                if (counted != null) account(h.status(), counted.transferCount(), counted.executedCount(), 1);
+            }
+        }
+        localIdSeq.set(maxLocalId + 1);
+    }
+}
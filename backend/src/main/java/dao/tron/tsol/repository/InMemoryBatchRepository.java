@@ -1,6 +1,8 @@
 package dao.tron.tsol.repository;
 
+import dao.tron.tsol.model.BatchStatus;
 import dao.tron.tsol.model.LocalBatch;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 import java.util.*;
@@ -8,6 +10,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Repository
+@ConditionalOnProperty(name = "repository.type", havingValue = "memory")
 public class InMemoryBatchRepository implements BatchRepository {
 
     // key: localId
@@ -28,6 +31,9 @@ public class InMemoryBatchRepository implements BatchRepository {
     // key: submitTxId -> batchId (requested mapping)
     private final Map<String, Long> batchIdBySubmitTxId = new ConcurrentHashMap<>();
 
+    // status index + unlock queue over unfinished batches (updated under the save lock)
+    private final BatchScheduleIndex scheduleIndex = new BatchScheduleIndex();
+
     private final AtomicLong localIdSeq = new AtomicLong(1);
 
     @Override
@@ -38,6 +44,7 @@ public class InMemoryBatchRepository implements BatchRepository {
         }
 
         batchesByLocalId.put(batch.getLocalId(), batch);
+        scheduleIndex.update(batch.getLocalId(), batch.getStatus(), batch.getUnlockTime());
 
         if (batch.getOnChainBatchId() != 0L) {
             localIdByOnChainId.put(batch.getOnChainBatchId(), batch.getLocalId());
@@ -61,7 +68,55 @@ public class InMemoryBatchRepository implements BatchRepository {
 
     @Override
     public List<LocalBatch> findAll() {
-        return new ArrayList<>(batchesByLocalId.values());
+        List<LocalBatch> out = new ArrayList<>(batchesByLocalId.values());
+        out.sort(Comparator.comparingLong(LocalBatch::getLocalId));
+        return out;
+    }
+
+    @Override
+    public List<LocalBatch> findPage(long beforeLocalId, int limit) {
+        return resolve(batchesByLocalId.keySet().stream()
+                .filter(id -> id < beforeLocalId)
+                .sorted(Comparator.reverseOrder())
+                .limit(Math.max(0, limit))
+                .toList());
+    }
+
+    @Override
+    public BatchTotals totals() {
+        long completed = 0, transfers = 0, executed = 0;
+        for (LocalBatch b : batchesByLocalId.values()) {
+            if (b.getStatus() == BatchStatus.COMPLETED) completed++;
+            transfers += BatchFileCodec.transferCount(b);
+            executed += BatchFileCodec.executedCount(b);
+        }
+        return new BatchTotals(batchesByLocalId.size(), completed, transfers, executed);
+    }
+
+    @Override
+    public List<LocalBatch> findUnfinished() {
+        List<LocalBatch> out = new ArrayList<>();
+        for (BatchStatus status : BatchStatus.values()) {
+            if (!BatchScheduleIndex.isFinished(status)) out.addAll(findByStatus(status));
+        }
+        out.sort(Comparator.comparingLong(LocalBatch::getLocalId));
+        return out;
+    }
+
+    @Override
+    public List<LocalBatch> findByStatus(BatchStatus status) {
+        if (!BatchScheduleIndex.isFinished(status)) return resolve(scheduleIndex.withStatus(status));
+        List<LocalBatch> out = new ArrayList<>();
+        for (LocalBatch b : batchesByLocalId.values()) {
+            if (b.getStatus() == status) out.add(b);
+        }
+        out.sort(Comparator.comparingLong(LocalBatch::getLocalId));
+        return out;
+    }
+
+    @Override
+    public List<LocalBatch> findDueForExecution(long nowSeconds) {
+        return resolve(scheduleIndex.dueForExecution(nowSeconds));
     }
 
     @Override
@@ -73,7 +128,13 @@ public class InMemoryBatchRepository implements BatchRepository {
     public Optional<LocalBatch> findByOnChainBatchId(long onChainBatchId) {
         Long localId = localIdByOnChainId.get(onChainBatchId);
         if (localId == null) return Optional.empty();
-        return Optional.ofNullable(batchesByLocalId.get(localId));
+        LocalBatch b = batchesByLocalId.get(localId);
+        if (b != null && b.getOnChainBatchId() != onChainBatchId) {
+            // re-keyed in place since it was indexed under this id
+            localIdByOnChainId.remove(onChainBatchId, localId);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(b);
     }
 
     @Override
@@ -82,4 +143,20 @@ public class InMemoryBatchRepository implements BatchRepository {
         if (localId == null) return Optional.empty();
         return Optional.ofNullable(batchesByLocalId.get(localId));
     }
+
+    @Override
+    public Optional<LocalBatch> findBySubmitTxId(String submitTxId) {
+        Long localId = localIdBySubmitTxId.get(submitTxId);
+        if (localId == null) return Optional.empty();
+        return Optional.ofNullable(batchesByLocalId.get(localId));
+    }
+
+    private List<LocalBatch> resolve(List<Long> localIds) {
+        List<LocalBatch> out = new ArrayList<>(localIds.size());
+        for (Long localId : localIds) {
+            LocalBatch b = batchesByLocalId.get(localId);
+            if (b != null) out.add(b);
+        }
+        return out;
+    }
 }
@@ -28,9 +28,14 @@ public class BatchingScheduler {
         if (!schedulerProps.getBatching().isEnabled()) {
             return;
         }
-        if (intentService.isEmpty()) return;
-
+        // Submits whose outcome was unknown (after a failure or a restart) are looked up again until settled.
+        if (batchService.getUnresolvedBatches() > 0) {
+            batchService.resolvePendingBatches();
+        }
+        // Lock-free reads: the intake queue keeps an atomic count and the oldest enqueue time at its head.
         int count = intentService.getPendingCount();
+        if (count == 0) return;
+
         long oldestAge = intentService.getOldestAgeSeconds();
 
         int maxIntents = schedulerProps.getBatching().getMaxIntents();
@@ -44,7 +49,9 @@ public class BatchingScheduler {
         }
 
         if (count >= maxIntents || oldestAge >= maxDelaySeconds) {
-            log.info("Creating batch: pendingCount={}, oldestAge={}", count, oldestAge);
+            log.info("Creating batch: pendingCount={}, oldestAge={}, inFlight={}",
+                    count, oldestAge, batchService.getBatchesInFlight());
+            // Returns once sealed; broadcast/confirmation continue in the pipeline (failures are logged there).
             batchService.createAndSubmitBatch(maxIntents);
         }
     }
@@ -13,8 +13,21 @@ import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Executes batches once their timelock has passed.
+ * <p>
+ * Every batch saved through {@link BatchService} in SUBMITTED_ONCHAIN/UNLOCKED state gets a wakeup at its
+ * unlockTime (right away if the unlock time is not known yet), so execution starts when the batch unlocks
+ * instead of on the next poll. The timer thread only hands the due batch to the execution thread, so a long
+ * execution never delays other wakeups. The fixed-delay check ({@code scheduler.execution.check-interval-ms})
+ * only remains as a safety net for batches changed outside BatchService.
+ */
 @Slf4j
 @Component
 public class ExecutionScheduler {
@@ -24,6 +37,10 @@ public class ExecutionScheduler {
     private final ExecutionService executionService;
     private final SchedulerProperties schedulerProps;
     private final WhitelistService whitelistService;
+    private final UnlockTimer unlockTimer;
+    private final ExecutorService executionExecutor;
+    // handed to the execution thread and not started yet (a batch is queued at most once)
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
 
     public ExecutionScheduler(BatchService batchService,
                               SettlementContractClient settlementClient,
@@ -35,10 +52,31 @@ public class ExecutionScheduler {
         this.executionService = executionService;
         this.schedulerProps = schedulerProps;
         this.whitelistService = whitelistService;
+        this.executionExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "batch-execution");
+            t.setDaemon(true);
+            return t;
+        });
+        this.unlockTimer = new UnlockTimer(this::submitDue, System::currentTimeMillis);
+        batchService.addSaveListener(this::scheduleUnlock);
     }
 
     @EventListener(ApplicationReadyEvent.class)
-    public void syncWhitelistRootOnStartup() {
+    public void onApplicationReady() {
+        syncWhitelistRootOnStartup();
+        // Batches restored from the repository: one wakeup each (the unlock queue decides what is due).
+        for (LocalBatch batch : batchService.getUnfinishedBatches()) {
+            scheduleUnlock(batch);
+        }
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        unlockTimer.shutdown();
+        executionExecutor.shutdownNow();
+    }
+
+    private void syncWhitelistRootOnStartup() {
         // Script-equivalent: ensure whitelist root is correct before any BATCHED txType=2 execution.
         try {
             if (!whitelistService.ensureWhitelistRootMatchesConfig()) {
@@ -49,45 +87,86 @@ public class ExecutionScheduler {
         }
     }
 
-    @Scheduled(fixedDelayString = "${scheduler.execution.check-interval-ms:5000}")
-    public void executeUnlockedBatches() {
+    /**
+     * Wake up at the batch's unlock time while it waits for execution; drop the wakeup once it moved on.
+     */
+    private void scheduleUnlock(LocalBatch batch) {
         if (!schedulerProps.getExecution().isEnabled()) {
             return;
         }
-        
-        long now = System.currentTimeMillis() / 1000L;
-        List<LocalBatch> batches = batchService.getBatches();
+        if (batch.getStatus() == BatchStatus.SUBMITTED_ONCHAIN || batch.getStatus() == BatchStatus.UNLOCKED) {
+            unlockTimer.schedule(batch.getLocalId(), batch.getUnlockTime() * 1000L);
+        } else {
+            unlockTimer.cancel(batch.getLocalId());
+        }
+    }
 
-        if (batches.isEmpty()) {
+    /**
+     * Timer thread: queue the batch for the execution thread and return.
+     */
+    private void submitDue(long localId) {
+        if (!queued.add(localId)) {
             return;
         }
+        try {
+            executionExecutor.execute(() -> {
+                queued.remove(localId);
+                executeDue(localId);
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(localId); // shutting down
+        }
+    }
 
-        for (LocalBatch batch : batches) {
-            if (batch.getStatus() != BatchStatus.SUBMITTED_ONCHAIN &&
-                    batch.getStatus() != BatchStatus.UNLOCKED) {
-                continue;
-            }
+    // Execution thread; the batch may have moved on since its wakeup was queued.
+    private void executeDue(long localId) {
+        if (!schedulerProps.getExecution().isEnabled()) {
+            return;
+        }
+        batchService.withBatchLock(() -> batchService.findByLocalId(localId)
+                .filter(b -> b.getStatus() == BatchStatus.SUBMITTED_ONCHAIN || b.getStatus() == BatchStatus.UNLOCKED)
+                .ifPresent(b -> process(b, System.currentTimeMillis() / 1000L)));
+    }
 
-            if (batch.getUnlockTime() == 0L) {
-                try {
-                    long unlockTime = settlementClient.getUnlockTime(batch.getOnChainBatchId());
-                    batch.setUnlockTime(unlockTime);
-                    log.info("Batch {} unlock time: {} (now: {})", batch.getOnChainBatchId(), unlockTime, now);
-                } catch (Exception e) {
-                    log.warn("Batch {} not found on-chain. Marking as failed.", batch.getOnChainBatchId());
-                    batch.setStatus(BatchStatus.FAILED);
-                    continue;
-                }
+    // Runs on the safety-net poll; serialized with the execution thread (and log recovery) by the batch lock.
+    @Scheduled(fixedDelayString = "${scheduler.execution.check-interval-ms:60000}")
+    public void executeUnlockedBatches() {
+        if (!schedulerProps.getExecution().isEnabled()) {
+            return;
+        }
+        
+        batchService.withBatchLock(() -> {
+            long now = System.currentTimeMillis() / 1000L;
+            // Only batches that are due (or whose unlock time is not known yet), straight from the unlock queue.
+            for (LocalBatch batch : batchService.getBatchesDueForExecution(now)) {
+                process(batch, now);
             }
+        });
+    }
 
-            if (now < batch.getUnlockTime()) {
-                continue;
+    private void process(LocalBatch batch, long now) {
+        if (batch.getUnlockTime() == 0L) {
+            try {
+                long unlockTime = settlementClient.getUnlockTime(batch.getOnChainBatchId());
+                batch.setUnlockTime(unlockTime);
+                batchService.update(batch);
+                log.info("Batch {} unlock time: {} (now: {})", batch.getOnChainBatchId(), unlockTime, now);
+            } catch (Exception e) {
+                log.warn("Batch {} not found on-chain. Marking as failed.", batch.getOnChainBatchId());
+                batch.setStatus(BatchStatus.FAILED);
+                batchService.update(batch);
+                return;
             }
+        }
 
-            log.info("Executing batch {} (onChainId={})", batch.getLocalId(), batch.getOnChainBatchId());
-            
-            executionService.executeAll(batch);
-            log.info("Batch {} execution complete", batch.getOnChainBatchId());
+        if (now < batch.getUnlockTime()) {
+            return;
         }
+
+        log.info("Executing batch {} (onChainId={})", batch.getLocalId(), batch.getOnChainBatchId());
+        
+        executionService.executeAll(batch);
+        batchService.update(batch);
+        log.info("Batch {} execution complete", batch.getOnChainBatchId());
     }
 }
@@ -0,0 +1,87 @@
+package dao.tron.tsol.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * One wakeup per batch awaiting execution, fired at its unlock time on a single timer thread.
+ * <p>
+ * The scheduled executor's delay queue holds the wakeups, so nothing runs while no batch is due. Rescheduling
+ * a batch (unlock time learned or changed) replaces its wakeup; a batch that left the waiting states is
+ * cancelled. A firing wakeup passes the batch's localId to {@code onDue}, which must only hand it off: anything
+ * slow there would delay every later wakeup.
+ */
+@Slf4j
+final class UnlockTimer {
+
+    private static final class Wakeup {
+        final long atMs;
+        // set inside the map's compute, before any other thread can see this wakeup
+        ScheduledFuture<?> future;
+
+        Wakeup(long atMs) {
+            this.atMs = atMs;
+        }
+    }
+
+    private final LongConsumer onDue;
+    private final LongSupplier clockMs;
+    private final ScheduledExecutorService timer;
+    private final ConcurrentHashMap<Long, Wakeup> wakeups = new ConcurrentHashMap<>();
+
+    UnlockTimer(LongConsumer onDue, LongSupplier clockMs) {
+        this.onDue = onDue;
+        this.clockMs = clockMs;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "batch-unlock-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Fire at {@code atMs} (wall clock); a time in the past fires right away.
+     */
+    void schedule(long localId, long atMs) {
+        wakeups.compute(localId, (id, cur) -> {
+            if (cur != null) {
+                if (cur.atMs == atMs && !cur.future.isDone()) return cur;
+                cur.future.cancel(false);
+            }
+            Wakeup w = new Wakeup(atMs);
+            long delayMs = Math.max(0L, atMs - clockMs.getAsLong());
+            w.future = timer.schedule(() -> fire(id, w), delayMs, TimeUnit.MILLISECONDS);
+            return w;
+        });
+    }
+
+    void cancel(long localId) {
+        Wakeup w = wakeups.remove(localId);
+        if (w != null) w.future.cancel(false);
+    }
+
+    int size() {
+        return wakeups.size();
+    }
+
+    void shutdown() {
+        timer.shutdownNow();
+        wakeups.clear();
+    }
+
+    private void fire(long localId, Wakeup wakeup) {
+        wakeups.remove(localId, wakeup);
+        try {
+            onDue.accept(localId);
+        } catch (Exception e) {
+            log.error("Unlock wakeup for batch {} failed: {}", localId, e.getMessage());
+        }
+    }
+}
@@ -1,14 +1,50 @@
 package dao.tron.tsol.service;
 
+import dao.tron.tsol.config.BatchProperties;
 import dao.tron.tsol.model.*;
 import dao.tron.tsol.repository.BatchRepository;
+import dao.tron.tsol.repository.BatchTotals;
 import dao.tron.tsol.util.CryptoUtil;
+import dao.tron.tsol.util.PackedProof;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 
+/**
+ * Pipelined batch creation.
+ *
+ * Stages: seal (drain + hash + proofs, on the caller thread) -> broadcast submitBatch (single thread, seal order)
+ * -> confirm (TransactionInfo + BatchSubmitted, up to {@code batch.max-in-flight} in parallel)
+ * -> index (save + WAL ack, single thread, seal order).
+ *
+ * Sealing batch N+1 therefore overlaps with the confirmation of batch N, while broadcast order, localIds and
+ * repository order still follow seal order. With {@code max-in-flight=1} this degrades to the previous
+ * one-batch-at-a-time behavior.
+ *
+ * The submit is signed before it is broadcast, and the sealed batch is saved as CREATED (root, salt, txId, expiration,
+ * WAL seqs of its intents) before the submit leaves, so whatever happens next it can be looked up on-chain.
+ *
+ * A failed batch is settled on the index thread: unless nothing was sent, the root is looked up on-chain first and,
+ * when found, the batch is indexed as usual. Its intents only go back to the head of the intake queue (and the batch
+ * to FAILED) once the submit is proven absent (expired, with the blocks that could have included it solidified).
+ * Re-sealing an intent that is on-chain would give it a second txHash (new salt) the contract would execute again,
+ * so while absence is unknown the batch stays CREATED, its intents stay unacknowledged in the WAL and out of the
+ * queue, and {@link #resolvePendingBatches} retries. CREATED batches found on startup are resolved the same way,
+ * their replayed intents withheld from the queue until then.
+ */
 @Slf4j
 @Service
 public class BatchService {
@@ -18,22 +54,205 @@ public class BatchService {
     private final SettlementContractClient settlementClient;
     private final BatchRepository batchRepository;
     private final WhitelistService whitelistService;
+    private final IntentValidator intentValidator;
+
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ExecutorService broadcastExecutor;
+    private final ExecutorService confirmExecutor;
+    private final ExecutorService indexExecutor;
+
+    // Guards sealing so drain order == broadcast order == index order.
+    private final Object sealLock = new Object();
+    private CompletableFuture<?> lastIndexed = CompletableFuture.completedFuture(null);
+    // Only touched on the index thread.
+    private long lastIndexedOnChainId;
+    // CREATED batches whose submit outcome is not known yet. Only touched on the index thread (and the constructor).
+    private final List<SealedBatch> unresolved = new ArrayList<>();
+    private volatile int unresolvedCount;
+    private CompletableFuture<?> resolution = CompletableFuture.completedFuture(null);
+    private final List<Consumer<LocalBatch>> saveListeners = new CopyOnWriteArrayList<>();
+    // Held by the execution path while it works on stored batches, and by every other writer of them.
+    private final Object batchLock = new Object();
+
+    /**
+     * A drained and hashed batch waiting to be submitted, with its CREATED record (saved once the submit is signed).
+     * Only the pipeline (broadcast, then index thread) changes a CREATED batch.
+     */
+    private record SealedBatch(DrainedIntents drained, LocalBatch batch) {
+
+        String rootHex() {
+            return batch.getMerkleRootHex();
+        }
+
+        int txCount() {
+            return batch.getTransfers().size();
+        }
+    }
 
     public BatchService(TransferIntentService intentService,
                         MerkleTreeService merkleTreeService,
                         SettlementContractClient settlementClient,
                         BatchRepository batchRepository,
-                        WhitelistService whitelistService) {
+                        WhitelistService whitelistService,
+                        BatchProperties batchProps) {
         this.intentService = intentService;
         this.merkleTreeService = merkleTreeService;
         this.settlementClient = settlementClient;
         this.batchRepository = batchRepository;
         this.whitelistService = whitelistService;
+        this.intentValidator = new IntentValidator(whitelistService);
+
+        this.maxInFlight = Math.max(1, batchProps.getMaxInFlight());
+        this.inFlight = new Semaphore(maxInFlight);
+        this.broadcastExecutor = Executors.newSingleThreadExecutor();
+        this.confirmExecutor = Executors.newFixedThreadPool(maxInFlight);
+        this.indexExecutor = Executors.newSingleThreadExecutor();
+
+        // Submit of a CREATED batch may be on-chain: withhold its replayed intents (unacknowledged) until it is
+        // resolved. Transfers of the other stored batches left the intake queue and the WAL; retries of them are still
+        // duplicates, and WAL replays of them (saved, but the ACK was not durable yet) must not be batched again.
+        List<TransferData> batched = new ArrayList<>();
+        for (LocalBatch batch : batchRepository.findUnfinished()) {
+            if (batch.getStatus() == BatchStatus.CREATED) {
+                unresolved.add(new SealedBatch(intentService.withdraw(batch.getWalSeqs()), batch));
+            }
+            for (StoredTransfer st : batch.getTransfers()) {
+                batched.add(st.getTxData());
+            }
+        }
+        intentService.rememberBatched(batched);
+        unresolvedCount = unresolved.size();
+        if (!unresolved.isEmpty()) {
+            log.warn("{} batches were written but their submit was not settled before the restart; resolving them "
+                    + "on-chain before their intents may be batched again", unresolved.size());
+        }
     }
 
-    public synchronized void createAndSubmitBatch(int maxTxPerBatch) {
-        List<TransferIntentRequest> intents = intentService.drainUpTo(maxTxPerBatch);
-        if (intents.isEmpty()) return;
+    /**
+     * Seal up to maxTxPerBatch pending intents into a batch and hand it to the submit pipeline.
+     *
+     * Returns once the batch is sealed; the future completes with the stored batch after it is confirmed
+     * and indexed. Completes with null if nothing was pending or max-in-flight batches are already in the
+     * pipeline (the intents then stay queued for the next attempt), or if every drained intent was dropped as
+     * unsealable. Completes exceptionally if the batch failed; see the class comment for what happens to its
+     * intents.
+     */
+    public CompletableFuture<LocalBatch> createAndSubmitBatch(int maxTxPerBatch) {
+        synchronized (sealLock) {
+            if (!inFlight.tryAcquire()) {
+                log.debug("Batch pipeline full; sealing deferred");
+                return CompletableFuture.completedFuture(null);
+            }
+
+            SealedBatch sealed;
+            try {
+                sealed = seal(maxTxPerBatch);
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+            if (sealed == null) {
+                inFlight.release();
+                return CompletableFuture.completedFuture(null);
+            }
+            int txCount = sealed.txCount();
+
+            // Signed and written ahead before it is sent, so a submit the node may have accepted can always be
+            // looked up, even after a restart.
+            CompletableFuture<PreparedSubmit> written = CompletableFuture
+                    .supplyAsync(() -> writeAhead(sealed, settlementClient.prepareSubmitBatch(
+                            sealed.rootHex(), txCount, sealed.batch().getBatchSalt())), broadcastExecutor);
+            CompletableFuture<String> broadcast = written.thenApply(submit -> {
+                settlementClient.broadcastSubmitBatch(submit);
+                return submit.txId();
+            });
+            CompletableFuture<BatchSubmission> confirmed = broadcast
+                    .thenApplyAsync(txId -> settlementClient.confirmSubmitBatch(txId, sealed.rootHex(), txCount),
+                            confirmExecutor);
+
+            // Index (or settle the failure) strictly after the previous batch, whether or not that one succeeded.
+            CompletableFuture<?> previous = lastIndexed.handle((r, e) -> null);
+            CompletableFuture<LocalBatch> indexed = confirmed
+                    .handle((submission, e) -> e)
+                    .thenCombineAsync(previous, (failure, ignored) -> indexOrSettle(sealed, written, confirmed, failure),
+                            indexExecutor);
+            lastIndexed = indexed;
+
+            indexed.whenComplete((batch, e) -> inFlight.release());
+            return indexed;
+        }
+    }
+
+    /**
+     * Number of sealed batches not yet confirmed and indexed.
+     */
+    public int getBatchesInFlight() {
+        return Math.max(0, maxInFlight - inFlight.availablePermits());
+    }
+
+    /**
+     * Number of CREATED batches whose submit is neither found on-chain nor proven absent yet.
+     */
+    public int getUnresolvedBatches() {
+        return unresolvedCount;
+    }
+
+    /**
+     * Look the unresolved batches up on-chain again (on the index thread, after the batches already in the pipeline):
+     * index the ones found, fail and re-queue the ones proven absent, keep the rest for the next call. Returns the
+     * pending run if one is queued already.
+     */
+    public CompletableFuture<?> resolvePendingBatches() {
+        synchronized (sealLock) {
+            if (resolution.isDone()) {
+                resolution = CompletableFuture.runAsync(this::resolveUnresolved, indexExecutor);
+            }
+            return resolution;
+        }
+    }
+
+    private SealedBatch seal(int maxTxPerBatch) {
+        DrainedIntents drained = dropUnsealable(intentService.drain(maxTxPerBatch));
+        if (drained.isEmpty()) return null;
+        try {
+            return seal(drained);
+        } catch (RuntimeException e) {
+            // Nothing was sent, and every intent passed the checks an unsealable one would fail, so the failure is
+            // not theirs: keep them at the head of the queue for the next attempt.
+            intentService.requeue(drained);
+            log.error("Sealing a batch of {} intents failed; re-queued them: {}", drained.size(), e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Drop (and log) the drained intents that can no longer be sealed, e.g. a BATCHED sender removed from the
+     * whitelist since intake; their senders may submit them again. Returns the rest.
+     */
+    private DrainedIntents dropUnsealable(DrainedIntents drained) {
+        List<TransferIntentRequest> intents = drained.intents();
+        int[] keep = new int[intents.size()];
+        int[] drop = new int[intents.size()];
+        int kept = 0;
+        int dropped = 0;
+        for (int i = 0; i < intents.size(); i++) {
+            List<String> errors = intentValidator.validate(intents.get(i));
+            if (errors.isEmpty()) {
+                keep[kept++] = i;
+            } else {
+                drop[dropped++] = i;
+                TransferIntentRequest req = intents.get(i);
+                log.error("Dropped unsealable intent from={} nonce={}: {}", req.getFrom(), req.getNonce(), errors);
+            }
+        }
+        if (dropped == 0) return drained;
+        intentService.release(drained.select(Arrays.copyOf(drop, dropped)));
+        return drained.select(Arrays.copyOf(keep, kept));
+    }
+
+    private SealedBatch seal(DrainedIntents drained) {
+        List<TransferIntentRequest> intents = drained.intents();
 
         // Per-batch salt used for txHash / Merkle leaf hashing (batchId is NOT hashed anymore)
         long batchSalt = CryptoUtil.randomUint64PositiveNonZero();
@@ -50,16 +269,15 @@ public class BatchService {
             d.setTimestamp(req.getTimestamp());
             d.setRecipientCount(req.getRecipientCount());
             d.setTxType(req.getTxType());
+            d.setPackedFields(req.getPackedFields());
             txs.add(d);
         }
 
-        // leaves - now with correct batchId in each leaf hash
-        List<byte[]> leaves = new ArrayList<>();
-        for (TransferData d : txs) {
-            leaves.add(merkleTreeService.leafHash(d, batchSalt));
-        }
-
-        String rootHex = merkleTreeService.computeMerkleRoot(leaves);
+        // Build the tree once; root and every proof come from the same layers.
+        MerkleTree tree = merkleTreeService.buildTree(txs, batchSalt);
+        String rootHex = tree.root();
+        // don't keep request bodies reachable from the stored batch
+        txs.forEach(d -> d.setPackedFields(null));
 
         // stored transfers with proofs
         List<StoredTransfer> stored = new ArrayList<>();
@@ -67,45 +285,231 @@ public class BatchService {
             TransferData tx = txs.get(i);
             StoredTransfer st = new StoredTransfer();
             st.setTxData(tx);
-            st.setTxProof(merkleTreeService.buildProof(leaves, i));
+            st.setTxProof(tree.packedProof(i));
             
             // Generate whitelist proof for BATCHED transactions (txType=2)
             if (tx.getTxType() == 2) { // BATCHED
-                List<String> whitelistProof = whitelistService.generateWhitelistProof(tx.getFrom());
-                st.setWhitelistProof(whitelistProof);
+                st.setWhitelistProof(whitelistService.generateWhitelistProof(tx.getFrom()));
             } else {
                 // DELAYED (0), INSTANT (1), FREE_TIER (3) don't need whitelist proof
-                st.setWhitelistProof(List.of());
+                st.setWhitelistProof(PackedProof.EMPTY);
             }
             
             st.setExecuted(false);
             stored.add(st);
         }
 
-        // Call contract: submitBatch(root, txCount)
-        BatchSubmission submission = settlementClient.submitBatchWithTxId(rootHex, txs.size(), batchSalt);
+        LocalBatch batch = new LocalBatch();
+        batch.setMerkleRootHex(rootHex);
+        batch.setTxCount(stored.size());
+        batch.setStatus(BatchStatus.CREATED);
+        batch.setBatchSalt(batchSalt);
+        batch.setTransfers(stored);
+        batch.setWalSeqs(drained.walSeqs());
+        return new SealedBatch(drained, batch);
+    }
+
+    /**
+     * Broadcast thread, before the submit is sent: save the batch as CREATED with its txId and expiration.
+     */
+    private PreparedSubmit writeAhead(SealedBatch sealed, PreparedSubmit submit) {
+        LocalBatch batch = sealed.batch();
+        batch.setSubmitTxId(submit.txId());
+        batch.setSubmitExpiration(submit.expirationMillis());
+        update(batch);
+        return submit;
+    }
+
+    private LocalBatch indexOrSettle(SealedBatch sealed, CompletableFuture<PreparedSubmit> written,
+                                     CompletableFuture<BatchSubmission> confirmed, Throwable failure) {
+        if (failure == null) {
+            try {
+                return index(sealed, confirmed.join());
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        return settleFailed(sealed, !written.isCompletedExceptionally(), failure);
+    }
+
+    /**
+     * Runs on the index thread. Returns the batch if it turns out to be on-chain after all, otherwise re-queues its
+     * intents (or leaves them in the WAL) and rethrows the failure. {@code sent} is false if the submit was never
+     * signed and written ahead, hence never broadcast.
+     */
+    private LocalBatch settleFailed(SealedBatch sealed, boolean sent, Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        LocalBatch batch = sealed.batch();
+
+        if (batch.getStatus() != BatchStatus.CREATED) {
+            // Indexed; only the WAL ACK failed. A replay on restart is dropped by rememberBatched.
+            log.error("Batch {} stored but its intents were not acknowledged: {}", sealed.rootHex(), cause.getMessage());
+            throw new CompletionException(cause);
+        }
+        if (!sent) {
+            intentService.requeue(sealed.drained());
+            log.error("Batch submission failed before broadcast: root={}, txCount={}, error={}; re-queued its intents",
+                    sealed.rootHex(), sealed.txCount(), cause.getMessage());
+            throw new CompletionException(cause);
+        }
+        try {
+            // Even a failed broadcast may have reached the node (e.g. a deadline exceeded after it was accepted).
+            Optional<LocalBatch> onChain = resolve(sealed);
+            if (onChain.isPresent()) {
+                log.warn("Batch submission failed ({}) but root {} is on-chain as batchId {}; indexed it",
+                        cause.getMessage(), sealed.rootHex(), onChain.get().getOnChainBatchId());
+                return onChain.get();
+            }
+            log.error("Batch submission failed: root={}, txCount={}, error={}; not on-chain, re-queued its intents",
+                    sealed.rootHex(), sealed.txCount(), cause.getMessage());
+        } catch (RuntimeException e) {
+            unresolved.add(sealed);
+            unresolvedCount = unresolved.size();
+            log.error("Batch submission failed (root={}, txId={}, error={}) and it is not known whether the submit is "
+                            + "on-chain ({}); its {} intents stay unacknowledged in the WAL until it is resolved",
+                    sealed.rootHex(), batch.getSubmitTxId(), cause.getMessage(), e.getMessage(), sealed.txCount());
+        }
+        throw new CompletionException(cause);
+    }
+
+    private void resolveUnresolved() {
+        for (Iterator<SealedBatch> it = unresolved.iterator(); it.hasNext(); ) {
+            SealedBatch sealed = it.next();
+            try {
+                Optional<LocalBatch> onChain = resolve(sealed);
+                it.remove();
+                if (onChain.isPresent()) {
+                    log.info("Unresolved batch {} is on-chain as batchId {}; indexed it",
+                            sealed.rootHex(), onChain.get().getOnChainBatchId());
+                } else {
+                    log.info("Unresolved batch {} is not on-chain; re-queued its {} intents",
+                            sealed.rootHex(), sealed.drained().size());
+                }
+            } catch (RuntimeException e) {
+                log.debug("Batch {} still unresolved: {}", sealed.rootHex(), e.getMessage());
+            }
+        }
+        unresolvedCount = unresolved.size();
+    }
+
+    /**
+     * Index thread: look a CREATED batch's submit up on-chain. Indexes the batch if found; if proven absent, marks it
+     * FAILED and re-queues its intents (in that order, so a crash in between replays them instead of withholding
+     * them). Throws if that is not known yet.
+     */
+    private Optional<LocalBatch> resolve(SealedBatch sealed) {
+        LocalBatch batch = sealed.batch();
+        Optional<BatchSubmission> onChain = settlementClient.findSubmittedBatch(
+                batch.getSubmitTxId(), sealed.rootHex(), sealed.txCount(), batch.getSubmitExpiration());
+        if (onChain.isPresent()) {
+            return Optional.of(index(sealed, onChain.get()));
+        }
+        batch.setStatus(BatchStatus.FAILED);
+        batch.setWalSeqs(null);
+        update(batch);
+        intentService.requeue(sealed.drained());
+        return Optional.empty();
+    }
+
+    private LocalBatch index(SealedBatch sealed, BatchSubmission submission) {
         long onChainBatchId = submission.batchId();
+        if (onChainBatchId <= lastIndexedOnChainId) {
+            log.warn("On-chain batchId {} is not after previously indexed batchId {} (submit txs reordered on-chain)",
+                    onChainBatchId, lastIndexedOnChainId);
+        }
+        lastIndexedOnChainId = Math.max(lastIndexedOnChainId, onChainBatchId);
 
         // Set batchId in each TransferData (for storage/tracking purposes only, NOT for hash)
-        stored.forEach(st -> st.getTxData().setBatchId(onChainBatchId));
+        LocalBatch batch = sealed.batch();
+        batch.getTransfers().forEach(st -> st.getTxData().setBatchId(onChainBatchId));
 
-        // Build LocalBatch and save in repository
-        LocalBatch batch = new LocalBatch();
+        // The CREATED batch written before broadcast becomes the on-chain one
         batch.setOnChainBatchId(onChainBatchId);
         batch.setSubmitTxId(submission.submitTxId());
-        batch.setMerkleRootHex(rootHex);
         batch.setTxCount(submission.txCount());
         batch.setStatus(BatchStatus.SUBMITTED_ONCHAIN);
         batch.setSubmittedAt(submission.submittedAt());
         batch.setUnlockTime(submission.unlockTime());
-        batch.setBatchSalt(batchSalt);
-        batch.setTransfers(stored);
+        batch.setWalSeqs(null);
+        update(batch);
+
+        // Batch is on-chain and stored: its intents no longer need to be replayed from the WAL. Wait for the ACK,
+        // so the batch only counts as done once a restart cannot replay them (see rememberBatched for the window).
+        intentService.acknowledge(sealed.drained());
+        return batch;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        broadcastExecutor.shutdown();
+        confirmExecutor.shutdown();
+        indexExecutor.shutdown();
+    }
+
+    /**
+     * One page of stored batches, newest first (see {@link BatchRepository#findPage}).
+     */
+    public List<LocalBatch> getBatchPage(long beforeLocalId, int limit) {
+        return batchRepository.findPage(beforeLocalId, limit);
+    }
+
+    public BatchTotals getBatchTotals() {
+        return batchRepository.totals();
+    }
+
+    /**
+     * Batches still waiting for unlock/execution; served from memory without touching finished history.
+     */
+    public List<LocalBatch> getUnfinishedBatches() {
+        return batchRepository.findUnfinished();
+    }
 
+    /**
+     * Batches awaiting execution that are due at {@code nowSeconds} (or whose unlock time is still unknown),
+     * earliest unlock first; taken from the repository's unlock queue.
+     */
+    public List<LocalBatch> getBatchesDueForExecution(long nowSeconds) {
+        return batchRepository.findDueForExecution(nowSeconds);
+    }
+
+    /**
+     * Run {@code change} holding the lock the execution path holds while it works on stored batches, so a resident
+     * batch is never changed by two threads at once. Save the changes with {@link #update} inside it.
+     */
+    public void withBatchLock(Runnable change) {
+        synchronized (batchLock) {
+            change.run();
+        }
+    }
+
+    /**
+     * Persist changes made to an already stored batch (status, unlock time, executed flags).
+     */
+    public void update(LocalBatch batch) {
         batchRepository.save(batch);
+        notifySaved(batch);
+    }
+
+    /**
+     * Called after every save of a batch (new or updated), on the saving thread.
+     */
+    public void addSaveListener(Consumer<LocalBatch> listener) {
+        saveListeners.add(listener);
+    }
+
+    private void notifySaved(LocalBatch batch) {
+        for (Consumer<LocalBatch> listener : saveListeners) {
+            try {
+                listener.accept(batch);
+            } catch (Exception e) {
+                log.warn("Batch save listener failed for batch {}: {}", batch.getLocalId(), e.getMessage());
+            }
+        }
     }
 
-    public List<LocalBatch> getBatches() {
-        return batchRepository.findAll();
+    public Optional<LocalBatch> findByLocalId(long localId) {
+        return batchRepository.findByLocalId(localId);
     }
 
     public LocalBatch getByOnChainBatchId(long onChainBatchId) {
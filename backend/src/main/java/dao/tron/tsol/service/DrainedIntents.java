@@ -0,0 +1,43 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.model.TransferIntentRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Intents taken from the intake queue for one batch, with their WAL sequence numbers
+ * (0 when the WAL is disabled) and enqueue times. Pass back to
+ * {@link TransferIntentService#acknowledge(DrainedIntents)} once the batch is on-chain so the WAL can drop them,
+ * or to {@link TransferIntentService#requeue(DrainedIntents)} if the batch never reached the chain.
+ */
+public record DrainedIntents(
+        List<TransferIntentRequest> intents,
+        long[] walSeqs,
+        long[] enqueuedAtMillis
+) {
+    public static final DrainedIntents EMPTY = new DrainedIntents(List.of(), new long[0], new long[0]);
+
+    public boolean isEmpty() {
+        return intents.isEmpty();
+    }
+
+    public int size() {
+        return intents.size();
+    }
+
+    /**
+     * The intents at the given positions (ascending), with their WAL sequence numbers and enqueue times.
+     */
+    public DrainedIntents select(int[] positions) {
+        List<TransferIntentRequest> selected = new ArrayList<>(positions.length);
+        long[] seqs = new long[positions.length];
+        long[] enqueued = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            selected.add(intents.get(positions[i]));
+            seqs[i] = walSeqs[positions[i]];
+            enqueued[i] = enqueuedAtMillis[positions[i]];
+        }
+        return new DrainedIntents(selected, seqs, enqueued);
+    }
+}
@@ -17,18 +17,38 @@ public class ExecutionService {
 
     private final SettlementContractClient settlementClient;
     private final SchedulerProperties schedulerProps;
+    private final TransferReconciler reconciler;
     private final ExecutorService executor;
-
-    public ExecutionService(SettlementContractClient settlementClient, SchedulerProperties schedulerProps) {
+    /**
+     * Concurrency limit in virtual-thread mode (null in platform mode, where the pool size is the limit).
+     */
+    private final Semaphore permits;
+
+    public ExecutionService(SettlementContractClient settlementClient,
+                            SchedulerProperties schedulerProps,
+                            TransferReconciler reconciler) {
         this.settlementClient = settlementClient;
         this.schedulerProps = schedulerProps;
-        // Upper bound to avoid accidental massive fan-out; can be increased if needed.
-        int threadSize = Math.max(1, Math.min(8, schedulerProps.getExecution().getMaxParallel()));
-        this.executor = Executors.newFixedThreadPool(threadSize);
+        this.reconciler = reconciler;
+        SchedulerProperties.ExecutionConfig cfg = schedulerProps.getExecution();
+        if (cfg.isVirtualThreads()) {
+            // Executions mostly park in receipt polling: one virtual thread per transfer is cheap, so only
+            // the permit count limits concurrency (node RPC rate is limited by NodeRateLimiter).
+            this.executor = Executors.newVirtualThreadPerTaskExecutor();
+            this.permits = new Semaphore(Math.max(1, cfg.getMaxParallel()));
+            log.info("ExecutionService: virtual threads, maxParallel={}", cfg.getMaxParallel());
+        } else {
+            // Upper bound to avoid accidental massive fan-out; can be increased if needed.
+            int threadSize = Math.max(1, Math.min(8, cfg.getMaxParallel()));
+            this.executor = Executors.newFixedThreadPool(threadSize);
+            this.permits = null;
+            log.info("ExecutionService: platform thread pool, threads={}", threadSize);
+        }
     }
 
     public void executeAll(LocalBatch batch) {
         batch.setStatus(BatchStatus.EXECUTING);
+        reconcile(batch);
 
         int maxParallel = Math.max(1, schedulerProps.getExecution().getMaxParallel());
         if (maxParallel == 1) {
@@ -48,7 +68,7 @@ public class ExecutionService {
         List<CompletableFuture<Boolean>> futures = new ArrayList<>();
         for (StoredTransfer st : batch.getTransfers()) {
             if (st.isExecuted()) continue;
-            futures.add(CompletableFuture.supplyAsync(() -> executeOne(st), executor));
+            futures.add(CompletableFuture.supplyAsync(() -> executeBounded(st), executor));
         }
 
         boolean allOk = true;
@@ -65,6 +85,19 @@ public class ExecutionService {
         log.info("Batch {} execution finished: status={} (maxParallel={})", batch.getOnChainBatchId(), batch.getStatus(), maxParallel);
     }
 
+    /**
+     * Mark transfers that already executed on-chain (earlier run, timed-out receipt) so they are not scheduled.
+     * Best effort: if the lookup fails every pending transfer is executed as before.
+     */
+    private void reconcile(LocalBatch batch) {
+        try {
+            reconciler.reconcile(batch);
+        } catch (Exception e) {
+            log.warn("Batch {}: execution status reconciliation failed, executing all pending transfers: {}",
+                    batch.getOnChainBatchId(), e.getMessage());
+        }
+    }
+
     private void executeSequential(LocalBatch batch) {
         boolean allOk = true;
         for (StoredTransfer st : batch.getTransfers()) {
@@ -83,6 +116,21 @@ public class ExecutionService {
         log.info("Batch {} execution finished: status={} (sequential)", batch.getOnChainBatchId(), batch.getStatus());
     }
 
+    private boolean executeBounded(StoredTransfer st) {
+        if (permits == null) return executeOne(st);
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            return executeOne(st);
+        } finally {
+            permits.release();
+        }
+    }
+
     private boolean executeOne(StoredTransfer st) {
         try {
             settlementClient.executeTransfer(st);
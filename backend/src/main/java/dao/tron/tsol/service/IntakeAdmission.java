@@ -0,0 +1,253 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.config.IntakeProperties;
+import dao.tron.tsol.config.SchedulerProperties;
+import dao.tron.tsol.model.TransferIntentRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control in front of {@link TransferIntentService}, so intake cannot outrun batching.
+ *
+ * Queue: once the pending count reaches the high watermark every submission is refused until the batcher has
+ * drained it to the low watermark (hysteresis, so intake does not flap around a single threshold). Below that, a
+ * submission that would push the queue over the high watermark is refused too. Retry-After is the time the
+ * measured drain rate needs to clear the excess.
+ *
+ * Unless configured, the high watermark is the backlog the measured drain rate clears within
+ * {@code maxQueueDelaySeconds}, with a floor of what the batcher can drain in that time (one batch of
+ * {@code max-intents} per scheduler tick) so an idle or just-started batcher still admits a useful backlog. The low
+ * watermark defaults to half of it.
+ *
+ * Sender: a token bucket per {@code from} address ({@code senderBurst} deep, refilled at
+ * {@code senderRatePerSecond}), so one client cannot fill the queue on its own. Buckets that are full again are
+ * equivalent to no bucket and are swept once many senders are tracked.
+ */
+@Service
+public class IntakeAdmission {
+
+    /**
+     * Why an intent was not admitted and when to try again (whole seconds, at least 1).
+     */
+    public record Rejection(String reason, long retryAfterSeconds) {}
+
+    private static final int SWEEP_THRESHOLD = 100_000;
+
+    private final IntSupplier queueDepth;
+    private final DoubleSupplier drainRate;
+    private final IntakeProperties props;
+    private final int minHighWatermark;
+    private final LongSupplier clock;
+
+    private final Map<Object, SenderBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweepMs = new AtomicLong();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedRateLimited = new AtomicLong();
+    private volatile boolean shedding;
+
+    @Autowired
+    public IntakeAdmission(TransferIntentService intentService, IntakeProperties props,
+                           SchedulerProperties schedulerProps) {
+        this(intentService::getQueueDepth, intentService::getDrainRatePerSecond, props,
+                batcherCapacity(schedulerProps.getBatching(), props.getMaxQueueDelaySeconds()),
+                System::currentTimeMillis);
+    }
+
+    IntakeAdmission(IntSupplier queueDepth, DoubleSupplier drainRate, IntakeProperties props, int minHighWatermark,
+                    LongSupplier clock) {
+        if (props.getHighWatermark() > 0 && props.getLowWatermark() > props.getHighWatermark()) {
+            throw new IllegalArgumentException("intake.low-watermark (" + props.getLowWatermark()
+                    + ") must not exceed intake.high-watermark (" + props.getHighWatermark() + ")");
+        }
+        if (props.getHighWatermark() <= 0 && props.getMaxQueueDelaySeconds() <= 0) {
+            throw new IllegalArgumentException("intake.max-queue-delay-seconds must be positive unless "
+                    + "intake.high-watermark is set");
+        }
+        this.queueDepth = queueDepth;
+        this.drainRate = drainRate;
+        this.props = props;
+        this.minHighWatermark = Math.max(1, minHighWatermark);
+        this.clock = clock;
+    }
+
+    /**
+     * Intents the batching scheduler drains in {@code seconds} when it seals one full batch per tick.
+     */
+    static int batcherCapacity(SchedulerProperties.BatchingConfig batching, int seconds) {
+        long ticks = Math.max(1, seconds * 1000L / Math.max(1, batching.getCheckIntervalMs()));
+        return (int) Math.min(Integer.MAX_VALUE, ticks * Math.max(1, batching.getMaxIntents()));
+    }
+
+    /**
+     * Check whether {@code count} more intents fit in the intake queue; null if they do. A body larger than the
+     * high watermark is still admitted into an empty queue (its size is bounded by bulk-max-items).
+     *
+     * This is a snapshot (e.g. to shed a request before reading its body); intents are admitted atomically by
+     * {@link TransferIntentService#addIntents(java.util.List, IntakeAdmission)}.
+     */
+    public Rejection checkQueue(int count) {
+        return checkQueue(queueDepth.getAsInt(), count);
+    }
+
+    Rejection checkQueue(int depth, int count) {
+        int high = getHighWatermark();
+        int low = lowWatermark(high);
+        boolean shed = updateShedding(depth, high, low);
+        if (!shed && (depth == 0 || (long) depth + count <= high)) return null;
+
+        rejectedQueueFull.incrementAndGet();
+        long backlog = shed ? depth - low : (long) depth + count - high;
+        return new Rejection("Intake queue is full (" + depth + " pending)", secondsToDrain(backlog));
+    }
+
+    /**
+     * Take one token from the sender's bucket; null if there was one.
+     */
+    public Rejection checkSender(TransferIntentRequest req) {
+        int rate = props.getSenderRatePerSecond();
+        if (rate <= 0) return null;
+        long now = clock.getAsLong();
+        sweepIfLarge(now);
+
+        SenderBucket bucket = buckets.computeIfAbsent(senderKey(req), k -> new SenderBucket(props.getSenderBurst(), now));
+        long waitMs = bucket.take(now, rate, props.getSenderBurst());
+        if (waitMs == 0) return null;
+
+        rejectedRateLimited.incrementAndGet();
+        long seconds = Math.min(Math.max(1, (waitMs + 999) / 1000), props.getMaxRetryAfterSeconds());
+        return new Rejection("Sender rate limit exceeded for " + req.getFrom(), seconds);
+    }
+
+    /**
+     * Give back the token {@link #checkSender} took for an intent that was not accepted after all.
+     */
+    public void refundSender(TransferIntentRequest req) {
+        if (props.getSenderRatePerSecond() <= 0) return;
+        SenderBucket bucket = buckets.get(senderKey(req));
+        if (bucket != null) bucket.refund(props.getSenderBurst());
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    public double getDrainRatePerSecond() {
+        return drainRate.getAsDouble();
+    }
+
+    /**
+     * The configured high watermark, or {@code maxQueueDelaySeconds} of the current drain rate (at least the
+     * batcher's capacity over that time).
+     */
+    public int getHighWatermark() {
+        if (props.getHighWatermark() > 0) return props.getHighWatermark();
+        double derived = Math.ceil(drainRate.getAsDouble() * props.getMaxQueueDelaySeconds());
+        return (int) Math.max(minHighWatermark, Math.min(derived, Integer.MAX_VALUE));
+    }
+
+    public int getLowWatermark() {
+        return lowWatermark(getHighWatermark());
+    }
+
+    /**
+     * True between reaching the high watermark and draining back to the low one.
+     */
+    public boolean isShedding() {
+        int high = getHighWatermark();
+        return updateShedding(queueDepth.getAsInt(), high, lowWatermark(high));
+    }
+
+    public long getRejectedQueueFull() {
+        return rejectedQueueFull.get();
+    }
+
+    public long getRejectedRateLimited() {
+        return rejectedRateLimited.get();
+    }
+
+    public int getTrackedSenders() {
+        return buckets.size();
+    }
+
+    private int lowWatermark(int high) {
+        if (props.getLowWatermark() > 0) return Math.min(props.getLowWatermark(), high);
+        return high / 2;
+    }
+
+    private boolean updateShedding(int depth, int high, int low) {
+        if (depth >= high) {
+            shedding = true;
+        } else if (depth <= low) {
+            shedding = false;
+        }
+        return shedding;
+    }
+
+    private long secondsToDrain(long backlog) {
+        double rate = drainRate.getAsDouble();
+        long max = props.getMaxRetryAfterSeconds();
+        if (rate <= 0) return max;
+        return Math.min(Math.max(1, (long) Math.ceil(backlog / rate)), max);
+    }
+
+    // The 20-byte address rather than the string, so two spellings of one sender share a bucket.
+    private static Object senderKey(TransferIntentRequest req) {
+        IntentDedupIndex.Key key = IntentDedupIndex.keyOf(req);
+        if (key == null) return req.getFrom();
+        return new IntentDedupIndex.Key(key.addrHi(), key.addrMid(), key.addrLo(), 0L);
+    }
+
+    private void sweepIfLarge(long now) {
+        if (buckets.size() <= SWEEP_THRESHOLD) return;
+        long last = lastSweepMs.get();
+        if (now - last < 1000L || !lastSweepMs.compareAndSet(last, now)) return;
+        int rate = props.getSenderRatePerSecond();
+        int burst = props.getSenderBurst();
+        buckets.values().removeIf(b -> b.isFull(now, rate, burst));
+    }
+
+    private static final class SenderBucket {
+        private double tokens;
+        private long updatedMs;
+
+        SenderBucket(int burst, long now) {
+            this.tokens = burst;
+            this.updatedMs = now;
+        }
+
+        /**
+         * Take a token; returns 0 on success, otherwise the milliseconds until one is available.
+         */
+        synchronized long take(long now, int rate, int burst) {
+            refill(now, rate, burst);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) * 1000.0 / rate));
+        }
+
+        synchronized void refund(int burst) {
+            tokens = Math.min(burst, tokens + 1);
+        }
+
+        synchronized boolean isFull(long now, int rate, int burst) {
+            refill(now, rate, burst);
+            return tokens >= burst;
+        }
+
+        private void refill(long now, int rate, int burst) {
+            if (now > updatedMs) {
+                tokens = Math.min(burst, tokens + (now - updatedMs) * rate / 1000.0);
+                updatedMs = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.util.IntentWireFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Exact set of recently accepted (sender, nonce) pairs with bounded retention.
+ * <p>
+ * Entries live in a ring of primitive arrays (20-byte address as long+long+int, nonce, live flag: 29 bytes each) in
+ * acceptance order; a linear-probing table of ring positions (load factor <= 0.5) finds them in O(1). When the
+ * ring is full the oldest entry is evicted, so memory is fixed at about 37 bytes x capacity and a duplicate is
+ * caught as long as fewer than {@code capacity} intents were accepted after the original.
+ * <p>
+ * Senders are keyed by the 20-byte address the Merkle leaf would encode: taken from the packed bytes of
+ * binary-format intents, parsed by {@link MerkleLeafEncoder#addressBytes} otherwise, so every spelling of an address
+ * (base58, hex) is the same sender. Intents whose sender does not parse are not tracked (intake rejects them
+ * anyway). Thread-safe.
+ */
+final class IntentDedupIndex {
+
+    /**
+     * Sender address (bytes 0..8, 8..16, 16..20) and nonce.
+     */
+    record Key(long addrHi, long addrMid, int addrLo, long nonce) {}
+
+    private final int capacity;
+    private final long[] addrHi;
+    private final long[] addrMid;
+    private final int[] addrLo;
+    private final long[] nonces;
+    private final boolean[] live;
+    // ring position + 1, 0 = empty
+    private final int[] table;
+    private final int mask;
+
+    private int head;   // next ring position to write (the oldest entry once the ring has wrapped)
+    private int size;
+    private long evictions;
+
+    IntentDedupIndex(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Dedup capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.addrHi = new long[capacity];
+        this.addrMid = new long[capacity];
+        this.addrLo = new int[capacity];
+        this.nonces = new long[capacity];
+        this.live = new boolean[capacity];
+        int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.table = new int[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    /**
+     * Remember the intent's (sender, nonce). Returns false if it is already present, i.e. the intent is a duplicate.
+     * Intents without a trackable sender are always reported as new.
+     */
+    boolean add(TransferIntentRequest req) {
+        Key key = keyOf(req);
+        return key == null || add(key);
+    }
+
+    /**
+     * Forget the intent's (sender, nonce), e.g. when accepting it failed after {@link #add}.
+     */
+    void remove(TransferIntentRequest req) {
+        Key key = keyOf(req);
+        if (key != null) remove(key);
+    }
+
+    synchronized boolean add(Key key) {
+        int slot = find(key);
+        if (table[slot] != 0) return false;
+        int pos = head;
+        if (live[pos]) {
+            removeSlot(slotOf(pos));
+            size--;
+            evictions++;
+            // the backward shift may have moved entries; probe again
+            slot = find(key);
+        }
+        addrHi[pos] = key.addrHi();
+        addrMid[pos] = key.addrMid();
+        addrLo[pos] = key.addrLo();
+        nonces[pos] = key.nonce();
+        live[pos] = true;
+        table[slot] = pos + 1;
+        head = (head + 1) % capacity;
+        size++;
+        return true;
+    }
+
+    synchronized void remove(Key key) {
+        int slot = find(key);
+        if (table[slot] == 0) return;
+        // The ring position stays allocated and is simply overwritten when the ring comes around.
+        live[table[slot] - 1] = false;
+        removeSlot(slot);
+        size--;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Slot holding the key, or the empty slot where it would be inserted.
+     */
+    private int find(Key key) {
+        int slot = hash(key.addrHi(), key.addrMid(), key.addrLo(), key.nonce()) & mask;
+        while (true) {
+            int v = table[slot];
+            if (v == 0) return slot;
+            int pos = v - 1;
+            if (nonces[pos] == key.nonce() && addrHi[pos] == key.addrHi()
+                    && addrMid[pos] == key.addrMid() && addrLo[pos] == key.addrLo()) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int slotOf(int pos) {
+        int slot = hashAt(pos) & mask;
+        while (table[slot] != pos + 1) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Linear-probing delete with backward shift, so lookups never need tombstones.
+     */
+    private void removeSlot(int hole) {
+        int j = hole;
+        while (true) {
+            j = (j + 1) & mask;
+            int v = table[j];
+            if (v == 0) break;
+            int home = hashAt(v - 1) & mask;
+            // The entry at j may fill the hole unless its home lies cyclically in (hole, j].
+            boolean homeBetween = hole <= j ? (home > hole && home <= j) : (home > hole || home <= j);
+            if (!homeBetween) {
+                table[hole] = v;
+                hole = j;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private int hashAt(int pos) {
+        return hash(addrHi[pos], addrMid[pos], addrLo[pos], nonces[pos]);
+    }
+
+    private static int hash(long hi, long mid, int lo, long nonce) {
+        long h = hi * 0x9E3779B97F4A7C15L;
+        h = (h ^ mid) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ (lo & 0xFFFFFFFFL)) * 0x165667B19E3779F9L;
+        h = (h ^ nonce) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * (sender, nonce) of an intent; null if the intent has no nonce or its sender does not parse as an address.
+     */
+    static Key keyOf(TransferIntentRequest req) {
+        if (req.getNonce() == null) return null;
+        ByteBuffer packed = req.getPackedFields();
+        if (packed != null) {
+            int off = IntentWireFormat.OFF_FROM;
+            return new Key(packed.getLong(off), packed.getLong(off + 8), packed.getInt(off + 16), req.getNonce());
+        }
+        return keyOf(req.getFrom(), req.getNonce());
+    }
+
+    static Key keyOf(String from, long nonce) {
+        if (from == null) return null;
+        byte[] raw;
+        try {
+            raw = MerkleLeafEncoder.forCurrentThread().addressBytes(from);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        ByteBuffer addr = ByteBuffer.wrap(raw);
+        return new Key(addr.getLong(0), addr.getLong(8), addr.getInt(16), nonce);
+    }
+}
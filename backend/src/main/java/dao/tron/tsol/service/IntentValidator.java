@@ -0,0 +1,116 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.util.IntentWireFormat;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Intake checks mirroring the contract rules an executeTransfer would revert on, so a bad intent is refused at
+ * POST time instead of taking a Merkle slot and failing after the batch is submitted:
+ * <ul>
+ *   <li>Settlement._validateTransferInput: from and to are non-zero addresses (and parse the way the leaf
+ *       encoder parses them)</li>
+ *   <li>FeeModule._validateCalculateFeeInput: amount is a non-zero uint256, recipientCount is non-zero</li>
+ *   <li>FeeModule._validateTxType: txType is DELAYED(0), INSTANT(1), BATCHED(2) or FREE_TIER(3)</li>
+ *   <li>FeeModule._validateRecipientCount: BATCHED needs recipientCount &gt; 1, every other type exactly 1</li>
+ *   <li>Settlement._validateBatched: a BATCHED sender is in the (cached) whitelist</li>
+ *   <li>the leaf packs timestamp as uint48</li>
+ * </ul>
+ * Rules that depend on chain state at execution time (free-tier quota, balance, allowance) are not checked.
+ */
+@Service
+public class IntentValidator {
+
+    private static final int TX_DELAYED = 0;
+    private static final int TX_BATCHED = 2;
+    private static final int TX_FREE_TIER = 3;
+
+    private static final long MAX_UINT48 = (1L << 48) - 1;
+
+    private final Predicate<String> isWhitelisted;
+
+    @Autowired
+    public IntentValidator(WhitelistService whitelistService) {
+        this(whitelistService::isWhitelisted);
+    }
+
+    IntentValidator(Predicate<String> isWhitelisted) {
+        this.isWhitelisted = isWhitelisted;
+    }
+
+    /**
+     * Rule violations as "field: message", sorted; empty if the intent is acceptable. Fields missing altogether
+     * are left to bean validation.
+     */
+    public List<String> validate(TransferIntentRequest req) {
+        List<String> errors = new ArrayList<>();
+        ByteBuffer packed = req.getPackedFields();
+        if (packed != null) {
+            // Binary format: addresses and amount are already fixed-width bytes.
+            if (isZero(packed, IntentWireFormat.OFF_FROM, 20)) errors.add("from: zero address");
+            if (isZero(packed, IntentWireFormat.OFF_TO, 20)) errors.add("to: zero address");
+            if (isZero(packed, IntentWireFormat.OFF_AMOUNT, 32)) errors.add("amount: must be greater than 0");
+        } else {
+            MerkleLeafEncoder encoder = MerkleLeafEncoder.forCurrentThread();
+            checkAddress(encoder, "from", req.getFrom(), errors);
+            checkAddress(encoder, "to", req.getTo(), errors);
+            if (req.getAmount() != null) {
+                try {
+                    byte[] amount = encoder.uint256Bytes(req.getAmount());
+                    if (isZero(ByteBuffer.wrap(amount), 0, 32)) errors.add("amount: must be greater than 0");
+                } catch (IllegalArgumentException e) {
+                    errors.add("amount: not a uint256 decimal (" + e.getMessage() + ")");
+                }
+            }
+        }
+
+        if (req.getTimestamp() != null && (req.getTimestamp() < 0 || req.getTimestamp() > MAX_UINT48)) {
+            errors.add("timestamp: out of uint48 range");
+        }
+
+        Integer txType = req.getTxType();
+        if (txType != null) {
+            if (txType < TX_DELAYED || txType > TX_FREE_TIER) {
+                errors.add("txType: must be 0 (DELAYED), 1 (INSTANT), 2 (BATCHED) or 3 (FREE_TIER)");
+            } else if (req.getRecipientCount() != null) {
+                int recipients = req.getRecipientCount();
+                if (txType == TX_BATCHED && recipients <= 1) {
+                    errors.add("recipientCount: must be greater than 1 for BATCHED");
+                } else if (txType != TX_BATCHED && recipients != 1) {
+                    errors.add("recipientCount: must be 1 unless BATCHED");
+                }
+            }
+            if (txType == TX_BATCHED && errors.stream().noneMatch(e -> e.startsWith("from:"))
+                    && !isWhitelisted.test(req.getFrom())) {
+                errors.add("from: not whitelisted for BATCHED");
+            }
+        }
+        errors.sort(null);
+        return errors;
+    }
+
+    private static void checkAddress(MerkleLeafEncoder encoder, String field, String address, List<String> errors) {
+        if (address == null) return;
+        byte[] raw;
+        try {
+            raw = encoder.addressBytes(address);
+        } catch (RuntimeException e) {
+            errors.add(field + ": invalid TRON address");
+            return;
+        }
+        if (isZero(ByteBuffer.wrap(raw), 0, 20)) errors.add(field + ": zero address");
+    }
+
+    private static boolean isZero(ByteBuffer buf, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buf.get(offset + i) != 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,165 @@
+package dao.tron.tsol.service;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import lombok.extern.slf4j.Slf4j;
+import org.tron.trident.proto.Chain;
+import org.tron.trident.proto.Contract;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds TriggerSmartContract transactions locally instead of asking the node with triggerContract.
+ *
+ * For a non-constant function the node does not execute anything on triggerContract: it wraps the call in a
+ * transaction referencing its head block (TAPoS) with a 60s expiration, and Trident adds the fee limit. This
+ * class produces the same raw_data from a cached recent block header, refreshed in the background, so
+ * broadcast is the only per-transaction RPC.
+ *
+ * TRON accepts any of the last 65536 blocks as reference, so a header a few seconds (or minutes) old is fine;
+ * expiration is counted from the local clock.
+ */
+@Slf4j
+final class LocalTransactionBuilder {
+
+    /**
+     * java-tron default trx expiration (node: head block time + 60s).
+     */
+    static final long EXPIRATION_MS = 60_000L;
+
+    /**
+     * TAPoS reference: block number, block id and timestamp of a recent block.
+     */
+    record RefBlock(long number, byte[] blockId, long timestamp) {
+
+        /**
+         * Block id as java-tron computes it: sha256(header.raw_data) with the first 8 bytes replaced by the number.
+         */
+        static RefBlock of(Chain.BlockHeader header) {
+            Chain.BlockHeader.raw raw = header.getRawData();
+            byte[] id = sha256(raw.toByteArray());
+            System.arraycopy(ByteBuffer.allocate(8).putLong(raw.getNumber()).array(), 0, id, 0, 8);
+            return new RefBlock(raw.getNumber(), id, raw.getTimestamp());
+        }
+
+        /**
+         * ref_block_bytes: bytes 6..8 of the big-endian block number.
+         */
+        ByteString refBlockBytes() {
+            byte[] n = ByteBuffer.allocate(8).putLong(number).array();
+            return ByteString.copyFrom(n, 6, 2);
+        }
+
+        /**
+         * ref_block_hash: bytes 8..16 of the block id.
+         */
+        ByteString refBlockHash() {
+            return ByteString.copyFrom(Arrays.copyOfRange(blockId, 8, 16));
+        }
+    }
+
+    private final Callable<Chain.BlockHeader> headSource;
+    private final ScheduledExecutorService refresher;
+    private volatile RefBlock refBlock;
+
+    /**
+     * @param headSource fetches the current head block header (one RPC)
+     * @param refreshMs  background refresh interval of the cached reference block
+     */
+    LocalTransactionBuilder(Callable<Chain.BlockHeader> headSource, long refreshMs) {
+        this.headSource = headSource;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ref-block-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1_000L, refreshMs);
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, 0L, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Unsigned TriggerSmartContract transaction (call value 0) against the cached reference block.
+     */
+    Chain.Transaction triggerSmartContract(ByteString owner, ByteString contract, byte[] callData, long feeLimit) {
+        long now = System.currentTimeMillis();
+        return triggerSmartContract(owner, contract, callData, feeLimit, refBlock(), now, now + EXPIRATION_MS);
+    }
+
+    static Chain.Transaction triggerSmartContract(ByteString owner,
+                                                  ByteString contract,
+                                                  byte[] callData,
+                                                  long feeLimit,
+                                                  RefBlock ref,
+                                                  long timestampMs,
+                                                  long expirationMs) {
+        Contract.TriggerSmartContract trigger = Contract.TriggerSmartContract.newBuilder()
+                .setOwnerAddress(owner)
+                .setContractAddress(contract)
+                .setData(ByteString.copyFrom(callData))
+                .build();
+        Chain.Transaction.raw raw = Chain.Transaction.raw.newBuilder()
+                .addContract(Chain.Transaction.Contract.newBuilder()
+                        .setType(Chain.Transaction.Contract.ContractType.TriggerSmartContract)
+                        .setParameter(Any.pack(trigger)))
+                .setRefBlockBytes(ref.refBlockBytes())
+                .setRefBlockHash(ref.refBlockHash())
+                .setExpiration(expirationMs)
+                .setTimestamp(timestampMs)
+                .setFeeLimit(feeLimit)
+                .build();
+        return Chain.Transaction.newBuilder().setRawData(raw).build();
+    }
+
+    /**
+     * Transaction id: sha256(raw_data).
+     */
+    static byte[] txId(Chain.Transaction tx) {
+        return sha256(tx.getRawData().toByteArray());
+    }
+
+    /**
+     * Cached reference block; fetched synchronously if the background refresh has not succeeded yet.
+     */
+    RefBlock refBlock() {
+        RefBlock ref = refBlock;
+        if (ref != null) return ref;
+        try {
+            refresh();
+        } catch (Exception e) {
+            throw new RuntimeException("No reference block available: " + e.getMessage(), e);
+        }
+        return refBlock;
+    }
+
+    void refresh() throws Exception {
+        refBlock = RefBlock.of(headSource.call());
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // Keep the previous header: it stays a valid reference for hours.
+            log.warn("Reference block refresh failed: {}", e.getMessage());
+        }
+    }
+
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
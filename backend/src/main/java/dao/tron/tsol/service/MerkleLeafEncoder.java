@@ -0,0 +1,252 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.model.TransferData;
+import dao.tron.tsol.util.IntentWireFormat;
+import org.bouncycastle.jcajce.provider.digest.Keccak;
+import org.tron.trident.core.ApiWrapper;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Allocation-free encoder for Settlement txHash leaves.
+ *
+ * Writes the abi.encodePacked preimage of Settlement.sol _calculateTxHash() straight into a fixed scratch buffer:
+ * <pre>
+ * offset  size  field
+ *      0    20  from           (address)
+ *     20    20  to             (address)
+ *     40    32  amount         (uint256)
+ *     72     8  nonce          (uint64)
+ *     80     6  timestamp      (uint48)
+ *     86     4  recipientCount (uint32)
+ *     90     1  txType         (uint8)
+ *     91     8  batchSalt      (uint64)
+ * </pre>
+ * and hashes it with a reused Keccak-256 digest. Intents received in the binary format carry bytes 0..91 already
+ * packed ({@link IntentWireFormat}); those are copied as-is. Instances are NOT thread-safe; use {@link #forCurrentThread()}.
+ */
+final class MerkleLeafEncoder {
+
+    static final int PACKED_LENGTH = 99;
+    static final int HASH_LENGTH = 32;
+
+    private static final int OFF_FROM = 0;
+    private static final int OFF_TO = 20;
+    private static final int OFF_AMOUNT = 40;
+    private static final int OFF_NONCE = 72;
+    private static final int OFF_TIMESTAMP = 80;
+    private static final int OFF_RECIPIENT_COUNT = 86;
+    private static final int OFF_TX_TYPE = 90;
+    private static final int OFF_BATCH_SALT = 91;
+
+    // TRON base58check address: 0x41 + 20 bytes + 4 bytes checksum, always 34 chars starting with 'T'.
+    private static final int BASE58_ADDRESS_CHARS = 34;
+    private static final int BASE58_ADDRESS_BYTES = 25;
+    private static final byte TRON_ADDRESS_PREFIX = 0x41;
+
+    private static final String BASE58_ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz";
+    private static final byte[] BASE58_INDEXES = new byte[128];
+
+    static {
+        Arrays.fill(BASE58_INDEXES, (byte) -1);
+        for (int i = 0; i < BASE58_ALPHABET.length(); i++) {
+            BASE58_INDEXES[BASE58_ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private static final ThreadLocal<MerkleLeafEncoder> PER_THREAD = ThreadLocal.withInitial(MerkleLeafEncoder::new);
+
+    private final byte[] packed = new byte[PACKED_LENGTH];
+    private final Keccak.Digest256 keccak = new Keccak.Digest256();
+    private final MessageDigest sha256;
+    private final byte[] addressScratch = new byte[BASE58_ADDRESS_BYTES];
+    private final byte[] checksumScratch = new byte[32];
+    private final int[] amountLimbs = new int[8]; // little-endian 32-bit limbs of the uint256
+
+    private MerkleLeafEncoder() {
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static MerkleLeafEncoder forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * Compute keccak256(abi.encodePacked(...)) of the transfer and write the 32-byte hash into out[offset..offset+32).
+     */
+    void leafHash(TransferData txData, long batchSalt, byte[] out, int offset) {
+        encode(txData, batchSalt);
+        keccak.reset();
+        keccak.update(packed, 0, PACKED_LENGTH);
+        try {
+            keccak.digest(out, offset, HASH_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException("keccak256 digest failed", e);
+        }
+    }
+
+    byte[] leafHash(TransferData txData, long batchSalt) {
+        byte[] out = new byte[HASH_LENGTH];
+        leafHash(txData, batchSalt, out, 0);
+        return out;
+    }
+
+    /**
+     * The 20-byte address exactly as a leaf would encode it. Throws (IllegalArgumentException for a bad checksum,
+     * trident's parse error otherwise) if the leaf could not be built from it.
+     */
+    byte[] addressBytes(String address) {
+        writeAddress(address, OFF_FROM);
+        return Arrays.copyOfRange(packed, OFF_FROM, OFF_FROM + 20);
+    }
+
+    /**
+     * The big-endian uint256 of a decimal amount exactly as a leaf would encode it; throws
+     * IllegalArgumentException (NumberFormatException included) if it is not a uint256.
+     */
+    byte[] uint256Bytes(String amount) {
+        writeUint256Decimal(amount, OFF_AMOUNT);
+        return Arrays.copyOfRange(packed, OFF_AMOUNT, OFF_AMOUNT + 32);
+    }
+
+    private void encode(TransferData txData, long batchSalt) {
+        ByteBuffer fields = txData.getPackedFields();
+        if (fields != null) {
+            // Binary-format intent: the wire record already is the preimage up to batchSalt.
+            fields.get(0, packed, 0, IntentWireFormat.FIELDS_LENGTH);
+            writeBigEndian(batchSalt, OFF_BATCH_SALT, 8);
+            return;
+        }
+        writeAddress(txData.getFrom(), OFF_FROM);
+        writeAddress(txData.getTo(), OFF_TO);
+        writeUint256Decimal(txData.getAmount(), OFF_AMOUNT);
+        writeBigEndian(txData.getNonce(), OFF_NONCE, 8);
+        writeBigEndian(txData.getTimestamp(), OFF_TIMESTAMP, 6);
+        writeBigEndian(txData.getRecipientCount(), OFF_RECIPIENT_COUNT, 4);
+        packed[OFF_TX_TYPE] = (byte) txData.getTxType();
+        writeBigEndian(batchSalt, OFF_BATCH_SALT, 8);
+    }
+
+    private void writeBigEndian(long v, int offset, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            packed[offset + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    /**
+     * Write the 20-byte EVM address for a TRON address.
+     * Canonical base58check addresses are decoded in place; anything else falls back to trident's parser.
+     */
+    private void writeAddress(String address, int offset) {
+        if (address != null && address.length() == BASE58_ADDRESS_CHARS && address.charAt(0) == 'T'
+                && decodeBase58Check(address)) {
+            System.arraycopy(addressScratch, 1, packed, offset, 20);
+            return;
+        }
+        byte[] raw = ApiWrapper.parseAddress(address).toByteArray();
+        if (raw.length < 21) {
+            throw new IllegalArgumentException("Parsed address length < 21 bytes for " + address);
+        }
+        System.arraycopy(raw, raw.length - 20, packed, offset, 20);
+    }
+
+    /**
+     * Decode a 34-char base58check TRON address into addressScratch and verify its checksum.
+     * Returns false (leaving the caller to fall back) if the input does not decode to a 25-byte 0x41 address.
+     */
+    private boolean decodeBase58Check(String address) {
+        byte[] b = addressScratch;
+        Arrays.fill(b, (byte) 0);
+        for (int i = 0; i < BASE58_ADDRESS_CHARS; i++) {
+            char c = address.charAt(i);
+            int digit = c < 128 ? BASE58_INDEXES[c] : -1;
+            if (digit < 0) return false;
+            int carry = digit;
+            for (int j = BASE58_ADDRESS_BYTES - 1; j >= 0; j--) {
+                carry += 58 * (b[j] & 0xff);
+                b[j] = (byte) carry;
+                carry >>>= 8;
+            }
+            if (carry != 0) return false;
+        }
+        if (b[0] != TRON_ADDRESS_PREFIX) return false;
+
+        try {
+            sha256.reset();
+            sha256.update(b, 0, 21);
+            sha256.digest(checksumScratch, 0, 32);
+            sha256.update(checksumScratch, 0, 32);
+            sha256.digest(checksumScratch, 0, 32);
+        } catch (DigestException e) {
+            throw new IllegalStateException("sha256 digest failed", e);
+        }
+        for (int i = 0; i < 4; i++) {
+            if (checksumScratch[i] != b[21 + i]) {
+                throw new IllegalArgumentException("Invalid address checksum: " + address);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse a decimal string into a big-endian uint256 without going through BigInteger.
+     * Accepts the same inputs as new BigInteger(s) for ASCII digits (optional sign, leading zeros).
+     */
+    private void writeUint256Decimal(String s, int offset) {
+        if (s == null) {
+            throw new IllegalArgumentException("uint256 value is null");
+        }
+        int len = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            negative = s.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == len) {
+            throw new NumberFormatException("Zero length amount: \"" + s + "\"");
+        }
+
+        int[] limbs = amountLimbs;
+        Arrays.fill(limbs, 0);
+        for (; i < len; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Illegal digit in amount: \"" + s + "\"");
+            }
+            long carry = digit;
+            for (int k = 0; k < limbs.length; k++) {
+                long v = (limbs[k] & 0xffffffffL) * 10L + carry;
+                limbs[k] = (int) v;
+                carry = v >>> 32;
+            }
+            if (carry != 0) {
+                throw new IllegalArgumentException("uint256 value too large");
+            }
+        }
+
+        if (negative) {
+            for (int limb : limbs) {
+                if (limb != 0) throw new IllegalArgumentException("uint256 cannot be negative");
+            }
+        }
+
+        for (int k = 0; k < limbs.length; k++) {
+            int v = limbs[k];
+            int base = offset + 32 - 4 * (k + 1);
+            packed[base] = (byte) (v >>> 24);
+            packed[base + 1] = (byte) (v >>> 16);
+            packed[base + 2] = (byte) (v >>> 8);
+            packed[base + 3] = (byte) v;
+        }
+    }
+}
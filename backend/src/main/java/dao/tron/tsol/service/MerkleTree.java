@@ -0,0 +1,300 @@
+package dao.tron.tsol.service;
+
+import org.bouncycastle.jcajce.provider.digest.Keccak;
+
+import java.security.DigestException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Immutable batch Merkle tree, built once and queried for the root and every proof.
+ *
+ * All layers (leaves first, root last) live in one contiguous byte[] of 32-byte nodes.
+ * Internal nodes use sorted-pair keccak (OpenZeppelin MerkleProof style); on an odd level the last node
+ * is promoted unchanged, matching the scripts in `contracts/script/merkle/batch/**`.
+ */
+public final class MerkleTree {
+
+    static final int NODE_SIZE = 32;
+
+    /**
+     * Parents hashed per fork-join leaf task; large enough that task overhead is noise next to keccak.
+     */
+    static final int PARALLEL_GRAIN = 1024;
+
+    /**
+     * Disables the parallel path (every level is hashed on the calling thread).
+     */
+    static final int SEQUENTIAL = Integer.MAX_VALUE;
+
+    private static final ThreadLocal<Keccak.Digest256> LOCAL_DIGEST = ThreadLocal.withInitial(Keccak.Digest256::new);
+
+    private final byte[] nodes;
+    private final int[] layerOffsets; // node index where each layer starts
+    private final int[] layerSizes;
+
+    private MerkleTree(byte[] nodes, int[] layerOffsets, int[] layerSizes) {
+        this.nodes = nodes;
+        this.layerOffsets = layerOffsets;
+        this.layerSizes = layerSizes;
+    }
+
+    /**
+     * Build a tree from a buffer whose first leafCount nodes are already filled with leaf hashes.
+     * The buffer must be sized with {@link #bufferSize(int)}.
+     */
+    static MerkleTree buildInPlace(byte[] nodes, int leafCount) {
+        return buildInPlace(nodes, leafCount, SEQUENTIAL);
+    }
+
+    /**
+     * Same as {@link #buildInPlace(byte[], int)}, but levels with at least parallelThreshold nodes are split into
+     * fork-join chunks on the common pool. Smaller levels (and therefore small batches) stay sequential.
+     */
+    static MerkleTree buildInPlace(byte[] nodes, int leafCount, int parallelThreshold) {
+        if (leafCount <= 0) {
+            throw new IllegalArgumentException("No leaves");
+        }
+        int depth = layerCount(leafCount);
+        int[] offsets = new int[depth];
+        int[] sizes = new int[depth];
+
+        Keccak.Digest256 digest = new Keccak.Digest256();
+        int offset = 0;
+        int size = leafCount;
+        for (int layer = 0; layer < depth; layer++) {
+            offsets[layer] = offset;
+            sizes[layer] = size;
+            if (layer + 1 < depth) {
+                if (size >= parallelThreshold) {
+                    ForkJoinPool.commonPool().invoke(new LayerHashTask(nodes, offset, size, offset + size, 0, (size + 1) / 2));
+                } else {
+                    hashLayer(digest, nodes, offset, size, offset + size);
+                }
+            }
+            offset += size;
+            size = (size + 1) / 2;
+        }
+        return new MerkleTree(nodes, offsets, sizes);
+    }
+
+    static MerkleTree fromLeaves(List<byte[]> leaves) {
+        return fromLeaves(leaves, SEQUENTIAL);
+    }
+
+    static MerkleTree fromLeaves(List<byte[]> leaves, int parallelThreshold) {
+        if (leaves == null || leaves.isEmpty()) {
+            throw new IllegalArgumentException("No leaves");
+        }
+        byte[] nodes = new byte[bufferSize(leaves.size())];
+        for (int i = 0; i < leaves.size(); i++) {
+            byte[] leaf = leaves.get(i);
+            if (leaf == null || leaf.length != NODE_SIZE) {
+                throw new IllegalArgumentException("Each leaf must be 32 bytes");
+            }
+            System.arraycopy(leaf, 0, nodes, i * NODE_SIZE, NODE_SIZE);
+        }
+        return buildInPlace(nodes, leaves.size(), parallelThreshold);
+    }
+
+    /**
+     * Bytes needed to hold every layer of a tree with the given number of leaves.
+     */
+    static int bufferSize(int leafCount) {
+        long total = 0;
+        int size = leafCount;
+        while (true) {
+            total += size;
+            if (size == 1) break;
+            size = (size + 1) / 2;
+        }
+        return Math.toIntExact(total * NODE_SIZE);
+    }
+
+    /**
+     * Hash one level into the next: parent[i] = H(sorted(child[2i], child[2i+1])), odd tail promoted.
+     * Node indices are absolute positions in the shared buffer.
+     */
+    static void hashLayer(Keccak.Digest256 digest, byte[] nodes, int from, int size, int to) {
+        hashLayerRange(digest, nodes, from, size, to, 0, (size + 1) / 2);
+    }
+
+    /**
+     * Hash parents [parentStart, parentEnd) of one level. Used by both the sequential and the parallel builder.
+     */
+    static void hashLayerRange(Keccak.Digest256 digest, byte[] nodes, int from, int size, int to,
+                               int parentStart, int parentEnd) {
+        for (int p = parentStart; p < parentEnd; p++) {
+            int left = from + 2 * p;
+            int out = (to + p) * NODE_SIZE;
+            if (2 * p + 1 < size) {
+                hashPair(digest, nodes, left * NODE_SIZE, (left + 1) * NODE_SIZE, out);
+            } else {
+                // Promote odd node
+                System.arraycopy(nodes, left * NODE_SIZE, nodes, out, NODE_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Fork-join task hashing parents [start, end) of one level. Chunks write disjoint parent slots,
+     * so the only synchronization needed is the join at the end of the level.
+     */
+    private static final class LayerHashTask extends RecursiveAction {
+        private final byte[] nodes;
+        private final int from;
+        private final int size;
+        private final int to;
+        private final int start;
+        private final int end;
+
+        LayerHashTask(byte[] nodes, int from, int size, int to, int start, int end) {
+            this.nodes = nodes;
+            this.from = from;
+            this.size = size;
+            this.to = to;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_GRAIN) {
+                hashLayerRange(LOCAL_DIGEST.get(), nodes, from, size, to, start, end);
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(
+                    new LayerHashTask(nodes, from, size, to, start, mid),
+                    new LayerHashTask(nodes, from, size, to, mid, end)
+            );
+        }
+    }
+
+    private static void hashPair(Keccak.Digest256 digest, byte[] nodes, int a, int b, int out) {
+        digest.reset();
+        if (compareNodes(nodes, a, b) <= 0) {
+            digest.update(nodes, a, NODE_SIZE);
+            digest.update(nodes, b, NODE_SIZE);
+        } else {
+            digest.update(nodes, b, NODE_SIZE);
+            digest.update(nodes, a, NODE_SIZE);
+        }
+        try {
+            digest.digest(nodes, out, NODE_SIZE);
+        } catch (DigestException e) {
+            throw new IllegalStateException("keccak256 digest failed", e);
+        }
+    }
+
+    private static int compareNodes(byte[] nodes, int a, int b) {
+        for (int i = 0; i < NODE_SIZE; i++) {
+            int ai = nodes[a + i] & 0xff;
+            int bi = nodes[b + i] & 0xff;
+            if (ai != bi) return ai - bi;
+        }
+        return 0;
+    }
+
+    static int layerCount(int leafCount) {
+        int depth = 1;
+        int size = leafCount;
+        while (size > 1) {
+            size = (size + 1) / 2;
+            depth++;
+        }
+        return depth;
+    }
+
+    public int leafCount() {
+        return layerSizes[0];
+    }
+
+    public byte[] rootBytes() {
+        int top = layerOffsets[layerOffsets.length - 1] * NODE_SIZE;
+        byte[] out = new byte[NODE_SIZE];
+        System.arraycopy(nodes, top, out, 0, NODE_SIZE);
+        return out;
+    }
+
+    /**
+     * Root as 0x-prefixed hex.
+     */
+    public String root() {
+        return toHex0x(nodes, layerOffsets[layerOffsets.length - 1] * NODE_SIZE);
+    }
+
+    /**
+     * Merkle proof for leaf at index as hex-encoded bytes32 (0x-prefixed), bottom-up.
+     * Levels where the node was promoted (no sibling) contribute nothing.
+     */
+    public List<String> proof(int index) {
+        if (index < 0 || index >= leafCount()) {
+            throw new IndexOutOfBoundsException("Invalid leaf index: " + index);
+        }
+        List<String> proof = new ArrayList<>(layerSizes.length - 1);
+        int idx = index;
+        for (int layer = 0; layer < layerSizes.length - 1; layer++) {
+            int sibling = idx ^ 1;
+            if (sibling < layerSizes[layer]) {
+                proof.add(toHex0x(nodes, (layerOffsets[layer] + sibling) * NODE_SIZE));
+            }
+            idx >>= 1;
+        }
+        return proof;
+    }
+
+    /**
+     * Same nodes as {@link #proof(int)}, packed into one array (depth x 32 bytes) with no hex encoding.
+     */
+    public byte[] packedProof(int index) {
+        if (index < 0 || index >= leafCount()) {
+            throw new IndexOutOfBoundsException("Invalid leaf index: " + index);
+        }
+        int depth = 0;
+        int idx = index;
+        for (int layer = 0; layer < layerSizes.length - 1; layer++) {
+            if ((idx ^ 1) < layerSizes[layer]) depth++;
+            idx >>= 1;
+        }
+        byte[] out = new byte[depth * NODE_SIZE];
+        int pos = 0;
+        idx = index;
+        for (int layer = 0; layer < layerSizes.length - 1; layer++) {
+            int sibling = idx ^ 1;
+            if (sibling < layerSizes[layer]) {
+                System.arraycopy(nodes, (layerOffsets[layer] + sibling) * NODE_SIZE, out, pos, NODE_SIZE);
+                pos += NODE_SIZE;
+            }
+            idx >>= 1;
+        }
+        return out;
+    }
+
+    /**
+     * Proofs for every leaf, in leaf order.
+     */
+    public List<List<String>> allProofs() {
+        List<List<String>> out = new ArrayList<>(leafCount());
+        for (int i = 0; i < leafCount(); i++) {
+            out.add(proof(i));
+        }
+        return out;
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static String toHex0x(byte[] buf, int offset) {
+        char[] out = new char[2 + NODE_SIZE * 2];
+        out[0] = '0';
+        out[1] = 'x';
+        for (int i = 0; i < NODE_SIZE; i++) {
+            int v = buf[offset + i] & 0xff;
+            out[2 + 2 * i] = HEX[v >>> 4];
+            out[3 + 2 * i] = HEX[v & 0x0f];
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,387 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.config.NodeProperties;
+import dao.tron.tsol.config.SettlementProperties;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+import io.grpc.StatusRuntimeException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.tron.trident.core.ApiWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Node clients shared by every service that talks to TRON (one set of gRPC channels per endpoint).
+ *
+ * Each call is timed against the endpoint that served it; over the last `node.latency-window` calls the pool
+ * keeps p50/p99 latency and the error rate per endpoint. Reads go to the solidity endpoint, everything else
+ * (broadcasts, receipts, head block) to the full endpoint with the lowest expected latency among the healthy
+ * ones. An endpoint whose p99 or error rate crosses its limit is ejected for `node.eject-seconds` and then
+ * measured again from an empty window; the last healthy endpoint of a kind is never ejected.
+ *
+ * Only transport failures (gRPC status errors, deadlines) count against an endpoint - a node that answers
+ * "not found" is healthy. Idempotent calls fail over to the next endpoint on a transport failure;
+ * broadcasts do not.
+ */
+@Slf4j
+@Component
+public class NodePool {
+
+    static final String NILE_FULL = "grpc.nile.trongrid.io:50051";
+    static final String NILE_SOLIDITY = "grpc.nile.trongrid.io:50061";
+
+    /**
+     * Every PROBE_INTERVAL-th call of a kind goes to a runner-up, so the ranking does not rest on stale numbers.
+     */
+    static final int PROBE_INTERVAL = 50;
+
+    public enum Kind { FULL, SOLIDITY }
+
+    /**
+     * A call made with one of the pool's clients.
+     */
+    @FunctionalInterface
+    public interface NodeCall<T> {
+        T call(ApiWrapper client) throws Exception;
+    }
+
+    /**
+     * Same, but seeing the endpoint rather than its client (lets tests stand in for nodes).
+     */
+    @FunctionalInterface
+    interface EndpointCall<T> {
+        T call(Endpoint endpoint) throws Exception;
+    }
+
+    public record EndpointStats(String target, Kind kind, boolean ejected, long calls, long failures,
+                                int windowSize, double p50Ms, double p99Ms, double errorRate, long ejections) {}
+
+    private final List<Endpoint> full;
+    private final List<Endpoint> solidity;
+    private final int minSamples;
+    private final long ejectP99Nanos;
+    private final double ejectErrorRate;
+    private final long ejectMs;
+    private final LongSupplier clockMs;
+    private final AtomicLong fullCalls = new AtomicLong();
+    private final AtomicLong solidityCalls = new AtomicLong();
+
+    @Autowired
+    public NodePool(NodeProperties props, SettlementProperties settlementProps) {
+        this(props, connect(props, settlementProps), System::currentTimeMillis);
+    }
+
+    NodePool(NodeProperties props, List<Endpoint> endpoints, LongSupplier clockMs) {
+        this.full = endpoints.stream().filter(e -> e.kind == Kind.FULL).toList();
+        this.solidity = endpoints.stream().filter(e -> e.kind == Kind.SOLIDITY).toList();
+        this.minSamples = Math.max(1, props.getMinSamples());
+        this.ejectP99Nanos = TimeUnit.MILLISECONDS.toNanos(props.getEjectP99Ms());
+        this.ejectErrorRate = props.getEjectErrorRate();
+        this.ejectMs = TimeUnit.SECONDS.toMillis(props.getEjectSeconds());
+        this.clockMs = clockMs;
+        if (!endpoints.isEmpty()) {
+            log.info("NodePool initialized: full={}, solidity={}",
+                    full.stream().map(e -> e.target).toList(), solidity.stream().map(e -> e.target).toList());
+        }
+    }
+
+    public boolean isEnabled() {
+        return !full.isEmpty();
+    }
+
+    /**
+     * Constant call / read against confirmed state: fastest healthy solidity node, failing over.
+     * Use {@code NodeType.SOLIDITY_NODE} on the client.
+     */
+    public <T> T read(NodeCall<T> call) throws Exception {
+        return execute(Kind.SOLIDITY, true, e -> call.call(e.client()));
+    }
+
+    /**
+     * Idempotent full-node call (head block, receipts, triggerContract): fastest healthy full node, failing over.
+     */
+    public <T> T full(NodeCall<T> call) throws Exception {
+        return execute(Kind.FULL, true, e -> call.call(e.client()));
+    }
+
+    /**
+     * Broadcast through the fastest healthy full node. Not retried on another node: the first one may have
+     * accepted the transaction before failing.
+     */
+    public <T> T broadcast(NodeCall<T> call) throws Exception {
+        return execute(Kind.FULL, false, e -> call.call(e.client()));
+    }
+
+    public List<EndpointStats> getStats() {
+        long now = clockMs.getAsLong();
+        List<EndpointStats> out = new ArrayList<>(full.size() + solidity.size());
+        for (Endpoint e : full) out.add(e.stats(now));
+        for (Endpoint e : solidity) out.add(e.stats(now));
+        return out;
+    }
+
+    <T> T execute(Kind kind, boolean failover, EndpointCall<T> call) throws Exception {
+        List<Endpoint> endpoints = kind == Kind.FULL ? full : solidity;
+        if (endpoints.isEmpty()) {
+            throw new IllegalStateException("No " + kind + " node endpoints configured");
+        }
+        List<Endpoint> order = ranked(endpoints, kind == Kind.FULL ? fullCalls : solidityCalls);
+        int attempts = failover ? order.size() : 1;
+        Exception last = null;
+        for (int i = 0; i < attempts; i++) {
+            Endpoint e = order.get(i);
+            long start = System.nanoTime();
+            try {
+                T result = call.call(e);
+                record(e, endpoints, System.nanoTime() - start, false);
+                return result;
+            } catch (Exception ex) {
+                boolean nodeFailure = isNodeFailure(ex);
+                record(e, endpoints, System.nanoTime() - start, nodeFailure);
+                if (!nodeFailure) throw ex;
+                last = ex;
+                if (i + 1 < attempts) {
+                    log.debug("Node {} failed ({}), trying {}", e.target, ex.getMessage(), order.get(i + 1).target);
+                }
+            }
+        }
+        throw last;
+    }
+
+    /**
+     * Healthy endpoints by expected latency, then ejected ones by how soon they come back.
+     */
+    private List<Endpoint> ranked(List<Endpoint> endpoints, AtomicLong calls) {
+        if (endpoints.size() == 1) return endpoints;
+        // Sort on a snapshot: scores move while other threads record.
+        long now = clockMs.getAsLong();
+        List<Candidate> healthy = new ArrayList<>(endpoints.size());
+        List<Candidate> ejected = new ArrayList<>();
+        for (Endpoint e : endpoints) {
+            if (e.isEjected(now)) {
+                ejected.add(new Candidate(e, e.ejectedUntil()));
+            } else {
+                healthy.add(new Candidate(e, e.score()));
+            }
+        }
+        healthy.sort(Comparator.comparingLong(Candidate::key));
+        ejected.sort(Comparator.comparingLong(Candidate::key));
+
+        long n = calls.incrementAndGet();
+        if (healthy.size() > 1 && n % PROBE_INTERVAL == 0) {
+            int runnerUp = 1 + (int) ((n / PROBE_INTERVAL) % (healthy.size() - 1));
+            healthy.addFirst(healthy.remove(runnerUp));
+        }
+        List<Endpoint> order = new ArrayList<>(endpoints.size());
+        for (Candidate c : healthy) order.add(c.endpoint());
+        for (Candidate c : ejected) order.add(c.endpoint());
+        return order;
+    }
+
+    private record Candidate(Endpoint endpoint, long key) {}
+
+    private void record(Endpoint e, List<Endpoint> peers, long latencyNanos, boolean failure) {
+        EndpointStats s = e.record(latencyNanos, failure);
+        if (s.windowSize() < minSamples) return;
+        boolean slow = s.p99Ms() * 1_000_000 > ejectP99Nanos;
+        boolean failing = s.errorRate() > ejectErrorRate;
+        if (!slow && !failing) return;
+
+        long now = clockMs.getAsLong();
+        boolean otherHealthy = peers.stream().anyMatch(p -> p != e && !p.isEjected(now));
+        if (otherHealthy && e.eject(now, now + ejectMs)) {
+            log.warn("Ejecting {} node {} for {}s: p50={}ms p99={}ms errorRate={}",
+                    e.kind, e.target, ejectMs / 1000, s.p50Ms(), s.p99Ms(), s.errorRate());
+        }
+    }
+
+    static boolean isNodeFailure(Throwable t) {
+        for (Throwable c = t; c != null; c = c.getCause()) {
+            if (c instanceof StatusRuntimeException || c instanceof TimeoutException) return true;
+        }
+        return false;
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        for (Endpoint e : full) e.close();
+        for (Endpoint e : solidity) e.close();
+    }
+
+    private static List<Endpoint> connect(NodeProperties props, SettlementProperties settlementProps) {
+        String privateKey = settlementProps.getPrivateKey();
+        if (privateKey == null || privateKey.isBlank() || privateKey.equals("YOUR_PRIVATE_KEY_HERE")) {
+            log.warn("NodePool: No valid private key configured. Node access disabled.");
+            return List.of();
+        }
+
+        List<String> fullTargets = targets(props.getFullEndpoints());
+        if (fullTargets.isEmpty()) {
+            String configured = settlementProps.getNodeEndpoint();
+            fullTargets = List.of(configured != null && !configured.isBlank() ? configured.trim() : NILE_FULL);
+        }
+        List<String> solidityTargets = targets(props.getSolidityEndpoints());
+        if (solidityTargets.isEmpty()) {
+            solidityTargets = List.of(NILE_SOLIDITY);
+        }
+
+        List<ClientInterceptor> interceptors = List.of(deadline(props.getCallTimeoutMs()));
+        int channels = Math.max(1, settlementProps.getBroadcastChannels());
+        List<Endpoint> endpoints = new ArrayList<>();
+        try {
+            for (String target : fullTargets) {
+                List<ApiWrapper> clients = new ArrayList<>(channels);
+                for (int i = 0; i < channels; i++) {
+                    clients.add(new ApiWrapper(target, target, privateKey, interceptors));
+                }
+                endpoints.add(new Endpoint(target, Kind.FULL, clients, props.getLatencyWindow()));
+            }
+            for (String target : solidityTargets) {
+                endpoints.add(new Endpoint(target, Kind.SOLIDITY,
+                        List.of(new ApiWrapper(target, target, privateKey, interceptors)), props.getLatencyWindow()));
+            }
+        } catch (Exception e) {
+            log.error("NodePool: failed to create node clients: {}", e.getMessage());
+            endpoints.forEach(Endpoint::close);
+            return List.of();
+        }
+        return endpoints;
+    }
+
+    /**
+     * Configured endpoints, flattened/trimmed (a single env value may carry a comma-separated list).
+     */
+    private static List<String> targets(List<String> configured) {
+        if (configured == null) return List.of();
+        List<String> out = new ArrayList<>();
+        for (String entry : configured) {
+            if (entry == null) continue;
+            for (String part : entry.split(",")) {
+                String p = part.trim();
+                if (!p.isEmpty() && !out.contains(p)) out.add(p);
+            }
+        }
+        return out;
+    }
+
+    private static ClientInterceptor deadline(long timeoutMs) {
+        return new ClientInterceptor() {
+            @Override
+            public <Q, R> ClientCall<Q, R> interceptCall(MethodDescriptor<Q, R> method, CallOptions options, Channel next) {
+                return next.newCall(method, options.withDeadlineAfter(timeoutMs, TimeUnit.MILLISECONDS));
+            }
+        };
+    }
+
+    /**
+     * One node: its clients (round-robin) and a sliding window over its most recent calls.
+     */
+    static final class Endpoint {
+        final String target;
+        final Kind kind;
+        private final List<ApiWrapper> clients;
+        private final AtomicLong nextClient = new AtomicLong();
+
+        // latency (nanos) of the last calls, -1 = transport failure
+        private final long[] window;
+        private int size;
+        private int pos;
+        private int failures;
+        private long p50Nanos;
+        private long p99Nanos;
+        private long calls;
+        private long totalFailures;
+        private long ejections;
+        private volatile long ejectedUntilMs;
+
+        Endpoint(String target, Kind kind, List<ApiWrapper> clients, int windowSize) {
+            this.target = target;
+            this.kind = kind;
+            this.clients = List.copyOf(clients);
+            this.window = new long[Math.max(1, windowSize)];
+        }
+
+        ApiWrapper client() {
+            return clients.get((int) Math.floorMod(nextClient.getAndIncrement(), (long) clients.size()));
+        }
+
+        boolean isEjected(long nowMs) {
+            return ejectedUntilMs > nowMs;
+        }
+
+        long ejectedUntil() {
+            return ejectedUntilMs;
+        }
+
+        /**
+         * Expected latency per successful call: p50 inflated by the error rate. Unmeasured endpoints score 0,
+         * so a new or readmitted endpoint gets traffic right away.
+         */
+        synchronized long score() {
+            if (size == 0) return 0L;
+            if (failures == size) return Long.MAX_VALUE;
+            return p50Nanos * size / (size - failures);
+        }
+
+        synchronized EndpointStats record(long latencyNanos, boolean failure) {
+            if (size == window.length) {
+                if (window[pos] < 0) failures--;
+            } else {
+                size++;
+            }
+            window[pos] = failure ? -1L : latencyNanos;
+            pos = (pos + 1) % window.length;
+            calls++;
+            if (failure) {
+                failures++;
+                totalFailures++;
+            }
+
+            long[] ok = new long[size - failures];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (window[i] >= 0) ok[n++] = window[i];
+            }
+            Arrays.sort(ok);
+            p50Nanos = n == 0 ? 0L : ok[(n - 1) / 2];
+            p99Nanos = n == 0 ? 0L : ok[Math.max(0, (int) Math.ceil(n * 0.99) - 1)];
+            return stats(0L);
+        }
+
+        /**
+         * Take out of rotation until the given time and start a fresh window; false if already ejected.
+         */
+        synchronized boolean eject(long nowMs, long untilMs) {
+            if (isEjected(nowMs)) return false;
+            ejectedUntilMs = untilMs;
+            ejections++;
+            size = 0;
+            pos = 0;
+            failures = 0;
+            p50Nanos = 0L;
+            p99Nanos = 0L;
+            return true;
+        }
+
+        synchronized EndpointStats stats(long nowMs) {
+            return new EndpointStats(target, kind, isEjected(nowMs), calls, totalFailures, size,
+                    p50Nanos / 1e6, p99Nanos / 1e6, size == 0 ? 0.0 : (double) failures / size, ejections);
+        }
+
+        void close() {
+            clients.forEach(ApiWrapper::close);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.config.SettlementProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Caps the rate of RPCs sent to the TRON node, independently of how many executions are in flight.
+ *
+ * Each request reserves the next free time slot (lock-free) and parks until it arrives; up to one second
+ * of unused capacity can be spent as a burst. Parking is cheap on virtual threads, so hundreds of waiting
+ * executions cost nothing but memory.
+ */
+@Component
+public class NodeRateLimiter {
+
+    private static final long BURST_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long intervalNanos;
+    private final AtomicLong nextSlotNanos;
+
+    @Autowired
+    public NodeRateLimiter(SettlementProperties props) {
+        this(props.getMaxRequestsPerSecond());
+    }
+
+    NodeRateLimiter(int maxRequestsPerSecond) {
+        this.intervalNanos = maxRequestsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxRequestsPerSecond : 0L;
+        this.nextSlotNanos = new AtomicLong(System.nanoTime() - BURST_WINDOW_NANOS);
+    }
+
+    public static NodeRateLimiter unlimited() {
+        return new NodeRateLimiter(0);
+    }
+
+    /**
+     * Block until the caller may send one request to the node.
+     */
+    public void acquire() {
+        if (intervalNanos == 0L) return;
+        long now = System.nanoTime();
+        long floor = now - BURST_WINDOW_NANOS;
+        long reserved = Math.max(nextSlotNanos.getAndUpdate(prev -> Math.max(prev, floor) + intervalNanos), floor);
+        long waitNanos;
+        while ((waitNanos = reserved - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, waitNanos);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package dao.tron.tsol.service;
+
+/**
+ * A submitBatch transaction built and signed but not broadcast yet. Its txId and expiration are known before it is
+ * sent, so a broadcast that failed (possibly after the node accepted it) can still be looked up.
+ *
+ * @param txId             sha256(raw_data), hex without 0x
+ * @param expirationMillis raw_data.expiration: no block after this time can include the transaction
+ * @param signedTx         the signed transaction, serialized
+ */
+public record PreparedSubmit(
+        String txId,
+        long expirationMillis,
+        byte[] signedTx
+) {}
@@ -0,0 +1,42 @@
+package dao.tron.tsol.service;
+
+/**
+ * Events per second over a sliding window of one-second buckets (e.g. intents drained into batches).
+ * Seconds without events count as zero, so the rate falls off when the events stop.
+ */
+final class RateWindow {
+
+    private final int seconds;
+    private final long[] counts;
+    private final long[] epochSeconds;
+
+    RateWindow(int seconds) {
+        if (seconds <= 0) throw new IllegalArgumentException("Window must be at least one second: " + seconds);
+        this.seconds = seconds;
+        this.counts = new long[seconds];
+        this.epochSeconds = new long[seconds];
+    }
+
+    synchronized void record(long n, long nowMs) {
+        long sec = nowMs / 1000L;
+        int i = (int) (sec % seconds);
+        if (epochSeconds[i] != sec) {
+            epochSeconds[i] = sec;
+            counts[i] = 0;
+        }
+        counts[i] += n;
+    }
+
+    /**
+     * Average over the current second and the {@code seconds - 1} before it.
+     */
+    synchronized double perSecond(long nowMs) {
+        long sec = nowMs / 1000L;
+        long total = 0;
+        for (int i = 0; i < seconds; i++) {
+            if (sec - epochSeconds[i] < seconds) total += counts[i];
+        }
+        // corrections (negative counts) never make the rate negative
+        return Math.max(0.0, (double) total / seconds);
+    }
+}
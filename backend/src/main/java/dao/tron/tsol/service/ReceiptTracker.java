@@ -0,0 +1,328 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.config.SettlementProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.tron.trident.core.ApiWrapper;
+import org.tron.trident.proto.Response;
+import org.tron.trident.utils.Numeric;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Block-driven confirmation watcher shared by every in-flight transaction.
+ *
+ * Callers register a txId and get a future for its TransactionInfo. One tracker thread follows the head
+ * block and fetches each new block's receipts once ({@code getTransactionInfoByBlockNum}); in that single
+ * pass it completes every pending txId found in the block and hands Settlement contract logs to the
+ * registered {@link ContractLogListener}s. Node load is one call per block plus one head check per tick,
+ * whatever the number of pending transactions.
+ *
+ * The tracker only runs while something is pending and starts from the head block when it wakes up. If it
+ * falls more than {@link #MAX_CATCH_UP_BLOCKS} behind (slow or unreachable node) it jumps to the head and
+ * looks the pending txIds up one by one instead; a txId that reaches its deadline also gets one last direct
+ * lookup, for transactions mined before they were registered.
+ */
+@Slf4j
+@Component
+public class ReceiptTracker {
+
+    /**
+     * Blocks scanned per tick before giving up on catching up (~1 minute of TRON blocks).
+     */
+    static final int MAX_CATCH_UP_BLOCKS = 20;
+
+    /**
+     * The node calls the tracker needs (Trident in production, a fake node replaying blocks in tests).
+     */
+    interface ReceiptSource {
+        long latestBlockNum() throws Exception;
+
+        /**
+         * Receipts of every transaction in the block.
+         */
+        List<Response.TransactionInfo> blockReceipts(long blockNum) throws Exception;
+
+        /**
+         * Receipt of one transaction, or null if it is not in a block yet.
+         */
+        Response.TransactionInfo transactionInfo(String txId) throws Exception;
+    }
+
+    /**
+     * Receives every log emitted by the watched contract, in block order, from the tracker thread.
+     */
+    public interface ContractLogListener {
+        void onLog(long blockNum, String txId, Response.TransactionInfo.Log log);
+    }
+
+    private final ReceiptSource source;
+    private final NodeRateLimiter rateLimiter;
+    private final long tickMs;
+    // 20-byte contract address as it appears in log.address (null = no log dispatch)
+    private final byte[] watchedContract;
+    private final ScheduledExecutorService ticker;
+
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final List<ContractLogListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger blockWaiters = new AtomicInteger();
+    private volatile CompletableFuture<Long> nextBlock = new CompletableFuture<>();
+    // last block whose receipts were processed (tracker thread only)
+    private long scannedThrough = -1L;
+
+    @Autowired
+    public ReceiptTracker(SettlementProperties props, NodeRateLimiter rateLimiter, NodePool nodePool) {
+        this(tridentSource(nodePool), rateLimiter, props.getPolling().getReceiptTickMs(),
+                logAddress(props.getContractAddress()));
+    }
+
+    ReceiptTracker(ReceiptSource source, NodeRateLimiter rateLimiter, long tickMs, byte[] watchedContract) {
+        this.source = source;
+        this.rateLimiter = rateLimiter;
+        this.tickMs = Math.max(10L, tickMs);
+        this.watchedContract = watchedContract;
+        if (source == null) {
+            log.warn("ReceiptTracker: missing UPDATER_PRIVATE_KEY, receipt tracking disabled.");
+            this.ticker = null;
+            return;
+        }
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "receipt-tracker");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, this.tickMs, this.tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isEnabled() {
+        return source != null;
+    }
+
+    public void addLogListener(ContractLogListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Register a txId; the future completes with its receipt, or exceptionally with a TimeoutException.
+     * Tracking the same txId again shares the lookup and extends the deadline.
+     */
+    public CompletableFuture<Response.TransactionInfo> track(String txId, Duration timeout) {
+        if (source == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Receipt tracking is disabled"));
+        }
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        Pending p = pending.compute(key(txId), (k, cur) -> {
+            Pending e = cur != null ? cur : new Pending(txId);
+            e.deadlineMs = Math.max(e.deadlineMs, deadline);
+            return e;
+        });
+        // Callers get their own view so cancelling one does not affect the others.
+        return p.future.copy();
+    }
+
+    /**
+     * Blocking variant of {@link #track}: the receipt, or null on timeout/interrupt.
+     */
+    public Response.TransactionInfo await(String txId, Duration timeout) {
+        try {
+            return track(txId, timeout).get(timeout.toMillis() + tickMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Block until the tracker has processed a new block (for callers re-reading contract state once per block).
+     * Returns false on timeout/interrupt.
+     */
+    public boolean awaitNextBlock(Duration timeout) {
+        if (source == null) return false;
+        blockWaiters.incrementAndGet();
+        try {
+            nextBlock.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        } finally {
+            blockWaiters.decrementAndGet();
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    void tick() {
+        try {
+            if (pending.isEmpty() && blockWaiters.get() == 0) {
+                // Nothing can be missed while idle: resume from the head next time.
+                scannedThrough = -1L;
+                return;
+            }
+
+            long head;
+            try {
+                rateLimiter.acquire();
+                head = source.latestBlockNum();
+            } catch (Exception e) {
+                log.debug("Head block not available: {}", e.getMessage());
+                expire();
+                return;
+            }
+
+            if (scannedThrough < 0) {
+                scannedThrough = head - 1;
+            } else if (head - scannedThrough > MAX_CATCH_UP_BLOCKS) {
+                log.warn("Receipt tracker {} blocks behind, jumping to head {}", head - scannedThrough, head);
+                scannedThrough = head - 1;
+                pending.values().forEach(this::lookupDirectly);
+            }
+
+            while (scannedThrough < head) {
+                long blockNum = scannedThrough + 1;
+                List<Response.TransactionInfo> receipts;
+                try {
+                    rateLimiter.acquire();
+                    receipts = source.blockReceipts(blockNum);
+                } catch (Exception e) {
+                    log.debug("Receipts of block {} not available yet: {}", blockNum, e.getMessage());
+                    break;
+                }
+                processBlock(blockNum, receipts);
+                scannedThrough = blockNum;
+                CompletableFuture<Long> reached = nextBlock;
+                nextBlock = new CompletableFuture<>();
+                reached.complete(blockNum);
+            }
+
+            expire();
+        } catch (Exception e) {
+            // Never let an exception cancel the periodic task.
+            log.warn("Receipt tracker tick failed: {}", e.getMessage());
+        }
+    }
+
+    private void processBlock(long blockNum, List<Response.TransactionInfo> receipts) {
+        for (Response.TransactionInfo info : receipts) {
+            String txId = Numeric.toHexStringNoPrefix(info.getId().toByteArray());
+            Pending p = pending.remove(txId);
+            if (p != null) {
+                p.future.complete(info);
+            }
+            if (watchedContract == null || listeners.isEmpty()) continue;
+            for (Response.TransactionInfo.Log l : info.getLogList()) {
+                if (!Arrays.equals(watchedContract, l.getAddress().toByteArray())) continue;
+                for (ContractLogListener listener : listeners) {
+                    try {
+                        listener.onLog(blockNum, txId, l);
+                    } catch (Exception e) {
+                        log.warn("Contract log listener failed for tx {}: {}", txId, e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    private void expire() {
+        long now = System.currentTimeMillis();
+        for (Pending p : pending.values()) {
+            if (now < p.deadlineMs) continue;
+            if (lookupDirectly(p)) continue;
+            if (pending.remove(key(p.txId), p)) {
+                p.future.completeExceptionally(new TimeoutException("No TransactionInfo for " + p.txId));
+            }
+        }
+    }
+
+    private boolean lookupDirectly(Pending p) {
+        try {
+            rateLimiter.acquire();
+            Response.TransactionInfo info = source.transactionInfo(p.txId);
+            if (info == null) return false;
+            pending.remove(key(p.txId), p);
+            p.future.complete(info);
+            return true;
+        } catch (Exception e) {
+            log.debug("txInfo not available yet for {}: {}", p.txId, e.getMessage());
+            return false;
+        }
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        if (ticker != null) ticker.shutdownNow();
+        pending.forEach((k, p) -> p.future.completeExceptionally(new IllegalStateException("Receipt tracker stopped")));
+        pending.clear();
+    }
+
+    private static String key(String txId) {
+        String h = txId.startsWith("0x") || txId.startsWith("0X") ? txId.substring(2) : txId;
+        return h.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Pending {
+        final String txId;
+        final CompletableFuture<Response.TransactionInfo> future = new CompletableFuture<>();
+        volatile long deadlineMs;
+
+        Pending(String txId) {
+            this.txId = txId;
+        }
+    }
+
+    /**
+     * Settlement address in log form: the 20 bytes after the 0x41 prefix.
+     */
+    static byte[] logAddress(String base58) {
+        if (base58 == null || base58.isBlank()) return null;
+        try {
+            byte[] raw = ApiWrapper.parseAddress(base58).toByteArray();
+            return Arrays.copyOfRange(raw, raw.length - 20, raw.length);
+        } catch (Exception e) {
+            log.warn("ReceiptTracker: invalid contract address {}, contract logs not dispatched", base58);
+            return null;
+        }
+    }
+
+    static ReceiptSource tridentSource(NodePool nodePool) {
+        if (!nodePool.isEnabled()) {
+            return null;
+        }
+        return new ReceiptSource() {
+            @Override
+            public long latestBlockNum() throws Exception {
+                return nodePool.full(w -> w.getNowBlock().getBlockHeader().getRawData().getNumber());
+            }
+
+            @Override
+            public List<Response.TransactionInfo> blockReceipts(long blockNum) throws Exception {
+                return nodePool.full(w -> w.getTransactionInfoByBlockNum(blockNum).getTransactionInfoList());
+            }
+
+            @Override
+            public Response.TransactionInfo transactionInfo(String txId) throws Exception {
+                // Trident throws while the receipt is not found.
+                return nodePool.full(w -> w.getTransactionInfoById(txId));
+            }
+        };
+    }
+}
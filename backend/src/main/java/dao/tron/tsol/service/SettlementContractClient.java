@@ -7,7 +7,51 @@ public interface SettlementContractClient {
 
     BatchSubmission submitBatchWithTxId(String merkleRootHex, int txCount, long batchSalt);
 
+    /**
+     * Trigger and sign submitBatch without sending it.
+     */
+    PreparedSubmit prepareSubmitBatch(String merkleRootHex, int txCount, long batchSalt);
+
+    /**
+     * Broadcast a prepared submitBatch without waiting for it to be confirmed. A failure does not mean the node
+     * rejected it: it may have been accepted before the call failed.
+     */
+    void broadcastSubmitBatch(PreparedSubmit submit);
+
+    /**
+     * Wait for a broadcast submitBatch to succeed on-chain and resolve its batchId / unlock time.
+     */
+    BatchSubmission confirmSubmitBatch(String submitTxId, String merkleRootHex, int txCount);
+
+    /**
+     * Look a batch up by Merkle root (Settlement.getBatchIdByRoot) against the newest blocks. Settles a submit whose
+     * broadcast or confirmation failed: its intents may only be sealed again if the root is absent for good.
+     *
+     * @param expirationMillis expiration of the submit transaction ({@link PreparedSubmit#expirationMillis()})
+     * @return the batch if it is on-chain; empty only once the submit has expired and the blocks that could have
+     *         included it are solidified
+     * @throws RuntimeException if the contract could not be queried, or the submit is not on-chain but could still
+     *         be included (absence is then unknown)
+     */
+    java.util.Optional<BatchSubmission> findSubmittedBatch(String submitTxId, String merkleRootHex, int txCount,
+                                                           long expirationMillis);
+
     long getUnlockTime(long batchId);
 
+    /**
+     * Id of the latest submitted batch (Settlement.getCurrentBatchId).
+     */
+    long getCurrentBatchId();
+
+    /**
+     * Whether the transfer with this hash (bytes32 hex, as computed by Settlement._calculateTxHash) was executed.
+     */
+    boolean isExecutedTransfer(String transferHashHex);
+
+    /**
+     * Bulk isExecutedTransfer: the subset of the given hashes that are executed, as lower-case hex without 0x.
+     */
+    java.util.Set<String> findExecutedTransfers(java.util.Collection<String> transferHashesHex);
+
     void executeTransfer(dao.tron.tsol.model.StoredTransfer transfer);
 }
@@ -5,6 +5,7 @@ import dao.tron.tsol.event.BatchSubmittedEvent;
 import dao.tron.tsol.event.BatchSubmittedEventReader;
 import dao.tron.tsol.model.StoredTransfer;
 import dao.tron.tsol.model.TransferData;
+import dao.tron.tsol.util.PackedProof;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -20,6 +21,7 @@ import org.tron.trident.abi.datatypes.generated.Uint64;
 import org.tron.trident.abi.datatypes.generated.Uint8;
 import org.tron.trident.core.ApiWrapper;
 import org.tron.trident.core.NodeType;
+import org.tron.trident.core.key.KeyPair;
 import org.tron.trident.proto.Chain;
 import org.tron.trident.proto.Response;
 import org.tron.trident.utils.Numeric;
@@ -27,65 +29,126 @@ import org.tron.trident.utils.Numeric;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.time.Duration;
-import java.util.concurrent.ThreadLocalRandom;
 
 @Slf4j
 @Service
 public class SettlementContractClientTrident implements SettlementContractClient {
 
-    private final ApiWrapper wrapper;
+    private final NodePool nodePool;
     @Getter
     private final String aggregatorAddress;
     private final String contractAddress;
     private final BatchSubmittedEventReader eventReader;
     private final SettlementProperties.Polling polling;
+    private final NodeRateLimiter rateLimiter;
+    private final ReceiptTracker receiptTracker;
     /**
-     * Guard signing/broadcasting so concurrent execution doesn't trip over non-thread-safe internals.
-     * Receipt polling is intentionally done outside this lock.
+     * Builds trigger transactions locally (null = ask the node with triggerContract).
      */
-    private final Object broadcastLock = new Object();
+    private final LocalTransactionBuilder txBuilder;
+    /**
+     * Lock-free sign + broadcast (pooled signers, broadcasts through the node pool).
+     */
+    private final TransactionBroadcaster broadcaster;
+    /**
+     * Settlement view calls, read through (batch records and non-zero root lookups never change once mined).
+     */
+    private final ViewCache<Long, OnChainBatch> batchById;
+    private final ViewCache<String, Long> batchIdByRoot;
+    private final ViewCache<String, Boolean> executedTransfers;
+    private final ViewCache<String, Long> currentBatchId;
+    private final int reconcileParallelism;
 
     private static final long DEFAULT_FEE_LIMIT = 100_000_000L;
-
-    public SettlementContractClientTrident(SettlementProperties props, BatchSubmittedEventReader eventReader) {
+    /**
+     * How long after a block it is solidified: 2/3 of the 27 SRs (19 blocks at 3s) have built on it, plus slack.
+     */
+    private static final long SOLIDIFICATION_MS = 60_000L;
+
+    public SettlementContractClientTrident(SettlementProperties props,
+                                          BatchSubmittedEventReader eventReader,
+                                          NodeRateLimiter rateLimiter,
+                                          ReceiptTracker receiptTracker,
+                                          NodePool nodePool) {
+        this.nodePool = nodePool;
         this.contractAddress = props.getContractAddress();
         this.eventReader = eventReader;
+        this.rateLimiter = rateLimiter;
+        this.receiptTracker = receiptTracker;
         this.polling = props.getPolling();
 
+        this.reconcileParallelism = Math.max(1, props.getReconcileParallelism());
+        long ttlMs = props.getViewCacheTtlMs();
+        int maxEntries = props.getViewCacheMaxEntries();
+        this.batchById = new ViewCache<>(id -> queryBatchById(id, NodeType.SOLIDITY_NODE), b -> b.timestamp() != 0L,
+                ttlMs, maxEntries, System::currentTimeMillis);
+        this.batchIdByRoot = new ViewCache<>(root -> queryBatchIdByRoot(root, NodeType.SOLIDITY_NODE), id -> id != 0L,
+                ttlMs, maxEntries, System::currentTimeMillis);
+        this.executedTransfers = new ViewCache<>(this::queryExecutedTransfer, Boolean::booleanValue,
+                ttlMs, maxEntries, System::currentTimeMillis);
+        this.currentBatchId = new ViewCache<>(k -> queryCurrentBatchId(), id -> false,
+                ttlMs, 1, System::currentTimeMillis);
+
         String privateKey = props.getPrivateKey();
         if (privateKey == null || privateKey.isEmpty() || privateKey.equals("YOUR_PRIVATE_KEY_HERE")) {
             log.warn("No valid private key configured. Set UPDATER_PRIVATE_KEY to enable blockchain operations.");
-            this.wrapper = null;
             this.aggregatorAddress = "NOT_CONFIGURED";
+            this.txBuilder = null;
+            this.broadcaster = null;
             return;
         }
 
         if (privateKey.length() % 2 != 0) {
             log.error("Invalid private key format: odd-length hex string");
-            this.wrapper = null;
             this.aggregatorAddress = "INVALID_KEY_FORMAT";
+            this.txBuilder = null;
+            this.broadcaster = null;
             return;
         }
 
-        ApiWrapper tempWrapper;
         String tempAggregatorAddress;
         
         try {
-            tempWrapper = ApiWrapper.ofNile(privateKey);
-            tempAggregatorAddress = tempWrapper.keyPair.toBase58CheckAddress();
+            if (!nodePool.isEnabled()) {
+                throw new IllegalStateException("no node endpoints available");
+            }
+            tempAggregatorAddress = new KeyPair(privateKey).toBase58CheckAddress();
             log.info("SettlementContractClientTrident initialized: aggregator={}, contract={}", 
                     tempAggregatorAddress, contractAddress);
         } catch (Exception e) {
             log.error("Failed to initialize: {}", e.getMessage());
-            tempWrapper = null;
-            tempAggregatorAddress = "INIT_FAILED";
+            tempAggregatorAddress = null;
         }
         
-        this.wrapper = tempWrapper;
-        this.aggregatorAddress = tempAggregatorAddress;
+        this.aggregatorAddress = tempAggregatorAddress != null ? tempAggregatorAddress : "INIT_FAILED";
+
+        if (tempAggregatorAddress != null && props.isLocalTxBuild()) {
+            this.txBuilder = new LocalTransactionBuilder(() -> {
+                rateLimiter.acquire();
+                return nodePool.full(w -> w.getNowBlock().getBlockHeader());
+            }, props.getRefBlockRefreshMs());
+        } else {
+            this.txBuilder = null;
+        }
+
+        if (tempAggregatorAddress != null) {
+            this.broadcaster = new TransactionBroadcaster(privateKey,
+                    signed -> nodePool.broadcast(w -> w.broadcastTransaction(signed)));
+        } else {
+            this.broadcaster = null;
+        }
     }
 
     @Override
@@ -95,6 +158,13 @@ public class SettlementContractClientTrident implements SettlementContractClient
 
     @Override
     public BatchSubmission submitBatchWithTxId(String merkleRootHex, int txCount, long batchSalt) {
+        PreparedSubmit submit = prepareSubmitBatch(merkleRootHex, txCount, batchSalt);
+        broadcastSubmitBatch(submit);
+        return confirmSubmitBatch(submit.txId(), merkleRootHex, txCount);
+    }
+
+    @Override
+    public PreparedSubmit prepareSubmitBatch(String merkleRootHex, int txCount, long batchSalt) {
         try {
             String cleanRoot = cleanHex(merkleRootHex);
             byte[] rootBytes = Numeric.hexStringToByteArray(cleanRoot);
@@ -116,35 +186,33 @@ public class SettlementContractClientTrident implements SettlementContractClient
             );
 
             String encodedHex = FunctionEncoder.encode(submitBatchFn);
+            Chain.Transaction signed = broadcaster.sign(buildTrigger("submitBatch", encodedHex));
+            return new PreparedSubmit(Numeric.toHexStringNoPrefix(LocalTransactionBuilder.txId(signed)),
+                    signed.getRawData().getExpiration(), signed.toByteArray());
+        } catch (Exception e) {
+            log.error("submitBatch trigger failed", e);
+            throw new RuntimeException("submitBatch failed: " + e.getMessage(), e);
+        }
+    }
 
-            Response.TransactionExtention txnExt = wrapper.triggerContract(
-                    aggregatorAddress,
-                    contractAddress,
-                    encodedHex,
-                    0L,
-                    0L,
-                    null,
-                    DEFAULT_FEE_LIMIT
-            );
-
-            if (!txnExt.getResult().getResult()) {
-                String msg = txnExt.getResult().getMessage().toStringUtf8();
-                throw new RuntimeException("submitBatch trigger failed: " + msg);
-            }
-
-            String txId;
-            synchronized (broadcastLock) {
-                Chain.Transaction signed = wrapper.signTransaction(txnExt);
-                txId = wrapper.broadcastTransaction(signed);
-            }
+    @Override
+    public void broadcastSubmitBatch(PreparedSubmit submit) {
+        try {
+            Chain.Transaction signed = Chain.Transaction.parseFrom(submit.signedTx());
+            rateLimiter.acquire();
+            broadcaster.broadcast(signed);
+        } catch (Exception e) {
+            log.error("submitBatch broadcast failed: txId={}", submit.txId(), e);
+            throw new RuntimeException("submitBatch failed: " + e.getMessage() + ". txId=" + submit.txId(), e);
+        }
+    }
 
+    @Override
+    public BatchSubmission confirmSubmitBatch(String txId, String merkleRootHex, int txCount) {
+        try {
             // Make failures explicit (revert/OUT_OF_ENERGY/etc.) rather than timing out on event polling.
-            Response.TransactionInfo txInfo = waitForTxInfo(
-                    txId,
-                    Duration.ofSeconds(polling.getTxInfoTimeoutSeconds()),
-                    Duration.ofMillis(polling.getTxInfoPollInitialMs()),
-                    Duration.ofMillis(polling.getTxInfoPollMaxMs())
-            );
+            Response.TransactionInfo txInfo =
+                    receiptTracker.await(txId, Duration.ofSeconds(polling.getTxInfoTimeoutSeconds()));
             if (txInfo == null) {
                 throw new RuntimeException("submitBatch failed: no TransactionInfo after timeout. txId=" + txId);
             }
@@ -153,12 +221,8 @@ public class SettlementContractClientTrident implements SettlementContractClient
                 throw new RuntimeException("submitBatch failed on-chain: " + errorMsg + ". txId=" + txId);
             }
 
-            // Prefer event parsing (source of truth for batchId)
-            var evOpt = eventReader.readWithTimeout(
-                    txId,
-                    Duration.ofSeconds(polling.getBatchSubmittedTimeoutSeconds()),
-                    Duration.ofMillis(polling.getBatchSubmittedPollInitialMs())
-            );
+            // Prefer event parsing (source of truth for batchId); the receipt already carries the logs.
+            var evOpt = eventReader.findEventInTxInfo(txInfo);
             if (evOpt.isPresent()) {
                 BatchSubmittedEvent ev = evOpt.get();
                 if (!cleanHex(ev.merkleRootHex()).equalsIgnoreCase(cleanHex(merkleRootHex))) {
@@ -179,79 +243,105 @@ public class SettlementContractClientTrident implements SettlementContractClient
             OnChainBatch b = getBatchById(batchId);
             return new BatchSubmission(txId, batchId, merkleRootHex, txCount, b.timestamp(), b.unlockTime());
         } catch (Exception e) {
-            log.error("submitBatch failed", e);
+            log.error("submitBatch confirmation failed", e);
             throw new RuntimeException("submitBatch failed: " + e.getMessage(), e);
         }
     }
 
-    private Response.TransactionInfo waitForTxInfo(String txId, Duration timeout, Duration pollInitial, Duration pollMax) {
-        long deadline = System.currentTimeMillis() + timeout.toMillis();
-        long sleepMs = Math.max(100, pollInitial.toMillis());
-        long maxSleepMs = Math.max(sleepMs, pollMax.toMillis());
-        while (System.currentTimeMillis() < deadline) {
-            try {
-                Response.TransactionInfo info = wrapper.getTransactionInfoById(txId);
-                if (info != null) return info;
-            } catch (Exception ignored) {}
-            try {
-                long jitter = ThreadLocalRandom.current().nextLong(0, 150);
-                Thread.sleep(sleepMs + jitter);
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                return null;
-            }
-            sleepMs = Math.min(maxSleepMs, (long) Math.ceil(sleepMs * 1.5));
+    @Override
+    public Optional<BatchSubmission> findSubmittedBatch(String submitTxId, String merkleRootHex, int txCount,
+                                                        long expirationMillis) {
+        long headTime;
+        long batchId;
+        OnChainBatch b = null;
+        try {
+            var observed = eventReader.findObserved(merkleRootHex);
+            rateLimiter.acquire();
+            headTime = nodePool.full(w -> w.getNowBlock().getBlockHeader().getRawData().getTimestamp());
+            // No block past its expiration can include the submit, and those blocks are final once solidified.
+            // Before that only a full node sees the newest blocks (a solidity node lags ~19 of them).
+            NodeType nodeType = headTime > expirationMillis + SOLIDIFICATION_MS
+                    ? NodeType.SOLIDITY_NODE : NodeType.FULL_NODE;
+            // not through the view cache: a cached miss may predate the submit
+            batchId = observed.isPresent()
+                    ? observed.get().batchId()
+                    : queryBatchIdByRoot(cleanHex(merkleRootHex).toLowerCase(), nodeType);
+            if (batchId != 0L) b = queryBatchById(batchId, NodeType.FULL_NODE);
+        } catch (Exception e) {
+            log.error("getBatchIdByRoot failed for root {}", merkleRootHex, e);
+            throw new RuntimeException("getBatchIdByRoot failed: " + e.getMessage(), e);
+        }
+        if (b != null) {
+            return Optional.of(new BatchSubmission(submitTxId, batchId, merkleRootHex, txCount, b.timestamp(), b.unlockTime()));
         }
-        return null;
+        if (headTime <= expirationMillis + SOLIDIFICATION_MS) {
+            throw new IllegalStateException("submitBatch " + submitTxId + " is not on-chain yet but may still be "
+                    + "included (expires at " + expirationMillis + ", head block at " + headTime + ")");
+        }
+        return Optional.empty();
     }
 
     @Override
     public long getUnlockTime(long batchId) {
         try {
-            Function getBatchFn = new Function(
-                    "getBatchById",
-                    Collections.singletonList(new Uint64(batchId)),
-                    Arrays.asList(
-                            new TypeReference<Bytes32>() {},
-                            new TypeReference<Uint256>() {},
-                            new TypeReference<Uint256>() {},
-                            new TypeReference<Uint256>() {},
-                            new TypeReference<Uint64>() {}
-                    )
-            );
-
-            String encodedHex = FunctionEncoder.encode(getBatchFn);
+            return getBatchById(batchId).unlockTime();
+        } catch (Exception e) {
+            log.error("getUnlockTime failed", e);
+            throw new RuntimeException("getUnlockTime failed: " + e.getMessage(), e);
+        }
+    }
 
-            Response.TransactionExtention txn = wrapper.triggerConstantContract(
-                    aggregatorAddress,
-                    contractAddress,
-                    encodedHex,
-                    NodeType.SOLIDITY_NODE
-            );
+    @Override
+    public long getCurrentBatchId() {
+        try {
+            return currentBatchId.get("getCurrentBatchId");
+        } catch (Exception e) {
+            throw new RuntimeException("getCurrentBatchId failed: " + e.getMessage(), e);
+        }
+    }
 
-            if (!txn.getResult().getResult()) {
-                throw new RuntimeException("getBatchById failed: " + txn.getResult().getMessage().toStringUtf8());
-            }
+    @Override
+    public boolean isExecutedTransfer(String transferHashHex) {
+        try {
+            return executedTransfers.get(cleanHex(transferHashHex).toLowerCase());
+        } catch (Exception e) {
+            throw new RuntimeException("isExecutedTransfer failed: " + e.getMessage(), e);
+        }
+    }
 
-            if (txn.getConstantResultCount() == 0) {
-                throw new IllegalStateException("No constantResult for getBatchById");
+    /**
+     * Settlement has no batch getter for execution flags and no multicall contract is deployed next to it, so
+     * the lookups run as concurrent single constant calls (virtual threads, bounded by reconcile-parallelism,
+     * paced by the node rate limiter). Hashes already known executed are answered from the view cache.
+     */
+    @Override
+    public Set<String> findExecutedTransfers(Collection<String> transferHashesHex) {
+        List<String> keys = transferHashesHex.stream().map(h -> cleanHex(h).toLowerCase()).distinct().toList();
+        Set<String> executed = ConcurrentHashMap.newKeySet();
+        Semaphore permits = new Semaphore(reconcileParallelism);
+        List<Future<?>> lookups = new ArrayList<>(keys.size());
+        try (ExecutorService lookupThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String key : keys) {
+                lookups.add(lookupThreads.submit(() -> {
+                    permits.acquire();
+                    try {
+                        if (executedTransfers.get(key)) executed.add(key);
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                }));
             }
-
-            String resultHex = Numeric.toHexString(txn.getConstantResult(0).toByteArray());
-            @SuppressWarnings("rawtypes")
-            List<Type> decoded =
-                    FunctionReturnDecoder.decode(resultHex, getBatchFn.getOutputParameters());
-
-            if (decoded.size() != 5) {
-                throw new IllegalStateException("Unexpected getBatchById outputs=" + decoded.size());
+            for (Future<?> f : lookups) {
+                f.get();
             }
-
-            Uint256 unlockTime = (Uint256) decoded.get(3);
-            return unlockTime.getValue().longValue();
-        } catch (Exception e) {
-            log.error("getUnlockTime failed", e);
-            throw new RuntimeException("getUnlockTime failed: " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("findExecutedTransfers failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("findExecutedTransfers interrupted", e);
         }
+        return executed;
     }
 
     @Override
@@ -259,25 +349,8 @@ public class SettlementContractClientTrident implements SettlementContractClient
         try {
             TransferData d = transfer.getTxData();
 
-            List<Bytes32> txProofElems = new ArrayList<>();
-            for (String hex : transfer.getTxProof()) {
-                byte[] b = Numeric.hexStringToByteArray(cleanHex(hex));
-                if (b.length != 32) {
-                    throw new IllegalArgumentException("txProof element not 32 bytes: " + hex);
-                }
-                txProofElems.add(new Bytes32(b));
-            }
-            DynamicArray<Bytes32> txProofArray = new DynamicArray<>(Bytes32.class, txProofElems);
-
-            List<Bytes32> wlProofElems = new ArrayList<>();
-            for (String hex : transfer.getWhitelistProof()) {
-                byte[] b = Numeric.hexStringToByteArray(cleanHex(hex));
-                if (b.length != 32) {
-                    throw new IllegalArgumentException("whitelistProof element not 32 bytes: " + hex);
-                }
-                wlProofElems.add(new Bytes32(b));
-            }
-            DynamicArray<Bytes32> wlProofArray = new DynamicArray<>(Bytes32.class, wlProofElems);
+            DynamicArray<Bytes32> txProofArray = toBytes32Array(transfer.getTxProof());
+            DynamicArray<Bytes32> wlProofArray = toBytes32Array(transfer.getWhitelistProof());
 
             StaticStruct txDataTuple = new StaticStruct(
                     new Address(d.getFrom()),
@@ -297,34 +370,14 @@ public class SettlementContractClientTrident implements SettlementContractClient
             );
 
             String encodedHex = FunctionEncoder.encode(execFn);
+            Chain.Transaction unsigned = buildTrigger("executeTransfer", encodedHex);
 
-            Response.TransactionExtention txnExt = wrapper.triggerContract(
-                    aggregatorAddress,
-                    contractAddress,
-                    encodedHex,
-                    0L,
-                    0L,
-                    null,
-                    DEFAULT_FEE_LIMIT
-            );
-
-            if (!txnExt.getResult().getResult()) {
-                throw new RuntimeException("executeTransfer trigger failed: " + txnExt.getResult().getMessage().toStringUtf8());
-            }
-
-            String txId;
-            synchronized (broadcastLock) {
-                Chain.Transaction signed = wrapper.signTransaction(txnExt);
-                txId = wrapper.broadcastTransaction(signed);
-            }
+            rateLimiter.acquire();
+            String txId = broadcaster.signAndBroadcast(unsigned);
             transfer.setExecutionTxId(txId);
-            // Don't hard-sleep: poll receipt until available (faster on good days, clearer failure on reverts).
-            Response.TransactionInfo txInfo = waitForTxInfo(
-                    txId,
-                    Duration.ofSeconds(polling.getTxInfoTimeoutSeconds()),
-                    Duration.ofMillis(polling.getTxInfoPollInitialMs()),
-                    Duration.ofMillis(polling.getTxInfoPollMaxMs())
-            );
+            // Don't hard-sleep: wait on the shared tracker (faster on good days, clearer failure on reverts).
+            Response.TransactionInfo txInfo =
+                    receiptTracker.await(txId, Duration.ofSeconds(polling.getTxInfoTimeoutSeconds()));
             if (txInfo == null) {
                 throw new RuntimeException("Transaction failed: no TransactionInfo after timeout. txId=" + txId);
             }
@@ -341,6 +394,55 @@ public class SettlementContractClientTrident implements SettlementContractClient
         }
     }
 
+    /**
+     * Unsigned trigger transaction for the Settlement contract: built locally against the cached reference
+     * block, or by the node (triggerContract) when local building is disabled.
+     */
+    private Chain.Transaction buildTrigger(String fnName, String encodedHex) throws Exception {
+        if (txBuilder != null) {
+            return txBuilder.triggerSmartContract(
+                    ApiWrapper.parseAddress(aggregatorAddress),
+                    ApiWrapper.parseAddress(contractAddress),
+                    Numeric.hexStringToByteArray(encodedHex),
+                    DEFAULT_FEE_LIMIT
+            );
+        }
+
+        rateLimiter.acquire();
+        Response.TransactionExtention txnExt = nodePool.full(w -> w.triggerContract(
+                aggregatorAddress,
+                contractAddress,
+                encodedHex,
+                0L,
+                0L,
+                null,
+                DEFAULT_FEE_LIMIT
+        ));
+
+        if (!txnExt.getResult().getResult()) {
+            String msg = txnExt.getResult().getMessage().toStringUtf8();
+            throw new RuntimeException(fnName + " trigger failed: " + msg);
+        }
+        return txnExt.getTransaction();
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        if (txBuilder != null) txBuilder.shutdown();
+    }
+
+    /**
+     * Slice a packed proof (depth x 32 bytes) into bytes32[] without a hex round-trip.
+     */
+    private static DynamicArray<Bytes32> toBytes32Array(byte[] packedProof) {
+        int depth = PackedProof.depth(packedProof);
+        List<Bytes32> elems = new ArrayList<>(depth);
+        for (int i = 0; i < depth; i++) {
+            elems.add(new Bytes32(PackedProof.node(packedProof, i)));
+        }
+        return new DynamicArray<>(Bytes32.class, elems);
+    }
+
     private String cleanHex(String value) {
         if (value == null) return "";
         return (value.startsWith("0x") || value.startsWith("0X"))
@@ -348,21 +450,31 @@ public class SettlementContractClientTrident implements SettlementContractClient
                 : value;
     }
 
+    /**
+     * The mapping can only change when a block is added, so re-check once per new block (first against the
+     * BatchSubmitted events the block watcher has seen, then with a contract call).
+     */
     private long pollBatchIdByRoot(String merkleRootHex, Duration timeout) {
         long deadline = System.currentTimeMillis() + timeout.toMillis();
-        while (System.currentTimeMillis() < deadline) {
+        while (true) {
+            var observed = eventReader.findObserved(merkleRootHex);
+            if (observed.isPresent()) return observed.get().batchId();
             try {
                 long id = getBatchIdByRoot(merkleRootHex);
                 if (id != 0L) return id;
             } catch (Exception ignored) {}
-            try { Thread.sleep(1000); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); return 0L; }
+            long remainingMs = deadline - System.currentTimeMillis();
+            if (remainingMs <= 0 || !receiptTracker.awaitNextBlock(Duration.ofMillis(remainingMs))) return 0L;
         }
-        return 0L;
     }
 
     private record OnChainBatch(String merkleRootHex, long timestamp, int txCount, long unlockTime, long batchSalt) {}
 
-    private OnChainBatch getBatchById(long batchId) {
+    private OnChainBatch getBatchById(long batchId) throws Exception {
+        return batchById.get(batchId);
+    }
+
+    private OnChainBatch queryBatchById(long batchId, NodeType nodeType) throws Exception {
         Function getBatchFn = new Function(
                 "getBatchById",
                 Collections.singletonList(new Uint64(batchId)),
@@ -376,14 +488,13 @@ public class SettlementContractClientTrident implements SettlementContractClient
         );
 
         String encodedHex = FunctionEncoder.encode(getBatchFn);
-        Response.TransactionExtention txn = wrapper.triggerConstantContract(
-                aggregatorAddress,
-                contractAddress,
-                encodedHex,
-                NodeType.SOLIDITY_NODE
-        );
-        if (!txn.getResult().getResult() || txn.getConstantResultCount() == 0) {
-            throw new RuntimeException("getBatchById query failed");
+        rateLimiter.acquire();
+        Response.TransactionExtention txn = constantCall(encodedHex, nodeType);
+        if (!txn.getResult().getResult()) {
+            throw new RuntimeException("getBatchById failed: " + txn.getResult().getMessage().toStringUtf8());
+        }
+        if (txn.getConstantResultCount() == 0) {
+            throw new IllegalStateException("No constantResult for getBatchById");
         }
         String resultHex = Numeric.toHexString(txn.getConstantResult(0).toByteArray());
         @SuppressWarnings("rawtypes")
@@ -406,8 +517,20 @@ public class SettlementContractClientTrident implements SettlementContractClient
         );
     }
 
-    private long getBatchIdByRoot(String merkleRootHex) {
-        String cleanRoot = cleanHex(merkleRootHex);
+    private long getBatchIdByRoot(String merkleRootHex) throws Exception {
+        return batchIdByRoot.get(cleanHex(merkleRootHex).toLowerCase());
+    }
+
+    /**
+     * Settlement view call against confirmed state (solidity node) or the newest blocks (full node).
+     */
+    private Response.TransactionExtention constantCall(String encodedHex, NodeType nodeType) throws Exception {
+        NodePool.NodeCall<Response.TransactionExtention> call =
+                w -> w.triggerConstantContract(aggregatorAddress, contractAddress, encodedHex, nodeType);
+        return nodeType == NodeType.FULL_NODE ? nodePool.full(call) : nodePool.read(call);
+    }
+
+    private long queryBatchIdByRoot(String cleanRoot, NodeType nodeType) throws Exception {
         byte[] rootBytes = Numeric.hexStringToByteArray(cleanRoot);
         if (rootBytes.length != 32) throw new IllegalArgumentException("Merkle root must be 32 bytes");
 
@@ -418,21 +541,76 @@ public class SettlementContractClientTrident implements SettlementContractClient
         );
 
         String encodedHex = FunctionEncoder.encode(fn);
-        Response.TransactionExtention txn = wrapper.triggerConstantContract(
+        rateLimiter.acquire();
+        Response.TransactionExtention txn = constantCall(encodedHex, nodeType);
+        // a failed call is not "no batch with this root"
+        if (!txn.getResult().getResult()) {
+            throw new RuntimeException("getBatchIdByRoot failed: " + txn.getResult().getMessage().toStringUtf8());
+        }
+        if (txn.getConstantResultCount() == 0) {
+            throw new IllegalStateException("No constantResult for getBatchIdByRoot");
+        }
+        String resultHex = Numeric.toHexString(txn.getConstantResult(0).toByteArray());
+        @SuppressWarnings("rawtypes")
+        List<Type> decoded =
+                FunctionReturnDecoder.decode(resultHex, fn.getOutputParameters());
+        if (decoded.isEmpty()) return 0L;
+        Uint64 v = (Uint64) decoded.getFirst();
+        return v.getValue().longValue();
+    }
+
+    private boolean queryExecutedTransfer(String transferHash) throws Exception {
+        byte[] hashBytes = Numeric.hexStringToByteArray(transferHash);
+        if (hashBytes.length != 32) throw new IllegalArgumentException("Transfer hash must be 32 bytes");
+
+        Function fn = new Function(
+                "isExecutedTransfer",
+                Collections.singletonList(new Bytes32(hashBytes)),
+                Collections.singletonList(new TypeReference<Bool>() {})
+        );
+
+        String encodedHex = FunctionEncoder.encode(fn);
+        rateLimiter.acquire();
+        Response.TransactionExtention txn = nodePool.read(w -> w.triggerConstantContract(
                 aggregatorAddress,
                 contractAddress,
                 encodedHex,
                 NodeType.SOLIDITY_NODE
+        ));
+        if (!txn.getResult().getResult() || txn.getConstantResultCount() == 0) {
+            throw new RuntimeException("isExecutedTransfer query failed");
+        }
+        String resultHex = Numeric.toHexString(txn.getConstantResult(0).toByteArray());
+        @SuppressWarnings("rawtypes")
+        List<Type> decoded =
+                FunctionReturnDecoder.decode(resultHex, fn.getOutputParameters());
+        if (decoded.isEmpty()) throw new IllegalStateException("Unexpected isExecutedTransfer outputs=0");
+        return ((Bool) decoded.getFirst()).getValue();
+    }
+
+    private long queryCurrentBatchId() throws Exception {
+        Function fn = new Function(
+                "getCurrentBatchId",
+                Collections.emptyList(),
+                Collections.singletonList(new TypeReference<Uint64>() {})
         );
+
+        String encodedHex = FunctionEncoder.encode(fn);
+        rateLimiter.acquire();
+        Response.TransactionExtention txn = nodePool.read(w -> w.triggerConstantContract(
+                aggregatorAddress,
+                contractAddress,
+                encodedHex,
+                NodeType.SOLIDITY_NODE
+        ));
         if (!txn.getResult().getResult() || txn.getConstantResultCount() == 0) {
-            return 0L;
+            throw new RuntimeException("getCurrentBatchId query failed");
         }
         String resultHex = Numeric.toHexString(txn.getConstantResult(0).toByteArray());
         @SuppressWarnings("rawtypes")
         List<Type> decoded =
                 FunctionReturnDecoder.decode(resultHex, fn.getOutputParameters());
-        if (decoded.isEmpty()) return 0L;
-        Uint64 v = (Uint64) decoded.getFirst();
-        return v.getValue().longValue();
+        if (decoded.isEmpty()) throw new IllegalStateException("Unexpected getCurrentBatchId outputs=0");
+        return ((Uint64) decoded.getFirst()).getValue().longValue();
     }
 }
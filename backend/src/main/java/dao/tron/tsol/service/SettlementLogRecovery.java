@@ -0,0 +1,366 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.config.RecoveryProperties;
+import dao.tron.tsol.config.SettlementProperties;
+import dao.tron.tsol.event.BatchSubmittedEvent;
+import dao.tron.tsol.event.BatchSubmittedEventReader;
+import dao.tron.tsol.event.TransferExecutedEvent;
+import dao.tron.tsol.model.BatchStatus;
+import dao.tron.tsol.model.LocalBatch;
+import dao.tron.tsol.model.StoredTransfer;
+import dao.tron.tsol.repository.BatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.tron.trident.core.ApiWrapper;
+import org.tron.trident.proto.Response;
+import org.tron.trident.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays Settlement logs into the persisted batches, starting from a checkpointed block height.
+ *
+ * A crash can lose what happened between a transaction landing and the local save: a batch whose receipt wait
+ * timed out, transfers executed while the process was down (by us or by anyone else calling executeTransfer).
+ * On startup every solidified block after the checkpoint is scanned once (one receipt fetch per block, logs
+ * decoded as they arrive), BatchSubmitted and TransferExecuted events are applied to the matching local batches,
+ * and the checkpoint moves forward. The scan then keeps following the chain, so the next restart only covers
+ * the blocks produced since the last checkpoint instead of the full history.
+ *
+ * Changes go through {@link BatchService#update} under {@link BatchService#withBatchLock}, like the execution
+ * path's: a batch being executed is not touched concurrently, and save listeners (the unlock timer) see them.
+ */
+@Slf4j
+@Service
+public class SettlementLogRecovery {
+
+    private final ReceiptTracker.ReceiptSource source;
+    private final NodeRateLimiter rateLimiter;
+    private final BatchRepository repository;
+    private final BatchService batchService;
+    private final RecoveryProperties props;
+    // 20-byte contract address as it appears in log.address
+    private final byte[] watchedContract;
+    private final Path checkpointFile;
+    private ScheduledExecutorService follower;
+
+    // last block whose logs were applied; -1 until the first scan (follower thread only writes it)
+    private volatile long checkpoint = -1L;
+    private boolean caughtUp;
+    // (from, nonce) -> unexecuted local transfer, built once per scan when the first TransferExecuted shows up
+    private Map<String, PendingTransfer> transferIndex;
+
+    private final AtomicLong blocksScanned = new AtomicLong();
+    private final AtomicLong batchesReconciled = new AtomicLong();
+    private final AtomicLong transfersMarked = new AtomicLong();
+    private final AtomicLong unknownBatches = new AtomicLong();
+
+    @Autowired
+    public SettlementLogRecovery(RecoveryProperties props,
+                                 SettlementProperties settlementProps,
+                                 NodeRateLimiter rateLimiter,
+                                 NodePool nodePool,
+                                 BatchRepository repository,
+                                 BatchService batchService) {
+        this(ReceiptTracker.tridentSource(nodePool), rateLimiter, repository, batchService, props,
+                ReceiptTracker.logAddress(settlementProps.getContractAddress()));
+    }
+
+    SettlementLogRecovery(ReceiptTracker.ReceiptSource source,
+                          NodeRateLimiter rateLimiter,
+                          BatchRepository repository,
+                          BatchService batchService,
+                          RecoveryProperties props,
+                          byte[] watchedContract) {
+        this.source = source;
+        this.rateLimiter = rateLimiter;
+        this.repository = repository;
+        this.batchService = batchService;
+        this.props = props;
+        this.watchedContract = watchedContract;
+        this.checkpointFile = Path.of(props.getCheckpointFile());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!props.isEnabled() || source == null || watchedContract == null) {
+            log.info("Settlement log recovery disabled (recovery.enabled={}, node/contract configured={})",
+                    props.isEnabled(), source != null && watchedContract != null);
+            return;
+        }
+        follower = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "settlement-log-recovery");
+            t.setDaemon(true);
+            return t;
+        });
+        follower.scheduleWithFixedDelay(this::tick, 0, Math.max(10L, props.getPollIntervalMs()), TimeUnit.MILLISECONDS);
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void shutdown() {
+        if (follower != null) follower.shutdownNow();
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public long getBlocksScanned() {
+        return blocksScanned.get();
+    }
+
+    public long getBatchesReconciled() {
+        return batchesReconciled.get();
+    }
+
+    public long getTransfersMarked() {
+        return transfersMarked.get();
+    }
+
+    public long getUnknownBatches() {
+        return unknownBatches.get();
+    }
+
+    private void tick() {
+        try {
+            catchUp();
+        } catch (Exception e) {
+            log.warn("Settlement log scan paused at block {}: {}", checkpoint, e.getMessage());
+        }
+    }
+
+    /**
+     * Apply the logs of every solidified block after the checkpoint; returns the number of blocks scanned.
+     * A failed block fetch stops the scan there (progress so far is checkpointed) and the next call resumes.
+     */
+    int catchUp() throws Exception {
+        rateLimiter.acquire();
+        long target = source.latestBlockNum() - props.getConfirmations();
+        if (checkpoint < 0) {
+            checkpoint = initialCheckpoint(target);
+        }
+
+        long startedAt = System.currentTimeMillis();
+        long from = checkpoint + 1;
+        long persisted = checkpoint;
+        int scanned = 0;
+        transferIndex = null;
+        try {
+            while (checkpoint < target) {
+                long blockNum = checkpoint + 1;
+                rateLimiter.acquire();
+                applyBlock(blockNum, source.blockReceipts(blockNum));
+                checkpoint = blockNum;
+                scanned++;
+                blocksScanned.incrementAndGet();
+                if (checkpoint - persisted >= props.getCheckpointEveryBlocks()) {
+                    writeCheckpoint(checkpoint);
+                    persisted = checkpoint;
+                }
+            }
+        } finally {
+            if (checkpoint != persisted) {
+                writeCheckpoint(checkpoint);
+            }
+            transferIndex = null;
+        }
+
+        if (!caughtUp) {
+            caughtUp = true;
+            log.info("Settlement log recovery caught up: blocks {}..{} ({}) in {}ms, {} batches reconciled, "
+                            + "{} transfers marked executed, {} on-chain batches without a local batch",
+                    from, checkpoint, scanned, System.currentTimeMillis() - startedAt,
+                    batchesReconciled.get(), transfersMarked.get(), unknownBatches.get());
+        }
+        return scanned;
+    }
+
+    private long initialCheckpoint(long target) {
+        Optional<Long> stored = readCheckpoint();
+        if (stored.isPresent()) {
+            log.info("Resuming Settlement log scan after checkpoint block {} ({} blocks behind)",
+                    stored.get(), Math.max(0L, target - stored.get()));
+            return stored.get();
+        }
+        long start = props.getStartBlock() > 0 ? props.getStartBlock() - 1 : target;
+        log.info("No Settlement log checkpoint at {}, starting after block {}", checkpointFile, start);
+        // Persist right away so a restart before the first scanned block still covers the downtime.
+        writeCheckpoint(start);
+        return start;
+    }
+
+    private void applyBlock(long blockNum, List<Response.TransactionInfo> receipts) {
+        for (Response.TransactionInfo info : receipts) {
+            if (info.getLogCount() == 0) continue;
+            String txId = Numeric.toHexStringNoPrefix(info.getId().toByteArray());
+            for (Response.TransactionInfo.Log l : info.getLogList()) {
+                if (!Arrays.equals(watchedContract, l.getAddress().toByteArray())) continue;
+                Optional<BatchSubmittedEvent> submitted = BatchSubmittedEventReader.decodeLog(l, txId);
+                if (submitted.isPresent()) {
+                    applyBatchSubmitted(blockNum, submitted.get());
+                    continue;
+                }
+                TransferExecutedEvent.decode(l).ifPresent(ev -> applyTransferExecuted(blockNum, txId, ev));
+            }
+        }
+    }
+
+    private void applyBatchSubmitted(long blockNum, BatchSubmittedEvent ev) {
+        Optional<LocalBatch> found = repository.findByMerkleRoot(ev.merkleRootHex().toLowerCase(Locale.ROOT));
+        if (found.isEmpty()) {
+            // Every submit is saved (CREATED) before it is broadcast, so this one is not ours: another submitter, or a
+            // repository that was reset.
+            unknownBatches.incrementAndGet();
+            log.warn("Block {}: on-chain batch {} (root={}, txCount={}) has no local batch",
+                    blockNum, ev.batchId(), ev.merkleRootHex(), ev.txCount());
+            return;
+        }
+
+        LocalBatch batch = found.get();
+        if (batch.getStatus() == BatchStatus.CREATED) {
+            // Its submit landed but was not settled yet. The batch pipeline owns CREATED batches (it acknowledges
+            // their intents when indexing them): have it look the submit up now instead of adopting it here.
+            log.info("Block {}: BatchSubmitted for unsettled batch {} (root={}), resolving it",
+                    blockNum, batch.getLocalId(), ev.merkleRootHex());
+            batchService.resolvePendingBatches();
+            return;
+        }
+        batchService.withBatchLock(() -> {
+            if (reconcile(batch, blockNum, ev)) {
+                batchService.update(batch);
+                batchesReconciled.incrementAndGet();
+            }
+        });
+    }
+
+    private boolean reconcile(LocalBatch batch, long blockNum, BatchSubmittedEvent ev) {
+        boolean changed = false;
+        if (batch.getOnChainBatchId() != ev.batchId()) {
+            log.warn("Batch {}: BatchSubmitted in block {} sets on-chain batchId {} (was {})",
+                    batch.getLocalId(), blockNum, ev.batchId(), batch.getOnChainBatchId());
+            batch.setOnChainBatchId(ev.batchId());
+            if (batch.getTransfers() != null) {
+                for (StoredTransfer st : batch.getTransfers()) {
+                    st.getTxData().setBatchId(ev.batchId());
+                }
+            }
+            if (batch.getStatus() == BatchStatus.FAILED) {
+                // Failed because the batch was not found under the old id: let the scheduler pick it up again.
+                batch.setStatus(BatchStatus.SUBMITTED_ONCHAIN);
+                batch.setUnlockTime(0L);
+            }
+            changed = true;
+        }
+        if (batch.getSubmittedAt() == 0L && ev.timestamp() != 0L) {
+            batch.setSubmittedAt(ev.timestamp());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private void applyTransferExecuted(long blockNum, String txId, TransferExecutedEvent ev) {
+        if (transferIndex == null) {
+            transferIndex = indexUnexecutedTransfers();
+        }
+        PendingTransfer p = transferIndex.remove(transferKey(ev.fromHex(), ev.nonce()));
+        if (p == null) {
+            return; // already marked locally, or not one of ours
+        }
+        StoredTransfer st = p.transfer();
+        if (!ev.toHex().equals(addressHex(st.getTxData().getTo()))
+                || !ev.amount().equals(new BigInteger(st.getTxData().getAmount()))) {
+            log.warn("Block {}: TransferExecuted nonce={} from={} does not match local transfer in batch {}, ignored",
+                    blockNum, ev.nonce(), ev.fromHex(), p.batch().getOnChainBatchId());
+            return;
+        }
+        batchService.withBatchLock(() -> {
+            // the execution path may have marked it meanwhile
+            if (st.isExecuted()) {
+                return;
+            }
+            st.setExecuted(true);
+            st.setExecutionTxId(txId);
+            batchService.update(p.batch());
+            transfersMarked.incrementAndGet();
+            log.info("Batch {}: transfer nonce={} executed on-chain in block {} (tx {}), marked",
+                    p.batch().getOnChainBatchId(), ev.nonce(), blockNum, txId);
+        });
+    }
+
+    private Map<String, PendingTransfer> indexUnexecutedTransfers() {
+        Map<String, PendingTransfer> index = new HashMap<>();
+        for (LocalBatch batch : repository.findUnfinished()) {
+            if (batch.getTransfers() == null) continue;
+            for (StoredTransfer st : batch.getTransfers()) {
+                if (st.isExecuted()) continue;
+                String from = addressHex(st.getTxData().getFrom());
+                if (from != null) {
+                    index.put(transferKey(from, st.getTxData().getNonce()), new PendingTransfer(batch, st));
+                }
+            }
+        }
+        return index;
+    }
+
+    private Optional<Long> readCheckpoint() {
+        if (!Files.exists(checkpointFile)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.parseLong(Files.readString(checkpointFile, StandardCharsets.US_ASCII).trim()));
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Unreadable Settlement log checkpoint {}: {}", checkpointFile, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void writeCheckpoint(long blockNum) {
+        try {
+            Path dir = checkpointFile.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "checkpoint", ".tmp");
+            Files.writeString(tmp, Long.toString(blockNum), StandardCharsets.US_ASCII);
+            Files.move(tmp, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Not fatal: the next restart scans a few more blocks.
+            log.warn("Failed to write Settlement log checkpoint {}: {}", checkpointFile, e.getMessage());
+        }
+    }
+
+    private static String transferKey(String fromHex, long nonce) {
+        return fromHex + ":" + nonce;
+    }
+
+    /**
+     * Base58 TRON address as the 20-byte hex used in event topics; null if it does not parse.
+     */
+    private static String addressHex(String base58) {
+        try {
+            byte[] raw = ApiWrapper.parseAddress(base58).toByteArray();
+            return HexFormat.of().formatHex(raw, raw.length - 20, raw.length);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private record PendingTransfer(LocalBatch batch, StoredTransfer transfer) {}
+}
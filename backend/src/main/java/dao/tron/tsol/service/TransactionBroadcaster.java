@@ -0,0 +1,57 @@
+package dao.tron.tsol.service;
+
+import com.google.protobuf.ByteString;
+import org.tron.trident.core.key.KeyPair;
+import org.tron.trident.proto.Chain;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Signs and broadcasts transactions from many threads at once, replacing the global broadcast lock.
+ *
+ * Signing borrows a KeyPair from a pool (one per concurrently signing thread, created on demand and reused),
+ * so no signer instance is ever shared between threads. Broadcasts go to a single channel, in practice the
+ * {@link NodePool}, which already spreads them over its healthy nodes.
+ */
+final class TransactionBroadcaster {
+
+    /**
+     * Something able to broadcast a signed transaction; returns the txId.
+     */
+    interface Channel {
+        String broadcast(Chain.Transaction signed) throws Exception;
+    }
+
+    private final String privateKey;
+    private final Channel channel;
+    private final ConcurrentLinkedQueue<KeyPair> idleSigners = new ConcurrentLinkedQueue<>();
+
+    TransactionBroadcaster(String privateKey, Channel channel) {
+        this.privateKey = privateKey;
+        this.channel = channel;
+    }
+
+    /**
+     * Sign (locally) and broadcast; returns the txId reported by the node.
+     */
+    String signAndBroadcast(Chain.Transaction unsigned) throws Exception {
+        return broadcast(sign(unsigned));
+    }
+
+    Chain.Transaction sign(Chain.Transaction unsigned) {
+        KeyPair signer = idleSigners.poll();
+        if (signer == null) {
+            signer = new KeyPair(privateKey);
+        }
+        try {
+            byte[] signature = KeyPair.signTransaction(LocalTransactionBuilder.txId(unsigned), signer);
+            return unsigned.toBuilder().addSignature(ByteString.copyFrom(signature)).build();
+        } finally {
+            idleSigners.offer(signer);
+        }
+    }
+
+    String broadcast(Chain.Transaction signed) throws Exception {
+        return channel.broadcast(signed);
+    }
+}
@@ -1,40 +1,372 @@
 package dao.tron.tsol.service;
 
+import dao.tron.tsol.config.IntakeProperties;
+import dao.tron.tsol.model.TransferData;
 import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.wal.IntentWal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Intake queue for accepted transfer intents.
+ *
+ * Producers (HTTP request threads) and the batching drain never share a lock: intents go into a lock-free
+ * FIFO queue, the pending count is an atomic, and the oldest enqueue time is read from the queue head.
+ * Draining is single-consumer (BatchService serializes batch creation) and costs O(n) in the number of
+ * drained intents only - nothing is shifted. Intents of a batch that failed before reaching the chain are put
+ * back at the head ({@link #requeue}).
+ *
+ * Every intent is group-committed to the {@link IntentWal} before {@link #addIntent} returns, and intents
+ * that were not acknowledged before a restart are re-queued on startup, except those found in a stored batch
+ * ({@link #rememberBatched}, {@link #withdraw}).
+ *
+ * A retried intent (same sender and nonce as one accepted recently) is rejected before it reaches the WAL, so it
+ * is never batched twice and never costs an executeTransfer that the contract would revert.
+ */
+@Slf4j
 @Service
 public class TransferIntentService {
 
-    private final List<TransferIntentRequest> pending = new ArrayList<>();
+    // One pending intent in counts (pending intents in the high 32 bits, reserved queue room in the low 32).
+    private static final long PENDING_ONE = 1L << 32;
 
-    public synchronized void addIntent(TransferIntentRequest req) {
-        pending.add(req);
+    /**
+     * Intent plus the server-side time it was accepted (used for max-delay batching) and its WAL sequence.
+     */
+    private record PendingIntent(TransferIntentRequest request, long enqueuedAtMillis, long walSeq) {}
+
+    /**
+     * Outcome of {@link #addIntents(List, IntakeAdmission)}. {@code queueFull} is set if nothing was accepted
+     * because the intents did not fit in the queue; otherwise {@code added[i]} tells whether reqs.get(i) was
+     * accepted and {@code rateLimited[i]} is set if it was turned away by its sender's rate (a duplicate otherwise).
+     */
+    public record AddResult(IntakeAdmission.Rejection queueFull, boolean[] added,
+                            IntakeAdmission.Rejection[] rateLimited) {}
+
+    private final ConcurrentLinkedDeque<PendingIntent> pending = new ConcurrentLinkedDeque<>();
+    // Pending intents (high 32 bits) plus queue room reserved by intents between admission and enqueue (low 32
+    // bits, WAL commit in progress). One atomic, so reserved intents turn into pending ones in one step: admission
+    // sees their sum and the batcher the pending part, neither ever counting an intent twice.
+    private final AtomicLong counts = new AtomicLong();
+    private final IntentWal wal;
+    private final IntentDedupIndex dedup;
+    private final AtomicLong duplicatesRejected = new AtomicLong();
+    // intents handed to the batcher, for the admission controller's drain estimate
+    private final RateWindow drainRate = new RateWindow(60);
+
+    @Autowired
+    public TransferIntentService(IntentWal wal, IntakeProperties intakeProps) {
+        this.wal = wal;
+        this.dedup = new IntentDedupIndex(intakeProps.getDedupCapacity());
+        List<IntentWal.Entry> recovered = wal.takeRecovered();
+        List<Long> repeats = new ArrayList<>();
+        for (IntentWal.Entry e : recovered) {
+            // a retry logged after its original (e.g. the first attempt's 503 raced its fsync)
+            if (!dedup.add(e.request())) {
+                repeats.add(e.seq());
+                continue;
+            }
+            enqueue(e.request(), e.seq());
+        }
+        if (!repeats.isEmpty()) {
+            wal.acknowledge(repeats.stream().mapToLong(Long::longValue).toArray());
+        }
+        if (!recovered.isEmpty()) {
+            log.info("Re-queued {} unacknowledged intents from WAL ({} repeated (from, nonce) dropped)",
+                    recovered.size() - repeats.size(), repeats.size());
+        }
     }
 
-    public synchronized boolean isEmpty() {
+    public TransferIntentService(IntentWal wal) {
+        this(wal, new IntakeProperties());
+    }
+
+    /**
+     * Accept an intent. Returns once the intent is durable in the WAL (when enabled); returns false without
+     * accepting it if its (from, nonce) was already accepted.
+     *
+     * @throws dao.tron.tsol.wal.WalUnavailableException if the intent could not be made durable; it is not
+     *                                                   accepted and may be retried
+     */
+    public boolean addIntent(TransferIntentRequest req) {
+        if (!dedup.add(req)) {
+            duplicatesRejected.incrementAndGet();
+            return false;
+        }
+        long seq = 0;
+        try {
+            seq = wal.append(req);
+            wal.awaitDurable(seq);
+        } catch (RuntimeException e) {
+            dedup.remove(req);
+            // not accepted: don't replay it should the record reach the disk after all
+            if (seq > 0) wal.acknowledge(new long[]{seq});
+            throw e;
+        }
+        enqueue(req, seq);
+        return true;
+    }
+
+    /**
+     * Accept several intents as one operation: one WAL append pass and one group-commit wait for all of them.
+     * Returns once every intent is durable (when the WAL is enabled). Duplicates, including repeats within
+     * {@code reqs}, are skipped; the result flags which intents were accepted.
+     */
+    public boolean[] addIntents(List<TransferIntentRequest> reqs) {
+        return addIntents(reqs, null).added();
+    }
+
+    /**
+     * {@link #addIntents(List)} under admission control. Duplicates are sorted out first; queue room for the
+     * remaining intents is then reserved in one step against the admission's watermarks (all or nothing, so
+     * concurrent requests cannot together overshoot them), and only those intents take a token from their
+     * sender's bucket. Tokens of intents that are not made durable are given back.
+     *
+     * @param admission null to accept without queue or sender limits
+     */
+    public AddResult addIntents(List<TransferIntentRequest> reqs, IntakeAdmission admission) {
+        boolean[] added = new boolean[reqs.size()];
+        IntakeAdmission.Rejection[] rateLimited = new IntakeAdmission.Rejection[reqs.size()];
+        int fresh = 0;
+        for (int i = 0; i < added.length; i++) {
+            added[i] = dedup.add(reqs.get(i));
+            if (added[i]) fresh++;
+        }
+        duplicatesRejected.addAndGet(reqs.size() - fresh);
+        if (fresh == 0) return new AddResult(null, added, rateLimited);
+
+        int held = 0;
+        int enqueued = 0;
+        if (admission != null) {
+            IntakeAdmission.Rejection full = reserve(fresh, admission);
+            if (full != null) {
+                for (int i = 0; i < added.length; i++) {
+                    if (added[i]) dedup.remove(reqs.get(i));
+                }
+                return new AddResult(full, new boolean[reqs.size()], rateLimited);
+            }
+            held = fresh;
+        }
+        try {
+            List<TransferIntentRequest> accepted = new ArrayList<>(fresh);
+            for (int i = 0; i < added.length; i++) {
+                if (!added[i]) continue;
+                if (admission != null && (rateLimited[i] = admission.checkSender(reqs.get(i))) != null) {
+                    dedup.remove(reqs.get(i));
+                    added[i] = false;
+                    continue;
+                }
+                accepted.add(reqs.get(i));
+            }
+            if (accepted.isEmpty()) return new AddResult(null, added, rateLimited);
+
+            long[] seqs = null;
+            try {
+                seqs = wal.appendAll(accepted);
+                wal.awaitDurable(seqs[seqs.length - 1]);
+            } catch (RuntimeException e) {
+                accepted.forEach(dedup::remove);
+                if (admission != null) accepted.forEach(admission::refundSender);
+                if (seqs != null) wal.acknowledge(seqs);
+                throw e;
+            }
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < seqs.length; i++) {
+                pending.offer(new PendingIntent(accepted.get(i), now, seqs[i]));
+            }
+            enqueued = seqs.length;
+            return new AddResult(null, added, rateLimited);
+        } finally {
+            // the reservation becomes pending intents, what was not used is given back
+            counts.addAndGet(enqueued * PENDING_ONE - held);
+        }
+    }
+
+    private IntakeAdmission.Rejection reserve(int count, IntakeAdmission admission) {
+        while (true) {
+            long current = counts.get();
+            IntakeAdmission.Rejection full = admission.checkQueue(queueDepth(current), count);
+            if (full != null) return full;
+            if (counts.compareAndSet(current, current + count)) return null;
+        }
+    }
+
+    /**
+     * Record the transfers of stored, unfinished batches on startup, so retries of them are still rejected.
+     *
+     * A recovered intent among them was sealed into a batch that was saved, but the process stopped before the
+     * WAL ACK for it was durable. Re-queuing it would seal it again under a new batch salt, i.e. a new txHash the
+     * contract has not executed yet; it is dropped and acknowledged instead.
+     *
+     * @return number of recovered intents dropped
+     */
+    public int rememberBatched(List<TransferData> transfers) {
+        Set<IntentDedupIndex.Key> batched = new HashSet<>();
+        for (TransferData d : transfers) {
+            IntentDedupIndex.Key key = IntentDedupIndex.keyOf(d.getFrom(), d.getNonce());
+            if (key != null && batched.add(key)) dedup.add(key);
+        }
+        List<Long> dropped = new ArrayList<>();
+        pending.removeIf(p -> {
+            if (!batched.contains(IntentDedupIndex.keyOf(p.request()))) return false;
+            dropped.add(p.walSeq());
+            return true;
+        });
+        if (dropped.isEmpty()) return 0;
+        counts.addAndGet(-dropped.size() * PENDING_ONE);
+        wal.awaitDurable(wal.acknowledge(dropped.stream().mapToLong(Long::longValue).toArray()));
+        log.warn("Dropped {} recovered intents already sealed into stored batches (their WAL ACK was not durable)",
+                dropped.size());
+        return dropped.size();
+    }
+
+    /**
+     * Take the recovered intents with these WAL seqs out of the queue on startup, in the given order, without
+     * acknowledging them: they were sealed into a batch whose submit may be on-chain, and are re-queued or
+     * acknowledged once that is known. Seqs not pending (e.g. 0 with the WAL disabled) are skipped.
+     */
+    public DrainedIntents withdraw(long[] walSeqs) {
+        if (walSeqs == null || walSeqs.length == 0) return DrainedIntents.EMPTY;
+        Set<Long> wanted = new HashSet<>();
+        for (long seq : walSeqs) {
+            if (seq != 0L) wanted.add(seq);
+        }
+        Map<Long, PendingIntent> taken = new HashMap<>();
+        pending.removeIf(p -> wanted.contains(p.walSeq()) && taken.putIfAbsent(p.walSeq(), p) == null);
+        counts.addAndGet(-taken.size() * PENDING_ONE);
+
+        List<TransferIntentRequest> intents = new ArrayList<>(taken.size());
+        long[] seqs = new long[taken.size()];
+        long[] enqueuedAt = new long[taken.size()];
+        int i = 0;
+        for (long seq : walSeqs) {
+            PendingIntent p = taken.remove(seq);
+            if (p == null) continue;
+            intents.add(p.request());
+            seqs[i] = p.walSeq();
+            enqueuedAt[i] = p.enqueuedAtMillis();
+            i++;
+        }
+        return new DrainedIntents(intents, seqs, enqueuedAt);
+    }
+
+    public long getDuplicatesRejected() {
+        return duplicatesRejected.get();
+    }
+
+    private void enqueue(TransferIntentRequest req, long walSeq) {
+        pending.offer(new PendingIntent(req, System.currentTimeMillis(), walSeq));
+        counts.addAndGet(PENDING_ONE);
+    }
+
+    public boolean isEmpty() {
         return pending.isEmpty();
     }
 
-    public synchronized int getPendingCount() {
-        return pending.size();
+    public int getPendingCount() {
+        return pendingOf(counts.get());
+    }
+
+    /**
+     * Pending intents plus those admitted and still being made durable: the depth admission control works on.
+     */
+    public int getQueueDepth() {
+        return queueDepth(counts.get());
+    }
+
+    // A drain can take intents before their enqueuer counted them: pending may be briefly negative.
+    private static int pendingOf(long counts) {
+        return Math.max(0, (int) ((counts - reservedOf(counts)) >> 32));
+    }
+
+    private static int reservedOf(long counts) {
+        return (int) counts;
+    }
+
+    private static int queueDepth(long counts) {
+        return pendingOf(counts) + reservedOf(counts);
+    }
+
+    /**
+     * Intents drained into batches per second, averaged over the last minute.
+     */
+    public double getDrainRatePerSecond() {
+        return drainRate.perSecond(System.currentTimeMillis());
+    }
+
+    /**
+     * Seconds since the oldest pending intent was accepted (0 if nothing is pending).
+     */
+    public long getOldestAgeSeconds() {
+        PendingIntent head = pending.peek();
+        if (head == null) return 0L;
+        return (System.currentTimeMillis() - head.enqueuedAtMillis()) / 1000L;
+    }
+
+    /**
+     * Take up to max intents (FIFO). Call {@link #acknowledge(DrainedIntents)} once they are safely on-chain;
+     * unacknowledged intents are replayed from the WAL after a restart.
+     */
+    public DrainedIntents drain(int max) {
+        if (max <= 0 || pending.isEmpty()) return DrainedIntents.EMPTY;
+        List<PendingIntent> taken = new ArrayList<>(Math.min(max, getPendingCount()));
+        PendingIntent next;
+        while (taken.size() < max && (next = pending.poll()) != null) {
+            taken.add(next);
+        }
+        counts.addAndGet(-taken.size() * PENDING_ONE);
+        drainRate.record(taken.size(), System.currentTimeMillis());
+
+        List<TransferIntentRequest> intents = new ArrayList<>(taken.size());
+        long[] seqs = new long[taken.size()];
+        long[] enqueuedAt = new long[taken.size()];
+        for (int i = 0; i < taken.size(); i++) {
+            intents.add(taken.get(i).request());
+            seqs[i] = taken.get(i).walSeq();
+            enqueuedAt[i] = taken.get(i).enqueuedAtMillis();
+        }
+        return new DrainedIntents(intents, seqs, enqueuedAt);
+    }
+
+    /**
+     * The drained intents' batch failed and is not on-chain: put them back at the head of the queue, in drain order,
+     * with their WAL seqs and enqueue times (so max-delay batching picks them up first). They stay in the dedup
+     * index; a retry of one of them is still a duplicate.
+     */
+    public void requeue(DrainedIntents drained) {
+        List<TransferIntentRequest> intents = drained.intents();
+        for (int i = intents.size() - 1; i >= 0; i--) {
+            pending.offerFirst(new PendingIntent(intents.get(i), drained.enqueuedAtMillis()[i], drained.walSeqs()[i]));
+        }
+        counts.addAndGet(intents.size() * PENDING_ONE);
+        // not drained after all
+        drainRate.record(-intents.size(), System.currentTimeMillis());
     }
 
-    public synchronized long getOldestAgeSeconds() {
-        if (pending.isEmpty()) return 0L;
-        long oldestTs = pending.getFirst().getTimestamp();
-        long now = System.currentTimeMillis() / 1000L;
-        return now - oldestTs;
+    /**
+     * The drained intents could not be sealed into a batch and will not be retried: forget them (dedup index and
+     * WAL), so their senders can submit them again.
+     */
+    public void release(DrainedIntents drained) {
+        drained.intents().forEach(dedup::remove);
+        wal.acknowledge(drained.walSeqs());
     }
 
-    public synchronized List<TransferIntentRequest> drainUpTo(int max) {
-        if (pending.isEmpty()) return List.of();
-        int n = Math.min(max, pending.size());
-        List<TransferIntentRequest> res = new ArrayList<>(pending.subList(0, n));
-        pending.subList(0, n).clear();
-        return res;
+    /**
+     * The drained intents are part of a submitted and stored batch; drop them from the WAL. Returns once the ACK is
+     * durable, so they are not replayed into a second batch after a crash.
+     */
+    public void acknowledge(DrainedIntents drained) {
+        wal.awaitDurable(wal.acknowledge(drained.walSeqs()));
     }
 }
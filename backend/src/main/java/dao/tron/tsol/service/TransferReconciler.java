@@ -0,0 +1,74 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.model.LocalBatch;
+import dao.tron.tsol.model.StoredTransfer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Brings local execution flags in line with the chain before a batch is (re)executed.
+ *
+ * After a restart, or when a receipt wait timed out although the transaction went through, the only other way
+ * to find out is to broadcast executeTransfer again and pay for the TransferAlreadyExecuted revert. Instead the
+ * txHash of every unexecuted transfer is computed locally (same leaf hash as the Merkle tree) and looked up
+ * in bulk with Settlement.isExecutedTransfer; transfers the contract already executed are marked without
+ * broadcasting anything.
+ */
+@Slf4j
+@Service
+public class TransferReconciler {
+
+    private final SettlementContractClient settlementClient;
+
+    public TransferReconciler(SettlementContractClient settlementClient) {
+        this.settlementClient = settlementClient;
+    }
+
+    /**
+     * Mark the batch's transfers that are already executed on-chain; returns how many were marked.
+     */
+    public int reconcile(LocalBatch batch) {
+        if (batch.getTransfers() == null || batch.getOnChainBatchId() == 0L) {
+            return 0;
+        }
+
+        MerkleLeafEncoder encoder = MerkleLeafEncoder.forCurrentThread();
+        HexFormat hex = HexFormat.of();
+        byte[] hash = new byte[MerkleLeafEncoder.HASH_LENGTH];
+        Map<String, StoredTransfer> byHash = new LinkedHashMap<>();
+        for (StoredTransfer st : batch.getTransfers()) {
+            if (st.isExecuted()) continue;
+            try {
+                encoder.leafHash(st.getTxData(), batch.getBatchSalt(), hash, 0);
+            } catch (RuntimeException e) {
+                // Malformed transfer: leave it to executeTransfer, which reports the actual problem.
+                log.debug("Cannot compute txHash for transfer nonce={}: {}", st.getTxData().getNonce(), e.getMessage());
+                continue;
+            }
+            byHash.put(hex.formatHex(hash), st);
+        }
+        if (byHash.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> executed = settlementClient.findExecutedTransfers(byHash.keySet());
+        int marked = 0;
+        for (String h : executed) {
+            StoredTransfer st = byHash.get(h);
+            if (st != null && !st.isExecuted()) {
+                st.setExecuted(true);
+                marked++;
+            }
+        }
+        if (marked > 0) {
+            log.info("Batch {}: {} of {} pending transfers already executed on-chain, marked without broadcasting",
+                    batch.getOnChainBatchId(), marked, byHash.size());
+        }
+        return marked;
+    }
+}
@@ -0,0 +1,115 @@
+package dao.tron.tsol.service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Read-through cache for one contract view call, keyed by its arguments.
+ *
+ * Values the contract can never change again (per {@code immutable}) are kept until evicted; anything else
+ * expires after {@code ttlMs}. Concurrent misses for the same key share one load: the first caller runs it,
+ * the others wait on its result. Failed loads are not cached.
+ */
+final class ViewCache<K, V> {
+
+    interface Loader<K, V> {
+        V load(K key) throws Exception;
+    }
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final Loader<K, V> loader;
+    private final Predicate<V> immutable;
+    private final long ttlMs;
+    private final int maxEntries;
+    private final LongSupplier clockMs;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    ViewCache(Loader<K, V> loader, Predicate<V> immutable, long ttlMs, int maxEntries, LongSupplier clockMs) {
+        this.loader = loader;
+        this.immutable = immutable;
+        this.ttlMs = ttlMs;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.clockMs = clockMs;
+    }
+
+    V get(K key) throws Exception {
+        long now = clockMs.getAsLong();
+        Entry<V> mine = new Entry<>();
+        Entry<V> entry = entries.compute(key, (k, cur) -> cur != null && !cur.isExpired(now) ? cur : mine);
+        if (entry == mine) {
+            load(key, mine);
+        }
+        try {
+            return entry.value.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /**
+     * Drop a cached value (e.g. after a transaction that changes it); an in-flight load is left alone.
+     */
+    void invalidate(K key) {
+        entries.computeIfPresent(key, (k, cur) -> cur.value.isDone() ? null : cur);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void load(K key, Entry<V> entry) {
+        V value;
+        try {
+            value = loader.load(key);
+        } catch (Throwable t) {
+            entries.remove(key, entry);
+            entry.value.completeExceptionally(t);
+            return;
+        }
+        entry.expiresAtMs = immutable.test(value) ? NEVER : clockMs.getAsLong() + ttlMs;
+        entry.value.complete(value);
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    /**
+     * Over capacity: expired entries go first, then arbitrary completed ones down to 3/4 of the limit.
+     */
+    private void evict() {
+        long now = clockMs.getAsLong();
+        entries.values().removeIf(e -> e.isExpired(now));
+        int excess = entries.size() - maxEntries * 3 / 4;
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (excess > 0 && it.hasNext()) {
+            if (it.next().getValue().value.isDone()) {
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+    private static Exception unwrap(Throwable t) {
+        if (t instanceof CompletionException && t.getCause() != null) t = t.getCause();
+        if (t instanceof Exception e) return e;
+        if (t instanceof Error err) throw err;
+        return new RuntimeException(t);
+    }
+
+    private static final class Entry<V> {
+        final CompletableFuture<V> value = new CompletableFuture<>();
+        // NEVER while loading, so waiters keep sharing the in-flight load
+        volatile long expiresAtMs = NEVER;
+
+        boolean isExpired(long nowMs) {
+            return expiresAtMs <= nowMs;
+        }
+    }
+}
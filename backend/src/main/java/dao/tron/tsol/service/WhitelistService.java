@@ -3,6 +3,7 @@ package dao.tron.tsol.service;
 import dao.tron.tsol.config.ChainProperties;
 import dao.tron.tsol.config.SettlementProperties;
 import dao.tron.tsol.config.WhitelistProperties;
+import dao.tron.tsol.util.PackedProof;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.tron.trident.abi.FunctionEncoder;
@@ -13,7 +14,7 @@ import org.tron.trident.abi.datatypes.Function;
 import org.tron.trident.abi.datatypes.generated.Bytes32;
 import org.tron.trident.abi.datatypes.generated.Uint64;
 import org.tron.trident.core.ApiWrapper;
-import org.tron.trident.proto.Chain;
+import org.tron.trident.core.key.KeyPair;
 import org.tron.trident.proto.Response;
 import org.tron.trident.utils.Numeric;
 import org.web3j.crypto.ECKeyPair;
@@ -30,31 +31,39 @@ import java.util.List;
 public class WhitelistService {
 
     private final WhitelistProperties whitelistProps;
-    private final ApiWrapper wrapper;
+    private final NodePool nodePool;
+    /**
+     * Signs locally and broadcasts through the node pool (null = no private key).
+     */
+    private final TransactionBroadcaster broadcaster;
     private final String updaterBase58;
     private final ECKeyPair keyPair;
     private final long chainId;
     private final String registryBase58;
 
+    private volatile WhitelistTree cachedTree;
+
     private static final long DEFAULT_FEE_LIMIT = 50_000_000L;
 
     public WhitelistService(WhitelistProperties whitelistProps,
                             SettlementProperties settlementProps,
-                            ChainProperties chainProps) {
+                            ChainProperties chainProps,
+                            NodePool nodePool) {
         this.whitelistProps = whitelistProps;
+        this.nodePool = nodePool;
         this.registryBase58 = whitelistProps.getRegistryAddress();
         this.chainId = chainProps.getId() != null ? chainProps.getId() : 3448148188L;
         
         String privateKey = settlementProps.getPrivateKey();
-        if (privateKey == null || privateKey.isBlank()) {
+        if (privateKey == null || privateKey.isBlank() || !nodePool.isEnabled()) {
             log.warn("WhitelistService: No valid private key configured. Whitelist sync/signing disabled.");
-            this.wrapper = null;
+            this.broadcaster = null;
             this.updaterBase58 = "NOT_CONFIGURED";
             this.keyPair = null;
         } else {
-            // NOTE: this project targets Nile; if you need mainnet, plumb node selection like SettlementContractClientTrident.
-            this.wrapper = ApiWrapper.ofNile(privateKey);
-            this.updaterBase58 = this.wrapper.keyPair.toBase58CheckAddress();
+            this.broadcaster = new TransactionBroadcaster(privateKey,
+                    signed -> nodePool.broadcast(w -> w.broadcastTransaction(signed)));
+            this.updaterBase58 = new KeyPair(privateKey).toBase58CheckAddress();
             String pkHex = privateKey.startsWith("0x") ? privateKey : "0x" + privateKey;
             this.keyPair = ECKeyPair.create(new BigInteger(pkHex.substring(2), 16));
         }
@@ -66,83 +75,99 @@ public class WhitelistService {
                 whitelistProps.getAddresses() != null ? whitelistProps.getAddresses().size() : 0);
     }
 
-    public List<String> generateWhitelistProof(String addressBase58) {
+    /**
+     * Whitelist proof for the address, packed (depth x 32 bytes); empty if the address is not whitelisted.
+     * Served from the cached tree: one map lookup plus one sibling copy per level.
+     */
+    public byte[] generateWhitelistProof(String addressBase58) {
         try {
-            String target = addressBase58 == null ? "" : addressBase58.trim();
-            List<String> configured = whitelistProps.getAddresses();
-            if (configured == null || configured.isEmpty()) {
-                return List.of();
+            WhitelistTree tree = whitelistTree();
+            if (tree == null) {
+                return PackedProof.EMPTY;
             }
 
-            // Spring may bind `whitelist.addresses` as:
-            // - a real list, OR
-            // - a single comma-separated string (e.g. from env), sometimes with spaces/CRLF.
-            // Normalize by flattening + trimming + dropping empties.
-            List<String> whitelistAddresses = new ArrayList<>();
-            for (String entry : configured) {
-                if (entry == null) continue;
-                String e = entry.trim();
-                if (e.isEmpty()) continue;
-                if (e.contains(",")) {
-                    for (String part : e.split(",")) {
-                        String p = part.trim();
-                        if (!p.isEmpty()) whitelistAddresses.add(p);
-                    }
-                } else {
-                    whitelistAddresses.add(e);
-                }
-            }
-            if (whitelistAddresses.isEmpty()) {
-                return List.of();
-            }
-
-            List<byte[]> leaves = new ArrayList<>();
-            int targetIndex = -1;
-            
-            for (int i = 0; i < whitelistAddresses.size(); i++) {
-                String addr = whitelistAddresses.get(i);
-                byte[] leaf = whitelistAddressToLeaf(addr);
-                leaves.add(leaf);
-                
-                if (addr.equalsIgnoreCase(target)) {
-                    targetIndex = i;
-                }
-            }
-            
+            int targetIndex = tree.indexOf(addressBase58);
             if (targetIndex == -1) {
-                log.debug("Whitelist proof requested for non-whitelisted address: {} (configuredCount={})", target, whitelistAddresses.size());
-                return List.of();
+                log.debug("Whitelist proof requested for non-whitelisted address: {} (configuredCount={})", addressBase58, tree.size());
+                return PackedProof.EMPTY;
             }
-            
-            // Whitelist scripts build a standard OZ-sorted-pair tree with "duplicate last" behavior.
-            List<byte[]> proof = buildProofDuplicateOddSortedPairs(leaves, targetIndex);
-            List<String> out = new ArrayList<>(proof.size());
-            for (byte[] p : proof) {
-                out.add("0x" + bytesToHex(p));
-            }
-            return out;
-            
+            return tree.proof(targetIndex);
+
         } catch (Exception e) {
             log.error("Failed to generate whitelist proof", e);
-            return List.of();
+            return PackedProof.EMPTY;
         }
     }
-    
+
     /**
-     * Convert Tron address to whitelist leaf hash: keccak256(bytes32(address))
+     * Whether the address is in the configured whitelist (cached tree lookup), i.e. a BATCHED transfer from it
+     * gets a whitelist proof.
      */
-    private byte[] whitelistAddressToLeaf(String addressBase58) {
-        // Reuse trident parsing for base58 -> 21 bytes (0x41 + 20 bytes); keep the last 20 bytes.
-        byte[] raw = org.tron.trident.core.ApiWrapper.parseAddress(addressBase58).toByteArray();
-        if (raw.length < 21) {
-            throw new IllegalArgumentException("Parsed address length < 21 bytes for " + addressBase58);
+    public boolean isWhitelisted(String addressBase58) {
+        try {
+            WhitelistTree tree = whitelistTree();
+            return tree != null && tree.indexOf(addressBase58) != -1;
+        } catch (Exception e) {
+            log.error("Failed to look up whitelist", e);
+            return false;
         }
-        byte[] addr20 = java.util.Arrays.copyOfRange(raw, raw.length - 20, raw.length);
-        
-        byte[] bytes32 = new byte[32];
-        System.arraycopy(addr20, 0, bytes32, 12, 20);
-        
-        return Hash.sha3(bytes32);
+    }
+
+    /**
+     * Cached whitelist tree for the configured addresses (null if none are configured).
+     * Built on first use; dropped by {@link #invalidateWhitelistTree()}.
+     */
+    private WhitelistTree whitelistTree() {
+        WhitelistTree tree = cachedTree;
+        if (tree != null) return tree;
+        synchronized (this) {
+            if (cachedTree == null) {
+                List<String> addresses = configuredAddresses();
+                if (addresses.isEmpty()) return null;
+                cachedTree = WhitelistTree.build(addresses);
+                log.info("Whitelist tree built: addresses={}, root=0x{}", addresses.size(), bytesToHex(cachedTree.rootBytes()));
+            }
+            return cachedTree;
+        }
+    }
+
+    /**
+     * Drop the cached whitelist tree; the next proof/root request rebuilds it from `whitelist.addresses`.
+     */
+    public void invalidateWhitelistTree() {
+        synchronized (this) {
+            cachedTree = null;
+        }
+    }
+
+    /**
+     * Configured whitelist addresses, flattened/trimmed.
+     */
+    private List<String> configuredAddresses() {
+        List<String> configured = whitelistProps.getAddresses();
+        if (configured == null || configured.isEmpty()) {
+            return List.of();
+        }
+
+        // Spring may bind `whitelist.addresses` as:
+        // - a real list, OR
+        // - a single comma-separated string (e.g. from env), sometimes with spaces/CRLF.
+        // Normalize by flattening + trimming + dropping empties.
+        List<String> whitelistAddresses = new ArrayList<>();
+        for (String entry : configured) {
+            if (entry == null) continue;
+            String e = entry.trim();
+            if (e.isEmpty()) continue;
+            if (e.contains(",")) {
+                for (String part : e.split(",")) {
+                    String p = part.trim();
+                    if (!p.isEmpty()) whitelistAddresses.add(p);
+                }
+            } else {
+                whitelistAddresses.add(e);
+            }
+        }
+        return whitelistAddresses;
     }
 
     /**
@@ -150,11 +175,13 @@ public class WhitelistService {
      * This is the Java equivalent of the scripts `2_signRoot.js` + `3_updateRoot.js`.
      */
     public boolean ensureWhitelistRootMatchesConfig() {
-        if (wrapper == null || keyPair == null) {
+        if (broadcaster == null || keyPair == null) {
             log.warn("WhitelistService not configured for on-chain sync (missing private key).");
             return false;
         }
         try {
+            // Rebuild from the current config so a pushed root and the proofs we hand out always agree.
+            invalidateWhitelistTree();
             String desiredRoot = computeWhitelistRootFromConfig();
             String currentRoot = getCurrentMerkleRoot();
 
@@ -166,6 +193,7 @@ public class WhitelistService {
             long nonce = getCurrentNonce();
             byte[] sig = signWhitelistUpdate(desiredRoot, nonce);
             String txId = updateMerkleRoot(desiredRoot, nonce, sig);
+            invalidateWhitelistTree();
 
             Thread.sleep(5000);
             String after = getCurrentMerkleRoot();
@@ -185,12 +213,7 @@ public class WhitelistService {
                 List.of(),
                 List.of(new TypeReference<Uint64>() {})
         );
-        Response.TransactionExtention txn = wrapper.triggerConstantContract(
-                updaterBase58,
-                registryBase58,
-                FunctionEncoder.encode(fn),
-                org.tron.trident.core.NodeType.SOLIDITY_NODE
-        );
+        Response.TransactionExtention txn = constantCall(fn);
         if (!txn.getResult().getResult() || txn.getConstantResultCount() == 0) {
             throw new RuntimeException("getCurrentNonce failed: " + txn.getResult().getMessage().toStringUtf8());
         }
@@ -207,12 +230,7 @@ public class WhitelistService {
                 List.of(),
                 List.of(new TypeReference<Bytes32>() {})
         );
-        Response.TransactionExtention txn = wrapper.triggerConstantContract(
-                updaterBase58,
-                registryBase58,
-                FunctionEncoder.encode(fn),
-                org.tron.trident.core.NodeType.SOLIDITY_NODE
-        );
+        Response.TransactionExtention txn = constantCall(fn);
         if (!txn.getResult().getResult() || txn.getConstantResultCount() == 0) {
             throw new RuntimeException("getCurrentMerkleRoot failed: " + txn.getResult().getMessage().toStringUtf8());
         }
@@ -239,7 +257,7 @@ public class WhitelistService {
                     List.of()
             );
 
-            Response.TransactionExtention txnExt = wrapper.triggerContract(
+            Response.TransactionExtention txnExt = nodePool.full(w -> w.triggerContract(
                     updaterBase58,
                     registryBase58,
                     FunctionEncoder.encode(fn),
@@ -247,17 +265,34 @@ public class WhitelistService {
                     0L,
                     null,
                     DEFAULT_FEE_LIMIT
-            );
+            ));
             if (!txnExt.getResult().getResult()) {
                 throw new RuntimeException("updateMerkleRoot trigger failed: " + txnExt.getResult().getMessage().toStringUtf8());
             }
-            Chain.Transaction signed = wrapper.signTransaction(txnExt);
-            return wrapper.broadcastTransaction(signed);
+            return broadcaster.signAndBroadcast(txnExt.getTransaction());
         } catch (Exception e) {
             throw new RuntimeException("updateMerkleRoot failed: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Constant call on the registry, served by the fastest healthy solidity node.
+     */
+    private Response.TransactionExtention constantCall(Function fn) {
+        try {
+            return nodePool.read(w -> w.triggerConstantContract(
+                    updaterBase58,
+                    registryBase58,
+                    FunctionEncoder.encode(fn),
+                    org.tron.trident.core.NodeType.SOLIDITY_NODE
+            ));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(fn.getName() + " failed: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Signature compatible with Solidity:
      * hash = keccak256(abi.encodePacked(newRoot, nonce, chainid, address(registry)));
@@ -303,89 +338,14 @@ public class WhitelistService {
     }
 
     /**
-     * Compute whitelist merkle root from the configured base58 addresses.
-     * Leaf = keccak256(bytes32(address)) (left padded 12 bytes).
-     * Internal nodes: keccak256(min(a,b) || max(a,b)) (sorted pair).
-     * Odd nodes: duplicate the last element (script behavior for whitelist trees).
+     * Compute whitelist merkle root from the configured base58 addresses (see {@link WhitelistTree}).
      */
     private String computeWhitelistRootFromConfig() {
-        List<String> addrs = whitelistProps.getAddresses();
-        if (addrs == null || addrs.isEmpty()) {
+        WhitelistTree tree = whitelistTree();
+        if (tree == null) {
             throw new IllegalStateException("whitelist.addresses is empty");
         }
-        List<byte[]> leaves = new ArrayList<>(addrs.size());
-        for (String a : addrs) leaves.add(whitelistAddressToLeaf(a));
-        byte[] root = computeRootDuplicateOddSortedPairs(leaves);
-        return "0x" + bytesToHex(root);
-    }
-
-    private static byte[] computeRootDuplicateOddSortedPairs(List<byte[]> leaves) {
-        List<byte[]> level = new ArrayList<>(leaves.size());
-        for (byte[] l : leaves) level.add(l.clone());
-        while (level.size() > 1) {
-            List<byte[]> next = new ArrayList<>();
-            for (int i = 0; i < level.size(); i += 2) {
-                byte[] left = level.get(i);
-                byte[] right = (i + 1 < level.size()) ? level.get(i + 1) : left; // duplicate odd
-                next.add(hashPairSorted(left, right));
-            }
-            level = next;
-        }
-        return level.get(0);
-    }
-
-    private static List<byte[]> buildProofDuplicateOddSortedPairs(List<byte[]> leaves, int index) {
-        List<List<byte[]>> layers = new ArrayList<>();
-        List<byte[]> cur = new ArrayList<>(leaves.size());
-        for (byte[] l : leaves) cur.add(l.clone());
-        layers.add(cur);
-
-        while (cur.size() > 1) {
-            List<byte[]> next = new ArrayList<>();
-            for (int i = 0; i < cur.size(); i += 2) {
-                byte[] left = cur.get(i);
-                byte[] right = (i + 1 < cur.size()) ? cur.get(i + 1) : left; // duplicate odd
-                next.add(hashPairSorted(left, right));
-            }
-            layers.add(next);
-            cur = next;
-        }
-
-        List<byte[]> proof = new ArrayList<>();
-        int idx = index;
-        for (int layerIdx = 0; layerIdx < layers.size() - 1; layerIdx++) {
-            List<byte[]> layer = layers.get(layerIdx);
-            int sib = idx ^ 1;
-            if (sib < layer.size()) {
-                proof.add(layer.get(sib));
-            }
-            idx /= 2;
-        }
-        return proof;
-    }
-
-    private static byte[] hashPairSorted(byte[] a, byte[] b) {
-        if (compareBytes(a, b) <= 0) {
-            return Hash.sha3(concat(a, b));
-        }
-        return Hash.sha3(concat(b, a));
-    }
-
-    private static int compareBytes(byte[] a, byte[] b) {
-        int len = Math.min(a.length, b.length);
-        for (int i = 0; i < len; i++) {
-            int ai = a[i] & 0xff;
-            int bi = b[i] & 0xff;
-            if (ai != bi) return ai - bi;
-        }
-        return a.length - b.length;
-    }
-
-    private static byte[] concat(byte[] a, byte[] b) {
-        byte[] out = new byte[a.length + b.length];
-        System.arraycopy(a, 0, out, 0, a.length);
-        System.arraycopy(b, 0, out, a.length, b.length);
-        return out;
+        return "0x" + bytesToHex(tree.rootBytes());
     }
 
     private static String bytesToHex(byte[] bytes) {
@@ -0,0 +1,138 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.util.PackedProof;
+import org.tron.trident.core.ApiWrapper;
+import org.web3j.crypto.Hash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Whitelist Merkle tree built once from the configured addresses, with every layer retained.
+ *
+ * Leaf = keccak256(bytes32(address)) (left padded 12 bytes).
+ * Internal nodes: keccak256(min(a,b) || max(a,b)) (sorted pair).
+ * Odd nodes: duplicate the last element (script behavior for whitelist trees, see generateRoot.py).
+ *
+ * Proofs are an address lookup plus one sibling copy per layer: O(log w), no hashing.
+ */
+final class WhitelistTree {
+
+    private static final int NODE_SIZE = PackedProof.NODE_SIZE;
+
+    // layers[0] = leaves, last = root; each layer packed (size x 32 bytes)
+    private final byte[][] layers;
+
+    // key: address lower-cased (lookups were always case-insensitive); value: leaf index (last one wins)
+    private final Map<String, Integer> indexByAddress;
+
+    private WhitelistTree(byte[][] layers, Map<String, Integer> indexByAddress) {
+        this.layers = layers;
+        this.indexByAddress = indexByAddress;
+    }
+
+    static WhitelistTree build(List<String> addresses) {
+        if (addresses == null || addresses.isEmpty()) {
+            throw new IllegalArgumentException("whitelist is empty");
+        }
+        int w = addresses.size();
+        Map<String, Integer> index = new HashMap<>(w * 2);
+        byte[] leaves = new byte[w * NODE_SIZE];
+        for (int i = 0; i < w; i++) {
+            String addr = addresses.get(i);
+            System.arraycopy(addressToLeaf(addr), 0, leaves, i * NODE_SIZE, NODE_SIZE);
+            index.put(key(addr), i);
+        }
+
+        List<byte[]> layers = new ArrayList<>();
+        layers.add(leaves);
+        byte[] cur = leaves;
+        while (cur.length > NODE_SIZE) {
+            int size = cur.length / NODE_SIZE;
+            int nextSize = (size + 1) / 2;
+            byte[] next = new byte[nextSize * NODE_SIZE];
+            byte[] pair = new byte[2 * NODE_SIZE];
+            for (int i = 0; i < size; i += 2) {
+                int left = i * NODE_SIZE;
+                int right = (i + 1 < size) ? left + NODE_SIZE : left; // duplicate odd
+                if (Arrays.compareUnsigned(cur, left, left + NODE_SIZE, cur, right, right + NODE_SIZE) <= 0) {
+                    System.arraycopy(cur, left, pair, 0, NODE_SIZE);
+                    System.arraycopy(cur, right, pair, NODE_SIZE, NODE_SIZE);
+                } else {
+                    System.arraycopy(cur, right, pair, 0, NODE_SIZE);
+                    System.arraycopy(cur, left, pair, NODE_SIZE, NODE_SIZE);
+                }
+                System.arraycopy(Hash.sha3(pair), 0, next, (i / 2) * NODE_SIZE, NODE_SIZE);
+            }
+            layers.add(next);
+            cur = next;
+        }
+        return new WhitelistTree(layers.toArray(new byte[0][]), index);
+    }
+
+    int size() {
+        return layers[0].length / NODE_SIZE;
+    }
+
+    byte[] rootBytes() {
+        return Arrays.copyOf(layers[layers.length - 1], NODE_SIZE);
+    }
+
+    /**
+     * Leaf index of the address, or -1 if it is not whitelisted.
+     */
+    int indexOf(String address) {
+        if (address == null) return -1;
+        Integer idx = indexByAddress.get(key(address.trim()));
+        return idx != null ? idx : -1;
+    }
+
+    /**
+     * Packed proof (depth x 32 bytes) for the leaf at index; levels without a sibling contribute nothing.
+     */
+    byte[] proof(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Invalid leaf index: " + index);
+        }
+        int depth = 0;
+        int idx = index;
+        for (int layer = 0; layer < layers.length - 1; layer++) {
+            if ((idx ^ 1) < layers[layer].length / NODE_SIZE) depth++;
+            idx >>= 1;
+        }
+        byte[] out = new byte[depth * NODE_SIZE];
+        int pos = 0;
+        idx = index;
+        for (int layer = 0; layer < layers.length - 1; layer++) {
+            int sibling = idx ^ 1;
+            if (sibling < layers[layer].length / NODE_SIZE) {
+                System.arraycopy(layers[layer], sibling * NODE_SIZE, out, pos, NODE_SIZE);
+                pos += NODE_SIZE;
+            }
+            idx >>= 1;
+        }
+        return out;
+    }
+
+    /**
+     * Convert Tron address to whitelist leaf hash: keccak256(bytes32(address))
+     */
+    static byte[] addressToLeaf(String addressBase58) {
+        // Reuse trident parsing for base58 -> 21 bytes (0x41 + 20 bytes); keep the last 20 bytes.
+        byte[] raw = ApiWrapper.parseAddress(addressBase58).toByteArray();
+        if (raw.length < 21) {
+            throw new IllegalArgumentException("Parsed address length < 21 bytes for " + addressBase58);
+        }
+        byte[] bytes32 = new byte[32];
+        System.arraycopy(raw, raw.length - 20, bytes32, 12, 20);
+        return Hash.sha3(bytes32);
+    }
+
+    private static String key(String address) {
+        return address.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,178 @@
+package dao.tron.tsol.util;
+
+import dao.tron.tsol.model.TransferIntentRequest;
+import org.tron.trident.core.ApiWrapper;
+import org.tron.trident.utils.Base58Check;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary intake format: length-prefixed fixed-width records carrying raw addresses and a big-endian amount.
+ * <pre>
+ * body   := record*
+ * record := uint16 length (>= 91, big-endian) | fields[91] | extension[length - 91] (ignored)
+ *
+ * offset  size  field
+ *      0    20  from           (EVM address, no 0x41 prefix)
+ *     20    20  to
+ *     40    32  amount         (uint256, big-endian)
+ *     72     8  nonce          (uint64)
+ *     80     6  timestamp      (uint48, unix seconds)
+ *     86     4  recipientCount (uint32)
+ *     90     1  txType         (uint8)
+ * </pre>
+ * The fields are exactly the Settlement leaf preimage minus batchSalt, so a decoded intent keeps its own copy of
+ * them and the leaf encoder copies those bytes instead of parsing base58 and decimal strings. Base58/decimal
+ * strings are only derived where something asks for them (see {@link TransferIntentRequest}); intake itself
+ * (validation, dedup, WAL) works on the bytes.
+ */
+public final class IntentWireFormat {
+    private IntentWireFormat() {}
+
+    public static final String MEDIA_TYPE = "application/x-tsol-intents";
+
+    public static final int FIELDS_LENGTH = 91;
+
+    public static final int OFF_FROM = 0;
+    public static final int OFF_TO = 20;
+    public static final int OFF_AMOUNT = 40;
+    public static final int OFF_NONCE = 72;
+    public static final int OFF_TIMESTAMP = 80;
+    public static final int OFF_RECIPIENT_COUNT = 86;
+    public static final int OFF_TX_TYPE = 90;
+
+    private static final int LENGTH_PREFIX = 2;
+    private static final byte TRON_ADDRESS_PREFIX = 0x41;
+
+    /**
+     * Split a request body into intents, each with a copy of its 91 bytes (so a queued intent does not keep the
+     * whole body alive). Throws IllegalArgumentException for a truncated or short record, or more than {@code maxItems} records.
+     */
+    public static List<TransferIntentRequest> decode(ByteBuffer body, int maxItems) {
+        List<TransferIntentRequest> out = new ArrayList<>();
+        int pos = body.position();
+        int end = body.limit();
+        while (pos < end) {
+            int index = out.size();
+            if (index == maxItems) {
+                throw new IllegalArgumentException("Too many intents in one request (max " + maxItems + ")");
+            }
+            if (end - pos < LENGTH_PREFIX) {
+                throw new IllegalArgumentException("Truncated record at index " + index);
+            }
+            int length = body.getShort(pos) & 0xFFFF;
+            if (length < FIELDS_LENGTH) {
+                throw new IllegalArgumentException("Malformed record at index " + index + ": length " + length
+                        + " < " + FIELDS_LENGTH);
+            }
+            if (end - pos - LENGTH_PREFIX < length) {
+                throw new IllegalArgumentException("Truncated record at index " + index);
+            }
+            byte[] fields = new byte[FIELDS_LENGTH];
+            body.get(pos + LENGTH_PREFIX, fields);
+            out.add(fromFields(ByteBuffer.wrap(fields).asReadOnlyBuffer()));
+            pos += LENGTH_PREFIX + length;
+        }
+        return out;
+    }
+
+    /**
+     * Intent backed by 91 bytes of packed fields (position 0; not copied, so they must not change). The scalar
+     * fields are read eagerly; addresses and amount stay packed.
+     */
+    public static TransferIntentRequest fromFields(ByteBuffer fields) {
+        if (fields.remaining() != FIELDS_LENGTH) {
+            throw new IllegalArgumentException("Packed intent must be " + FIELDS_LENGTH + " bytes, got "
+                    + fields.remaining());
+        }
+        TransferIntentRequest req = new TransferIntentRequest();
+        req.setPackedFields(fields);
+        req.setNonce(fields.getLong(OFF_NONCE));
+        req.setTimestamp(readBigEndian(fields, OFF_TIMESTAMP, 6));
+        req.setRecipientCount(fields.getInt(OFF_RECIPIENT_COUNT));
+        req.setTxType(fields.get(OFF_TX_TYPE) & 0xFF);
+        return req;
+    }
+
+    /**
+     * Packed fields of an intent: its own slice when it arrived in this format, otherwise encoded from the strings.
+     */
+    public static ByteBuffer fieldsOf(TransferIntentRequest req) {
+        if (req.getPackedFields() != null) return req.getPackedFields().duplicate();
+        byte[] f = new byte[FIELDS_LENGTH];
+        writeAddress(req.getFrom(), f, OFF_FROM);
+        writeAddress(req.getTo(), f, OFF_TO);
+        writeUint256(new BigInteger(req.getAmount()), f, OFF_AMOUNT);
+        writeBigEndian(req.getNonce(), f, OFF_NONCE, 8);
+        writeBigEndian(req.getTimestamp(), f, OFF_TIMESTAMP, 6);
+        writeBigEndian(req.getRecipientCount(), f, OFF_RECIPIENT_COUNT, 4);
+        f[OFF_TX_TYPE] = (byte) (int) req.getTxType();
+        return ByteBuffer.wrap(f);
+    }
+
+    /**
+     * Encode intents as a request body (clients, tests, benchmarks).
+     */
+    public static byte[] encode(List<TransferIntentRequest> intents) {
+        ByteBuffer out = ByteBuffer.allocate(intents.size() * (LENGTH_PREFIX + FIELDS_LENGTH));
+        for (TransferIntentRequest req : intents) {
+            out.putShort((short) FIELDS_LENGTH);
+            out.put(fieldsOf(req));
+        }
+        return out.array();
+    }
+
+    /**
+     * Base58check TRON address (0x41 prefix) of the 20 bytes at {@code offset}.
+     */
+    public static String base58Address(ByteBuffer fields, int offset) {
+        byte[] raw = new byte[21];
+        raw[0] = TRON_ADDRESS_PREFIX;
+        fields.get(offset, raw, 1, 20);
+        return Base58Check.bytesToBase58(raw);
+    }
+
+    /**
+     * Decimal string of the uint256 at {@code offset}.
+     */
+    public static String decimalAmount(ByteBuffer fields, int offset) {
+        byte[] amount = new byte[32];
+        fields.get(offset, amount);
+        return new BigInteger(1, amount).toString();
+    }
+
+    private static long readBigEndian(ByteBuffer buf, int offset, int width) {
+        long v = 0;
+        for (int i = 0; i < width; i++) {
+            v = (v << 8) | (buf.get(offset + i) & 0xFF);
+        }
+        return v;
+    }
+
+    private static void writeBigEndian(long v, byte[] out, int offset, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            out[offset + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+
+    private static void writeAddress(String address, byte[] out, int offset) {
+        byte[] raw = ApiWrapper.parseAddress(address).toByteArray();
+        if (raw.length < 21) {
+            throw new IllegalArgumentException("Parsed address length < 21 bytes for " + address);
+        }
+        System.arraycopy(raw, raw.length - 20, out, offset, 20);
+    }
+
+    private static void writeUint256(BigInteger v, byte[] out, int offset) {
+        if (v.signum() < 0 || v.bitLength() > 256) {
+            throw new IllegalArgumentException("Amount out of uint256 range: " + v);
+        }
+        byte[] b = v.toByteArray();
+        int n = Math.min(b.length, 32);
+        System.arraycopy(b, b.length - n, out, offset + 32 - n, n);
+    }
+}
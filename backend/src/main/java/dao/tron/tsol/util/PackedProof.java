@@ -0,0 +1,102 @@
+package dao.tron.tsol.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Merkle proofs stored as one packed byte[] (depth x 32 bytes, bottom-up) instead of a list of hex strings.
+ *
+ * Hex is only produced at the REST boundary ({@link #toHexList}); the contract call slices the nodes directly.
+ */
+public final class PackedProof {
+    private PackedProof() {}
+
+    public static final int NODE_SIZE = 32;
+
+    public static final byte[] EMPTY = new byte[0];
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Number of bytes32 nodes in the proof (0 for null).
+     */
+    public static int depth(byte[] packed) {
+        if (packed == null) return 0;
+        if (packed.length % NODE_SIZE != 0) {
+            throw new IllegalArgumentException("Packed proof length not a multiple of 32: " + packed.length);
+        }
+        return packed.length / NODE_SIZE;
+    }
+
+    /**
+     * Copy of node i.
+     */
+    public static byte[] node(byte[] packed, int i) {
+        byte[] out = new byte[NODE_SIZE];
+        System.arraycopy(packed, i * NODE_SIZE, out, 0, NODE_SIZE);
+        return out;
+    }
+
+    /**
+     * Nodes as 0x-prefixed hex (the format scripts and monitoring responses expect).
+     */
+    public static List<String> toHexList(byte[] packed) {
+        int depth = depth(packed);
+        if (depth == 0) return Collections.emptyList();
+        List<String> out = new ArrayList<>(depth);
+        char[] buf = new char[2 + NODE_SIZE * 2];
+        buf[0] = '0';
+        buf[1] = 'x';
+        for (int n = 0; n < depth; n++) {
+            int base = n * NODE_SIZE;
+            for (int i = 0; i < NODE_SIZE; i++) {
+                int v = packed[base + i] & 0xff;
+                buf[2 + 2 * i] = HEX[v >>> 4];
+                buf[3 + 2 * i] = HEX[v & 0x0f];
+            }
+            out.add(new String(buf));
+        }
+        return out;
+    }
+
+    /**
+     * Pack hex-encoded bytes32 nodes (with or without 0x).
+     */
+    public static byte[] fromHexList(List<String> nodes) {
+        if (nodes == null || nodes.isEmpty()) return EMPTY;
+        byte[] out = new byte[nodes.size() * NODE_SIZE];
+        for (int n = 0; n < nodes.size(); n++) {
+            String hex = nodes.get(n);
+            int start = hex.startsWith("0x") || hex.startsWith("0X") ? 2 : 0;
+            if (hex.length() - start != NODE_SIZE * 2) {
+                throw new IllegalArgumentException("Proof element not 32 bytes: " + hex);
+            }
+            for (int i = 0; i < NODE_SIZE; i++) {
+                int hi = Character.digit(hex.charAt(start + 2 * i), 16);
+                int lo = Character.digit(hex.charAt(start + 2 * i + 1), 16);
+                if (hi < 0 || lo < 0) {
+                    throw new IllegalArgumentException("Invalid hex in proof element: " + hex);
+                }
+                out[n * NODE_SIZE + i] = (byte) ((hi << 4) | lo);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Concatenate individual 32-byte nodes.
+     */
+    public static byte[] pack(List<byte[]> nodes) {
+        if (nodes == null || nodes.isEmpty()) return EMPTY;
+        byte[] out = new byte[nodes.size() * NODE_SIZE];
+        for (int n = 0; n < nodes.size(); n++) {
+            byte[] node = nodes.get(n);
+            if (node.length != NODE_SIZE) {
+                throw new IllegalArgumentException("Proof element not 32 bytes: " + node.length);
+            }
+            System.arraycopy(node, 0, out, n * NODE_SIZE, NODE_SIZE);
+        }
+        return out;
+    }
+}
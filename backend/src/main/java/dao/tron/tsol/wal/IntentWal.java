@@ -0,0 +1,629 @@
+package dao.tron.tsol.wal;
+
+import dao.tron.tsol.config.WalProperties;
+import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.util.IntentWireFormat;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segment-rotated, memory-mapped write-ahead log for accepted transfer intents.
+ * <p>
+ * Record layout (big-endian):
+ * <pre>
+ * int   bodyLength   (0 = end of segment data)
+ * byte  type         (1 = INTENT, 2 = ACK, 3 = INTENT_PACKED)
+ * long  seq
+ * byte[bodyLength] body
+ * int   crc32(type, seq, body)
+ * </pre>
+ * Appends only copy into the mapped segment under a short lock. Durability is provided by a single committer
+ * thread that forces dirty segments and releases every waiter whose record is covered (group commit), so
+ * intake is not capped at one fsync per request. If a force fails, the waiters it would have released fail with
+ * {@link WalUnavailableException} and the committer retries with backoff; no waiter blocks longer than
+ * {@code wal.commit-timeout-ms}.
+ * <p>
+ * Intents that made it into a submitted batch are acknowledged with ACK records. On startup all segments are
+ * replayed, acknowledged intents are skipped, and fully acknowledged segments are deleted from the head
+ * of the log (prefix only, so an ACK never disappears before the intent it refers to).
+ */
+@Slf4j
+@Component
+public class IntentWal {
+
+    public record Entry(long seq, TransferIntentRequest request) {}
+
+    private static final byte TYPE_INTENT = 1;
+    private static final byte TYPE_ACK = 2;
+    private static final byte TYPE_INTENT_PACKED = 3;   // binary-format intent: its 91 wire bytes as-is
+    private static final int HEADER_SIZE = 4 + 1 + 8;
+    private static final int TRAILER_SIZE = 4;
+    private static final int MAX_ACKS_PER_RECORD = 4096;
+    private static final long MAX_RETRY_BACKOFF_MS = 5_000;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("intents-(\\d{20})\\.wal");
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final long groupCommitDelayMs;
+    private final long commitTimeoutNanos;
+    private final Consumer<MappedByteBuffer> force;
+
+    // --- append state (guarded by appendLock) ---
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    private final Set<Segment> dirty = new LinkedHashSet<>();
+    private Segment active;
+    private long lastSeq;
+
+    // --- durability state (guarded by syncLock) ---
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncRequested = syncLock.newCondition();
+    private final Condition synced = syncLock.newCondition();
+    private long requestedSeq;
+    private long durableSeq;
+    // failed force() attempts so far, and the cause of the latest one
+    private long forceFailures;
+    private String lastForceFailure;
+    private volatile boolean running;
+    private final Thread committer;
+
+    private List<Entry> recovered = List.of();
+
+    public IntentWal(WalProperties props) {
+        this(props, MappedByteBuffer::force);
+    }
+
+    IntentWal(WalProperties props, Consumer<MappedByteBuffer> force) {
+        this.force = force;
+        this.enabled = props.isEnabled();
+        this.directory = Path.of(props.getDirectory());
+        this.segmentSize = props.getSegmentSizeBytes();
+        this.groupCommitDelayMs = Math.max(0, props.getGroupCommitDelayMs());
+        this.commitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, props.getCommitTimeoutMs()));
+
+        if (!enabled) {
+            log.warn("IntentWal disabled: accepted intents are kept in memory only and are lost on restart.");
+            this.committer = null;
+            return;
+        }
+        if (segmentSize < 64 * 1024) {
+            throw new IllegalArgumentException("wal.segment-size-bytes must be >= 65536");
+        }
+
+        try {
+            Files.createDirectories(directory);
+            recover();
+            openSegment(lastSeq + 1);
+            truncatePrefix();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open intent WAL at " + directory.toAbsolutePath(), e);
+        }
+
+        this.durableSeq = lastSeq;
+        this.requestedSeq = lastSeq;
+        this.running = true;
+        this.committer = Thread.ofPlatform().name("intent-wal-commit").daemon().start(this::commitLoop);
+        log.info("IntentWal opened: dir={}, segments={}, recoveredIntents={}, lastSeq={}",
+                directory.toAbsolutePath(), segments.size(), recovered.size(), lastSeq);
+    }
+
+    /**
+     * WAL that does nothing (in-memory intake only).
+     */
+    public static IntentWal disabled() {
+        WalProperties props = new WalProperties();
+        props.setEnabled(false);
+        return new IntentWal(props);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Unacknowledged intents found on startup, in log order. Returned once; later calls return an empty list.
+     */
+    public synchronized List<Entry> takeRecovered() {
+        List<Entry> out = recovered;
+        recovered = List.of();
+        return out;
+    }
+
+    /**
+     * Append an intent. The record is NOT durable until {@link #awaitDurable(long)} returns.
+     *
+     * @return WAL sequence number (0 when disabled)
+     */
+    public long append(TransferIntentRequest req) {
+        if (!enabled) return 0L;
+        byte[] body = encodeIntent(req);
+        appendLock.lock();
+        try {
+            long seq = ++lastSeq;
+            Segment seg = writeRecord(intentType(req), seq, body);
+            seg.live.incrementAndGet();
+            return seq;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Append several intents under one lock acquisition, in list order. Like {@link #append}, nothing is durable
+     * until {@link #awaitDurable(long)} returns for the last sequence number.
+     *
+     * @return WAL sequence number per intent (all 0 when disabled)
+     */
+    public long[] appendAll(List<TransferIntentRequest> reqs) {
+        long[] seqs = new long[reqs.size()];
+        if (!enabled || reqs.isEmpty()) return seqs;
+        byte[][] bodies = new byte[reqs.size()][];
+        for (int i = 0; i < bodies.length; i++) bodies[i] = encodeIntent(reqs.get(i));
+        appendLock.lock();
+        try {
+            for (int i = 0; i < bodies.length; i++) {
+                seqs[i] = ++lastSeq;
+                Segment seg = writeRecord(intentType(reqs.get(i)), seqs[i], bodies[i]);
+                seg.live.incrementAndGet();
+            }
+            return seqs;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Block until the record with the given sequence number has been forced to disk.
+     *
+     * @throws WalUnavailableException if a force covering the record fails or it is not durable within
+     *                                 {@code wal.commit-timeout-ms}
+     */
+    public void awaitDurable(long seq) {
+        if (!enabled || seq <= 0) return;
+        syncLock.lock();
+        try {
+            if (seq > requestedSeq) {
+                requestedSeq = seq;
+                syncRequested.signal();
+            }
+            long failuresBefore = forceFailures;
+            long remaining = commitTimeoutNanos;
+            while (durableSeq < seq) {
+                if (!running) {
+                    throw new IllegalStateException("IntentWal closed before seq " + seq + " became durable");
+                }
+                if (forceFailures != failuresBefore) {
+                    throw new WalUnavailableException("WAL force failed: " + lastForceFailure);
+                }
+                if (remaining <= 0) {
+                    throw new WalUnavailableException("WAL record " + seq + " not durable within "
+                            + TimeUnit.NANOSECONDS.toMillis(commitTimeoutNanos) + "ms");
+                }
+                remaining = synced.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for WAL commit", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Mark intents as consumed (their batch is on-chain). Written asynchronously: the ACK is durable once
+     * {@link #awaitDurable(long)} returns for the returned sequence number. Fully consumed segments at the head of
+     * the log are deleted.
+     *
+     * @return sequence number of the last ACK record (0 if nothing was written)
+     */
+    public long acknowledge(long[] seqs) {
+        if (!enabled || seqs == null || seqs.length == 0) return 0L;
+        long last;
+        appendLock.lock();
+        try {
+            for (int from = 0; from < seqs.length; from += MAX_ACKS_PER_RECORD) {
+                int to = Math.min(seqs.length, from + MAX_ACKS_PER_RECORD);
+                ByteBuffer body = ByteBuffer.allocate(4 + 8 * (to - from));
+                body.putInt(to - from);
+                for (int i = from; i < to; i++) body.putLong(seqs[i]);
+                writeRecord(TYPE_ACK, ++lastSeq, body.array());
+            }
+            for (long seq : seqs) {
+                if (seq <= 0) continue;
+                Map.Entry<Long, Segment> e = segments.floorEntry(seq);
+                if (e != null) e.getValue().live.decrementAndGet();
+            }
+            truncatePrefix();
+            last = lastSeq;
+        } finally {
+            appendLock.unlock();
+        }
+        requestSync(last);
+        return last;
+    }
+
+    // ------------------------------------------------------------------------------------------------------------
+    // Group commit
+    // ------------------------------------------------------------------------------------------------------------
+
+    private void requestSync(long seq) {
+        syncLock.lock();
+        try {
+            if (seq > requestedSeq) {
+                requestedSeq = seq;
+                syncRequested.signal();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void commitLoop() {
+        long backoffMs = 0;
+        while (running) {
+            syncLock.lock();
+            try {
+                while (running && requestedSeq <= durableSeq) {
+                    syncRequested.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                syncLock.unlock();
+            }
+            if (!running) return;
+
+            // Let concurrent producers pile in behind the first waiter; they all share the next force().
+            if (groupCommitDelayMs > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(groupCommitDelayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (flush()) {
+                backoffMs = 0;
+                continue;
+            }
+            // Disk trouble: don't spin on force(); waiters have been failed and new ones will time out.
+            backoffMs = Math.min(MAX_RETRY_BACKOFF_MS, Math.max(10, backoffMs * 2));
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Force every dirty segment; false (after failing the current waiters) if a force failed.
+     */
+    private boolean flush() {
+        long target;
+        List<Segment> toForce;
+        appendLock.lock();
+        try {
+            target = lastSeq;
+            toForce = new ArrayList<>(dirty);
+            dirty.clear();
+        } finally {
+            appendLock.unlock();
+        }
+
+        for (int i = 0; i < toForce.size(); i++) {
+            Segment seg = toForce.get(i);
+            try {
+                force.accept(seg.buffer);
+            } catch (Exception e) {
+                // Never report records as durable that may not be on disk; retry them on the next attempt.
+                appendLock.lock();
+                try {
+                    dirty.addAll(toForce.subList(i, toForce.size()));
+                } finally {
+                    appendLock.unlock();
+                }
+                syncLock.lock();
+                try {
+                    if (lastForceFailure == null) {
+                        log.error("IntentWal force failed for {}; failing waiters and retrying with backoff",
+                                seg.path, e);
+                    } else {
+                        log.debug("IntentWal force still failing for {}: {}", seg.path, e.getMessage());
+                    }
+                    forceFailures++;
+                    lastForceFailure = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                    synced.signalAll();
+                } finally {
+                    syncLock.unlock();
+                }
+                return false;
+            }
+        }
+
+        syncLock.lock();
+        try {
+            if (lastForceFailure != null) {
+                log.info("IntentWal force succeeded again ({} failed attempts since startup)", forceFailures);
+                lastForceFailure = null;
+            }
+            durableSeq = Math.max(durableSeq, target);
+            synced.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------------------------------------------
+    // Segments
+    // ------------------------------------------------------------------------------------------------------------
+
+    private static final class Segment {
+        final long firstSeq;
+        final Path path;
+        final AtomicInteger live = new AtomicInteger();
+        FileChannel channel;
+        MappedByteBuffer buffer;
+        int writePos;
+        boolean sealed;
+
+        Segment(long firstSeq, Path path) {
+            this.firstSeq = firstSeq;
+            this.path = path;
+        }
+    }
+
+    private Segment writeRecord(byte type, long seq, byte[] body) {
+        int recordSize = HEADER_SIZE + body.length + TRAILER_SIZE;
+        // Always keep 4 zero bytes after the last record as the end marker.
+        if (recordSize + 4 > segmentSize) {
+            throw new IllegalArgumentException("WAL record of " + recordSize + " bytes exceeds segment size");
+        }
+        try {
+            if (active.writePos + recordSize + 4 > segmentSize) {
+                active.sealed = true;
+                openSegment(seq);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to rotate WAL segment", e);
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.putInt(body.length);
+        record.put(type);
+        record.putLong(seq);
+        record.put(body);
+        crc.update(record.array(), 4, 1 + 8 + body.length);
+        record.putInt((int) crc.getValue());
+
+        active.buffer.put(active.writePos, record.array());
+        active.writePos += recordSize;
+        dirty.add(active);
+        return active;
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        Path path = directory.resolve(String.format("intents-%020d.wal", firstSeq));
+        Segment seg = new Segment(firstSeq, path);
+        seg.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        seg.buffer = seg.channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segments.put(firstSeq, seg);
+        active = seg;
+    }
+
+    /**
+     * Delete sealed, fully acknowledged segments from the head of the log.
+     */
+    private void truncatePrefix() {
+        while (segments.size() > 1) {
+            Segment head = segments.firstEntry().getValue();
+            if (!head.sealed || head.live.get() > 0) return;
+            segments.pollFirstEntry();
+            dirty.remove(head);
+            try {
+                if (head.channel != null) head.channel.close();
+                Files.deleteIfExists(head.path);
+                log.debug("IntentWal deleted consumed segment {}", head.path.getFileName());
+            } catch (IOException e) {
+                log.warn("IntentWal could not delete segment {}: {}", head.path, e.getMessage());
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------------------
+    // Recovery
+    // ------------------------------------------------------------------------------------------------------------
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(directory)) {
+            files = s.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches()).sorted().toList();
+        }
+
+        TreeMap<Long, TransferIntentRequest> unacked = new TreeMap<>();
+        for (Path file : files) {
+            Matcher m = SEGMENT_NAME.matcher(file.getFileName().toString());
+            if (!m.matches()) continue;
+            Segment seg = new Segment(Long.parseLong(m.group(1)), file);
+            seg.sealed = true;
+            segments.put(seg.firstSeq, seg);
+            scanSegment(seg, unacked);
+        }
+
+        for (Long seq : unacked.keySet()) {
+            Map.Entry<Long, Segment> e = segments.floorEntry(seq);
+            if (e != null) e.getValue().live.incrementAndGet();
+        }
+
+        List<Entry> out = new ArrayList<>(unacked.size());
+        unacked.forEach((seq, req) -> out.add(new Entry(seq, req)));
+        this.recovered = out;
+    }
+
+    private void scanSegment(Segment seg, TreeMap<Long, TransferIntentRequest> unacked) throws IOException {
+        try (FileChannel ch = FileChannel.open(seg.path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size == 0) return;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int pos = 0;
+            while (pos + HEADER_SIZE + TRAILER_SIZE <= size) {
+                int bodyLength = buf.getInt(pos);
+                if (bodyLength <= 0 || pos + HEADER_SIZE + bodyLength + TRAILER_SIZE > size) break;
+
+                byte type = buf.get(pos + 4);
+                long seq = buf.getLong(pos + 5);
+                byte[] body = new byte[bodyLength];
+                buf.get(pos + HEADER_SIZE, body);
+                int storedCrc = buf.getInt(pos + HEADER_SIZE + bodyLength);
+
+                CRC32 crc = new CRC32();
+                crc.update(type);
+                crc.update(ByteBuffer.allocate(8).putLong(0, seq).array());
+                crc.update(body);
+                if ((int) crc.getValue() != storedCrc) {
+                    // Torn tail of a write that was never acknowledged; nothing valid follows it.
+                    log.warn("IntentWal: checksum mismatch in {} at offset {}, ignoring rest of segment",
+                            seg.path.getFileName(), pos);
+                    break;
+                }
+
+                lastSeq = Math.max(lastSeq, seq);
+                if (type == TYPE_INTENT) {
+                    unacked.put(seq, decodeIntent(body));
+                } else if (type == TYPE_INTENT_PACKED) {
+                    unacked.put(seq, IntentWireFormat.fromFields(ByteBuffer.wrap(body).asReadOnlyBuffer()));
+                } else if (type == TYPE_ACK) {
+                    ByteBuffer acks = ByteBuffer.wrap(body);
+                    int n = acks.getInt();
+                    for (int i = 0; i < n; i++) unacked.remove(acks.getLong());
+                }
+                pos += HEADER_SIZE + bodyLength + TRAILER_SIZE;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------------------
+    // Intent codec
+    // ------------------------------------------------------------------------------------------------------------
+
+    private static byte intentType(TransferIntentRequest req) {
+        return req.getPackedFields() != null ? TYPE_INTENT_PACKED : TYPE_INTENT;
+    }
+
+    static byte[] encodeIntent(TransferIntentRequest req) {
+        if (req.getPackedFields() != null) {
+            byte[] fields = new byte[IntentWireFormat.FIELDS_LENGTH];
+            req.getPackedFields().get(0, fields);
+            return fields;
+        }
+        byte[] from = utf8(req.getFrom());
+        byte[] to = utf8(req.getTo());
+        byte[] amount = utf8(req.getAmount());
+        ByteBuffer buf = ByteBuffer.allocate(3 * 2 + from.length + to.length + amount.length + 8 + 8 + 4 + 4);
+        putString(buf, from);
+        putString(buf, to);
+        putString(buf, amount);
+        buf.putLong(req.getNonce() != null ? req.getNonce() : 0L);
+        buf.putLong(req.getTimestamp() != null ? req.getTimestamp() : 0L);
+        buf.putInt(req.getRecipientCount() != null ? req.getRecipientCount() : 0);
+        buf.putInt(req.getTxType() != null ? req.getTxType() : 0);
+        return buf.array();
+    }
+
+    static TransferIntentRequest decodeIntent(byte[] body) {
+        ByteBuffer buf = ByteBuffer.wrap(body);
+        TransferIntentRequest req = new TransferIntentRequest();
+        req.setFrom(getString(buf));
+        req.setTo(getString(buf));
+        req.setAmount(getString(buf));
+        req.setNonce(buf.getLong());
+        req.setTimestamp(buf.getLong());
+        req.setRecipientCount(buf.getInt());
+        req.setTxType(buf.getInt());
+        return req;
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        if (bytes.length > 0xFFFF) throw new IllegalArgumentException("WAL string field too long");
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getShort() & 0xFFFF;
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ------------------------------------------------------------------------------------------------------------
+
+    @PreDestroy
+    public void close() {
+        if (!enabled || !running) return;
+        flush();
+        running = false;
+        syncLock.lock();
+        try {
+            syncRequested.signalAll();
+            synced.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        appendLock.lock();
+        try {
+            for (Segment seg : segments.values()) {
+                if (seg.channel != null) {
+                    try {
+                        seg.channel.close();
+                    } catch (IOException e) {
+                        log.warn("IntentWal close failed for {}: {}", seg.path, e.getMessage());
+                    }
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package dao.tron.tsol.wal;
+
+/**
+ * Accepted intents could not be made durable (a WAL force failed or did not complete in time). The intents were
+ * not acknowledged to the client and may be retried.
+ */
+public class WalUnavailableException extends IllegalStateException {
+
+    public WalUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,110 @@
+package dao.tron.tsol.controller;
+
+import dao.tron.tsol.model.TransferIntentRequest;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkIntentReaderTest {
+
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+    private static final Function<TransferIntentRequest, List<String>> NO_RULES = req -> List.of();
+    private static final BulkIntentReader READER = new BulkIntentReader(JsonMapper.builder().build());
+
+    private static final String VALID = """
+            {"from":"TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M","to":"TVKAAcqpQxz3J4waayePr8dQjSQ2XHkdbF","amount":"1000",\
+            "nonce":%d,"timestamp":1700000000,"recipientCount":1,"txType":0}""";
+    private static final String NO_NONCE = """
+            {"from":"TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M","to":"TVKAAcqpQxz3J4waayePr8dQjSQ2XHkdbF","amount":"",\
+            "timestamp":1700000000,"recipientCount":1,"txType":0}""";
+
+    @Test
+    void jsonArrayAndNdjsonGivePerItemResults() {
+        String array = "[" + VALID.formatted(1) + "," + NO_NONCE + "," + VALID.formatted(2) + "]";
+        String ndjson = VALID.formatted(1) + "\n" + NO_NONCE + "\n" + VALID.formatted(2) + "\n";
+
+        for (String body : List.of(array, ndjson)) {
+            BulkIntentReader.Result result = read(body, 10);
+            assertEquals(List.of(1L, 2L), result.accepted().stream().map(TransferIntentRequest::getNonce).toList());
+            assertEquals(3, result.items().size());
+            assertEquals(1, result.rejectedCount());
+            BulkIntentReader.ItemResult invalid = result.items().get(1);
+            assertEquals(1, invalid.index());
+            assertFalse(invalid.accepted());
+            assertEquals(2, invalid.errors().size(), invalid.errors().toString());
+            assertTrue(invalid.errors().get(0).startsWith("amount"));
+            assertTrue(invalid.errors().get(1).startsWith("nonce"));
+            assertTrue(result.items().get(2).accepted());
+        }
+    }
+
+    @Test
+    void largeUploadIsConsumedAsAStream() {
+        // 50k NDJSON lines arriving as many small chunks, bound one intent at a time.
+        int n = 50_000;
+        InputStream body = new SequenceInputStream(Collections.enumeration(IntStream.range(0, n)
+                .mapToObj(i -> (InputStream) new ByteArrayInputStream(
+                        (VALID.formatted(i) + "\n").getBytes(StandardCharsets.UTF_8)))
+                .toList()));
+        BulkIntentReader.Result result = READER.read(body, VALIDATOR, NO_RULES, n);
+        assertEquals(n, result.accepted().size());
+        assertEquals(n - 1, result.accepted().getLast().getNonce());
+    }
+
+    @Test
+    void malformedOrOversizedBodyIsRejectedAsAWhole() {
+        IllegalArgumentException malformed = assertThrows(IllegalArgumentException.class,
+                () -> read("[" + VALID.formatted(1) + ", {\"from\": ", 10));
+        assertTrue(malformed.getMessage().contains("index 1"), malformed.getMessage());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> read("[" + VALID.formatted(1) + ",{\"nonce\":\"abc\"}]", 10));
+        assertThrows(IllegalArgumentException.class, () -> read("[" + VALID.formatted(1) + ",null]", 10));
+
+        IllegalArgumentException tooMany = assertThrows(IllegalArgumentException.class,
+                () -> read(VALID.formatted(1) + "\n" + VALID.formatted(2) + "\n" + VALID.formatted(3), 2));
+        assertTrue(tooMany.getMessage().contains("max 2"));
+    }
+
+    @Test
+    void intakeRulesRejectItemsThatPassBeanValidation() {
+        Function<TransferIntentRequest, List<String>> oddNoncesOnly =
+                req -> req.getNonce() % 2 == 0 ? List.of("nonce: even") : List.of();
+        String body = VALID.formatted(1) + "\n" + VALID.formatted(2) + "\n" + NO_NONCE + "\n";
+        BulkIntentReader.Result result = READER.read(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), VALIDATOR, oddNoncesOnly, 10);
+        assertEquals(List.of(1L), result.accepted().stream().map(TransferIntentRequest::getNonce).toList());
+        assertEquals(List.of("nonce: even"), result.items().get(1).errors());
+        // bean validation failures are reported without running the rules on missing fields
+        assertEquals(2, result.items().get(2).errors().size());
+    }
+
+    @Test
+    void itemsTurnedAwayAtIntakeAreReportedPerIndex() {
+        BulkIntentReader.Result result = read("[" + VALID.formatted(1) + "," + NO_NONCE + "," + VALID.formatted(2) + "]", 10)
+                .withRejected(Arrays.asList(BulkIntentReader.DUPLICATE, null));
+        assertEquals(List.of(2L), result.accepted().stream().map(TransferIntentRequest::getNonce).toList());
+        assertEquals(2, result.rejectedCount());
+        assertEquals(List.of(BulkIntentReader.DUPLICATE), result.items().get(0).errors());
+        assertFalse(result.items().get(1).accepted());
+        assertTrue(result.items().get(2).accepted());
+    }
+
+    private static BulkIntentReader.Result read(String body, int maxItems) {
+        return READER.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), VALIDATOR, NO_RULES,
+                maxItems);
+    }
+}
@@ -0,0 +1,242 @@
+package dao.tron.tsol.repository;
+
+import dao.tron.tsol.config.RepositoryProperties;
+import dao.tron.tsol.model.BatchStatus;
+import dao.tron.tsol.model.LocalBatch;
+import dao.tron.tsol.model.StoredTransfer;
+import dao.tron.tsol.model.TransferData;
+import dao.tron.tsol.util.PackedProof;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileBatchRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void batchesSurviveRestartWithIndexes() {
+        FileBatchRepository repo = open(16);
+        LocalBatch b1 = batch(101, BatchStatus.SUBMITTED_ONCHAIN);
+        LocalBatch b2 = batch(102, BatchStatus.COMPLETED);
+        repo.save(b1);
+        repo.save(b2);
+        assertEquals(1L, b1.getLocalId());
+        assertEquals(2L, b2.getLocalId());
+
+        FileBatchRepository reopened = open(16);
+        assertEquals(2, reopened.findAll().size());
+
+        LocalBatch loaded = reopened.findByOnChainBatchId(101).orElseThrow();
+        assertEquals(b1, loaded);
+        assertEquals(b2, reopened.findByMerkleRoot(root(102)).orElseThrow());
+        assertEquals(b2, reopened.findBySubmitTxId("tx-102").orElseThrow());
+        assertTrue(reopened.findByOnChainBatchId(999).isEmpty());
+
+        // Only the unfinished batch is in the scheduler's working set.
+        List<LocalBatch> unfinished = reopened.findUnfinished();
+        assertEquals(1, unfinished.size());
+        assertEquals(101L, unfinished.getFirst().getOnChainBatchId());
+
+        // New batches continue after the restored localIds.
+        LocalBatch b3 = batch(103, BatchStatus.SUBMITTED_ONCHAIN);
+        reopened.save(b3);
+        assertEquals(3L, b3.getLocalId());
+    }
+
+    @Test
+    void updatesArePersistedAndFinishedBatchesLeaveTheWorkingSet() {
+        FileBatchRepository repo = open(16);
+        LocalBatch b = batch(7, BatchStatus.SUBMITTED_ONCHAIN);
+        repo.save(b);
+
+        b.setUnlockTime(1234L);
+        b.setStatus(BatchStatus.COMPLETED);
+        b.getTransfers().getFirst().setExecuted(true);
+        b.getTransfers().getFirst().setExecutionTxId("exec-1");
+        repo.save(b);
+        assertTrue(repo.findUnfinished().isEmpty());
+
+        LocalBatch loaded = open(16).findByLocalId(b.getLocalId()).orElseThrow();
+        assertEquals(BatchStatus.COMPLETED, loaded.getStatus());
+        assertEquals(1234L, loaded.getUnlockTime());
+        assertTrue(loaded.getTransfers().getFirst().isExecuted());
+        assertEquals("exec-1", loaded.getTransfers().getFirst().getExecutionTxId());
+    }
+
+    @Test
+    void finishedBatchesAreReadBackFromDiskWhenEvicted() {
+        FileBatchRepository repo = open(1);
+        for (int i = 1; i <= 5; i++) {
+            repo.save(batch(i, BatchStatus.COMPLETED));
+        }
+        for (int i = 1; i <= 5; i++) {
+            LocalBatch b = repo.findByOnChainBatchId(i).orElseThrow();
+            assertEquals(root(i), b.getMerkleRootHex());
+            assertEquals(2, b.getTransfers().size());
+        }
+        assertEquals(5, repo.findAll().size());
+    }
+
+    @Test
+    void batchWrittenAheadKeepsWhatItsSubmitIsSettledWith() {
+        FileBatchRepository repo = open(16);
+        LocalBatch b = batch(0, BatchStatus.CREATED);
+        b.setSubmitExpiration(1_700_000_060_000L);
+        b.setWalSeqs(new long[]{11L, 12L});
+        repo.save(b);
+
+        FileBatchRepository reopened = open(16);
+        assertEquals(List.of(b), reopened.findByStatus(BatchStatus.CREATED));
+        LocalBatch loaded = reopened.findBySubmitTxId("tx-0").orElseThrow();
+        assertEquals(1_700_000_060_000L, loaded.getSubmitExpiration());
+        assertArrayEquals(new long[]{11L, 12L}, loaded.getWalSeqs());
+
+        // on-chain: the WAL seqs are dropped, the batch is found under its on-chain id
+        loaded.setOnChainBatchId(5L);
+        loaded.setStatus(BatchStatus.SUBMITTED_ONCHAIN);
+        loaded.setWalSeqs(null);
+        reopened.save(loaded);
+        assertNull(open(16).findByOnChainBatchId(5L).orElseThrow().getWalSeqs());
+    }
+
+    @Test
+    void unlockQueueReturnsOnlyDueBatchesInUnlockOrder() {
+        FileBatchRepository repo = open(16);
+        LocalBatch late = batch(1, BatchStatus.SUBMITTED_ONCHAIN);
+        late.setUnlockTime(2_000L);
+        LocalBatch early = batch(2, BatchStatus.UNLOCKED);
+        early.setUnlockTime(1_000L);
+        LocalBatch unknown = batch(3, BatchStatus.SUBMITTED_ONCHAIN);   // unlock time not read yet
+        LocalBatch executing = batch(4, BatchStatus.EXECUTING);
+        executing.setUnlockTime(500L);
+        for (LocalBatch b : List.of(late, early, unknown, executing)) repo.save(b);
+        for (int i = 10; i < 20; i++) repo.save(batch(i, BatchStatus.COMPLETED));
+
+        assertEquals(List.of(3L), onChainIds(repo.findDueForExecution(999L)));
+        assertEquals(List.of(3L, 2L), onChainIds(repo.findDueForExecution(1_000L)));
+        assertEquals(List.of(3L, 2L, 1L), onChainIds(repo.findDueForExecution(5_000L)));
+
+        // Re-indexed on save: unlock time learned, then executed.
+        unknown.setUnlockTime(3_000L);
+        repo.save(unknown);
+        early.setStatus(BatchStatus.COMPLETED);
+        repo.save(early);
+        assertEquals(List.of(1L), onChainIds(repo.findDueForExecution(2_500L)));
+        assertEquals(List.of(1L, 3L), onChainIds(repo.findDueForExecution(3_000L)));
+        assertEquals(11, repo.findByStatus(BatchStatus.COMPLETED).size());
+        assertEquals(List.of(4L), onChainIds(repo.findByStatus(BatchStatus.EXECUTING)));
+
+        // The index is rebuilt from the batch files on restart.
+        FileBatchRepository reopened = open(16);
+        assertEquals(List.of(1L, 3L), onChainIds(reopened.findDueForExecution(3_000L)));
+        assertEquals(11, reopened.findByStatus(BatchStatus.COMPLETED).size());
+    }
+
+    @Test
+    void reKeyedBatchIsNoLongerFoundUnderItsOldOnChainId() {
+        FileBatchRepository repo = open(1);
+        LocalBatch open = batch(3, BatchStatus.SUBMITTED_ONCHAIN);
+        LocalBatch done = batch(5, BatchStatus.FAILED);
+        repo.save(open);
+        repo.save(done);
+        repo.save(batch(6, BatchStatus.COMPLETED));     // evicts the finished one from the hot cache
+
+        // Changed in place (resident) and re-read from disk (finished), as log recovery does.
+        open.setOnChainBatchId(4);
+        repo.save(open);
+        LocalBatch reloaded = repo.findByLocalId(done.getLocalId()).orElseThrow();
+        reloaded.setOnChainBatchId(7);
+        reloaded.setStatus(BatchStatus.SUBMITTED_ONCHAIN);
+        repo.save(reloaded);
+
+        assertTrue(repo.findByOnChainBatchId(3).isEmpty());
+        assertTrue(repo.findByOnChainBatchId(5).isEmpty());
+        assertEquals(open.getLocalId(), repo.findByOnChainBatchId(4).orElseThrow().getLocalId());
+        assertEquals(done.getLocalId(), repo.findByOnChainBatchId(7).orElseThrow().getLocalId());
+    }
+
+    @Test
+    void pagesNewestFirstAndKeepsTotalsWithoutAFullScan() {
+        FileBatchRepository repo = open(1);
+        for (int i = 1; i <= 5; i++) repo.save(batch(i, BatchStatus.COMPLETED));
+        LocalBatch open = batch(6, BatchStatus.SUBMITTED_ONCHAIN);
+        repo.save(open);
+
+        assertEquals(List.of(6L, 5L), onChainIds(repo.findPage(Long.MAX_VALUE, 2)));
+        assertEquals(List.of(4L, 3L), onChainIds(repo.findPage(5L, 2)));
+        assertEquals(List.of(1L), onChainIds(repo.findPage(2L, 2)));
+        assertTrue(repo.findPage(1L, 2).isEmpty());
+
+        assertEquals(new BatchTotals(6, 5, 12, 0), repo.totals());
+
+        // Executed flags on the open batch count live; re-saving a finished batch replaces its previous counts.
+        open.getTransfers().getFirst().setExecuted(true);
+        LocalBatch done = repo.findByOnChainBatchId(3).orElseThrow();
+        done.getTransfers().forEach(t -> t.setExecuted(true));
+        repo.save(done);
+        repo.save(done);
+        assertEquals(new BatchTotals(6, 5, 12, 3), repo.totals());
+
+        // Back to an unfinished status (reconciliation): no longer completed, counted from the resident batch.
+        done.setStatus(BatchStatus.SUBMITTED_ONCHAIN);
+        repo.save(done);
+        assertEquals(new BatchTotals(6, 4, 12, 3), repo.totals());
+
+        open.setStatus(BatchStatus.COMPLETED);
+        repo.save(open);
+        assertEquals(new BatchTotals(6, 5, 12, 3), open(16).totals());
+    }
+
+    private static List<Long> onChainIds(List<LocalBatch> batches) {
+        return batches.stream().map(LocalBatch::getOnChainBatchId).toList();
+    }
+
+    private FileBatchRepository open(int hotCacheSize) {
+        RepositoryProperties props = new RepositoryProperties();
+        props.setDirectory(dir.toString());
+        props.setHotCacheSize(hotCacheSize);
+        return new FileBatchRepository(props);
+    }
+
+    private static String root(long onChainId) {
+        return String.format("0x%064x", onChainId);
+    }
+
+    private static LocalBatch batch(long onChainId, BatchStatus status) {
+        LocalBatch b = new LocalBatch();
+        b.setOnChainBatchId(onChainId);
+        b.setSubmitTxId("tx-" + onChainId);
+        b.setMerkleRootHex(root(onChainId));
+        b.setTxCount(2);
+        b.setSubmittedAt(1_700_000_000L);
+        b.setBatchSalt(42L);
+        b.setStatus(status);
+        b.setTransfers(new ArrayList<>(List.of(transfer(onChainId, 1), transfer(onChainId, 2))));
+        return b;
+    }
+
+    private static StoredTransfer transfer(long batchId, long nonce) {
+        TransferData d = new TransferData();
+        d.setFrom("TFrom" + nonce);
+        d.setTo("TTo" + nonce);
+        d.setAmount("1000");
+        d.setNonce(nonce);
+        d.setTimestamp(1_700_000_000L);
+        d.setRecipientCount(1);
+        d.setBatchId(batchId);
+        d.setTxType(0);
+
+        StoredTransfer st = new StoredTransfer();
+        st.setTxData(d);
+        st.setTxProof(PackedProof.fromHexList(List.of("0x" + "ab".repeat(32), "0x" + "cd".repeat(32))));
+        st.setWhitelistProof(PackedProof.EMPTY);
+        return st;
+    }
+}
@@ -0,0 +1,65 @@
+package dao.tron.tsol.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnlockTimerTest {
+
+    private final List<Long> firedAtMs = new CopyOnWriteArrayList<>();
+    private final List<Long> firedIds = new CopyOnWriteArrayList<>();
+
+    @Test
+    void wakesUpAtEachUnlockTimeAndNotBefore() throws Exception {
+        UnlockTimer timer = new UnlockTimer(this::fired, System::currentTimeMillis);
+        long start = System.currentTimeMillis();
+        timer.schedule(1, start + 300);
+        timer.schedule(2, start + 100);
+        timer.schedule(3, 0L);                 // unlock time not known yet: due now
+
+        awaitFires(3, 2_000);
+        assertTrue(firedAtMs.get(0) - start < 90, "unknown unlock time fires right away");
+        assertTrue(firedAtMs.get(1) - start >= 100, "fired early: " + (firedAtMs.get(1) - start));
+        assertTrue(firedAtMs.get(2) - start >= 300, "fired early: " + (firedAtMs.get(2) - start));
+        assertEquals(List.of(3L, 2L, 1L), firedIds);
+        assertEquals(0, timer.size());
+        timer.shutdown();
+    }
+
+    @Test
+    void rescheduleReplacesAndCancelDropsTheWakeup() throws Exception {
+        UnlockTimer timer = new UnlockTimer(this::fired, System::currentTimeMillis);
+        long start = System.currentTimeMillis();
+        timer.schedule(1, start + 100);
+        timer.schedule(1, start + 400);        // unlock time changed
+        timer.schedule(1, start + 400);        // saved again unchanged: same wakeup
+        timer.schedule(2, start + 150);
+        timer.cancel(2);                       // executed / finished before its wakeup
+        assertEquals(1, timer.size());
+
+        Thread.sleep(250);
+        assertTrue(firedAtMs.isEmpty());
+        awaitFires(1, 2_000);
+        assertTrue(firedAtMs.getFirst() - start >= 400);
+        Thread.sleep(100);
+        assertEquals(1, firedAtMs.size());
+        assertEquals(0, timer.size());
+        timer.shutdown();
+    }
+
+    private void fired(long localId) {
+        firedIds.add(localId);
+        firedAtMs.add(System.currentTimeMillis());
+    }
+
+    private void awaitFires(int n, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (firedAtMs.size() < n && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(n, firedAtMs.size());
+    }
+}
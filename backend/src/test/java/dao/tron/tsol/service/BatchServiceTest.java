@@ -0,0 +1,483 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.config.BatchProperties;
+import dao.tron.tsol.config.ChainProperties;
+import dao.tron.tsol.config.NodeProperties;
+import dao.tron.tsol.config.SettlementProperties;
+import dao.tron.tsol.config.WalProperties;
+import dao.tron.tsol.config.WhitelistProperties;
+import dao.tron.tsol.model.BatchStatus;
+import dao.tron.tsol.model.LocalBatch;
+import dao.tron.tsol.model.StoredTransfer;
+import dao.tron.tsol.model.TransferData;
+import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.repository.InMemoryBatchRepository;
+import dao.tron.tsol.wal.IntentWal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchServiceTest {
+
+    private static final String FROM = "TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M";
+    private static final String TO = "TVKAAcqpQxz3J4waayePr8dQjSQ2XHkdbF";
+
+    @Test
+    void nextBatchIsSealedWhilePreviousIsConfirming() throws Exception {
+        PipelineClient client = new PipelineClient();
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+        BatchService service = newService(intents, client, repository, 2);
+
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        client.confirmGate.put("tx-1", releaseFirst);
+
+        addIntents(intents, 6);
+        CompletableFuture<LocalBatch> first = service.createAndSubmitBatch(2);
+        CompletableFuture<LocalBatch> second = service.createAndSubmitBatch(2);
+
+        // Batch 2 is broadcast and confirmed while batch 1 is still waiting for its receipt...
+        assertTrue(client.confirmed.await("tx-2", 5_000));
+        assertEquals(List.of("tx-1", "tx-2"), client.broadcastOrder);
+        // ...but is not indexed before batch 1.
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+        assertEquals(2, service.getBatchesInFlight());
+
+        // Pipeline full: the next call leaves the intents queued.
+        assertNull(service.createAndSubmitBatch(2).join());
+        assertEquals(2, intents.getPendingCount());
+
+        releaseFirst.countDown();
+        LocalBatch b1 = first.get(5, TimeUnit.SECONDS);
+        LocalBatch b2 = second.get(5, TimeUnit.SECONDS);
+
+        assertTrue(b1.getLocalId() < b2.getLocalId());
+        assertEquals(1L, b1.getOnChainBatchId());
+        assertEquals(2L, b2.getOnChainBatchId());
+        assertEquals(BatchStatus.SUBMITTED_ONCHAIN, b2.getStatus());
+        for (StoredTransfer st : b2.getTransfers()) {
+            assertEquals(2L, st.getTxData().getBatchId());
+        }
+        assertEquals(2, repository.findAll().size());
+        assertEquals(0, service.getBatchesInFlight());
+        service.shutdown();
+    }
+
+    @Test
+    void failedBatchDoesNotBlockLaterBatches() throws Exception {
+        PipelineClient client = new PipelineClient();
+        client.failConfirm.add("tx-1");
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+        BatchService service = newService(intents, client, repository, 2);
+
+        addIntents(intents, 4);
+        CompletableFuture<LocalBatch> first = service.createAndSubmitBatch(2);
+        CompletableFuture<LocalBatch> second = service.createAndSubmitBatch(2);
+
+        assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+        LocalBatch b2 = second.get(5, TimeUnit.SECONDS);
+        assertEquals("tx-2", b2.getSubmitTxId());
+        // the batch written ahead of the reverted submit is kept as FAILED
+        assertEquals(List.of(BatchStatus.FAILED, BatchStatus.SUBMITTED_ONCHAIN),
+                repository.findAll().stream().map(LocalBatch::getStatus).toList());
+
+        // Root not on-chain: the failed batch's intents are back at the head of the queue, in order.
+        assertEquals(2, intents.getPendingCount());
+        LocalBatch retried = service.createAndSubmitBatch(2).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(0L, 1L), nonces(retried));
+        service.shutdown();
+    }
+
+    @Test
+    void failedBroadcastRequeuesBeforeNewerIntents() throws Exception {
+        PipelineClient client = new PipelineClient();
+        client.failBroadcasts.set(1);
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+        BatchService service = newService(intents, client, repository, 1);
+
+        addIntents(intents, 3);
+        assertThrows(Exception.class, () -> service.createAndSubmitBatch(2).get(5, TimeUnit.SECONDS));
+        assertEquals(3, intents.getPendingCount());
+        assertEquals(List.of(0L, 1L), nonces(service.createAndSubmitBatch(2).get(5, TimeUnit.SECONDS)));
+        service.shutdown();
+    }
+
+    @Test
+    void failedConfirmationOfALandedSubmitIsIndexedNotResealed() throws Exception {
+        PipelineClient client = new PipelineClient();
+        client.failConfirm.add("tx-1");
+        client.landed.add("tx-1");
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+        BatchService service = newService(intents, client, repository, 1);
+
+        addIntents(intents, 2);
+        LocalBatch b1 = service.createAndSubmitBatch(2).get(5, TimeUnit.SECONDS);
+        assertEquals("tx-1", b1.getSubmitTxId());
+        assertEquals(1L, b1.getOnChainBatchId());
+        assertEquals(1, repository.findAll().size());
+        assertEquals(0, intents.getPendingCount());
+        service.shutdown();
+    }
+
+    @Test
+    void failedBroadcastOfAnAcceptedSubmitIsIndexedNotResealed() throws Exception {
+        PipelineClient client = new PipelineClient();
+        client.failBroadcasts.set(1);
+        client.landed.add("tx-1");
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+        BatchService service = newService(intents, client, repository, 1);
+
+        addIntents(intents, 2);
+        // the txId was known before the broadcast failed
+        LocalBatch b1 = service.createAndSubmitBatch(2).get(5, TimeUnit.SECONDS);
+        assertEquals("tx-1", b1.getSubmitTxId());
+        assertEquals(1, repository.findAll().size());
+        assertEquals(0, intents.getPendingCount());
+        service.shutdown();
+    }
+
+    @Test
+    void batchIsWrittenAheadAsCreatedBeforeItsSubmitIsBroadcast() throws Exception {
+        PipelineClient client = new PipelineClient();
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+        client.writtenAhead = repository;
+        BatchService service = newService(intents, client, repository, 1);
+
+        addIntents(intents, 2);
+        LocalBatch batch = service.createAndSubmitBatch(2).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(BatchStatus.CREATED), client.statusAtBroadcast);
+        // the same record became the on-chain batch
+        assertEquals(List.of(batch), repository.findAll());
+        assertEquals(BatchStatus.SUBMITTED_ONCHAIN, batch.getStatus());
+        assertTrue(batch.getSubmitExpiration() > 0L);
+        assertNull(batch.getWalSeqs());
+        service.shutdown();
+    }
+
+    @Test
+    void failedRootLookupKeepsIntentsOutOfTheQueueUntilTheSubmitIsProvenAbsent() throws Exception {
+        PipelineClient client = new PipelineClient();
+        client.failConfirm.add("tx-1");
+        client.failLookup = true;
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+        BatchService service = newService(intents, client, repository, 1);
+
+        addIntents(intents, 2);
+        assertThrows(Exception.class, () -> service.createAndSubmitBatch(2).get(5, TimeUnit.SECONDS));
+        // The submit may be on-chain; sealing the intents again would execute them twice.
+        assertEquals(0, intents.getPendingCount());
+        assertEquals(0, service.getBatchesInFlight());
+        assertEquals(1, service.getUnresolvedBatches());
+        service.resolvePendingBatches().get(5, TimeUnit.SECONDS);
+        assertEquals(0, intents.getPendingCount());
+
+        client.failLookup = false;
+        service.resolvePendingBatches().get(5, TimeUnit.SECONDS);
+        assertEquals(0, service.getUnresolvedBatches());
+        assertEquals(2, intents.getPendingCount());
+        assertEquals(BatchStatus.FAILED, repository.findBySubmitTxId("tx-1").orElseThrow().getStatus());
+        service.shutdown();
+    }
+
+    @Test
+    void unresolvedSubmitFoundLaterIsIndexed() throws Exception {
+        PipelineClient client = new PipelineClient();
+        client.failBroadcasts.set(1);
+        client.failLookup = true;
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+        BatchService service = newService(intents, client, repository, 1);
+
+        addIntents(intents, 2);
+        assertThrows(Exception.class, () -> service.createAndSubmitBatch(2).get(5, TimeUnit.SECONDS));
+
+        client.failLookup = false;
+        client.landed.add("tx-1");
+        service.resolvePendingBatches().get(5, TimeUnit.SECONDS);
+        LocalBatch batch = repository.findBySubmitTxId("tx-1").orElseThrow();
+        assertEquals(BatchStatus.SUBMITTED_ONCHAIN, batch.getStatus());
+        assertEquals(1L, batch.getOnChainBatchId());
+        assertEquals(0, service.getUnresolvedBatches());
+        assertEquals(0, intents.getPendingCount());
+        service.shutdown();
+    }
+
+    @Test
+    void createdBatchFoundOnStartupWithholdsItsIntentsUntilResolved(@TempDir Path dir) throws Exception {
+        WalProperties props = new WalProperties();
+        props.setDirectory(dir.toString());
+        props.setSegmentSizeBytes(1 << 20);
+        props.setGroupCommitDelayMs(0);
+
+        IntentWal wal = new IntentWal(props);
+        TransferIntentService intents = new TransferIntentService(wal);
+        addIntents(intents, 3);
+        // intents 0 and 1 were sealed and written ahead, then the process died after broadcasting their submit
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+        repository.save(writtenAhead(intents.drain(2), "tx-1"));
+        wal.close();
+
+        IntentWal reopened = new IntentWal(props);
+        TransferIntentService restarted = new TransferIntentService(reopened);
+        PipelineClient client = new PipelineClient();
+        client.failLookup = true;
+        BatchService service = newService(restarted, client, repository, 1);
+        assertEquals(1, restarted.getPendingCount());
+        assertEquals(1, service.getUnresolvedBatches());
+        service.resolvePendingBatches().get(5, TimeUnit.SECONDS);
+        assertEquals(1, service.getUnresolvedBatches());
+
+        client.failLookup = false;
+        client.landed.add("tx-1");
+        service.resolvePendingBatches().get(5, TimeUnit.SECONDS);
+        assertEquals(BatchStatus.SUBMITTED_ONCHAIN, repository.findBySubmitTxId("tx-1").orElseThrow().getStatus());
+        assertEquals(List.of(2L), restarted.drain(10).intents().stream().map(TransferIntentRequest::getNonce).toList());
+        service.shutdown();
+        reopened.close();
+
+        // acknowledged once indexed: a second restart replays intent 2 only
+        IntentWal again = new IntentWal(props);
+        assertEquals(List.of(2L), again.takeRecovered().stream().map(e -> e.request().getNonce()).toList());
+        again.close();
+    }
+
+    @Test
+    void unsealableIntentsAreDroppedAndTheRestSealed() throws Exception {
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        BatchService service = newService(intents, new PipelineClient(), new InMemoryBatchRepository(), 1);
+
+        TransferIntentRequest badAddress = intent(1);
+        badAddress.setTo("not-an-address");
+        // BATCHED from a sender that is not (or no longer) whitelisted
+        TransferIntentRequest notWhitelisted = intent(3);
+        notWhitelisted.setTxType(2);
+        notWhitelisted.setRecipientCount(2);
+        for (TransferIntentRequest req : List.of(intent(0), badAddress, intent(2), notWhitelisted, intent(4))) {
+            assertTrue(intents.addIntent(req));
+        }
+
+        LocalBatch batch = service.createAndSubmitBatch(5).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(0L, 2L, 4L), nonces(batch));
+        assertEquals(0, intents.getPendingCount());
+        assertEquals(0, service.getBatchesInFlight());
+
+        // Dropped, not parked in the dedup index: the corrected intent is accepted.
+        badAddress.setTo(TO);
+        assertTrue(intents.addIntent(badAddress));
+        assertEquals(List.of(1L), intents.drain(5).intents().stream().map(TransferIntentRequest::getNonce).toList());
+        service.shutdown();
+    }
+
+    @Test
+    void drainOfOnlyUnsealableIntentsCompletesWithNull() {
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        BatchService service = newService(intents, new PipelineClient(), new InMemoryBatchRepository(), 1);
+
+        TransferIntentRequest bad = intent(0);
+        bad.setTo("not-an-address");
+        assertTrue(intents.addIntent(bad));
+        assertNull(service.createAndSubmitBatch(2).join());
+        assertEquals(0, intents.getPendingCount());
+        assertEquals(0, service.getBatchesInFlight());
+        service.shutdown();
+    }
+
+    @Test
+    void nothingPendingCompletesWithNull() {
+        TransferIntentService intents = new TransferIntentService(IntentWal.disabled());
+        BatchService service = newService(intents, new PipelineClient(), new InMemoryBatchRepository(), 1);
+        assertNull(service.createAndSubmitBatch(5).join());
+        assertEquals(0, service.getBatchesInFlight());
+        service.shutdown();
+    }
+
+    private static BatchService newService(TransferIntentService intents,
+                                           SettlementContractClient client,
+                                           InMemoryBatchRepository repository,
+                                           int maxInFlight) {
+        BatchProperties props = new BatchProperties();
+        props.setMaxInFlight(maxInFlight);
+        NodePool nodes = new NodePool(new NodeProperties(), new SettlementProperties());
+        WhitelistService whitelist = new WhitelistService(
+                new WhitelistProperties(), new SettlementProperties(), new ChainProperties(), nodes);
+        return new BatchService(intents, new MerkleTreeService(), client, repository, whitelist, props);
+    }
+
+    private static LocalBatch writtenAhead(DrainedIntents drained, String submitTxId) {
+        LocalBatch batch = new LocalBatch();
+        batch.setSubmitTxId(submitTxId);
+        batch.setMerkleRootHex("0x" + "ab".repeat(32));
+        batch.setTxCount(drained.size());
+        batch.setStatus(BatchStatus.CREATED);
+        batch.setBatchSalt(42L);
+        batch.setSubmitExpiration(System.currentTimeMillis() + 60_000L);
+        batch.setWalSeqs(drained.walSeqs());
+        batch.setTransfers(drained.intents().stream().map(req -> {
+            TransferData d = new TransferData();
+            d.setFrom(req.getFrom());
+            d.setTo(req.getTo());
+            d.setAmount(req.getAmount());
+            d.setNonce(req.getNonce());
+            d.setTimestamp(req.getTimestamp());
+            d.setRecipientCount(req.getRecipientCount());
+            d.setTxType(req.getTxType());
+            StoredTransfer st = new StoredTransfer();
+            st.setTxData(d);
+            return st;
+        }).toList());
+        return batch;
+    }
+
+    private static List<Long> nonces(LocalBatch batch) {
+        return batch.getTransfers().stream().map(st -> st.getTxData().getNonce()).toList();
+    }
+
+    private static void addIntents(TransferIntentService intents, int n) {
+        for (long i = 0; i < n; i++) {
+            intents.addIntent(intent(i));
+        }
+    }
+
+    private static TransferIntentRequest intent(long nonce) {
+        TransferIntentRequest req = new TransferIntentRequest();
+        req.setFrom(FROM);
+        req.setTo(TO);
+        req.setAmount("1000");
+        req.setNonce(nonce);
+        req.setTimestamp(1_700_000_000L);
+        req.setRecipientCount(1);
+        req.setTxType(0);
+        return req;
+    }
+
+    /**
+     * Fake chain: txIds and batchIds are assigned in broadcast order; confirmations can be held back per txId.
+     */
+    private static final class PipelineClient implements SettlementContractClient {
+        final AtomicLong seq = new AtomicLong();
+        final List<String> broadcastOrder = new CopyOnWriteArrayList<>();
+        final ConcurrentHashMap<String, CountDownLatch> confirmGate = new ConcurrentHashMap<>();
+        final List<String> failConfirm = new CopyOnWriteArrayList<>();
+        // failed broadcasts or confirmations whose submit is on-chain anyway
+        final List<String> landed = new CopyOnWriteArrayList<>();
+        final AtomicLong failBroadcasts = new AtomicLong();
+        volatile boolean failLookup;
+        final Signals confirmed = new Signals();
+        // if set, the status of each submit's stored batch when it is broadcast
+        volatile InMemoryBatchRepository writtenAhead;
+        final List<BatchStatus> statusAtBroadcast = new CopyOnWriteArrayList<>();
+
+        @Override
+        public PreparedSubmit prepareSubmitBatch(String merkleRootHex, int txCount, long batchSalt) {
+            return new PreparedSubmit("tx-" + seq.incrementAndGet(), System.currentTimeMillis() + 60_000L, new byte[0]);
+        }
+
+        @Override
+        public void broadcastSubmitBatch(PreparedSubmit submit) {
+            if (failBroadcasts.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new RuntimeException("submitBatch failed: DEADLINE_EXCEEDED. txId=" + submit.txId());
+            }
+            broadcastOrder.add(submit.txId());
+            if (writtenAhead != null) {
+                statusAtBroadcast.add(writtenAhead.findBySubmitTxId(submit.txId()).orElseThrow().getStatus());
+            }
+        }
+
+        @Override
+        public BatchSubmission confirmSubmitBatch(String submitTxId, String merkleRootHex, int txCount) {
+            CountDownLatch gate = confirmGate.get(submitTxId);
+            try {
+                if (gate != null && !gate.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("gate not released for " + submitTxId);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            if (failConfirm.contains(submitTxId)) {
+                throw new RuntimeException("submitBatch failed on-chain: REVERT. txId=" + submitTxId);
+            }
+            long batchId = Long.parseLong(submitTxId.substring(3));
+            confirmed.signal(submitTxId);
+            return new BatchSubmission(submitTxId, batchId, merkleRootHex, txCount, 1_700_000_000L, 0L);
+        }
+
+        @Override
+        public Optional<BatchSubmission> findSubmittedBatch(String submitTxId, String merkleRootHex, int txCount,
+                                                            long expirationMillis) {
+            if (failLookup) throw new RuntimeException("getBatchIdByRoot failed: node unavailable");
+            if (!landed.contains(submitTxId)) return Optional.empty();
+            long batchId = Long.parseLong(submitTxId.substring(3));
+            return Optional.of(new BatchSubmission(submitTxId, batchId, merkleRootHex, txCount, 1_700_000_000L, 0L));
+        }
+
+        @Override
+        public BatchSubmission submitBatchWithTxId(String merkleRootHex, int txCount, long batchSalt) {
+            PreparedSubmit submit = prepareSubmitBatch(merkleRootHex, txCount, batchSalt);
+            broadcastSubmitBatch(submit);
+            return confirmSubmitBatch(submit.txId(), merkleRootHex, txCount);
+        }
+
+        @Override
+        public long submitBatch(String merkleRootHex, int txCount, long batchSalt) {
+            return submitBatchWithTxId(merkleRootHex, txCount, batchSalt).batchId();
+        }
+
+        @Override
+        public long getUnlockTime(long batchId) {
+            return 0L;
+        }
+
+        @Override
+        public long getCurrentBatchId() {
+            return 0L;
+        }
+
+        @Override
+        public boolean isExecutedTransfer(String transferHashHex) {
+            return false;
+        }
+
+        @Override
+        public Set<String> findExecutedTransfers(Collection<String> transferHashesHex) {
+            return Set.of();
+        }
+
+        @Override
+        public void executeTransfer(StoredTransfer transfer) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class Signals {
+        private final ConcurrentHashMap<String, CountDownLatch> latches = new ConcurrentHashMap<>();
+
+        void signal(String key) {
+            latches.computeIfAbsent(key, k -> new CountDownLatch(1)).countDown();
+        }
+
+        boolean await(String key, long timeoutMs) throws InterruptedException {
+            return latches.computeIfAbsent(key, k -> new CountDownLatch(1)).await(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
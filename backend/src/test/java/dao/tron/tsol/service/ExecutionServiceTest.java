@@ -0,0 +1,216 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.config.SchedulerProperties;
+import dao.tron.tsol.model.BatchStatus;
+import dao.tron.tsol.model.LocalBatch;
+import dao.tron.tsol.model.StoredTransfer;
+import dao.tron.tsol.model.TransferData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionServiceTest {
+
+    @Test
+    void virtualThreadsRunFarMoreThanEightTransfersConcurrently() {
+        SlowClient client = new SlowClient(100);
+        ExecutionService service = service(client, props(true, 50));
+
+        LocalBatch batch = batch(200);
+        service.executeAll(batch);
+
+        assertEquals(BatchStatus.COMPLETED, batch.getStatus());
+        assertEquals(200, client.calls.get());
+        assertTrue(batch.getTransfers().stream().allMatch(StoredTransfer::isExecuted));
+        assertTrue(client.peak.get() > 8, "peak concurrency " + client.peak.get());
+        assertTrue(client.peak.get() <= 50, "peak concurrency " + client.peak.get());
+        service.shutdown();
+    }
+
+    @Test
+    void platformModeKeepsThePoolCap() {
+        SlowClient client = new SlowClient(20);
+        ExecutionService service = service(client, props(false, 50));
+
+        LocalBatch batch = batch(40);
+        service.executeAll(batch);
+
+        assertEquals(BatchStatus.COMPLETED, batch.getStatus());
+        assertTrue(client.peak.get() <= 8, "peak concurrency " + client.peak.get());
+        service.shutdown();
+    }
+
+    @Test
+    void failedTransferMarksBatchFailedAndIsRetriedNextTime() {
+        SlowClient client = new SlowClient(0);
+        client.failNonce = 3L;
+        ExecutionService service = service(client, props(true, 10));
+
+        LocalBatch batch = batch(5);
+        service.executeAll(batch);
+        assertEquals(BatchStatus.FAILED, batch.getStatus());
+        assertEquals(4, batch.getTransfers().stream().filter(StoredTransfer::isExecuted).count());
+
+        client.failNonce = -1L;
+        service.executeAll(batch);
+        assertEquals(BatchStatus.COMPLETED, batch.getStatus());
+        assertEquals(6, client.calls.get());
+        service.shutdown();
+    }
+
+    @Test
+    void transfersAlreadyExecutedOnChainAreNotBroadcastAgain() {
+        SlowClient client = new SlowClient(0);
+        ExecutionService service = service(client, props(true, 10));
+        LocalBatch batch = batch(6);
+        for (StoredTransfer st : batch.getTransfers()) {
+            TransferData d = st.getTxData();
+            d.setFrom("TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M");
+            d.setTo("TAhZaywaWM1zAQPADJA39FyoQk8cokRLCd");
+            d.setAmount("1000");
+            d.setTimestamp(1_700_000_000L);
+            d.setRecipientCount(1);
+            d.setTxType(1);
+        }
+        batch.setBatchSalt(99L);
+        // Executed before a restart: nonces 0, 2 and 4.
+        for (int i = 0; i < 6; i += 2) {
+            client.executedOnChain.add(HexFormat.of().formatHex(
+                    MerkleLeafEncoder.forCurrentThread().leafHash(batch.getTransfers().get(i).getTxData(), 99L)));
+        }
+
+        service.executeAll(batch);
+
+        assertEquals(BatchStatus.COMPLETED, batch.getStatus());
+        assertEquals(3, client.calls.get());
+        assertTrue(batch.getTransfers().stream().allMatch(StoredTransfer::isExecuted));
+        assertEquals(1, client.lookups.get());
+        service.shutdown();
+    }
+
+    private static ExecutionService service(SlowClient client, SchedulerProperties props) {
+        return new ExecutionService(client, props, new TransferReconciler(client));
+    }
+
+    private static SchedulerProperties props(boolean virtualThreads, int maxParallel) {
+        SchedulerProperties props = new SchedulerProperties();
+        props.getExecution().setVirtualThreads(virtualThreads);
+        props.getExecution().setMaxParallel(maxParallel);
+        return props;
+    }
+
+    private static LocalBatch batch(int n) {
+        List<StoredTransfer> transfers = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            TransferData d = new TransferData();
+            d.setNonce(i);
+            d.setBatchId(1L);
+            StoredTransfer st = new StoredTransfer();
+            st.setTxData(d);
+            transfers.add(st);
+        }
+        LocalBatch batch = new LocalBatch();
+        batch.setOnChainBatchId(1L);
+        batch.setStatus(BatchStatus.SUBMITTED_ONCHAIN);
+        batch.setTransfers(transfers);
+        return batch;
+    }
+
+    /**
+     * executeTransfer blocks like a receipt poll would and records the peak number of concurrent calls.
+     */
+    private static final class SlowClient implements SettlementContractClient {
+        final long latencyMs;
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        volatile long failNonce = -1L;
+        final Set<String> executedOnChain = ConcurrentHashMap.newKeySet();
+        final AtomicInteger lookups = new AtomicInteger();
+
+        SlowClient(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public void executeTransfer(StoredTransfer transfer) {
+            calls.incrementAndGet();
+            int now = active.incrementAndGet();
+            peak.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(latencyMs);
+                if (transfer.getTxData().getNonce() == failNonce) {
+                    throw new RuntimeException("Transaction failed: REVERT");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+        @Override
+        public long submitBatch(String merkleRootHex, int txCount, long batchSalt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BatchSubmission submitBatchWithTxId(String merkleRootHex, int txCount, long batchSalt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PreparedSubmit prepareSubmitBatch(String merkleRootHex, int txCount, long batchSalt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void broadcastSubmitBatch(PreparedSubmit submit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BatchSubmission confirmSubmitBatch(String submitTxId, String merkleRootHex, int txCount) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<BatchSubmission> findSubmittedBatch(String submitTxId, String merkleRootHex, int txCount,
+                                                            long expirationMillis) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long getUnlockTime(long batchId) {
+            return 0L;
+        }
+
+        @Override
+        public long getCurrentBatchId() {
+            return 0L;
+        }
+
+        @Override
+        public boolean isExecutedTransfer(String transferHashHex) {
+            return executedOnChain.contains(transferHashHex);
+        }
+
+        @Override
+        public Set<String> findExecutedTransfers(Collection<String> transferHashesHex) {
+            lookups.incrementAndGet();
+            Set<String> found = new HashSet<>(transferHashesHex);
+            found.retainAll(executedOnChain);
+            return found;
+        }
+    }
+}
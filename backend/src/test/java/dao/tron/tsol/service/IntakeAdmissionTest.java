@@ -0,0 +1,134 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.config.IntakeProperties;
+import dao.tron.tsol.config.SchedulerProperties;
+import dao.tron.tsol.model.TransferIntentRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntakeAdmissionTest {
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private double drainRate = 100.0;
+
+    @Test
+    void shedsFromHighWatermarkUntilDrainedToLowWatermark() {
+        IntakeAdmission admission = admission(props(1_000, 500, 0, 0));
+
+        depth.set(990);
+        assertNull(admission.checkQueue(10));
+        IntakeAdmission.Rejection overflow = admission.checkQueue(50);
+        assertNotNull(overflow);
+        assertEquals(1, overflow.retryAfterSeconds()); // 40 over the high watermark at 100/s
+
+        depth.set(1_000);
+        IntakeAdmission.Rejection full = admission.checkQueue(1);
+        assertEquals(5, full.retryAfterSeconds()); // 500 down to the low watermark at 100/s
+        assertTrue(admission.isShedding());
+
+        depth.set(600); // below high, but not yet drained to low
+        assertNotNull(admission.checkQueue(1));
+        depth.set(500);
+        assertNull(admission.checkQueue(1));
+        assertFalse(admission.isShedding());
+        assertEquals(3, admission.getRejectedQueueFull());
+    }
+
+    @Test
+    void retryAfterIsCappedAndFallsBackToTheCapWithoutADrainRate() {
+        IntakeAdmission admission = admission(props(1_000, 0, 0, 0));
+        depth.set(1_000);
+        drainRate = 1.0;
+        assertEquals(60, admission.checkQueue(1).retryAfterSeconds());
+        drainRate = 0.0;
+        assertEquals(60, admission.checkQueue(1).retryAfterSeconds());
+
+        depth.set(0);
+        assertNull(admission.checkQueue(5_000)); // an oversized body is still admitted into an empty queue
+    }
+
+    @Test
+    void senderTokenBucketAllowsBurstThenRate() {
+        IntakeAdmission admission = admission(props(1_000, 500, 2, 3));
+        TransferIntentRequest alice = intent("TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M");
+        TransferIntentRequest bob = intent("TToEDBXQkGuYGsnyJASTM5JZweb7Rvrnfn");
+
+        for (int i = 0; i < 3; i++) assertNull(admission.checkSender(alice));
+        IntakeAdmission.Rejection limited = admission.checkSender(alice);
+        assertNotNull(limited);
+        assertEquals(1, limited.retryAfterSeconds());
+        assertNull(admission.checkSender(bob)); // other senders keep their own bucket
+
+        now.addAndGet(500); // 2/s refills one token
+        assertNull(admission.checkSender(alice));
+        assertNotNull(admission.checkSender(alice));
+        assertEquals(2, admission.getRejectedRateLimited());
+        assertEquals(2, admission.getTrackedSenders());
+
+        IntakeAdmission unlimited = admission(props(1_000, 500, 0, 3));
+        for (int i = 0; i < 10; i++) assertNull(unlimited.checkSender(alice));
+    }
+
+    @Test
+    void derivesWatermarksFromDrainRateAndMaxQueueDelay() {
+        IntakeProperties props = props(0, 0, 0, 0);
+        props.setMaxQueueDelaySeconds(10);
+        IntakeAdmission admission = new IntakeAdmission(depth::get, () -> drainRate, props, 200, now::get);
+
+        assertEquals(1_000, admission.getHighWatermark()); // 10 s at 100/s
+        assertEquals(500, admission.getLowWatermark());
+        depth.set(990);
+        assertNotNull(admission.checkQueue(20));
+
+        drainRate = 0.0; // idle batcher: the floor sized from its batch size and tick
+        assertEquals(200, admission.getHighWatermark());
+        assertEquals(100, admission.getLowWatermark());
+        props.setLowWatermark(150);
+        assertEquals(150, admission.getLowWatermark());
+        props.setLowWatermark(300);
+        assertEquals(200, admission.getLowWatermark()); // never above the derived high watermark
+    }
+
+    @Test
+    void batcherCapacityIsOneBatchPerTick() {
+        SchedulerProperties.BatchingConfig batching = new SchedulerProperties.BatchingConfig();
+        batching.setMaxIntents(5);
+        batching.setCheckIntervalMs(3_000);
+        assertEquals(100, IntakeAdmission.batcherCapacity(batching, 60));
+        assertEquals(5, IntakeAdmission.batcherCapacity(batching, 1)); // at least one tick
+    }
+
+    @Test
+    void rejectsLowWatermarkAboveHigh() {
+        assertThrows(IllegalArgumentException.class, () -> admission(props(100, 200, 0, 0)));
+        IntakeProperties noDelay = props(0, 0, 0, 0);
+        noDelay.setMaxQueueDelaySeconds(0);
+        assertThrows(IllegalArgumentException.class, () -> admission(noDelay));
+    }
+
+    private IntakeAdmission admission(IntakeProperties props) {
+        return new IntakeAdmission(depth::get, () -> drainRate, props, 1, now::get);
+    }
+
+    private static IntakeProperties props(int high, int low, int senderRate, int senderBurst) {
+        IntakeProperties props = new IntakeProperties();
+        props.setHighWatermark(high);
+        props.setLowWatermark(low);
+        props.setSenderRatePerSecond(senderRate);
+        props.setSenderBurst(senderBurst);
+        props.setMaxRetryAfterSeconds(60);
+        return props;
+    }
+
+    private static TransferIntentRequest intent(String from) {
+        TransferIntentRequest req = new TransferIntentRequest();
+        req.setFrom(from);
+        req.setNonce(1L);
+        return req;
+    }
+}
@@ -0,0 +1,77 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.util.IntentWireFormat;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntentValidatorTest {
+
+    private static final String WHITELISTED = "TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M";
+    private static final String OTHER = "TToEDBXQkGuYGsnyJASTM5JZweb7Rvrnfn";
+
+    private final IntentValidator validator = new IntentValidator(Set.of(WHITELISTED)::contains);
+
+    @Test
+    void acceptsIntentsExecuteTransferWouldAccept() {
+        assertEquals(List.of(), validator.validate(intent(WHITELISTED, "1000", 0, 1)));
+        assertEquals(List.of(), validator.validate(intent(OTHER, "1", 3, 1)));
+        assertEquals(List.of(), validator.validate(intent(WHITELISTED, "1000", 2, 5)));
+    }
+
+    @Test
+    void mirrorsSettlementAndFeeModuleRules() {
+        assertEquals(List.of("amount: must be greater than 0"), validator.validate(intent(WHITELISTED, "0", 0, 1)));
+        assertTrue(validator.validate(intent(WHITELISTED, "-5", 0, 1)).getFirst().startsWith("amount: not a uint256"));
+        assertTrue(validator.validate(intent(WHITELISTED, "1" + "0".repeat(78), 0, 1)).getFirst().startsWith("amount: not a uint256"));
+
+        assertEquals(List.of("txType: must be 0 (DELAYED), 1 (INSTANT), 2 (BATCHED) or 3 (FREE_TIER)"),
+                validator.validate(intent(WHITELISTED, "1000", 4, 1)));
+        assertEquals(List.of("recipientCount: must be 1 unless BATCHED"), validator.validate(intent(WHITELISTED, "1000", 1, 2)));
+        assertEquals(List.of("recipientCount: must be 1 unless BATCHED"), validator.validate(intent(WHITELISTED, "1000", 0, 0)));
+        assertEquals(List.of("recipientCount: must be greater than 1 for BATCHED"),
+                validator.validate(intent(WHITELISTED, "1000", 2, 1)));
+        assertEquals(List.of("from: not whitelisted for BATCHED"), validator.validate(intent(OTHER, "1000", 2, 3)));
+
+        TransferIntentRequest badAddress = intent(WHITELISTED, "1000", 0, 1);
+        badAddress.setTo("TToEDBXQkGuYGsnyJASTM5JZweb7Rvrnfm"); // checksum broken
+        assertEquals(List.of("to: invalid TRON address"), validator.validate(badAddress));
+
+        TransferIntentRequest future = intent(WHITELISTED, "1000", 0, 1);
+        future.setTimestamp(1L << 48);
+        assertEquals(List.of("timestamp: out of uint48 range"), validator.validate(future));
+    }
+
+    @Test
+    void checksBinaryIntentsOnTheirPackedBytes() {
+        ByteBuffer fields = IntentWireFormat.fieldsOf(intent(WHITELISTED, "1000", 2, 2));
+        byte[] raw = new byte[IntentWireFormat.FIELDS_LENGTH];
+        fields.get(0, raw);
+        assertEquals(List.of(), validator.validate(IntentWireFormat.fromFields(ByteBuffer.wrap(raw))));
+
+        Arrays.fill(raw, IntentWireFormat.OFF_TO, IntentWireFormat.OFF_TO + 20, (byte) 0);
+        Arrays.fill(raw, IntentWireFormat.OFF_AMOUNT, IntentWireFormat.OFF_AMOUNT + 32, (byte) 0);
+        raw[IntentWireFormat.OFF_TX_TYPE] = 7;
+        assertEquals(List.of("amount: must be greater than 0", "to: zero address",
+                        "txType: must be 0 (DELAYED), 1 (INSTANT), 2 (BATCHED) or 3 (FREE_TIER)"),
+                validator.validate(IntentWireFormat.fromFields(ByteBuffer.wrap(raw))));
+    }
+
+    private static TransferIntentRequest intent(String from, String amount, int txType, int recipientCount) {
+        TransferIntentRequest req = new TransferIntentRequest();
+        req.setFrom(from);
+        req.setTo(from.equals(OTHER) ? WHITELISTED : OTHER);
+        req.setAmount(amount);
+        req.setNonce(1L);
+        req.setTimestamp(1702332000L);
+        req.setRecipientCount(recipientCount);
+        req.setTxType(txType);
+        return req;
+    }
+}
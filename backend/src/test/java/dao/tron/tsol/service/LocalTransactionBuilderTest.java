@@ -0,0 +1,141 @@
+package dao.tron.tsol.service;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.tron.trident.core.ApiWrapper;
+import org.tron.trident.proto.Chain;
+import org.tron.trident.proto.Contract;
+import org.tron.trident.proto.Response;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class LocalTransactionBuilderTest {
+
+    private static final String OWNER = "TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M";
+    private static final String CONTRACT = "TAhZaywaWM1zAQPADJA39FyoQk8cokRLCd";
+    private static final long FEE_LIMIT = 100_000_000L;
+
+    // submitBatch(bytes32,uint32,uint64) call data
+    private static final byte[] CALL_DATA = HexFormat.of().parseHex(
+            "16610402"
+                    + "11".repeat(32)
+                    + "0".repeat(62) + "05"
+                    + "0".repeat(60) + "3039");
+
+    @Test
+    void refBlockFieldsFollowJavaTron() throws Exception {
+        Chain.BlockHeader header = Chain.BlockHeader.newBuilder()
+                .setRawData(Chain.BlockHeader.raw.newBuilder()
+                        .setNumber(0x0123456789L)
+                        .setTimestamp(1_700_000_000_000L)
+                        .setParentHash(ByteString.copyFrom(new byte[32])))
+                .build();
+
+        LocalTransactionBuilder.RefBlock ref = LocalTransactionBuilder.RefBlock.of(header);
+
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(header.getRawData().toByteArray());
+        assertArrayEquals(new byte[]{0x00, 0x00, 0x00, 0x01, 0x23, 0x45, 0x67, (byte) 0x89},
+                Arrays.copyOfRange(ref.blockId(), 0, 8));
+        assertArrayEquals(Arrays.copyOfRange(hash, 8, 32), Arrays.copyOfRange(ref.blockId(), 8, 32));
+        assertArrayEquals(new byte[]{0x67, (byte) 0x89}, ref.refBlockBytes().toByteArray());
+        assertArrayEquals(Arrays.copyOfRange(hash, 8, 16), ref.refBlockHash().toByteArray());
+        assertEquals(1_700_000_000_000L, ref.timestamp());
+    }
+
+    @Test
+    void matchesTransactionBuiltByTriggerContract() {
+        // What the node returns for triggerContract on a non-constant function (java-tron
+        // createTransactionCapsule + setReference + expiration), with Trident's fee limit on top.
+        Contract.TriggerSmartContract trigger = Contract.TriggerSmartContract.newBuilder()
+                .setOwnerAddress(ApiWrapper.parseAddress(OWNER))
+                .setContractAddress(ApiWrapper.parseAddress(CONTRACT))
+                .setData(ByteString.copyFrom(CALL_DATA))
+                .build();
+        Chain.Transaction nodeTx = Chain.Transaction.newBuilder()
+                .setRawData(Chain.Transaction.raw.newBuilder()
+                        .addContract(Chain.Transaction.Contract.newBuilder()
+                                .setType(Chain.Transaction.Contract.ContractType.TriggerSmartContract)
+                                .setParameter(Any.pack(trigger)))
+                        .setRefBlockBytes(ByteString.copyFrom(new byte[]{0x1a, 0x2b}))
+                        .setRefBlockHash(ByteString.copyFrom(HexFormat.of().parseHex("0102030405060708")))
+                        .setExpiration(1_700_000_060_000L)
+                        .setTimestamp(1_700_000_000_123L))
+                .build();
+        nodeTx = nodeTx.toBuilder()
+                .setRawData(nodeTx.getRawData().toBuilder().setFeeLimit(FEE_LIMIT))
+                .build();
+
+        Chain.Transaction local = buildLike(nodeTx);
+
+        assertArrayEquals(nodeTx.getRawData().toByteArray(), local.getRawData().toByteArray());
+        assertArrayEquals(nodeTx.toByteArray(), local.toByteArray());
+        assertArrayEquals(LocalTransactionBuilder.txId(nodeTx), LocalTransactionBuilder.txId(local));
+    }
+
+    /**
+     * Compares against a live node. Needs UPDATER_PRIVATE_KEY and SETTLEMENT_ADDRESS (Nile); nothing is broadcast.
+     */
+    @Test
+    @EnabledIfEnvironmentVariable(named = "TRON_LIVE_TEST", matches = "true")
+    void matchesLiveTriggerContract() throws Exception {
+        ApiWrapper wrapper = ApiWrapper.ofNile(System.getenv("UPDATER_PRIVATE_KEY"));
+        try {
+            String owner = wrapper.keyPair.toBase58CheckAddress();
+            String contract = System.getenv("SETTLEMENT_ADDRESS");
+
+            Chain.BlockHeader head = wrapper.getNowBlock().getBlockHeader();
+            Response.TransactionExtention ext = wrapper.triggerContract(
+                    owner, contract, HexFormat.of().formatHex(CALL_DATA), 0L, 0L, null, FEE_LIMIT);
+            assertTrue(ext.getResult().getResult(), ext.getResult().getMessage().toStringUtf8());
+            Chain.Transaction nodeTx = ext.getTransaction();
+
+            Chain.Transaction local = LocalTransactionBuilder.triggerSmartContract(
+                    ApiWrapper.parseAddress(owner),
+                    ApiWrapper.parseAddress(contract),
+                    CALL_DATA,
+                    FEE_LIMIT,
+                    refBlockOf(nodeTx),
+                    nodeTx.getRawData().getTimestamp(),
+                    nodeTx.getRawData().getExpiration());
+            assertArrayEquals(nodeTx.getRawData().toByteArray(), local.getRawData().toByteArray());
+            assertEquals(HexFormat.of().formatHex(LocalTransactionBuilder.txId(local)),
+                    HexFormat.of().formatHex(ext.getTxid().toByteArray()));
+
+            // Same head block on both sides: our block id derivation must give the node's ref fields.
+            LocalTransactionBuilder.RefBlock ours = LocalTransactionBuilder.RefBlock.of(head);
+            assumeTrue(ours.refBlockBytes().equals(nodeTx.getRawData().getRefBlockBytes()), "head moved");
+            assertEquals(nodeTx.getRawData().getRefBlockHash(), ours.refBlockHash());
+        } finally {
+            wrapper.close();
+        }
+    }
+
+    private static Chain.Transaction buildLike(Chain.Transaction nodeTx) {
+        return LocalTransactionBuilder.triggerSmartContract(
+                ApiWrapper.parseAddress(OWNER),
+                ApiWrapper.parseAddress(CONTRACT),
+                CALL_DATA,
+                FEE_LIMIT,
+                refBlockOf(nodeTx),
+                nodeTx.getRawData().getTimestamp(),
+                nodeTx.getRawData().getExpiration());
+    }
+
+    /**
+     * A RefBlock carrying exactly the reference fields of an existing transaction.
+     */
+    private static LocalTransactionBuilder.RefBlock refBlockOf(Chain.Transaction tx) {
+        byte[] refBytes = tx.getRawData().getRefBlockBytes().toByteArray();
+        byte[] blockId = new byte[32];
+        tx.getRawData().getRefBlockHash().copyTo(blockId, 8);
+        long number = ((refBytes[0] & 0xffL) << 8) | (refBytes[1] & 0xffL);
+        return new LocalTransactionBuilder.RefBlock(number, blockId, 0L);
+    }
+}
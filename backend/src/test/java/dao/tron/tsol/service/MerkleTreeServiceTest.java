@@ -1,11 +1,19 @@
 package dao.tron.tsol.service;
 
 import dao.tron.tsol.model.TransferData;
+import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.util.IntentWireFormat;
+import dao.tron.tsol.util.PackedProof;
+import org.bouncycastle.jcajce.provider.digest.Keccak;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.tron.trident.core.ApiWrapper;
 
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -385,10 +393,149 @@ class MerkleTreeServiceTest {
         assertTrue(proof.isEmpty(), "Proof for single leaf should be empty");
     }
 
+    @Test
+    @DisplayName("Test leaf hash matches reference abi.encodePacked encoding")
+    void testLeafHashMatchesReferenceEncoding() {
+        String[] amounts = {
+                "0",
+                "1",
+                "1000000",
+                "18446744073709551616", // 2^64
+                "0000123",
+                new BigInteger("2").pow(255).toString(),
+                new BigInteger("2").pow(256).subtract(BigInteger.ONE).toString()
+        };
+
+        List<TransferData> transfers = createBatchOfTransfers(amounts.length, 1L);
+        for (int i = 0; i < amounts.length; i++) {
+            TransferData transfer = transfers.get(i);
+            transfer.setAmount(amounts[i]);
+            transfer.setTimestamp(0xFFFF_FFFF_FFFFL); // max uint48
+            transfer.setRecipientCount(Integer.MAX_VALUE);
+
+            long salt = Long.MAX_VALUE - i;
+            byte[] expected = referenceLeafHash(transfer, salt);
+            byte[] actual = merkleTreeService.leafHash(transfer, salt);
+
+            assertArrayEquals(expected, actual, "Leaf hash mismatch for amount " + amounts[i]);
+        }
+    }
+
+    @Test
+    @DisplayName("Test leaf hash rejects invalid amounts")
+    void testLeafHashRejectsInvalidAmounts() {
+        TransferData transfer = createBatchOfTransfers(1, 1L).get(0);
+
+        transfer.setAmount("-1");
+        assertThrows(IllegalArgumentException.class, () -> merkleTreeService.leafHash(transfer, BATCH_SALT));
+
+        transfer.setAmount(new BigInteger("2").pow(256).toString());
+        assertThrows(IllegalArgumentException.class, () -> merkleTreeService.leafHash(transfer, BATCH_SALT));
+
+        transfer.setAmount("12abc");
+        assertThrows(NumberFormatException.class, () -> merkleTreeService.leafHash(transfer, BATCH_SALT));
+    }
+
+    @Test
+    @DisplayName("Test single-pass tree matches per-leaf root/proof computation")
+    void testBuildTreeMatchesPerLeafProofs() {
+        for (int count = 1; count <= 17; count++) {
+            List<TransferData> transfers = createBatchOfTransfers(count, 1L);
+
+            List<byte[]> leaves = new ArrayList<>();
+            for (TransferData transfer : transfers) {
+                leaves.add(merkleTreeService.leafHash(transfer, BATCH_SALT));
+            }
+
+            MerkleTree tree = merkleTreeService.buildTree(transfers, BATCH_SALT);
+            assertEquals(count, tree.leafCount());
+            assertEquals(merkleTreeService.computeMerkleRoot(leaves), tree.root(), "root mismatch for count " + count);
+            assertEquals(tree.root(), "0x" + bytesToHex(tree.rootBytes()));
+
+            List<List<String>> allProofs = tree.allProofs();
+            for (int i = 0; i < count; i++) {
+                List<String> expected = merkleTreeService.buildProof(leaves, i);
+                assertEquals(expected, tree.proof(i), "proof mismatch for count " + count + ", index " + i);
+                assertEquals(expected, allProofs.get(i));
+                assertEquals(expected, PackedProof.toHexList(tree.packedProof(i)), "packed proof mismatch at " + i);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test parallel tree building matches sequential")
+    void testParallelTreeMatchesSequential() {
+        MerkleTreeService parallel = new MerkleTreeService(2);
+
+        for (int count : new int[]{2, 3, 1025, 3001}) {
+            List<TransferData> transfers = createBatchOfTransfers(count, 1L);
+
+            MerkleTree expected = merkleTreeService.buildTree(transfers, BATCH_SALT);
+            MerkleTree actual = parallel.buildTree(transfers, BATCH_SALT);
+
+            assertEquals(expected.root(), actual.root(), "root mismatch for count " + count);
+            for (int i = 0; i < count; i += Math.max(1, count / 16)) {
+                assertEquals(expected.proof(i), actual.proof(i), "proof mismatch for count " + count + ", index " + i);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test binary-format intents hash to the same leaves as their string form")
+    void testBinaryIntentsMatchStringLeaves() {
+        List<TransferIntentRequest> intents = new ArrayList<>();
+        for (TransferData t : createBatchOfTransfers(5, 1L)) {
+            TransferIntentRequest req = new TransferIntentRequest();
+            req.setFrom(t.getFrom());
+            req.setTo(t.getTo());
+            req.setAmount(t.getAmount());
+            req.setNonce(t.getNonce());
+            req.setTimestamp(t.getTimestamp());
+            req.setRecipientCount(t.getRecipientCount());
+            req.setTxType(t.getTxType());
+            intents.add(req);
+        }
+        intents.getFirst().setAmount("115792089237316195423570985008687907853269984665640564039457584007913129639935");
+
+        byte[] body = IntentWireFormat.encode(intents);
+        byte[] received = body.clone();
+        List<TransferIntentRequest> decoded = IntentWireFormat.decode(ByteBuffer.wrap(received), 100);
+        assertEquals(intents.size(), decoded.size());
+        // each intent holds a copy of its record, not a view of the request body
+        Arrays.fill(received, (byte) 0);
+
+        for (int i = 0; i < intents.size(); i++) {
+            TransferIntentRequest json = intents.get(i);
+            TransferIntentRequest binary = decoded.get(i);
+            TransferData packed = new TransferData();
+            packed.setPackedFields(binary.getPackedFields());
+            assertArrayEquals(merkleTreeService.leafHash(toTransferData(json), BATCH_SALT),
+                    merkleTreeService.leafHash(packed, BATCH_SALT), "leaf mismatch at " + i);
+            // strings derived from the packed bytes on demand
+            assertEquals(json, binary);
+        }
+
+        byte[] truncated = Arrays.copyOf(body, body.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> IntentWireFormat.decode(ByteBuffer.wrap(truncated), 100));
+        assertThrows(IllegalArgumentException.class, () -> IntentWireFormat.decode(ByteBuffer.wrap(body), 4));
+    }
+
     // =========================================================================
     // HELPER METHODS
     // =========================================================================
 
+    private static TransferData toTransferData(TransferIntentRequest req) {
+        TransferData d = new TransferData();
+        d.setFrom(req.getFrom());
+        d.setTo(req.getTo());
+        d.setAmount(req.getAmount());
+        d.setNonce(req.getNonce());
+        d.setTimestamp(req.getTimestamp());
+        d.setRecipientCount(req.getRecipientCount());
+        d.setTxType(req.getTxType());
+        return d;
+    }
+
     private TransferData createSampleTransfer(
             String from,
             String to,
@@ -425,7 +572,7 @@ class MerkleTreeServiceTest {
             transfers.add(createSampleTransfer(
                     addresses[i % addresses.length],
                     addresses[(i + 1) % addresses.length],
-                    String.valueOf((i + 1) * 1000000), // 1, 2, 3... USDT
+                    String.valueOf((i + 1) * 1000000L), // 1, 2, 3... USDT
                     i + 1L,
                     1702332000L + i,
                     1,
@@ -437,6 +584,34 @@ class MerkleTreeServiceTest {
         return transfers;
     }
 
+    /**
+     * Straightforward concat-based abi.encodePacked reference (the pre-encoder implementation).
+     */
+    private static byte[] referenceLeafHash(TransferData tx, long batchSalt) {
+        ByteBuffer buf = ByteBuffer.allocate(99);
+        buf.put(addressBytes(tx.getFrom()));
+        buf.put(addressBytes(tx.getTo()));
+        byte[] raw = new BigInteger(tx.getAmount()).toByteArray();
+        int n = Math.min(raw.length, 32);
+        byte[] amount = new byte[32];
+        System.arraycopy(raw, raw.length - n, amount, 32 - n, n);
+        buf.put(amount);
+        buf.putLong(tx.getNonce());
+        buf.putShort((short) (tx.getTimestamp() >>> 32));
+        buf.putInt((int) tx.getTimestamp());
+        buf.putInt(tx.getRecipientCount());
+        buf.put((byte) tx.getTxType());
+        buf.putLong(batchSalt);
+
+        Keccak.Digest256 digest = new Keccak.Digest256();
+        return digest.digest(buf.array());
+    }
+
+    private static byte[] addressBytes(String base58) {
+        byte[] raw = ApiWrapper.parseAddress(base58).toByteArray();
+        return Arrays.copyOfRange(raw, raw.length - 20, raw.length);
+    }
+
     private String bytesToHex(byte[] bytes) {
         StringBuilder sb = new StringBuilder(bytes.length * 2);
         for (byte b : bytes) {
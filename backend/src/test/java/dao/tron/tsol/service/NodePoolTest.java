@@ -0,0 +1,154 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.config.NodeProperties;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodePoolTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    // simulated round-trip per endpoint (ms); negative = the endpoint is unreachable
+    private final Map<String, Integer> latencyMs = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> served = new ConcurrentHashMap<>();
+
+    @Test
+    void readsGoToTheFastestSolidityNode() throws Exception {
+        latencyMs.put("slow", 8);
+        latencyMs.put("fast", 1);
+        NodePool pool = pool(endpoint("slow", NodePool.Kind.SOLIDITY), endpoint("fast", NodePool.Kind.SOLIDITY),
+                endpoint("full", NodePool.Kind.FULL));
+
+        for (int i = 0; i < 40; i++) {
+            assertEquals("ok", pool.execute(NodePool.Kind.SOLIDITY, true, this::node));
+        }
+
+        // One call to measure the slow node, the rest to the fast one; the full node is never asked.
+        assertEquals(1, served("slow"));
+        assertEquals(39, served("fast"));
+        assertEquals(0, served("full"));
+        NodePool.EndpointStats slow = stats(pool, "slow");
+        NodePool.EndpointStats fast = stats(pool, "fast");
+        assertTrue(fast.p50Ms() < slow.p50Ms(), fast + " vs " + slow);
+        assertEquals(40, slow.calls() + fast.calls());
+    }
+
+    @Test
+    void slowNodeIsEjectedAndReadmittedAfterCooldown() throws Exception {
+        latencyMs.put("a", 1);
+        latencyMs.put("b", 5);
+        NodePool pool = pool(endpoint("a", NodePool.Kind.FULL), endpoint("b", NodePool.Kind.FULL));
+        for (int i = 0; i < 10; i++) pool.execute(NodePool.Kind.FULL, true, this::node);
+        assertEquals(9, served("a"));
+
+        // a degrades past the p99 limit (20ms): ejected on the first slow call, traffic moves to b.
+        latencyMs.put("a", 30);
+        pool.execute(NodePool.Kind.FULL, true, this::node);
+        assertTrue(stats(pool, "a").ejected());
+        assertEquals(1, stats(pool, "a").ejections());
+        for (int i = 0; i < 10; i++) pool.execute(NodePool.Kind.FULL, true, this::node);
+        assertEquals(10, served("a"));
+        assertEquals(11, served("b"));
+
+        // After the cooldown a is measured again from an empty window and wins back the traffic.
+        latencyMs.put("a", 1);
+        clock.addAndGet(31_000L);
+        assertFalse(stats(pool, "a").ejected());
+        for (int i = 0; i < 5; i++) pool.execute(NodePool.Kind.FULL, true, this::node);
+        assertEquals(15, served("a"));
+        assertEquals(5, stats(pool, "a").windowSize());
+    }
+
+    @Test
+    void transportFailuresFailOverAndEjectTheNode() throws Exception {
+        latencyMs.put("flaky", 0);
+        latencyMs.put("steady", 3);
+        NodePool pool = pool(endpoint("flaky", NodePool.Kind.SOLIDITY), endpoint("steady", NodePool.Kind.SOLIDITY),
+                endpoint("full", NodePool.Kind.FULL));
+        for (int i = 0; i < 6; i++) pool.execute(NodePool.Kind.SOLIDITY, true, this::node);
+        assertEquals(5, served("flaky"));
+
+        latencyMs.put("flaky", -1);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("ok", pool.execute(NodePool.Kind.SOLIDITY, true, this::node));
+        }
+
+        // 2 failures in a window of 7 crosses the 25% error rate.
+        NodePool.EndpointStats flaky = stats(pool, "flaky");
+        assertTrue(flaky.ejected());
+        assertEquals(2, flaky.failures());
+        assertEquals(0, stats(pool, "steady").failures());
+    }
+
+    @Test
+    void broadcastIsNotRetriedOnAnotherNode() throws Exception {
+        latencyMs.put("down", -1);
+        latencyMs.put("up", 0);
+        NodePool pool = pool(endpoint("down", NodePool.Kind.FULL), endpoint("up", NodePool.Kind.FULL));
+
+        assertThrows(StatusRuntimeException.class, () -> pool.execute(NodePool.Kind.FULL, false, this::node));
+        assertEquals(1, served("down"));
+        assertEquals(0, served("up"));
+
+        assertEquals("ok", pool.execute(NodePool.Kind.FULL, false, this::node));
+        assertEquals(1, served("up"));
+    }
+
+    @Test
+    void lastHealthyNodeIsKeptAndApplicationErrorsDoNotCount() throws Exception {
+        latencyMs.put("only", -1);
+        NodePool pool = pool(endpoint("only", NodePool.Kind.FULL));
+        for (int i = 0; i < 10; i++) {
+            assertThrows(StatusRuntimeException.class, () -> pool.execute(NodePool.Kind.FULL, true, this::node));
+        }
+        NodePool.EndpointStats only = stats(pool, "only");
+        assertFalse(only.ejected());
+        assertEquals(1.0, only.errorRate());
+
+        // A node answering "not found" is a healthy node.
+        assertThrows(IllegalStateException.class, () -> pool.execute(NodePool.Kind.FULL, true, e -> {
+            throw new IllegalStateException("TRANSACTION_INFO_NOT_FOUND");
+        }));
+        only = stats(pool, "only");
+        assertEquals(11, only.calls());
+        assertEquals(10, only.failures());
+    }
+
+    private String node(NodePool.Endpoint endpoint) throws Exception {
+        served.computeIfAbsent(endpoint.target, k -> new AtomicInteger()).incrementAndGet();
+        int ms = latencyMs.get(endpoint.target);
+        if (ms < 0) throw new StatusRuntimeException(Status.UNAVAILABLE);
+        if (ms > 0) Thread.sleep(ms);
+        return "ok";
+    }
+
+    private int served(String target) {
+        AtomicInteger n = served.get(target);
+        return n == null ? 0 : n.get();
+    }
+
+    private NodePool pool(NodePool.Endpoint... endpoints) {
+        NodeProperties props = new NodeProperties();
+        props.setMinSamples(5);
+        props.setEjectP99Ms(20);
+        props.setEjectErrorRate(0.25);
+        props.setEjectSeconds(30);
+        return new NodePool(props, List.of(endpoints), clock::get);
+    }
+
+    private static NodePool.Endpoint endpoint(String target, NodePool.Kind kind) {
+        return new NodePool.Endpoint(target, kind, List.of(), 100);
+    }
+
+    private static NodePool.EndpointStats stats(NodePool pool, String target) {
+        return pool.getStats().stream().filter(s -> s.target().equals(target)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,39 @@
+package dao.tron.tsol.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeRateLimiterTest {
+
+    @Test
+    void rateIsBoundedAfterTheBurst() throws Exception {
+        NodeRateLimiter limiter = new NodeRateLimiter(200);
+
+        long start = System.nanoTime();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 30; t++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 10; i++) limiter.acquire();
+            }));
+        }
+        for (Thread t : threads) t.join();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 300 requests at 200/s with a 1s burst allowance: the 100 beyond the burst need ~500ms.
+        assertTrue(elapsedMs >= 400, "elapsed " + elapsedMs + "ms");
+        assertTrue(elapsedMs < 5_000, "elapsed " + elapsedMs + "ms");
+    }
+
+    @Test
+    void unlimitedNeverBlocks() {
+        NodeRateLimiter limiter = NodeRateLimiter.unlimited();
+        long start = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) limiter.acquire();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+    }
+}
@@ -0,0 +1,220 @@
+package dao.tron.tsol.service;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import org.tron.trident.proto.Response;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptTrackerTest {
+
+    // Large tick: most tests drive tick() themselves.
+    private static final long MANUAL_TICK_MS = 3_600_000L;
+
+    private static final byte[] SETTLEMENT = filled(20, 0x11);
+    private static final byte[] OTHER_CONTRACT = filled(20, 0x22);
+
+    @Test
+    void oneBlockFetchPerBlockForAllPendingTxs() throws Exception {
+        // 50 of our txs spread over blocks 3..5, mixed with unrelated traffic.
+        FakeNode node = new FakeNode(8);
+        List<String> ours = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String txId = txId(i);
+            ours.add(txId);
+            node.record(3 + i % 3, receipt(txId, 3 + i % 3));
+            node.record(3 + i % 3, receipt(txId(1000 + i), 3 + i % 3));
+        }
+        ReceiptTracker tracker = new ReceiptTracker(node, NodeRateLimiter.unlimited(), MANUAL_TICK_MS, SETTLEMENT);
+
+        node.head.set(1);
+        List<CompletableFuture<Response.TransactionInfo>> futures = new ArrayList<>();
+        for (String txId : ours) futures.add(tracker.track(txId, Duration.ofMinutes(1)));
+
+        tracker.tick();                 // wakes up at the head: scans block 1 only
+        assertEquals(1, node.blockFetches.get());
+        tracker.tick();                 // same head: nothing to fetch
+        assertEquals(1, node.blockFetches.get());
+
+        for (long b = 2; b <= 5; b++) {
+            node.head.set(b);
+            tracker.tick();
+        }
+        assertEquals(5, node.blockFetches.get());
+        assertEquals(0, node.directLookups.get());
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(3 + i % 3, futures.get(i).get().getBlockNumber());
+        }
+        assertEquals(0, tracker.getPendingCount());
+
+        int headChecks = node.headChecks.get();
+        node.head.set(7);
+        tracker.tick();                 // idle: no node calls at all
+        assertEquals(headChecks, node.headChecks.get());
+        tracker.shutdown();
+    }
+
+    @Test
+    void settlementLogsAreDispatchedInBlockOrder() {
+        FakeNode node = new FakeNode(6);
+        node.record(2, receipt(txId(1), 2, SETTLEMENT));
+        node.record(2, receipt(txId(2), 2, OTHER_CONTRACT));
+        node.record(3, receipt(txId(3), 3, SETTLEMENT, SETTLEMENT));
+        node.record(4, receipt(txId(4), 4));
+        ReceiptTracker tracker = new ReceiptTracker(node, NodeRateLimiter.unlimited(), MANUAL_TICK_MS, SETTLEMENT);
+
+        List<String> seen = new CopyOnWriteArrayList<>();
+        tracker.addLogListener((blockNum, txId, l) -> seen.add(blockNum + ":" + txId));
+        tracker.track(txId(4), Duration.ofMinutes(1));
+
+        node.head.set(2);
+        tracker.tick();
+        node.head.set(4);
+        tracker.tick();
+
+        assertEquals(List.of("2:" + txId(1), "3:" + txId(3), "3:" + txId(3)), seen);
+        assertEquals(0, tracker.getPendingCount());
+        tracker.shutdown();
+    }
+
+    @Test
+    void fallingTooFarBehindSwitchesToDirectLookups() throws Exception {
+        int far = ReceiptTracker.MAX_CATCH_UP_BLOCKS + 10;
+        FakeNode node = new FakeNode(far + 2);
+        node.record(5, receipt(txId(1), 5));
+        ReceiptTracker tracker = new ReceiptTracker(node, NodeRateLimiter.unlimited(), MANUAL_TICK_MS, SETTLEMENT);
+
+        CompletableFuture<Response.TransactionInfo> f = tracker.track(txId(1), Duration.ofMinutes(1));
+        tracker.track(txId(2), Duration.ofMinutes(1));
+        node.head.set(1);
+        tracker.tick();
+
+        node.head.set(far);
+        tracker.tick();
+        assertEquals(5L, f.get().getBlockNumber());
+        assertEquals(2, node.directLookups.get());
+        assertEquals(2, node.blockFetches.get());   // block 1, then only the new head
+        assertEquals(1, tracker.getPendingCount());
+        tracker.shutdown();
+    }
+
+    @Test
+    void deadlineGetsOneDirectLookupThenTimesOut() {
+        FakeNode node = new FakeNode(4);
+        node.record(1, receipt(txId(1), 1));
+        ReceiptTracker tracker = new ReceiptTracker(node, NodeRateLimiter.unlimited(), MANUAL_TICK_MS, SETTLEMENT);
+        node.head.set(3);
+
+        // Mined before it was registered: found by the last-chance lookup.
+        CompletableFuture<Response.TransactionInfo> late = tracker.track(txId(1), Duration.ZERO);
+        CompletableFuture<Response.TransactionInfo> a = tracker.track(txId(9), Duration.ZERO);
+        CompletableFuture<Response.TransactionInfo> b = tracker.track("0x" + txId(9).toUpperCase(), Duration.ZERO);
+        assertEquals(2, tracker.getPendingCount());
+
+        tracker.tick();
+        assertEquals(1L, late.join().getBlockNumber());
+        ExecutionException ex = assertThrows(ExecutionException.class, a::get);
+        assertInstanceOf(TimeoutException.class, ex.getCause());
+        assertTrue(b.isCompletedExceptionally());
+        assertEquals(0, tracker.getPendingCount());
+        tracker.shutdown();
+    }
+
+    @Test
+    void scheduledTicksCompleteAwaitAndNextBlock() throws Exception {
+        FakeNode node = new FakeNode(12);
+        node.record(9, receipt(txId(1), 9));
+        ReceiptTracker tracker = new ReceiptTracker(node, NodeRateLimiter.unlimited(), 10, SETTLEMENT);
+        node.head.set(7);
+
+        AtomicBoolean advanced = new AtomicBoolean();
+        Thread waiter = Thread.ofVirtual().start(() -> advanced.set(tracker.awaitNextBlock(Duration.ofSeconds(5))));
+        waiter.join();
+        assertTrue(advanced.get());
+
+        CompletableFuture<Response.TransactionInfo> f = tracker.track(txId(1), Duration.ofSeconds(5));
+        Thread.sleep(100);
+        assertFalse(f.isDone());
+        node.head.set(9);
+        assertEquals(9L, tracker.await(txId(1), Duration.ofSeconds(5)).getBlockNumber());
+        assertEquals(9L, f.get().getBlockNumber());
+
+        assertNull(tracker.await(txId(2), Duration.ofMillis(50)));
+        tracker.shutdown();
+    }
+
+    private static String txId(int n) {
+        return String.format("%064x", n + 0xabc000L);
+    }
+
+    private static Response.TransactionInfo receipt(String txId, long block, byte[]... logAddresses) {
+        Response.TransactionInfo.Builder b = Response.TransactionInfo.newBuilder()
+                .setId(ByteString.copyFrom(HexFormat.of().parseHex(txId)))
+                .setBlockNumber(block);
+        for (byte[] address : logAddresses) {
+            b.addLog(Response.TransactionInfo.Log.newBuilder().setAddress(ByteString.copyFrom(address)).build());
+        }
+        return b.build();
+    }
+
+    private static byte[] filled(int n, int v) {
+        byte[] out = new byte[n];
+        java.util.Arrays.fill(out, (byte) v);
+        return out;
+    }
+
+    /**
+     * Local fake node replaying recorded blocks up to a movable head.
+     */
+    private static final class FakeNode implements ReceiptTracker.ReceiptSource {
+        final List<List<Response.TransactionInfo>> blocks = new ArrayList<>();
+        final AtomicLong head = new AtomicLong();
+        final AtomicInteger headChecks = new AtomicInteger();
+        final AtomicInteger blockFetches = new AtomicInteger();
+        final AtomicInteger directLookups = new AtomicInteger();
+
+        FakeNode(int blockCount) {
+            for (int i = 0; i < blockCount; i++) blocks.add(new ArrayList<>());
+        }
+
+        void record(long block, Response.TransactionInfo info) {
+            blocks.get((int) block).add(info);
+        }
+
+        @Override
+        public long latestBlockNum() {
+            headChecks.incrementAndGet();
+            return head.get();
+        }
+
+        @Override
+        public List<Response.TransactionInfo> blockReceipts(long blockNum) {
+            blockFetches.incrementAndGet();
+            if (blockNum > head.get()) throw new IllegalStateException("block not produced yet: " + blockNum);
+            return blocks.get((int) blockNum);
+        }
+
+        @Override
+        public Response.TransactionInfo transactionInfo(String txId) {
+            directLookups.incrementAndGet();
+            for (int b = 0; b <= head.get(); b++) {
+                for (Response.TransactionInfo info : blocks.get(b)) {
+                    if (HexFormat.of().formatHex(info.getId().toByteArray()).equals(txId)) return info;
+                }
+            }
+            throw new IllegalStateException("TRANSACTION_INFO_NOT_FOUND");
+        }
+    }
+}
@@ -15,7 +15,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 /**
  * Parity test: Java Merkle logic must match the scripts (source of truth).
  *
- * This test loads sc/script/merkle/batch/merkle_data_deploy.json (generated by the Python script)
+ * This test loads contracts/script/merkle/batch/merkle_data_deploy.json (generated by the Python script)
  * and verifies:
  * - each txHash (leaf) matches Java leafHash()
  * - the computed Merkle root matches
@@ -27,7 +27,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
  */
 public class ScriptMerkleParityTest {
 
-    private static final String SCRIPT_JSON_PATH = "sc/script/merkle/batch/merkle_data_deploy.json";
+    private static final String SCRIPT_JSON_PATH = "../contracts/script/merkle/batch/merkle_data_deploy.json";
 
     @Test
     void merkleMatchesScriptJson() throws Exception {
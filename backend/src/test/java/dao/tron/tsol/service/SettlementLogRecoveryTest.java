@@ -0,0 +1,239 @@
+package dao.tron.tsol.service;
+
+import com.google.protobuf.ByteString;
+import dao.tron.tsol.config.BatchProperties;
+import dao.tron.tsol.config.ChainProperties;
+import dao.tron.tsol.config.NodeProperties;
+import dao.tron.tsol.config.RecoveryProperties;
+import dao.tron.tsol.config.SettlementProperties;
+import dao.tron.tsol.config.WhitelistProperties;
+import dao.tron.tsol.event.BatchSubmittedEventReader;
+import dao.tron.tsol.event.TransferExecutedEvent;
+import dao.tron.tsol.model.BatchStatus;
+import dao.tron.tsol.model.LocalBatch;
+import dao.tron.tsol.model.StoredTransfer;
+import dao.tron.tsol.model.TransferData;
+import dao.tron.tsol.repository.InMemoryBatchRepository;
+import dao.tron.tsol.wal.IntentWal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tron.trident.core.ApiWrapper;
+import org.tron.trident.proto.Response;
+import org.tron.trident.utils.Numeric;
+import org.web3j.crypto.Hash;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SettlementLogRecoveryTest {
+
+    private static final String FROM = "TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M";
+    private static final String TO = "TVKAAcqpQxz3J4waayePr8dQjSQ2XHkdbF";
+    private static final byte[] SETTLEMENT = filled(20, 0x11);
+    private static final byte[] OTHER_CONTRACT = filled(20, 0x22);
+    private static final String ROOT_A = "0x" + "aa".repeat(32);
+    private static final String ROOT_LOST = "0x" + "bb".repeat(32);
+
+    @TempDir
+    Path dir;
+
+    private final List<Long> saved = new CopyOnWriteArrayList<>();
+
+    @Test
+    void resumesFromCheckpointAndAppliesOnlyConfirmedBlocks() throws Exception {
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+        // Marked FAILED because it was looked up under a wrong on-chain id.
+        LocalBatch a = batch(ROOT_A, 3L, BatchStatus.FAILED, 0);
+        LocalBatch b = batch("0x" + "cc".repeat(32), 9L, BatchStatus.EXECUTING, 3);
+        repository.save(a);
+        repository.save(b);
+
+        FakeChain chain = new FakeChain();
+        chain.log(103, "tx-103", transferExecuted(SETTLEMENT, FROM, 0));
+        chain.log(107, "tx-107a", transferExecuted(OTHER_CONTRACT, FROM, 1));
+        chain.log(107, "tx-107b", transferExecuted(SETTLEMENT, FROM, 1));
+        chain.log(107, "tx-107c", transferExecuted(SETTLEMENT, TO, 1));
+        chain.log(108, "tx-108a", batchSubmitted(4L, ROOT_A));
+        chain.log(108, "tx-108b", batchSubmitted(5L, ROOT_LOST));
+        chain.log(111, "tx-111", transferExecuted(SETTLEMENT, FROM, 2));
+        chain.head.set(112);
+        Files.writeString(dir.resolve("checkpoint"), "105");
+
+        SettlementLogRecovery recovery = recovery(chain, repository, 2);
+        assertEquals(5, recovery.catchUp());
+
+        // Blocks at or below the checkpoint and unconfirmed blocks are not fetched.
+        assertEquals(List.of(106L, 107L, 108L, 109L, 110L), chain.fetched);
+        assertEquals("110", Files.readString(dir.resolve("checkpoint")));
+        List<StoredTransfer> transfers = b.getTransfers();
+        assertFalse(transfers.get(0).isExecuted());
+        assertTrue(transfers.get(1).isExecuted());
+        assertEquals(hexTxId("tx-107b"), transfers.get(1).getExecutionTxId());
+        assertFalse(transfers.get(2).isExecuted());
+
+        assertEquals(4L, a.getOnChainBatchId());
+        assertEquals(BatchStatus.SUBMITTED_ONCHAIN, a.getStatus());
+        assertEquals(1_700_000_000L, a.getSubmittedAt());
+        assertEquals(4L, a.getTransfers().get(0).getTxData().getBatchId());
+        assertEquals(a, repository.findByOnChainBatchId(4L).orElseThrow());
+        assertTrue(repository.findByOnChainBatchId(3L).isEmpty());
+        // Saved through BatchService: save listeners (the unlock timer) saw both changes.
+        assertEquals(List.of(b.getLocalId(), a.getLocalId()), saved);
+        assertEquals(1, recovery.getBatchesReconciled());
+        assertEquals(1, recovery.getTransfersMarked());
+        assertEquals(1, recovery.getUnknownBatches());
+
+        chain.head.set(113);
+        assertEquals(1, recovery.catchUp());
+        assertTrue(transfers.get(2).isExecuted());
+        assertEquals(List.of(106L, 107L, 108L, 109L, 110L, 111L), chain.fetched);
+        assertEquals("111", Files.readString(dir.resolve("checkpoint")));
+    }
+
+    @Test
+    void firstStartBeginsAtHeadAndRestartOnlyScansTheGap() throws Exception {
+        FakeChain chain = new FakeChain();
+        chain.head.set(5_000);
+        InMemoryBatchRepository repository = new InMemoryBatchRepository();
+
+        assertEquals(0, recovery(chain, repository, 0).catchUp());
+        assertTrue(chain.fetched.isEmpty());
+        assertEquals("5000", Files.readString(dir.resolve("checkpoint")));
+
+        // Restart: only the blocks produced since the checkpoint are scanned.
+        chain.head.set(5_003);
+        assertEquals(3, recovery(chain, repository, 0).catchUp());
+        assertEquals(List.of(5_001L, 5_002L, 5_003L), chain.fetched);
+    }
+
+    private SettlementLogRecovery recovery(FakeChain chain, InMemoryBatchRepository repository, int confirmations) {
+        RecoveryProperties props = new RecoveryProperties();
+        props.setCheckpointFile(dir.resolve("checkpoint").toString());
+        props.setConfirmations(confirmations);
+        BatchService batchService = new BatchService(new TransferIntentService(IntentWal.disabled()),
+                new MerkleTreeService(), null, repository,
+                new WhitelistService(new WhitelistProperties(), new SettlementProperties(), new ChainProperties(),
+                        new NodePool(new NodeProperties(), new SettlementProperties())),
+                new BatchProperties());
+        batchService.addSaveListener(batch -> saved.add(batch.getLocalId()));
+        return new SettlementLogRecovery(chain, NodeRateLimiter.unlimited(), repository, batchService, props, SETTLEMENT);
+    }
+
+    private static LocalBatch batch(String root, long onChainBatchId, BatchStatus status, int transfers) {
+        LocalBatch batch = new LocalBatch();
+        batch.setMerkleRootHex(root);
+        batch.setOnChainBatchId(onChainBatchId);
+        batch.setStatus(status);
+        List<StoredTransfer> list = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, transfers); i++) {
+            TransferData d = new TransferData();
+            d.setFrom(FROM);
+            d.setTo(TO);
+            d.setAmount("1000");
+            d.setNonce(i);
+            d.setBatchId(onChainBatchId);
+            StoredTransfer st = new StoredTransfer();
+            st.setTxData(d);
+            list.add(st);
+        }
+        batch.setTransfers(list);
+        batch.setTxCount(list.size());
+        return batch;
+    }
+
+    private static Response.TransactionInfo.Log transferExecuted(byte[] contract, String from, long nonce) {
+        byte[] data = new byte[64];
+        put(data, 0, BigInteger.valueOf(1000));                    // amount
+        put(data, 32, BigInteger.valueOf(nonce));                  // nonce
+        return Response.TransactionInfo.Log.newBuilder()
+                .setAddress(ByteString.copyFrom(contract))
+                .addTopics(ByteString.copyFrom(Numeric.hexStringToByteArray(
+                        Hash.sha3String(TransferExecutedEvent.EVENT_SIGNATURE))))
+                .addTopics(ByteString.copyFrom(addressTopic(from)))
+                .addTopics(ByteString.copyFrom(addressTopic(TO)))
+                .setData(ByteString.copyFrom(data))
+                .build();
+    }
+
+    private static Response.TransactionInfo.Log batchSubmitted(long batchId, String root) {
+        byte[] id = new byte[32];
+        put(id, 0, BigInteger.valueOf(batchId));
+        byte[] data = new byte[64];
+        put(data, 0, BigInteger.ONE);                               // txCount
+        put(data, 32, BigInteger.valueOf(1_700_000_000L));          // timestamp
+        return Response.TransactionInfo.Log.newBuilder()
+                .setAddress(ByteString.copyFrom(SETTLEMENT))
+                .addTopics(ByteString.copyFrom(Numeric.hexStringToByteArray(
+                        Hash.sha3String(BatchSubmittedEventReader.EVENT_SIGNATURE))))
+                .addTopics(ByteString.copyFrom(id))
+                .addTopics(ByteString.copyFrom(Numeric.hexStringToByteArray(root)))
+                .setData(ByteString.copyFrom(data))
+                .build();
+    }
+
+    private static void put(byte[] buf, int slotOffset, BigInteger value) {
+        byte[] v = value.toByteArray();
+        System.arraycopy(v, 0, buf, slotOffset + 32 - v.length, v.length);
+    }
+
+    private static byte[] addressTopic(String base58) {
+        byte[] raw = ApiWrapper.parseAddress(base58).toByteArray();
+        byte[] topic = new byte[32];
+        System.arraycopy(raw, raw.length - 20, topic, 12, 20);
+        return topic;
+    }
+
+    private static String hexTxId(String txId) {
+        return Numeric.toHexStringNoPrefix(txId.getBytes());
+    }
+
+    private static byte[] filled(int n, int v) {
+        byte[] b = new byte[n];
+        Arrays.fill(b, (byte) v);
+        return b;
+    }
+
+    /**
+     * Chain of receipts per block; records which blocks were fetched.
+     */
+    private static final class FakeChain implements ReceiptTracker.ReceiptSource {
+        final Map<Long, List<Response.TransactionInfo>> blocks = new HashMap<>();
+        final List<Long> fetched = new CopyOnWriteArrayList<>();
+        final AtomicLong head = new AtomicLong();
+
+        void log(long block, String txId, Response.TransactionInfo.Log log) {
+            blocks.computeIfAbsent(block, k -> new ArrayList<>()).add(Response.TransactionInfo.newBuilder()
+                    .setId(ByteString.copyFrom(txId.getBytes()))
+                    .setBlockNumber(block)
+                    .addLog(log)
+                    .build());
+        }
+
+        @Override
+        public long latestBlockNum() {
+            return head.get();
+        }
+
+        @Override
+        public List<Response.TransactionInfo> blockReceipts(long blockNum) {
+            if (blockNum > head.get()) throw new IllegalStateException("block not produced yet: " + blockNum);
+            fetched.add(blockNum);
+            return blocks.getOrDefault(blockNum, List.of());
+        }
+
+        @Override
+        public Response.TransactionInfo transactionInfo(String txId) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
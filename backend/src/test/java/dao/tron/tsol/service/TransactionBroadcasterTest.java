@@ -0,0 +1,88 @@
+package dao.tron.tsol.service;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import org.tron.trident.core.ApiWrapper;
+import org.tron.trident.core.key.KeyPair;
+import org.tron.trident.proto.Chain;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionBroadcasterTest {
+
+    private static final String OWNER = "TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M";
+    private static final String CONTRACT = "TAhZaywaWM1zAQPADJA39FyoQk8cokRLCd";
+
+    @Test
+    void broadcastsFromParallelTasksOverlap() throws Exception {
+        KeyPair key = KeyPair.generate();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        TransactionBroadcaster broadcaster = new TransactionBroadcaster(key.toPrivateKey(), signed -> {
+            peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);   // node round-trip
+            } finally {
+                active.decrementAndGet();
+            }
+            return HexFormat.of().formatHex(LocalTransactionBuilder.txId(signed));
+        });
+
+        List<Future<String>> results = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 32; i++) {
+                Chain.Transaction tx = unsignedTx(i);
+                results.add(pool.submit(() -> broadcaster.signAndBroadcast(tx)));
+            }
+        }
+
+        for (int i = 0; i < 32; i++) {
+            assertEquals(HexFormat.of().formatHex(LocalTransactionBuilder.txId(unsignedTx(i))), results.get(i).get());
+        }
+        // No broadcast lock: round-trips of parallel tasks overlap.
+        assertTrue(peak.get() >= 8, "peak concurrent broadcasts " + peak.get());
+    }
+
+    @Test
+    void pooledSignersProduceTheSameSignatureAsASingleKey() throws Exception {
+        KeyPair key = KeyPair.generate();
+        TransactionBroadcaster broadcaster = new TransactionBroadcaster(key.toPrivateKey(), signed -> "x");
+
+        List<Future<Chain.Transaction>> signed = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 64; i++) {
+                Chain.Transaction tx = unsignedTx(i % 4);
+                signed.add(pool.submit(() -> broadcaster.sign(tx)));
+            }
+        }
+
+        for (int i = 0; i < 64; i++) {
+            Chain.Transaction tx = signed.get(i).get();
+            assertEquals(1, tx.getSignatureCount());
+            byte[] expected = KeyPair.signTransaction(LocalTransactionBuilder.txId(unsignedTx(i % 4)), key);
+            assertArrayEquals(expected, tx.getSignature(0).toByteArray());
+        }
+    }
+
+    private static Chain.Transaction unsignedTx(int n) {
+        byte[] blockId = new byte[32];
+        blockId[8] = (byte) n;
+        return LocalTransactionBuilder.triggerSmartContract(
+                ApiWrapper.parseAddress(OWNER),
+                ApiWrapper.parseAddress(CONTRACT),
+                ByteString.copyFromUtf8("call-" + n).toByteArray(),
+                100_000_000L,
+                new LocalTransactionBuilder.RefBlock(1000L + n, blockId, 0L),
+                1_700_000_000_000L,
+                1_700_000_060_000L);
+    }
+}
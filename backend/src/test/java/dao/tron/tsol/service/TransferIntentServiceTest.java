@@ -0,0 +1,264 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.config.IntakeProperties;
+import dao.tron.tsol.config.WalProperties;
+import dao.tron.tsol.model.TransferData;
+import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.util.IntentWireFormat;
+import dao.tron.tsol.wal.IntentWal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferIntentServiceTest {
+
+    @Test
+    void drain_isFifoAndUpdatesCount() {
+        TransferIntentService service = new TransferIntentService(IntentWal.disabled());
+        for (long i = 0; i < 10; i++) {
+            service.addIntent(intent(i));
+        }
+        assertEquals(10, service.getPendingCount());
+
+        List<TransferIntentRequest> first = service.drain(4).intents();
+        assertEquals(List.of(0L, 1L, 2L, 3L), first.stream().map(TransferIntentRequest::getNonce).toList());
+        assertEquals(6, service.getPendingCount());
+
+        List<TransferIntentRequest> rest = service.drain(100).intents();
+        assertEquals(6, rest.size());
+        assertEquals(4L, rest.getFirst().getNonce());
+        assertTrue(service.isEmpty());
+        assertEquals(0, service.getPendingCount());
+        assertEquals(0L, service.getOldestAgeSeconds());
+        assertTrue(service.drain(5).isEmpty());
+    }
+
+    @Test
+    void concurrentProducers_loseNothing() throws Exception {
+        TransferIntentService service = new TransferIntentService(IntentWal.disabled());
+        int producers = 8;
+        int perProducer = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * perProducer;
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perProducer; i++) {
+                    service.addIntent(intent(base + i));
+                }
+                return null;
+            });
+        }
+
+        start.countDown();
+        Set<Long> seen = new HashSet<>();
+        List<TransferIntentRequest> drained = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (seen.size() < producers * perProducer && System.currentTimeMillis() < deadline) {
+            drained.clear();
+            drained.addAll(service.drain(1_000).intents());
+            for (TransferIntentRequest r : drained) {
+                assertTrue(seen.add(r.getNonce()), "duplicate drain of nonce " + r.getNonce());
+            }
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(producers * perProducer, seen.size());
+        assertEquals(0, service.getPendingCount());
+    }
+
+    @Test
+    void concurrentBulkRequestsNeverOvershootTheHighWatermark() throws Exception {
+        TransferIntentService service = new TransferIntentService(IntentWal.disabled());
+        IntakeAdmission admission = admission(service, 50, 0, 0);
+        int producers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int p = 0; p < producers; p++) {
+            long base = p * 1_000L;
+            pool.submit(() -> {
+                start.await();
+                for (int body = 0; body < 20; body++) {
+                    List<TransferIntentRequest> reqs = new ArrayList<>();
+                    for (int i = 0; i < 5; i++) reqs.add(intent(base + body * 5 + i));
+                    service.addIntents(reqs, admission);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(50, service.getPendingCount());
+        assertEquals(50, service.getQueueDepth()); // no reservation left behind
+    }
+
+    @Test
+    void senderTokensAreTakenOnlyForEnqueuedIntents() {
+        TransferIntentService service = new TransferIntentService(IntentWal.disabled());
+        IntakeAdmission admission = admission(service, 3, 1, 2);
+
+        assertTrue(service.addIntents(List.of(intent(1)), admission).added()[0]);
+        // duplicates neither take a token nor queue room
+        TransferIntentService.AddResult repeated = service.addIntents(List.of(intent(1), intent(2), intent(2)), admission);
+        assertArrayEquals(new boolean[]{false, true, false}, repeated.added());
+        assertArrayEquals(new IntakeAdmission.Rejection[3], repeated.rateLimited());
+
+        TransferIntentService.AddResult limited = service.addIntents(List.of(intent(3)), admission);
+        assertNull(limited.queueFull());
+        assertNotNull(limited.rateLimited()[0]);
+        assertFalse(limited.added()[0]);
+
+        // Another sender's body does not fit: refused as a whole, without taking its tokens or nonces.
+        TransferIntentRequest other1 = intent(1);
+        TransferIntentRequest other2 = intent(2);
+        other1.setFrom("TToEDBXQkGuYGsnyJASTM5JZweb7Rvrnfn");
+        other2.setFrom("TToEDBXQkGuYGsnyJASTM5JZweb7Rvrnfn");
+        TransferIntentService.AddResult full = service.addIntents(List.of(other1, other2), admission);
+        assertNotNull(full.queueFull());
+        assertArrayEquals(new boolean[]{false, false}, full.added());
+        assertEquals(2, service.getPendingCount());
+
+        service.drain(10);
+        assertArrayEquals(new boolean[]{true, true}, service.addIntents(List.of(other1, other2), admission).added());
+        // only the two repeats count as duplicates; the rate-limited and refused intents were not remembered
+        assertEquals(2, service.getDuplicatesRejected());
+    }
+
+    @Test
+    void retriedIntentsAreRejectedAsDuplicates() {
+        TransferIntentService service = new TransferIntentService(IntentWal.disabled());
+        assertTrue(service.addIntent(intent(1)));
+        assertFalse(service.addIntent(intent(1)));
+
+        // Same sender and nonce in the binary format, a repeat inside one bulk call, and a fresh nonce.
+        TransferIntentRequest packed = IntentWireFormat.fromFields(IntentWireFormat.fieldsOf(intent(1)));
+        boolean[] added = service.addIntents(List.of(packed, intent(2), intent(2), intent(3)));
+        assertArrayEquals(new boolean[]{false, true, false, true}, added);
+
+        // The same sender spelled in hex is the same sender.
+        TransferIntentRequest hex = intent(3);
+        hex.setFrom("4168b86ce0e9e72367e20a0e144bece5e2bb61f403");
+        assertFalse(service.addIntent(hex));
+
+        // A different sender may reuse the nonce.
+        TransferIntentRequest other = intent(1);
+        other.setFrom("TToEDBXQkGuYGsnyJASTM5JZweb7Rvrnfn");
+        assertTrue(service.addIntent(other));
+
+        assertEquals(4, service.getPendingCount());
+        assertEquals(4, service.getDuplicatesRejected());
+
+        // Transfers of stored batches are remembered explicitly (they are no longer queued).
+        assertEquals(0, service.rememberBatched(List.of(transfer(intent(9)))));
+        assertFalse(service.addIntent(intent(9)));
+    }
+
+    @Test
+    void replayedIntentsOfAStoredBatchAreNotQueuedAgain(@TempDir Path dir) {
+        WalProperties props = new WalProperties();
+        props.setDirectory(dir.toString());
+        props.setSegmentSizeBytes(1 << 20);
+        props.setGroupCommitDelayMs(0);
+
+        IntentWal wal = new IntentWal(props);
+        TransferIntentService service = new TransferIntentService(wal);
+        service.addIntents(List.of(intent(1), intent(2), intent(3)));
+        // intents 1 and 2 were sealed and saved, then the process died before their ACK reached the disk
+        DrainedIntents sealed = service.drain(2);
+        wal.close();
+
+        IntentWal reopened = new IntentWal(props);
+        TransferIntentService restarted = new TransferIntentService(reopened);
+        assertEquals(3, restarted.getPendingCount());
+        assertEquals(2, restarted.rememberBatched(sealed.intents().stream().map(TransferIntentServiceTest::transfer).toList()));
+        assertEquals(List.of(3L), restarted.drain(10).intents().stream().map(TransferIntentRequest::getNonce).toList());
+        assertFalse(restarted.addIntent(intent(1)));
+        reopened.close();
+
+        // the drop was acknowledged: a second restart does not replay them either
+        IntentWal again = new IntentWal(props);
+        assertEquals(List.of(3L), again.takeRecovered().stream().map(e -> e.request().getNonce()).toList());
+        again.close();
+    }
+
+    private static TransferData transfer(TransferIntentRequest req) {
+        TransferData d = new TransferData();
+        d.setFrom(req.getFrom());
+        d.setTo(req.getTo());
+        d.setAmount(req.getAmount());
+        d.setNonce(req.getNonce());
+        d.setTimestamp(req.getTimestamp());
+        d.setRecipientCount(req.getRecipientCount());
+        d.setTxType(req.getTxType());
+        return d;
+    }
+
+    @Test
+    void dedupIndexEvictsOldestAndMatchesAnExactSet() {
+        IntentDedupIndex index = new IntentDedupIndex(1_000);
+        // accepted keys in ring order; a removed key leaves its position (null) until the ring comes around
+        LinkedList<IntentDedupIndex.Key> ring = new LinkedList<>();
+        Set<IntentDedupIndex.Key> reference = new HashSet<>();
+        Random rnd = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            // few senders and a small nonce range, so keys repeat and probe chains collide
+            IntentDedupIndex.Key key = new IntentDedupIndex.Key(rnd.nextInt(4), 0L, 0, rnd.nextInt(800));
+            boolean added = index.add(key);
+            assertEquals(!reference.contains(key), added, "at step " + i);
+            if (added) {
+                ring.addLast(key);
+                reference.add(key);
+                if (ring.size() > 1_000) {
+                    IntentDedupIndex.Key oldest = ring.removeFirst();
+                    if (oldest != null) reference.remove(oldest);
+                }
+                if (i % 97 == 0) {
+                    index.remove(key);
+                    reference.remove(key);
+                    ring.set(ring.size() - 1, null);
+                }
+            }
+        }
+        assertTrue(index.getEvictions() > 0);
+    }
+
+    private static IntakeAdmission admission(TransferIntentService service, int highWatermark, int senderRate,
+                                             int senderBurst) {
+        IntakeProperties props = new IntakeProperties();
+        props.setHighWatermark(highWatermark);
+        props.setSenderRatePerSecond(senderRate);
+        props.setSenderBurst(senderBurst);
+        return new IntakeAdmission(service::getQueueDepth, () -> 0.0, props, 1, () -> 1_000L);
+    }
+
+    private static TransferIntentRequest intent(long nonce) {
+        TransferIntentRequest req = new TransferIntentRequest();
+        req.setFrom("TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M");
+        req.setTo("TToEDBXQkGuYGsnyJASTM5JZweb7Rvrnfn");
+        req.setAmount("1000");
+        req.setNonce(nonce);
+        req.setTimestamp(1702332000L);
+        req.setRecipientCount(1);
+        req.setTxType(0);
+        return req;
+    }
+}
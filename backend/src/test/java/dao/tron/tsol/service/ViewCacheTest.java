@@ -0,0 +1,102 @@
+package dao.tron.tsol.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ViewCacheTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final Map<Long, AtomicInteger> loads = new ConcurrentHashMap<>();
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ViewCache<Long, Long> cache = new ViewCache<>(k -> {
+            count(k);
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return k * 10;
+        }, v -> true, 3_000, 100, clock::get);
+
+        List<Future<Long>> results = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 32; i++) {
+                results.add(pool.submit(() -> cache.get(7L)));
+            }
+            Thread.sleep(50);
+            release.countDown();
+        }
+
+        for (Future<Long> r : results) assertEquals(70L, r.get());
+        assertEquals(1, loads(7L));
+    }
+
+    @Test
+    void immutableResultsOutliveTheTtl() throws Exception {
+        // A batch that is not mined yet reads as 0 (may change); a mined one never changes.
+        Map<Long, Long> unlockTimes = new ConcurrentHashMap<>(Map.of(1L, 0L, 2L, 1_700_000_060L));
+        ViewCache<Long, Long> cache = new ViewCache<>(k -> {
+            count(k);
+            return unlockTimes.get(k);
+        }, v -> v != 0L, 3_000, 100, clock::get);
+
+        assertEquals(0L, cache.get(1L));
+        assertEquals(1_700_000_060L, cache.get(2L));
+        clock.addAndGet(2_999L);
+        assertEquals(0L, cache.get(1L));
+        assertEquals(1, loads(1L));
+
+        unlockTimes.put(1L, 1_700_000_120L);
+        clock.addAndGet(1L);
+        assertEquals(1_700_000_120L, cache.get(1L));
+        clock.addAndGet(1_000_000L);
+        assertEquals(1_700_000_120L, cache.get(1L));
+        assertEquals(1_700_000_060L, cache.get(2L));
+
+        assertEquals(2, loads(1L));
+        assertEquals(1, loads(2L));
+    }
+
+    @Test
+    void failedLoadsAreNotCached() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        ViewCache<Long, Long> cache = new ViewCache<>(k -> {
+            if (attempts.incrementAndGet() == 1) throw new IllegalStateException("node unavailable");
+            return 42L;
+        }, v -> true, 3_000, 100, clock::get);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> cache.get(1L));
+        assertEquals("node unavailable", e.getMessage());
+        assertEquals(42L, cache.get(1L));
+        assertEquals(42L, cache.get(1L));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void evictsDownToThreeQuartersWhenFull() throws Exception {
+        ViewCache<Long, Long> cache = new ViewCache<>(k -> k, v -> true, 3_000, 8, clock::get);
+        for (long k = 0; k < 9; k++) cache.get(k);
+        assertEquals(6, cache.size());
+    }
+
+    private void count(long key) {
+        loads.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private int loads(long key) {
+        AtomicInteger n = loads.get(key);
+        return n == null ? 0 : n.get();
+    }
+}
@@ -0,0 +1,111 @@
+package dao.tron.tsol.service;
+
+import dao.tron.tsol.util.PackedProof;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.web3j.crypto.Hash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WhitelistTreeTest {
+
+    private static final List<String> ADDRESSES = List.of(
+            "TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M",
+            "TVKAAcqpQxz3J4waayePr8dQjSQ2XHkdbF",
+            "TToEDBXQkGuYGsnyJASTM5JZweb7Rvrnfn",
+            "TAhZaywaWM1zAQPADJA39FyoQk8cokRLCd",
+            "TFZMxv9HUzvsL3M7obrvikSQkuvJsopgMU",
+            "TUqVYQLKtNvLCjHw6uGPLw4Qmw7vXEavnc",
+            "TXYZopYRdj2D9XRtbG411XZZ3kM5VkAeBf"
+    );
+
+    @Test
+    @DisplayName("Cached tree matches per-call rebuild for root and every proof")
+    void testMatchesReferenceTree() {
+        for (int w = 1; w <= ADDRESSES.size(); w++) {
+            List<String> addrs = ADDRESSES.subList(0, w);
+            List<byte[]> leaves = new ArrayList<>();
+            for (String a : addrs) leaves.add(WhitelistTree.addressToLeaf(a));
+
+            WhitelistTree tree = WhitelistTree.build(addrs);
+            assertEquals(w, tree.size());
+
+            List<List<byte[]>> layers = referenceLayers(leaves);
+            assertArrayEquals(layers.getLast().getFirst(), tree.rootBytes(), "root mismatch for w=" + w);
+
+            for (int i = 0; i < w; i++) {
+                assertEquals(i, tree.indexOf(addrs.get(i)));
+                assertArrayEquals(PackedProof.pack(referenceProof(layers, i)), tree.proof(i),
+                        "proof mismatch for w=" + w + ", index " + i);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Proofs verify against the root for power-of-two whitelists")
+    void testProofsVerify() {
+        WhitelistTree tree = WhitelistTree.build(ADDRESSES.subList(0, 4));
+        for (int i = 0; i < 4; i++) {
+            byte[] h = WhitelistTree.addressToLeaf(ADDRESSES.get(i));
+            byte[] proof = tree.proof(i);
+            for (int n = 0; n < PackedProof.depth(proof); n++) {
+                h = hashPairSorted(h, PackedProof.node(proof, n));
+            }
+            assertArrayEquals(tree.rootBytes(), h);
+        }
+    }
+
+    @Test
+    @DisplayName("Address lookup is case-insensitive and unknown addresses are rejected")
+    void testIndexOf() {
+        WhitelistTree tree = WhitelistTree.build(ADDRESSES);
+        assertEquals(1, tree.indexOf(ADDRESSES.get(1).toLowerCase()));
+        assertEquals(2, tree.indexOf("  " + ADDRESSES.get(2) + " "));
+        assertEquals(-1, tree.indexOf("T9yD14Nj9j7xAB4dbGeiX9h8unkKHxuWwb"));
+        assertEquals(-1, tree.indexOf(null));
+        assertThrows(IllegalArgumentException.class, () -> WhitelistTree.build(List.of()));
+    }
+
+    // Previous implementation: rebuild all layers from List<byte[]> on every call.
+    private static List<List<byte[]>> referenceLayers(List<byte[]> leaves) {
+        List<List<byte[]>> layers = new ArrayList<>();
+        List<byte[]> cur = new ArrayList<>(leaves);
+        layers.add(cur);
+        while (cur.size() > 1) {
+            List<byte[]> next = new ArrayList<>();
+            for (int i = 0; i < cur.size(); i += 2) {
+                byte[] left = cur.get(i);
+                byte[] right = (i + 1 < cur.size()) ? cur.get(i + 1) : left;
+                next.add(hashPairSorted(left, right));
+            }
+            layers.add(next);
+            cur = next;
+        }
+        return layers;
+    }
+
+    private static List<byte[]> referenceProof(List<List<byte[]>> layers, int index) {
+        List<byte[]> proof = new ArrayList<>();
+        int idx = index;
+        for (int layerIdx = 0; layerIdx < layers.size() - 1; layerIdx++) {
+            int sib = idx ^ 1;
+            if (sib < layers.get(layerIdx).size()) {
+                proof.add(layers.get(layerIdx).get(sib));
+            }
+            idx /= 2;
+        }
+        return proof;
+    }
+
+    private static byte[] hashPairSorted(byte[] a, byte[] b) {
+        byte[] out = new byte[64];
+        boolean aFirst = Arrays.compareUnsigned(a, b) <= 0;
+        System.arraycopy(aFirst ? a : b, 0, out, 0, 32);
+        System.arraycopy(aFirst ? b : a, 0, out, 32, 32);
+        return Hash.sha3(out);
+    }
+}
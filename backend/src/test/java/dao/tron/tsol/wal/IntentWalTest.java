@@ -0,0 +1,176 @@
+package dao.tron.tsol.wal;
+
+import dao.tron.tsol.config.WalProperties;
+import dao.tron.tsol.model.TransferIntentRequest;
+import dao.tron.tsol.util.IntentWireFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntentWalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unacknowledgedIntentsAreRecoveredAfterRestart() {
+        IntentWal wal = open(1 << 20);
+        long s1 = wal.append(intent(1));
+        long s2 = wal.append(intent(2));
+        long s3 = wal.append(intent(3));
+        wal.awaitDurable(s3);
+        wal.acknowledge(new long[]{s1, s3});
+        wal.close();
+
+        IntentWal reopened = open(1 << 20);
+        List<IntentWal.Entry> recovered = reopened.takeRecovered();
+        assertEquals(1, recovered.size());
+        assertEquals(s2, recovered.getFirst().seq());
+        assertEquals(intent(2), recovered.getFirst().request());
+        assertTrue(reopened.takeRecovered().isEmpty());
+
+        // New appends continue after the recovered sequence numbers.
+        assertTrue(reopened.append(intent(4)) > s3);
+        reopened.close();
+    }
+
+    @Test
+    void fullyAcknowledgedSegmentsAreDeleted() throws Exception {
+        IntentWal wal = open(64 * 1024);
+        long[] seqs = new long[2_000]; // ~1 record per 100 bytes -> several 64 KiB segments
+        for (int i = 0; i < seqs.length; i++) {
+            seqs[i] = wal.append(intent(i));
+        }
+        wal.awaitDurable(seqs[seqs.length - 1]);
+        long before = segmentCount();
+        assertTrue(before > 2, "expected rotation, segments=" + before);
+
+        wal.acknowledge(seqs);
+        assertTrue(segmentCount() < before);
+        wal.close();
+
+        IntentWal reopened = open(64 * 1024);
+        assertTrue(reopened.takeRecovered().isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    void bulkAppendIsOneCommitAndRecoveredInOrder() {
+        IntentWal wal = open(1 << 20);
+        long[] seqs = wal.appendAll(List.of(intent(1), intent(2), intent(3)));
+        assertEquals(3, seqs.length);
+        assertTrue(seqs[0] < seqs[1] && seqs[1] < seqs[2]);
+        wal.awaitDurable(seqs[2]);
+        wal.acknowledge(new long[]{seqs[1]});
+        wal.close();
+
+        IntentWal reopened = open(1 << 20);
+        List<IntentWal.Entry> recovered = reopened.takeRecovered();
+        assertEquals(List.of(1L, 3L), recovered.stream().map(e -> e.request().getNonce()).toList());
+        reopened.close();
+    }
+
+    @Test
+    void binaryFormatIntentsAreLoggedPackedAndRecovered() {
+        TransferIntentRequest packed = IntentWireFormat.fromFields(IntentWireFormat.fieldsOf(intent(7)));
+        IntentWal wal = open(1 << 20);
+        long[] seqs = wal.appendAll(List.of(intent(6), packed));
+        wal.awaitDurable(seqs[1]);
+        wal.close();
+
+        IntentWal reopened = open(1 << 20);
+        List<IntentWal.Entry> recovered = reopened.takeRecovered();
+        assertNull(recovered.get(0).request().getPackedFields());
+        assertNotNull(recovered.get(1).request().getPackedFields());
+        assertEquals(List.of(intent(6), intent(7)), recovered.stream().map(IntentWal.Entry::request).toList());
+        reopened.close();
+    }
+
+    @Test
+    void failedForceFailsItsWaitersAndIsRetried() {
+        AtomicBoolean diskBroken = new AtomicBoolean(true);
+        IntentWal wal = open(1 << 20, 60_000, buf -> {
+            if (diskBroken.get()) throw new UncheckedIOException(new IOException("disk gone"));
+            buf.force();
+        });
+        long seq = wal.append(intent(1));
+        // fails with the force error, not after the (one minute) commit timeout
+        WalUnavailableException e = assertThrows(WalUnavailableException.class, () -> wal.awaitDurable(seq));
+        assertTrue(e.getMessage().contains("disk gone"), e.getMessage());
+
+        diskBroken.set(false);
+        wal.awaitDurable(wal.append(intent(2)));
+        wal.close();
+    }
+
+    @Test
+    void waitForDurabilityIsBoundedByCommitTimeout() {
+        CountDownLatch diskStalled = new CountDownLatch(1);
+        IntentWal wal = open(1 << 20, 50, buf -> {
+            try {
+                diskStalled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            buf.force();
+        });
+        WalUnavailableException e = assertThrows(WalUnavailableException.class,
+                () -> wal.awaitDurable(wal.append(intent(1))));
+        assertTrue(e.getMessage().contains("not durable within 50ms"), e.getMessage());
+        diskStalled.countDown();
+        wal.close();
+    }
+
+    @Test
+    void disabledWalIsNoOp() {
+        IntentWal wal = IntentWal.disabled();
+        assertFalse(wal.isEnabled());
+        assertEquals(0L, wal.append(intent(1)));
+        wal.awaitDurable(0L);
+        wal.acknowledge(new long[]{0L});
+        assertTrue(wal.takeRecovered().isEmpty());
+    }
+
+    private IntentWal open(int segmentSize) {
+        return open(segmentSize, 5_000, MappedByteBuffer::force);
+    }
+
+    private IntentWal open(int segmentSize, long commitTimeoutMs, Consumer<MappedByteBuffer> force) {
+        WalProperties props = new WalProperties();
+        props.setDirectory(dir.toString());
+        props.setSegmentSizeBytes(segmentSize);
+        props.setGroupCommitDelayMs(0);
+        props.setCommitTimeoutMs(commitTimeoutMs);
+        return new IntentWal(props, force);
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.count();
+        }
+    }
+
+    private static TransferIntentRequest intent(long nonce) {
+        TransferIntentRequest req = new TransferIntentRequest();
+        req.setFrom("TKWvD71EMFTpFVGZyqqX9fC6MQgcR9H76M");
+        req.setTo("TToEDBXQkGuYGsnyJASTM5JZweb7Rvrnfn");
+        req.setAmount("1000");
+        req.setNonce(nonce);
+        req.setTimestamp(1702332000L);
+        req.setRecipientCount(1);
+        req.setTxType(0);
+        return req;
+    }
+}